@@ -239,6 +239,10 @@ public abstract class AbstractTest {
 		return builder.toString();
 	}
 
+	protected String getOutput() {
+		return outputStream.toString();
+	}
+
 	protected void assertEmptyErrorMessage() {
 		assertEquals(EMPTY_STRING, errStream.toString());
 	}
@@ -27,9 +27,12 @@ public class LogicalAppTest extends AbstractIntegrationTest {
 		//@formatter:off
 		return EOL 
 				+ "Available commands are:" + EOL
+				+ "logicalblame" + EOL
 				+ "logicalcherry-pick" + EOL
 				+ "logicaldiff" + EOL
+				+ "logicallog" + EOL
 				+ "logicalmerge" + EOL
+				+ "logicalmergedriver" + EOL
 				+ "logicalmergetool" + EOL
 				+ "logicalpull" + EOL
 				+ "logicalrebase" + EOL;
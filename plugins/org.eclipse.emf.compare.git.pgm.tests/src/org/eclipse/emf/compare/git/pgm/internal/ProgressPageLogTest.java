@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.oomph.setup.SetupFactory;
+import org.eclipse.oomph.setup.SetupTask;
+import org.eclipse.oomph.setup.log.ProgressLog.Severity;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ProgressPageLog}.
+ */
+@SuppressWarnings("nls")
+public class ProgressPageLogTest {
+
+	private ByteArrayOutputStream out;
+
+	private ByteArrayOutputStream events;
+
+	private ProgressPageLog log;
+
+	@Before
+	public void before() throws Exception {
+		out = new ByteArrayOutputStream();
+		events = new ByteArrayOutputStream();
+		log = new ProgressPageLog(new PrintStream(out, true), new PrintStream(events, true));
+	}
+
+	@Test
+	public void testTaskEvents() throws Exception {
+		log.task(createTask("copy"));
+		log.log("Copying");
+		log.log("Not shown", false);
+		log.log("Careful", Severity.WARNING);
+		log.task(createTask(null));
+		log.log("Failed", true, Severity.ERROR);
+		log.setTerminating();
+
+		assertEquals("Copying\nCareful\nFailed\n", out.toString().replace("\r", "").replaceAll(
+				"(?m)^\\w+Task: .*\n", ""));
+		List<String> lines = getEvents();
+		assertTrue(lines.get(0).startsWith("{\"event\":\"taskStart\","));
+		assertTrue(lines.get(0).endsWith("\"task\":\"copy\",\"type\":\"ResourceCopyTask\"}"));
+		assertTrue(lines.get(2).endsWith("\"task\":\"copy\",\"severity\":\"INFO\",\"hidden\":true,"
+				+ "\"message\":\"Not shown\"}"));
+		assertTrue(lines.get(3).contains("\"severity\":\"WARNING\""));
+		assertTrue(lines.get(4).startsWith("{\"event\":\"taskEnd\","));
+		assertTrue(lines.get(4).endsWith(",\"bytes\":0,\"warnings\":1,\"errors\":0}"));
+		assertTrue(lines.get(5).endsWith("\"task\":\"ResourceCopyTask\",\"type\":\"ResourceCopyTask\"}"));
+		assertTrue(lines.get(7).endsWith(",\"bytes\":0,\"warnings\":0,\"errors\":1}"));
+
+		// One summary for the two tasks of the same type
+		assertEquals(9, lines.size());
+		assertTrue(lines.get(8).startsWith(
+				"{\"event\":\"summary\",\"type\":\"ResourceCopyTask\",\"count\":2,"));
+		assertTrue(lines.get(8).endsWith(",\"bytes\":0,\"warnings\":1,\"errors\":1}"));
+		assertTrue(out.toString().contains("ResourceCopyTask: 2 task(s) in "));
+	}
+
+	@Test
+	public void testDownloadedBytes() throws Exception {
+		log.task(createTask("p2"));
+		log.log("Fetching a.jar from http://download/plugins/ (1.5kB of 2kB at 1kB/s)");
+		log.log("Fetching a.jar from http://download/plugins/ (2kB of 2kB at 1kB/s)");
+		log.log("Fetching b.jar from http://download/plugins/ (512B at 1kB/s)");
+		log.setTerminating();
+
+		List<String> lines = getEvents();
+		assertTrue(lines.get(4).startsWith("{\"event\":\"taskEnd\","));
+		assertTrue(lines.get(4).contains(",\"bytes\":2560,"));
+	}
+
+	@Test
+	public void testNoEventStream() throws Exception {
+		ProgressPageLog consoleLog = new ProgressPageLog(new PrintStream(out, true));
+		consoleLog.task(createTask("copy"));
+		consoleLog.log("Copying");
+		consoleLog.setTerminating();
+
+		// The console output is the same as without the task events
+		assertEquals("Copying", out.toString().trim());
+	}
+
+	@Test
+	public void testParseSize() throws Exception {
+		assertEquals(512, ProgressPageLog.parseSize("512", "B"));
+		assertEquals(1536, ProgressPageLog.parseSize("1.5", "kB"));
+		assertEquals(1536, ProgressPageLog.parseSize("1,5", "KB"));
+		assertEquals(1264128, ProgressPageLog.parseSize("1,234.5", "kB"));
+		assertEquals(1264128, ProgressPageLog.parseSize("1.234,5", "kB"));
+		assertEquals(1234, ProgressPageLog.parseSize("1,234", "B"));
+		assertEquals(12345678, ProgressPageLog.parseSize("12,345,678", "B"));
+		assertEquals(3L * 1024 * 1024 * 1024, ProgressPageLog.parseSize("3", "GB"));
+		assertEquals(-1, ProgressPageLog.parseSize("1.2.3", "B"));
+	}
+
+	private static SetupTask createTask(String id) {
+		SetupTask task = SetupFactory.eINSTANCE.createResourceCopyTask();
+		task.setID(id);
+		return task;
+	}
+
+	private List<String> getEvents() {
+		List<String> lines = new ArrayList<String>();
+		for (String line : events.toString().split("\r?\n")) {
+			assertFalse(line.isEmpty());
+			lines.add(line);
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+import static org.junit.Assert.assertEquals;
+
+import java.text.SimpleDateFormat;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.app.data.ContextSetup;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.Test;
+
+/**
+ * Tests the logical blame application.
+ */
+@SuppressWarnings("nls")
+public class BlameApplicationTest extends AbstractApplicationTest {
+
+	private ContextSetup contextSetup;
+
+	/**
+	 * <h3>Use case BLA001</h3>
+	 * <p>
+	 * The class X of the initial commit is known as //X.1 once another X has been added before it: it is
+	 * still attributed to the initial commit.
+	 * </p>
+	 *
+	 * @see ContextSetup#setupBLA001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testBLA001() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupBLA001();
+
+		getContext().addArg(getGit().getRepository().getDirectory().getAbsolutePath(),
+				contextSetup.getUserSetupFile().getAbsolutePath(), "--show-stack-trace", "BLA001/model.ecore",
+				"master");
+		Object result = getApp().start(getContext());
+		printOut();
+		printErr();
+		assertEquals(Returns.COMPLETE.code(), result);
+
+		String head = getPrefix("master");
+		String initial = getPrefix("commit_1");
+		StringBuilder expectedOut = new StringBuilder();
+		expectedOut.append(head).append("/").append(TAB).append("EPackage").append(EOL);
+		expectedOut.append(head).append("//X").append(TAB).append("EClass").append(EOL);
+		expectedOut.append(head).append("//X/b").append(TAB).append("EOperation").append(EOL);
+		expectedOut.append(initial).append("//X.1").append(TAB).append("EClass").append(EOL);
+		expectedOut.append(initial).append("//X.1/a").append(TAB).append("EOperation").append(EOL);
+		assertOutputMessageEnd(expectedOut.toString());
+		assertEmptyErrorMessage();
+	}
+
+	/**
+	 * <h3>Use case BLA001 on a file that is not a model</h3>
+	 *
+	 * @see ContextSetup#setupBLA001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testBLA001_notAModel() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupBLA001();
+
+		getContext().addArg(getGit().getRepository().getDirectory().getAbsolutePath(),
+				contextSetup.getUserSetupFile().getAbsolutePath(), "BLA001/.project", "master");
+		Object result = getApp().start(getContext());
+		assertOutputMessageEnd("fatal: BLA001/.project is not a model resource" + EOL);
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
+	/**
+	 * <h3>Use case BLA001 on a missing file</h3>
+	 *
+	 * @see ContextSetup#setupBLA001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testBLA001_missing() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupBLA001();
+
+		getContext().addArg(getGit().getRepository().getDirectory().getAbsolutePath(),
+				contextSetup.getUserSetupFile().getAbsolutePath(), "BLA001/missing.ecore", "master");
+		Object result = getApp().start(getContext());
+		assertOutputMessageEnd("fatal: BLA001/missing.ecore does not exist in " + getLongId("master") + EOL);
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
+	private String getPrefix(String ref) throws Exception {
+		try (RevWalk walk = new RevWalk(getGit().getRepository())) {
+			RevCommit commit = walk.parseCommit(getGit().getRepository().resolve(ref));
+			return getShortId(commit) + TAB + commit.getAuthorIdent().getName() + TAB
+					+ new SimpleDateFormat("yyyy-MM-dd").format(commit.getAuthorIdent().getWhen()) + TAB;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.eclipse.emf.compare.git.pgm.internal.app.AbstractApplicationTest#buildApp()
+	 */
+	@Override
+	protected IApplication buildApp() {
+		return new BlameApplication();
+	}
+}
@@ -16,6 +16,7 @@ import static org.junit.Assert.assertEquals;
 
 import com.google.common.collect.Sets;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashSet;
 
@@ -283,6 +284,37 @@ public class CherryPickApplicationTest extends AbstractApplicationTest {
 		assertFileContent(contextSetup.getProjectPath().resolve("../out.txt"), LYRICS_1 + EOL);
 	}
 
+	/**
+	 * Cherry-picks several commits: the first one applies, the second one conflicts and the last one is not
+	 * cherry-picked.
+	 * 
+	 * @see ContextSetup#setupREB011()
+	 * @throws Exception
+	 */
+	@Test
+	public void testCHE011_severalCommits() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupREB011();
+		commitFileOnBranch("branch_d", "notes.txt", "Adds notes.txt");
+		String todo = commitFileOnBranch("branch_e", "todo.txt", "Adds todo.txt");
+		getGit().checkout().setName("branch_c").call();
+
+		runCherryPick(Returns.ABORTED, "branch_d", "branch_b", "branch_e");
+
+		String expected = getExpectedConflictMessage("[" + getShortId("branch_b") + "]... Moves C1 to P2",
+				"[" + getShortId("HEAD") + "] Adds notes.txt");
+		expected += "hint: The following revisions were not cherry-picked:" + EOL;
+		expected += "	[" + todo + "] Adds todo.txt" + EOL;
+		expected += "hint: Cherry-pick them again once the conflict is committed." + EOL;
+		assertOutputMessageEnd(expected + EOL);
+
+		assertEquals(Sets.newHashSet("REB011/model.notation", "REB011/model.uml"), getGit().status().call()
+				.getConflicting());
+		Path projectPath = contextSetup.getProjectPath();
+		assertFileContent(projectPath.resolve("notes.txt"), "notes.txt" + EOL);
+		assertEquals(false, projectPath.resolve("todo.txt").toFile().exists());
+	}
+
 	@Override
 	protected IApplication buildApp() {
 		return new CherryPickApplication();
@@ -306,15 +338,27 @@ public class CherryPickApplicationTest extends AbstractApplicationTest {
 		assertEquals(1, projectInWorkspace.length);
 	}
 
-	private void runCherryPick(Returns expectedReturnCode, String commitToCherryPick) throws Exception {
+	private void runCherryPick(Returns expectedReturnCode, String... commitsToCherryPick) throws Exception {
 		resetContext();
 
 		getContext().addArg(getRepositoryPath().resolve(".git").toString(),
 				contextSetup.getUserSetupFile().getAbsolutePath(), "--show-stack-trace");
-		getContext().addArg(commitToCherryPick);
+		getContext().addArg(commitsToCherryPick);
 		runCommand(expectedReturnCode);
 	}
 
+	/**
+	 * Creates a branch from branch_a and commits a new text file of the project on it.
+	 * 
+	 * @return the short id of the commit.
+	 */
+	private String commitFileOnBranch(String branch, String fileName, String commitMessage) throws Exception {
+		getGit().checkout().setCreateBranch(true).setName(branch).setStartPoint("branch_a").call();
+		Files.write(contextSetup.getProjectPath().resolve(fileName), (fileName + EOL).getBytes());
+		getGit().add().addFilepattern("REB011/" + fileName).call();
+		return getShortId(getGit().commit().setMessage(commitMessage).call());
+	}
+
 	private String getExpectedConflictMessage(String conflictingCommitMessage, String successfulCommitMessage) {
 		String expected = "";
 		if (successfulCommitMessage != null) {
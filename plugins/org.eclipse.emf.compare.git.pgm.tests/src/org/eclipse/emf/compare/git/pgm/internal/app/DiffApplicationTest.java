@@ -11,10 +11,25 @@
 package org.eclipse.emf.compare.git.pgm.internal.app;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.ComparePackage;
+import org.eclipse.emf.compare.Match;
 import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.app.data.ContextSetup;
 import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.equinox.app.IApplication;
 import org.junit.Test;
 
@@ -49,6 +64,210 @@ public class DiffApplicationTest extends AbstractApplicationTest {
 		assertEquals(Returns.COMPLETE.code(), result);
 	}
 
+	/**
+	 * <h3>Use case DIF001</h3>
+	 * <p>
+	 * a.ecore and b.ecore form a single logical model: both are compared at once, and the comparison holds
+	 * the addition of C and of D.
+	 * </p>
+	 * 
+	 * @see ContextSetup#setupDIF001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testDIF001() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupDIF001();
+
+		String comparison = runDiff("commit_1", "commit_2");
+
+		assertEquals(comparison, 1, count(comparison, "<compare:Comparison"));
+		assertEquals(comparison, 2, count(comparison, "xsi:type=\"compare:ReferenceChange\""));
+		assertTrue(comparison, comparison.contains("DIF001/a.ecore#//D\""));
+		assertTrue(comparison, comparison.contains("DIF001/b.ecore#//C\""));
+	}
+
+	/**
+	 * <h3>Use case DIF001 with the performance options</h3>
+	 * <p>
+	 * The parallel diff, the match strategy, the proxy resolution, the bound on the loaded resources and the
+	 * memory budget do not change the printed comparison.
+	 * </p>
+	 * 
+	 * @see ContextSetup#setupDIF001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testDIF001_options() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupDIF001();
+
+		String expected = runDiff("commit_1", "commit_2");
+
+		assertEquals(expected, runDiff("commit_1", "commit_2", "--threads", "2"));
+		assertEquals(expected, runDiff("commit_1", "commit_2", "--match-engine", "default",
+				"--proxy-resolution", "all", "--max-resources", "10"));
+		// The comparison is printed without being copied once the budget is reached
+		assertEquals(expected, runDiff("commit_1", "commit_2", "--max-heap-fraction", "0.01"));
+	}
+
+	/**
+	 * <h3>Use case DIF001 with a path</h3>
+	 * 
+	 * @see ContextSetup#setupDIF001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testDIF001_path() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupDIF001();
+
+		String comparison = runDiff("commit_1", "commit_2", "--", "DIF001/b.ecore");
+
+		assertEquals(comparison, 1, count(comparison, "<compare:Comparison"));
+		assertTrue(comparison, comparison.contains("DIF001/b.ecore#//C\""));
+	}
+
+	/**
+	 * <h3>Use case DIF001 without the subtree filter</h3>
+	 * <p>
+	 * The elements that are identical in both commits, such as A, are excluded from the scope of the
+	 * comparison by default: the printed comparison holds the same matches as when they are compared.
+	 * </p>
+	 * 
+	 * @see ContextSetup#setupDIF001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testDIF001_subtreeFilter() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupDIF001();
+
+		Set<String> filtered = getMatches(runDiff("commit_1", "commit_2"));
+		StoredConfig config = getGit().getRepository().getConfig();
+		config.setBoolean("emfcompare", null, "subtreeHashing", false);
+		config.save();
+		Set<String> compared = getMatches(runDiff("commit_1", "commit_2"));
+
+		assertEquals(compared, filtered);
+		boolean matchesA = false;
+		for (String match : filtered) {
+			matchesA |= match.contains("DIF001/a.ecore#//A ");
+		}
+		assertTrue(filtered.toString(), matchesA);
+	}
+
+	/**
+	 * <h3>Use case DIF002</h3>
+	 * <p>
+	 * A is renamed differently on both sides: <code>--merge-base</code> prints the conflict and the two
+	 * changes of the name it holds.
+	 * </p>
+	 * 
+	 * @see ContextSetup#setupDIF002()
+	 * @throws Exception
+	 */
+	@Test
+	public void testDIF002_conflict() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupDIF002();
+
+		String conflicts = runDiff("branch_b", "branch_c", "--merge-base");
+
+		assertEquals(conflicts, 1, count(conflicts, "<conflicts"));
+		assertEquals(conflicts, 2, count(conflicts, "xsi:type=\"compare:AttributeChange\""));
+		assertTrue(conflicts, conflicts.contains("ENamedElement/name"));
+	}
+
+	/**
+	 * <h3>Use case DIF002 without conflict</h3>
+	 * <p>
+	 * The model is modified on both sides, but A is only renamed on one of them.
+	 * </p>
+	 * 
+	 * @see ContextSetup#setupDIF002()
+	 * @throws Exception
+	 */
+	@Test
+	public void testDIF002_noConflict() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupDIF002();
+
+		getContext().addArg(getGit().getRepository().getDirectory().getAbsolutePath(),
+				contextSetup.getUserSetupFile().getAbsolutePath(), "--show-stack-trace", "branch_b",
+				"branch_d", "--merge-base");
+		Object result = getApp().start(getContext());
+		assertOutputMessageEnd("No conflict to display." + EMFCompareGitPGMUtil.EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.COMPLETE.code(), result);
+	}
+
+	/**
+	 * Runs the logical diff on the repository of the setup.
+	 * 
+	 * @param arguments
+	 *            the commits and the options.
+	 * @return the printed XMI, without the logs of the setup.
+	 * @throws Exception
+	 */
+	private String runDiff(String... arguments) throws Exception {
+		resetContext();
+		resetApp();
+		getContext().addArg(getGit().getRepository().getDirectory().getAbsolutePath(),
+				contextSetup.getUserSetupFile().getAbsolutePath(), "--show-stack-trace");
+		getContext().addArg(arguments);
+
+		Object result = getApp().start(getContext());
+		String output = getOutput();
+		printOut();
+		printErr();
+		assertEquals(Returns.COMPLETE.code(), result);
+		assertEmptyErrorMessage();
+		int start = output.indexOf("<?xml");
+		assertTrue(output, start >= 0);
+		// Resets the output for the next run
+		assertOutputMessageEnd("");
+		return output.substring(start);
+	}
+
+	/**
+	 * Lists the matches of a printed comparison by the URIs of their left, right and origin elements.
+	 * 
+	 * @param comparison
+	 *            the printed XMI.
+	 * @return the matches, each one described by the URIs of its elements.
+	 * @throws Exception
+	 */
+	private static Set<String> getMatches(String comparison) throws Exception {
+		XMIResourceImpl resource = new XMIResourceImpl(URI.createURI("comparison.xmi"));
+		resource.load(new ByteArrayInputStream(comparison.getBytes(StandardCharsets.UTF_8)), null);
+		Set<String> matches = new HashSet<String>();
+		for (Iterator<EObject> it = resource.getAllContents(); it.hasNext();) {
+			EObject object = it.next();
+			if (object instanceof Match) {
+				StringBuilder match = new StringBuilder();
+				for (EReference side : new EReference[] {ComparePackage.Literals.MATCH__LEFT,
+						ComparePackage.Literals.MATCH__RIGHT, ComparePackage.Literals.MATCH__ORIGIN }) {
+					EObject element = (EObject)object.eGet(side, false);
+					if (element != null) {
+						match.append(EcoreUtil.getURI(element));
+					}
+					match.append(' ');
+				}
+				matches.add(match.toString());
+			}
+		}
+		return matches;
+	}
+
+	private static int count(String text, String fragment) {
+		int count = 0;
+		for (int i = text.indexOf(fragment); i >= 0; i = text.indexOf(fragment, i + fragment.length())) {
+			count++;
+		}
+		return count;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
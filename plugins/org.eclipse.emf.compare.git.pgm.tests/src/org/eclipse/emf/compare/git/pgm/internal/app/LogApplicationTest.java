@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.app.data.ContextSetup;
+import org.eclipse.equinox.app.IApplication;
+import org.junit.Test;
+
+/**
+ * Tests the logical log application.
+ */
+@SuppressWarnings("nls")
+public class LogApplicationTest extends AbstractApplicationTest {
+
+	private ContextSetup contextSetup;
+
+	/**
+	 * <h3>Use case LOG001</h3>
+	 * <p>
+	 * The logical model of a.ecore is computed for each commit: the change of b.ecore is listed while A
+	 * extends B, and not once it no longer does. The merge takes the tree of the merged branch as is, so it
+	 * is not listed while the commit of the merged branch is.
+	 * </p>
+	 *
+	 * @see ContextSetup#setupLOG001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testLOG001() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupLOG001();
+
+		List<String> lines = runLog();
+
+		assertTrue(lines.toString(), lines.contains(getShortId("branch_side") + TAB + "ADD" + TAB
+				+ "LOG001/a.ecore#/" + TAB + "eClassifiers"));
+		assertTrue(lines.toString(), lines.contains(getShortId("commit_3") + TAB + "DELETE" + TAB
+				+ "LOG001/a.ecore#//A" + TAB + "eSuperTypes"));
+		assertTrue(lines.toString(), lines.contains(getShortId("commit_2") + TAB + "ADD" + TAB
+				+ "LOG001/b.ecore#/" + TAB + "eClassifiers"));
+		Set<String> commits = getCommits(lines);
+		assertEquals(new TreeSet<String>(Arrays.asList(getShortId("branch_side"), getShortId("commit_3"),
+				getShortId("commit_2"), getShortId("commit_1"))), commits);
+		assertFalse(commits.contains(getShortId("HEAD")));
+		assertFalse(commits.contains(getShortId("commit_4")));
+	}
+
+	/**
+	 * <h3>Use case LOG001 with --element and -n</h3>
+	 *
+	 * @see ContextSetup#setupLOG001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testLOG001_elementAndMaxCount() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupLOG001();
+
+		List<String> lines = runLog("--element", "//A");
+		assertTrue(lines.toString(), lines.contains(getShortId("commit_3") + TAB + "DELETE" + TAB
+				+ "LOG001/a.ecore#//A" + TAB + "eSuperTypes"));
+		for (String line : lines) {
+			assertTrue(line, line.split(TAB)[2].endsWith("#//A"));
+		}
+
+		lines = runLog("-n", "2");
+		assertEquals(lines.toString(), 2, getCommits(lines).size());
+	}
+
+	private List<String> runLog(String... options) throws Exception {
+		resetContext();
+		resetApp();
+		getContext().addArg(getGit().getRepository().getDirectory().getAbsolutePath(),
+				contextSetup.getUserSetupFile().getAbsolutePath(), "--show-stack-trace", "LOG001/a.ecore",
+				"master");
+		getContext().addArg(options);
+
+		Object result = getApp().start(getContext());
+		String output = getOutput();
+		printOut();
+		printErr();
+		assertEquals(Returns.COMPLETE.code(), result);
+		assertEmptyErrorMessage();
+
+		List<String> lines = new ArrayList<String>();
+		for (String line : output.split(EOL)) {
+			// Skips the logs of the setup
+			if (line.split(TAB).length >= 3 && line.split(TAB)[1].matches("ADD|DELETE|CHANGE|MOVE")) {
+				lines.add(line);
+			}
+		}
+		// Resets the output for the next run
+		assertOutputMessageEnd("");
+		return lines;
+	}
+
+	private Set<String> getCommits(List<String> lines) {
+		Set<String> commits = new TreeSet<String>();
+		for (String line : lines) {
+			commits.add(line.split(TAB)[0]);
+		}
+		return commits;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.eclipse.emf.compare.git.pgm.internal.app.AbstractApplicationTest#buildApp()
+	 */
+	@Override
+	protected IApplication buildApp() {
+		return new LogApplication();
+	}
+}
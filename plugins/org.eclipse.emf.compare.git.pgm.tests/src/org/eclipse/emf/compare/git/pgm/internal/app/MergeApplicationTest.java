@@ -29,6 +29,7 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.app.data.ContextSetup;
 import org.eclipse.equinox.app.IApplication;
+import org.eclipse.jgit.lib.RepositoryState;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Test;
 
@@ -484,6 +485,46 @@ public class MergeApplicationTest extends AbstractApplicationTest {
 				projectPath.resolve("P2.di"));
 	}
 
+	/**
+	 * <h3>Use case MER001 with --auto-resolve</h3>
+	 * <p>
+	 * The conflicting files belong to the same logical model, which holds a real conflict: they are compared
+	 * together and left untouched and conflicting, and the merge is not committed.
+	 * </p>
+	 * 
+	 * @see ContextSetup#setupMER001()
+	 * @throws Exception
+	 */
+	@Test
+	public void testMER001_autoResolve() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupMER001();
+		String head = getLongId("HEAD");
+
+		resetContext();
+		getContext().addArg(getGit().getRepository().getDirectory().getAbsolutePath(),
+				contextSetup.getUserSetupFile().getAbsolutePath(), "--show-stack-trace", "--auto-resolve",
+				getShortId("branch_c"));
+		runCommand(Returns.ABORTED);
+
+		StringBuilder expectedOut = new StringBuilder();
+		expectedOut.append("Auto-merging failed in ").append("MER001/model.notation").append(EOL);
+		expectedOut.append("Auto-merging failed in ").append("MER001/model.uml").append(EOL);
+		expectedOut.append("Automatic merge failed; fix conflicts and then commit the result.").append(EOL)
+				.append(EOL);
+		String output = getOutput();
+		assertTrue(output, output
+				.contains("Could not auto-resolve MER001/model.notation, MER001/model.uml: "));
+		assertTrue(output, output.endsWith(expectedOut.toString()));
+
+		assertNoConflitMarker(contextSetup.getProjectPath().resolve("model.uml"), contextSetup
+				.getProjectPath().resolve("model.notation"));
+		assertEquals(Sets.newHashSet("MER001/model.uml", "MER001/model.notation"), getGit().status().call()
+				.getConflicting());
+		assertEquals(RepositoryState.MERGING, getGit().getRepository().getRepositoryState());
+		assertEquals(head, getLongId("HEAD"));
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
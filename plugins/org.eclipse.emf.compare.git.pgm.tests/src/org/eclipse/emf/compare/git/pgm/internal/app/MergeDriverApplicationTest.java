@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.MergeDriverCommand.getSessionFolder;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.util.CommandSession;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.jgit.util.io.ThrowingPrintWriter;
+import org.junit.Test;
+
+/**
+ * Tests the {@link MergeDriverApplication}: it merges the file given on its command line, then the files
+ * sent through its session until the session file is deleted.
+ */
+@SuppressWarnings("nls")
+public class MergeDriverApplicationTest extends AbstractApplicationTest {
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\""
+			+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+			+ " xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"p\" nsPrefix=\"p\" nsURI=\"";
+
+	@Test
+	public void testMergesFilesSentToSession() throws Exception {
+		File setupFile = write("driver.setup", "");
+		File base = write("base1.ecore", ecore("http://p", "A"));
+		File current = write("current1.ecore", ecore("http://p", "A", "B"));
+		File other = write("other1.ecore", ecore("http://p", "A", "C"));
+		getContext().addArg(getGitFolderPath().getAbsolutePath(), setupFile.getAbsolutePath(),
+				base.getAbsolutePath(), current.getAbsolutePath(), other.getAbsolutePath(), "model1.ecore");
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Object> result = executor.submit(() -> getApp().start(getContext()));
+			File sessionFolder = getSessionFolder(getGit().getRepository(), setupFile);
+			File sessionFile = new File(sessionFolder, CommandSession.SESSION_FILE);
+			for (int i = 0; i < 100 && !sessionFile.isFile(); i++) {
+				Thread.sleep(100);
+			}
+			assertTrue(Files.readAllLines(current.toPath()).toString().contains("name=\"C\""));
+
+			File conflictingBase = write("base2.ecore", ecore("http://p", "A"));
+			File conflictingCurrent = write("current2.ecore", ecore("http://current", "A"));
+			File conflictingOther = write("other2.ecore", ecore("http://other", "A"));
+			CommandSession.Client client = CommandSession.connect(sessionFolder);
+			assertNotNull(client);
+			StringWriter output = new StringWriter();
+			try {
+				ThrowingPrintWriter out = new ThrowingPrintWriter(output);
+				String step = conflictingBase.getAbsolutePath() + TAB + conflictingCurrent.getAbsolutePath()
+						+ TAB + conflictingOther.getAbsolutePath() + TAB + "model2.ecore";
+				assertEquals(Returns.ABORTED.code(), client.sendStep(step, out));
+				out.flush();
+			} finally {
+				client.close();
+			}
+			assertEquals("CONFLICT (logical): Merge conflict in model2.ecore" + EOL, output.toString());
+
+			// The application ends once its session file is deleted
+			sessionFile.delete();
+			assertEquals(Returns.ABORTED.code(), result.get(30, TimeUnit.SECONDS));
+			assertOutput("Merged model1.ecore logically." + EOL + LogicalApplicationLauncher.DETACH_MARKER
+					+ Returns.COMPLETE.code() + EOL);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSessionFolderDependsOnSetupFile() throws Exception {
+		File setupFile = write("driver.setup", "");
+		File otherSetupFile = write("other.setup", "");
+		File sessionFolder = getSessionFolder(getGit().getRepository(), setupFile);
+
+		assertEquals(sessionFolder, getSessionFolder(getGit().getRepository(), setupFile));
+		assertNotEquals(sessionFolder, getSessionFolder(getGit().getRepository(), otherSetupFile));
+		assertTrue(setupFile.setLastModified(setupFile.lastModified() - 10000));
+		assertNotEquals(sessionFolder, getSessionFolder(getGit().getRepository(), setupFile));
+	}
+
+	@Override
+	protected IApplication buildApp() {
+		return new MergeDriverApplication();
+	}
+
+	private static String ecore(String nsURI, String... classNames) {
+		StringBuilder builder = new StringBuilder(HEADER).append(nsURI).append("\">\n");
+		for (String className : classNames) {
+			builder.append("  <eClassifiers xsi:type=\"ecore:EClass\" name=\"").append(className).append(
+					"\"/>\n");
+		}
+		return builder.append("</ecore:EPackage>\n").toString();
+	}
+
+	private File write(String name, String content) throws Exception {
+		File file = getTestTmpFolder().resolve(name).toFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
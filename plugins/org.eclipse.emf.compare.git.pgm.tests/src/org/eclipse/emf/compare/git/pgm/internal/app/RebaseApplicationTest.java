@@ -790,6 +790,48 @@ public class RebaseApplicationTest extends AbstractApplicationTest {
 				attr2ShapeFragmentId);
 	}
 
+	/**
+	 * Test no conflicting incremental rebase on fragmented model.
+	 *
+	 * @see ContextSetup#setupREB007()
+	 * @throws Exception
+	 */
+	@Test
+	public void testREB007_incremental() throws Exception {
+		contextSetup = new ContextSetup(getGit(), getTestTmpFolder());
+		contextSetup.setupREB007();
+
+		resetContext();
+		getContext().addArg(getGit().getRepository().getDirectory().getAbsolutePath(),
+				contextSetup.getUserSetupFile().getAbsolutePath(), "--show-stack-trace", "--incremental",
+				"branch_b");
+		runCommand(Returns.COMPLETE);
+
+		//@formatter:off
+		String expected = "Has rewinded head to replay your work on top of.." + EOL;
+		expected += "Applied ["+getShortId("HEAD")+"] Creates Attr2 in Class1.uml + Creates C3 in model.uml" + EOL + EOL;
+		//@formatter:on
+		assertOutputMessageEnd(expected);
+
+		assertLog("Creates Attr2 in Class1.uml + Creates C3 in model.uml",//
+				"Creates Attr1 in Class1.uml + Creates C2 in model.uml",//
+				"Creates C1 in Class1.uml");
+
+		Path projectPath = contextSetup.getProjectPath();
+		final String c2FragmentId = "_mq6J8HVUEeScI5AIfi-cqA";
+		final String c3FragmentId = "_pYd8YHVUEeScI5AIfi-cqA";
+		assertExistInResource(projectPath.resolve("model.uml"), //
+				c3FragmentId, //
+				c2FragmentId);
+		final String c1FragmentId = "_mqPRAHVTEeScI5AIfi-cqA";
+		final String attr1FragmentId = "_DIRX4HVUEeScI5AIfi-cqA";
+		final String attr2FragmentId = "_M6nbsHVUEeScI5AIfi-cqA";
+		assertExistInResource(projectPath.resolve("Class1.uml"), //
+				c1FragmentId, //
+				attr1FragmentId,//
+				attr2FragmentId);
+	}
+
 	/**
 	 * <h3>Use case REB008</h3>
 	 * <p>
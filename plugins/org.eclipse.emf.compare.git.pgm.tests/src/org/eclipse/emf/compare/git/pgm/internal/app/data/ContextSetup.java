@@ -38,6 +38,7 @@ import org.eclipse.jgit.api.errors.UnmergedPathsException;
 import org.eclipse.jgit.api.errors.WrongRepositoryStateException;
 import org.eclipse.jgit.dircache.DirCache;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.merge.MergeStrategy;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 /**
@@ -2308,4 +2309,172 @@ public class ContextSetup {
 		// Creates Oomph model
 		userSetupFile = createPapyrusUserOomphModel(project);
 	}
+
+	/**
+	 * <h3>History</h3>
+	 * 
+	 * <pre>
+	 * * Merges branch_side taking its tree as is [master, HEAD]
+	 * |\
+	 * | * Adds D to a.ecore [branch_side]
+	 * * | Adds E to b.ecore, which is no longer part of the logical model of a.ecore
+	 * |/
+	 * * A no longer extends B [commit_3]
+	 * |
+	 * * Adds C to b.ecore [commit_2]
+	 * |
+	 * * Initial commit - a.ecore holds A, which extends B of b.ecore [commit_1]
+	 * </pre>
+	 * 
+	 * @throws Exception
+	 */
+	public void setupLOG001() throws Exception {
+		projectPath = getRepositoryPath().resolve("LOG001");
+		project = new ProjectBuilder(this) //
+				.addContentToCopy("history/LOG001/commit_1/a.ecore") //
+				.addContentToCopy("history/LOG001/commit_1/b.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Initial commit");
+		createBranch("commit_1", "master");
+
+		new ProjectBuilder(this) //
+				.addContentToCopy("history/LOG001/commit_2/b.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Adds C to b.ecore");
+		createBranch("commit_2", "master");
+
+		new ProjectBuilder(this) //
+				.addContentToCopy("history/LOG001/commit_3/a.ecore") //
+				.create(projectPath);
+		addAllAndCommit("A no longer extends B");
+		createBranch("commit_3", "master");
+
+		// Creates branch_side
+		String branchSide = "branch_side";
+		createBranchAndCheckout(branchSide, "master");
+		new ProjectBuilder(this) //
+				.addContentToCopy("history/LOG001/branch_side/a.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Adds D to a.ecore");
+
+		git.checkout().setName("master").call();
+		new ProjectBuilder(this) //
+				.addContentToCopy("history/LOG001/commit_4/b.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Adds E to b.ecore");
+		createBranch("commit_4", "master");
+
+		git.merge().include(git.getRepository().resolve(branchSide)).setStrategy(MergeStrategy.THEIRS)
+				.call();
+
+		// Creates Oomph model
+		userSetupFile = createPapyrusUserOomphModel(project);
+	}
+
+	/**
+	 * <h3>History</h3>
+	 * 
+	 * <pre>
+	 * * Adds a class X before the existing one, which URI fragment becomes //X.1 [master, HEAD]
+	 * |
+	 * * Initial commit - model.ecore holds the class X [commit_1]
+	 * </pre>
+	 * 
+	 * @throws Exception
+	 */
+	public void setupBLA001() throws Exception {
+		projectPath = getRepositoryPath().resolve("BLA001");
+		project = new ProjectBuilder(this) //
+				.addContentToCopy("history/BLA001/commit_1/model.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Initial commit");
+		createBranch("commit_1", "master");
+
+		new ProjectBuilder(this) //
+				.addContentToCopy("history/BLA001/commit_2/model.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Adds another X");
+
+		// Creates Oomph model
+		userSetupFile = createPapyrusUserOomphModel(project);
+	}
+
+	/**
+	 * <h3>History</h3>
+	 * 
+	 * <pre>
+	 * * Adds C to b.ecore and D to a.ecore [master, HEAD, commit_2]
+	 * |
+	 * * Initial commit - a.ecore holds A, which extends B of b.ecore [commit_1]
+	 * </pre>
+	 * 
+	 * @throws Exception
+	 */
+	public void setupDIF001() throws Exception {
+		projectPath = getRepositoryPath().resolve("DIF001");
+		project = new ProjectBuilder(this) //
+				.addContentToCopy("diff/DIF001/commit_1/a.ecore") //
+				.addContentToCopy("diff/DIF001/commit_1/b.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Initial commit");
+		createBranch("commit_1", "master");
+
+		new ProjectBuilder(this) //
+				.addContentToCopy("diff/DIF001/commit_2/a.ecore") //
+				.addContentToCopy("diff/DIF001/commit_2/b.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Adds C to b.ecore and D to a.ecore");
+		createBranch("commit_2", "master");
+
+		// Creates Oomph model
+		userSetupFile = createPapyrusUserOomphModel(project);
+	}
+
+	/**
+	 * <h3>History</h3>
+	 * 
+	 * <pre>
+	 * * Adds D [branch_d]
+	 * |
+	 * | * Renames A to Right [branch_c]
+	 * |/
+	 * | * Renames A to Left [branch_b]
+	 * |/
+	 * Initial commit - model.ecore holds A and B [branch_a, master, HEAD]
+	 * </pre>
+	 * 
+	 * @throws Exception
+	 */
+	public void setupDIF002() throws Exception {
+		projectPath = getRepositoryPath().resolve("DIF002");
+		project = new ProjectBuilder(this) //
+				.addContentToCopy("diff/DIF002/branch_a/model.ecore") //
+				.create(projectPath);
+		String branchA = "branch_a";
+		addAllAndCommit("Initial commit");
+		createBranch(branchA, "master");
+
+		createBranchAndCheckout("branch_b", branchA);
+		new ProjectBuilder(this) //
+				.addContentToCopy("diff/DIF002/branch_b/model.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Renames A to Left");
+
+		createBranchAndCheckout("branch_c", branchA);
+		new ProjectBuilder(this) //
+				.addContentToCopy("diff/DIF002/branch_c/model.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Renames A to Right");
+
+		createBranchAndCheckout("branch_d", branchA);
+		new ProjectBuilder(this) //
+				.addContentToCopy("diff/DIF002/branch_d/model.ecore") //
+				.create(projectPath);
+		addAllAndCommit("Adds D");
+
+		git.checkout().setName("master").call();
+
+		// Creates Oomph model
+		userSetupFile = createPapyrusUserOomphModel(project);
+	}
 }
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMIResource;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link BinaryResourceCache}.
+ */
+@SuppressWarnings("nls")
+public class BinaryResourceCacheTest {
+
+	private static final ObjectId BLOB_ID = ObjectId.fromString("0123456789012345678901234567890123456789");
+
+	private static final URI RESOURCE_URI = URI.createFileURI("/tmp/model.ecore");
+
+	private Path tmpFolder;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : tmpFolder.toFile().listFiles()) {
+			file.delete();
+		}
+		tmpFolder.toFile().delete();
+	}
+
+	@Test
+	public void testStoreAndLoad() throws Exception {
+		BinaryResourceCache cache = new BinaryResourceCache(tmpFolder.toFile(),
+				BinaryResourceCache.DEFAULT_MAX_SIZE);
+		XMIResource original = createResource();
+		cache.store(BLOB_ID, original);
+
+		XMIResource loaded = new XMIResourceImpl(RESOURCE_URI);
+		assertTrue(cache.load(BLOB_ID, loaded));
+		assertTrue(loaded.isLoaded());
+		assertFalse(loaded.isModified());
+		assertTrue(EcoreUtil.equals(original.getContents(), loaded.getContents()));
+		EPackage ePackage = (EPackage)loaded.getContents().get(0);
+		assertEquals("_package", loaded.getID(ePackage));
+		assertEquals("_class", loaded.getID(ePackage.getEClassifiers().get(0)));
+	}
+
+	@Test
+	public void testMissOnOtherURI() throws Exception {
+		BinaryResourceCache cache = new BinaryResourceCache(tmpFolder.toFile(),
+				BinaryResourceCache.DEFAULT_MAX_SIZE);
+		cache.store(BLOB_ID, createResource());
+
+		XMIResource other = new XMIResourceImpl(URI.createFileURI("/tmp/other.ecore"));
+		assertFalse(cache.load(BLOB_ID, other));
+		assertFalse(other.isLoaded());
+		assertTrue(other.getContents().isEmpty());
+		assertFalse(cache.load(ObjectId.zeroId(), new XMIResourceImpl(RESOURCE_URI)));
+	}
+
+	@Test
+	public void testSameBlobAtSeveralURIs() throws Exception {
+		BinaryResourceCache cache = new BinaryResourceCache(tmpFolder.toFile(),
+				BinaryResourceCache.DEFAULT_MAX_SIZE);
+		URI otherURI = URI.createFileURI("/tmp/other.ecore");
+		XMIResource original = createResource();
+		cache.store(BLOB_ID, original);
+		original.setURI(otherURI);
+		cache.store(BLOB_ID, original);
+
+		XMIResource loaded = new XMIResourceImpl(RESOURCE_URI);
+		assertTrue(cache.load(BLOB_ID, loaded));
+		XMIResource other = new XMIResourceImpl(otherURI);
+		assertTrue(cache.load(BLOB_ID, other));
+		assertTrue(EcoreUtil.equals(loaded.getContents(), other.getContents()));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		BinaryResourceCache cache = new BinaryResourceCache(tmpFolder.toFile(), 1);
+		cache.store(BLOB_ID, createResource());
+		assertEquals(0, tmpFolder.toFile().listFiles().length);
+	}
+
+	@Test
+	public void testEvictionLeavesEntriesBeingWritten() throws Exception {
+		File beingWritten = tmpFolder.resolve(BLOB_ID.name() + "123.tmp").toFile();
+		Files.write(beingWritten.toPath(), new byte[1024]);
+		BinaryResourceCache cache = new BinaryResourceCache(tmpFolder.toFile(), 1);
+		cache.store(BLOB_ID, createResource());
+		assertTrue(beingWritten.isFile());
+	}
+
+	@Test
+	public void testCorruptEntryIsAMiss() throws Exception {
+		BinaryResourceCache cache = new BinaryResourceCache(tmpFolder.toFile(),
+				BinaryResourceCache.DEFAULT_MAX_SIZE);
+		cache.store(BLOB_ID, createResource());
+		File entry = tmpFolder.toFile().listFiles()[0];
+		// Keeps the header but scrambles the binary content
+		byte[] content = Files.readAllBytes(entry.toPath());
+		for (int i = content.length / 2; i < content.length; i++) {
+			content[i] = (byte)0xFF;
+		}
+		Files.write(entry.toPath(), content);
+
+		long misses = BinaryResourceCache.getMissCount();
+		XMIResource loaded = new XMIResourceImpl(RESOURCE_URI);
+		assertFalse(cache.load(BLOB_ID, loaded));
+		assertEquals(misses + 1, BinaryResourceCache.getMissCount());
+		assertTrue(loaded.getContents().isEmpty());
+		assertFalse(entry.exists());
+	}
+
+	@Test
+	public void testEvictionOnceTheLimitIsCrossed() throws Exception {
+		BinaryResourceCache cache = new BinaryResourceCache(tmpFolder.toFile(),
+				BinaryResourceCache.DEFAULT_MAX_SIZE);
+		cache.store(BLOB_ID, createResource());
+		long entrySize = tmpFolder.toFile().listFiles()[0].length();
+
+		cache = new BinaryResourceCache(tmpFolder.toFile(), entrySize * 3);
+		for (int i = 0; i < 8; i++) {
+			cache.store(ObjectId.fromString(String.format("%040x", Integer.valueOf(i))), createResource());
+			long size = 0;
+			for (File file : tmpFolder.toFile().listFiles()) {
+				size += file.length();
+			}
+			assertTrue(size <= entrySize * 3);
+		}
+	}
+
+	@Test
+	public void testConcurrentStores() throws Exception {
+		final BinaryResourceCache cache = new BinaryResourceCache(tmpFolder.toFile(), 4096);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> stores = new ArrayList<Future<?>>();
+			for (int i = 0; i < 64; i++) {
+				final ObjectId blobId = ObjectId.fromString(String.format("%040x", Integer.valueOf(i)));
+				stores.add(executor.submit(() -> {
+					cache.store(blobId, createResource());
+					return null;
+				}));
+			}
+			for (Future<?> store : stores) {
+				store.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		long size = 0;
+		for (File file : tmpFolder.toFile().listFiles()) {
+			assertFalse(file.getName(), file.getName().endsWith(".tmp"));
+			size += file.length();
+		}
+		assertTrue(size <= 4096);
+	}
+
+	private XMIResource createResource() {
+		XMIResource resource = new XMIResourceImpl(RESOURCE_URI);
+		EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+		ePackage.setName("p");
+		ePackage.setNsURI("http://p");
+		EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+		eClass.setName("C");
+		ePackage.getEClassifiers().add(eClass);
+		resource.getContents().add(ePackage);
+		resource.setID(ePackage, "_package");
+		resource.setID(eClass, "_class");
+		return resource;
+	}
+}
@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ComparisonCache}.
+ */
+@SuppressWarnings("nls")
+public class ComparisonCacheTest {
+
+	private static final ObjectId BASE_ID = ObjectId.fromString("0123456789012345678901234567890123456789");
+
+	private static final ObjectId OURS_ID = ObjectId.fromString("1123456789012345678901234567890123456789");
+
+	private static final ObjectId THEIRS_ID = ObjectId.fromString("2123456789012345678901234567890123456789");
+
+	private static final ObjectId MERGED_ID = ObjectId.fromString("3123456789012345678901234567890123456789");
+
+	private Path tmpFolder;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file : tmpFolder.toFile().listFiles()) {
+			file.delete();
+		}
+		tmpFolder.toFile().delete();
+	}
+
+	@Test
+	public void testPutMergedAndGet() throws Exception {
+		ComparisonCache cache = new ComparisonCache(tmpFolder.toFile());
+		cache.putMerged(createKey(), Collections.singletonMap("Project/model.ecore", MERGED_ID));
+
+		ComparisonCache.Result result = new ComparisonCache(tmpFolder.toFile()).get(createKey());
+		assertFalse(result.isConflicting());
+		assertTrue(result.getConflicts().isEmpty());
+		assertEquals(Collections.singletonMap("Project/model.ecore", MERGED_ID), result.getMergedBlobs());
+	}
+
+	@Test
+	public void testPutConflictingAndGet() throws Exception {
+		ComparisonCache cache = new ComparisonCache(tmpFolder.toFile());
+		cache.putConflicting(createKey(), Arrays.asList("Conflict on a", "Conflict on b"));
+
+		ComparisonCache.Result result = cache.get(createKey());
+		assertTrue(result.isConflicting());
+		assertEquals(Arrays.asList("Conflict on a", "Conflict on b"), result.getConflicts());
+		assertTrue(result.getMergedBlobs().isEmpty());
+	}
+
+	@Test
+	public void testMissOnOtherVersion() throws Exception {
+		ComparisonCache cache = new ComparisonCache(tmpFolder.toFile());
+		cache.putMerged(createKey(), Collections.singletonMap("Project/model.ecore", MERGED_ID));
+
+		ComparisonCache.Key otherKey = new ComparisonCache.Key().add("Project/model.ecore", BASE_ID, OURS_ID,
+				MERGED_ID);
+		assertNotEquals(createKey().getId(), otherKey.getId());
+		assertNull(cache.get(otherKey));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testKeyIgnoresOrder() throws Exception {
+		ComparisonCache.Key key1 = new ComparisonCache.Key().add("a.ecore", BASE_ID, OURS_ID, THEIRS_ID).add(
+				"b.ecore", null, OURS_ID, THEIRS_ID);
+		ComparisonCache.Key key2 = new ComparisonCache.Key().add("b.ecore", null, OURS_ID, THEIRS_ID).add(
+				"a.ecore", BASE_ID, OURS_ID, THEIRS_ID);
+		assertEquals(key1.getId(), key2.getId());
+	}
+
+	@Test
+	public void testCorruptedEntryIsDropped() throws Exception {
+		ComparisonCache cache = new ComparisonCache(tmpFolder.toFile());
+		Files.write(tmpFolder.resolve(createKey().getId().name()), new byte[] {1, 2, 3 });
+
+		assertNull(cache.get(createKey()));
+		assertEquals(0, cache.size());
+	}
+
+	private static ComparisonCache.Key createKey() {
+		return new ComparisonCache.Key().add("Project/model.ecore", BASE_ID, OURS_ID, THEIRS_ID);
+	}
+}
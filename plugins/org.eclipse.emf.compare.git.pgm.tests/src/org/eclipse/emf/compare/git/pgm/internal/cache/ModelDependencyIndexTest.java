@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ModelDependencyIndex}.
+ */
+@SuppressWarnings("nls")
+public class ModelDependencyIndexTest {
+
+	private static final Set<String> EXTENSIONS = ImmutableSet.of("xmi", "ecore");
+
+	private Path tmpFolder;
+
+	private Git git;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		git = Git.init().setDirectory(tmpFolder.toFile()).call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ModelDependencyIndex.flush(git.getRepository());
+		git.close();
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testToTarget() {
+		assertEquals("p/model/b.xmi", ModelDependencyIndex.toTarget("p/model/a.xmi", "b.xmi"));
+		assertEquals("p/b.xmi", ModelDependencyIndex.toTarget("p/model/a.xmi", "../b.xmi"));
+		assertEquals("p/model/b c.xmi", ModelDependencyIndex.toTarget("p/model/a.xmi", "./b%20c.xmi"));
+		assertEquals("platform:/resource/P/b.xmi", ModelDependencyIndex.toTarget("p/a.xmi",
+				"platform:/resource/P/b.xmi"));
+		assertNull(ModelDependencyIndex.toTarget("a.xmi", "../b.xmi"));
+		assertNull(ModelDependencyIndex.toTarget("a.xmi", "http://www.eclipse.org/emf/2002/Ecore"));
+	}
+
+	@Test
+	public void testLogicalModel() throws Exception {
+		write("p/.project", "<projectDescription><name>Project</name></projectDescription>");
+		write("p/a.xmi", "<a><ref href=\"b.xmi#/0\"/></a>");
+		write("p/b.xmi", "<b eType=\"#//X platform:/resource/Project/sub/c.ecore#//C\"/>");
+		write("p/sub/c.ecore", "<c/>");
+		write("p/d.xmi", "<d><ref href=\"missing.xmi#/\"/></d>");
+		write("p/e.txt", "<e href=\"a.xmi#/0\"/>");
+		RevCommit first = commit("First");
+
+		ModelDependencyIndex index = ModelDependencyIndex.get(git.getRepository(), first.getTree(),
+				EXTENSIONS);
+
+		assertEquals(Sets.newHashSet("p/a.xmi", "p/b.xmi", "p/d.xmi", "p/sub/c.ecore"), index
+				.getModelPaths());
+		assertFalse(index.isModel("p/e.txt"));
+		assertEquals(Sets.newHashSet("p/b.xmi"), index.getReferencedResources("p/a.xmi"));
+		assertEquals(Sets.newHashSet("p/sub/c.ecore"), index.getReferencedResources("p/b.xmi"));
+		assertEquals(Sets.newHashSet("p/a.xmi", "p/b.xmi", "p/sub/c.ecore"), index
+				.getLogicalModel("p/sub/c.ecore"));
+		assertEquals(Sets.newHashSet("p/d.xmi"), index.getLogicalModel("p/d.xmi"));
+		assertTrue(index.getLogicalModel("p/e.txt").isEmpty());
+		// Only persisted once flushed
+		assertFalse(new File(getIndexFolder(), first.getTree().name()).isFile());
+		ModelDependencyIndex.flush(git.getRepository());
+		assertTrue(new File(getIndexFolder(), first.getTree().name()).isFile());
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		write("a.xmi", "<a><ref href=\"b.xmi#/0\"/></a>");
+		write("b.xmi", "<b/>");
+		write("c.xmi", "<c/>");
+		RevCommit first = commit("First");
+		ModelDependencyIndex.get(git.getRepository(), first.getTree(), EXTENSIONS);
+
+		write("c.xmi", "<c><ref href=\"b.xmi#/0\"/></c>");
+		new File(tmpFolder.toFile(), "a.xmi").delete();
+		git.rm().addFilepattern("a.xmi").call();
+		RevCommit second = commit("Second");
+
+		ModelDependencyIndex index = ModelDependencyIndex.get(git.getRepository(), second.getTree(),
+				EXTENSIONS);
+		assertEquals(Sets.newHashSet("b.xmi", "c.xmi"), index.getModelPaths());
+		assertEquals(Sets.newHashSet("b.xmi", "c.xmi"), index.getLogicalModel("b.xmi"));
+
+		// The first index is still persisted and has not been altered
+		ModelDependencyIndex.flush(git.getRepository());
+		ModelDependencyIndex firstIndex = ModelDependencyIndex.get(git.getRepository(), first.getTree(),
+				EXTENSIONS);
+		assertEquals(Sets.newHashSet("a.xmi", "b.xmi"), firstIndex.getLogicalModel("b.xmi"));
+		assertEquals(Sets.newHashSet("c.xmi"), firstIndex.getLogicalModel("c.xmi"));
+	}
+
+	@Test
+	public void testTruncatedIndexIsRebuilt() throws Exception {
+		write("a.xmi", "<a><ref href=\"b.xmi#/0\"/></a>");
+		write("b.xmi", "<b/>");
+		RevCommit first = commit("First");
+		ModelDependencyIndex.get(git.getRepository(), first.getTree(), EXTENSIONS);
+		ModelDependencyIndex.flush(git.getRepository());
+
+		File file = new File(getIndexFolder(), first.getTree().name());
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		for (int length : new int[] {1, 2, lines.size() - 1 }) {
+			Files.write(file.toPath(), lines.subList(0, length), StandardCharsets.UTF_8);
+			long misses = ModelDependencyIndex.getMissCount();
+			ModelDependencyIndex index = ModelDependencyIndex.get(git.getRepository(), first.getTree(),
+					EXTENSIONS);
+			assertEquals(misses + 1, ModelDependencyIndex.getMissCount());
+			assertEquals(Sets.newHashSet("a.xmi", "b.xmi"), index.getLogicalModel("b.xmi"));
+			ModelDependencyIndex.flush(git.getRepository());
+		}
+	}
+
+	@Test
+	public void testProviderResults() throws Exception {
+		write("a.xmi", "<a/>");
+		write("b.xmi", "<b/>");
+		RevCommit first = commit("First");
+		ModelDependencyIndex index = ModelDependencyIndex.get(git.getRepository(), first.getTree(),
+				EXTENSIONS);
+		assertNull(index.getProviderResult("a.xmi"));
+		index.setProviderResult("a.xmi", true);
+		index.setProviderResult("b.xmi", false);
+		ModelDependencyIndex.flush(git.getRepository());
+
+		index = ModelDependencyIndex.get(git.getRepository(), first.getTree(), EXTENSIONS);
+		assertEquals(Boolean.TRUE, index.getProviderResult("a.xmi"));
+		assertEquals(Boolean.FALSE, index.getProviderResult("b.xmi"));
+
+		// The results of the changed files are dropped by the incremental update
+		write("b.xmi", "<b><ref href=\"a.xmi#/\"/></b>");
+		RevCommit second = commit("Second");
+		index = ModelDependencyIndex.get(git.getRepository(), second.getTree(), EXTENSIONS);
+		assertEquals(Boolean.TRUE, index.getProviderResult("a.xmi"));
+		assertNull(index.getProviderResult("b.xmi"));
+	}
+
+	private File getIndexFolder() {
+		return new File(new File(git.getRepository().getDirectory(), "emfcompare"),
+				ModelDependencyIndex.INDEX_FOLDER);
+	}
+
+	private void write(String path, String content) throws Exception {
+		File file = new File(tmpFolder.toFile(), path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private RevCommit commit(String message) throws Exception {
+		git.add().addFilepattern(".").call();
+		return git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr")
+				.setCommitter("Logical test author", "logicaltest@obeo.fr").setMessage(message).call();
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link StatCache}.
+ */
+@SuppressWarnings("nls")
+public class StatCacheTest {
+
+	private static final ObjectId BLOB_ID = ObjectId.fromString("0123456789012345678901234567890123456789");
+
+	private static final String PATH = "project/model.ecore";
+
+	private static final long OLD_TIME = 1000000L;
+
+	private Path tmpFolder;
+
+	private File cacheFile;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		cacheFile = tmpFolder.resolve("stat-cache").toFile();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testPutAndGet() throws Exception {
+		StatCache cache = new StatCache(cacheFile, "false");
+		cache.put(PATH, OLD_TIME, 12, "inode", BLOB_ID);
+
+		assertEquals(BLOB_ID, cache.get(PATH, OLD_TIME, 12, "inode"));
+		assertNull(cache.get(PATH, OLD_TIME + 1, 12, "inode"));
+		assertNull(cache.get(PATH, OLD_TIME, 13, "inode"));
+		assertNull(cache.get(PATH, OLD_TIME, 12, "otherInode"));
+		assertNull(cache.get("other/path", OLD_TIME, 12, "inode"));
+	}
+
+	@Test
+	public void testRacyFileNotCached() throws Exception {
+		StatCache cache = new StatCache(cacheFile, "false");
+		long now = System.currentTimeMillis();
+		cache.put(PATH, now, 12, "inode", BLOB_ID);
+
+		assertNull(cache.get(PATH, now, 12, "inode"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		StatCache cache = new StatCache(cacheFile, "false");
+		cache.put(PATH, OLD_TIME, 12, "inode", BLOB_ID);
+		cache.write();
+
+		StatCache readCache = new StatCache(cacheFile, "false");
+		readCache.read();
+		assertEquals(1, readCache.size());
+		assertEquals(BLOB_ID, readCache.get(PATH, OLD_TIME, 12, "inode"));
+	}
+
+	@Test
+	public void testReadWithOtherConfiguration() throws Exception {
+		StatCache cache = new StatCache(cacheFile, "false");
+		cache.put(PATH, OLD_TIME, 12, "inode", BLOB_ID);
+		cache.write();
+
+		// The content ids depend on the line ending conversion
+		StatCache readCache = new StatCache(cacheFile, "true");
+		readCache.read();
+		assertEquals(0, readCache.size());
+	}
+
+	@Test
+	public void testConfigKey() throws Exception {
+		try (Git git = Git.init().setDirectory(tmpFolder.resolve("repo").toFile()).call()) {
+			String key = StatCache.getConfigKey(git.getRepository());
+			assertEquals(key, StatCache.getConfigKey(git.getRepository()));
+
+			StoredConfig config = git.getRepository().getConfig();
+			config.setString("core", null, "eol", "crlf");
+			String eolKey = StatCache.getConfigKey(git.getRepository());
+			assertNotEquals(key, eolKey);
+
+			config.setString("filter", "lfs", "clean", "git-lfs clean -- %f");
+			String filterKey = StatCache.getConfigKey(git.getRepository());
+			assertNotEquals(eolKey, filterKey);
+
+			Path attributes = tmpFolder.resolve("repo").resolve("model").resolve(".gitattributes");
+			Files.createDirectories(attributes.getParent());
+			Files.write(attributes, "*.uml text\n".getBytes(StandardCharsets.UTF_8));
+			git.add().addFilepattern("model/.gitattributes").call();
+			String attributesKey = StatCache.getConfigKey(git.getRepository());
+			assertNotEquals(filterKey, attributesKey);
+
+			Files.write(attributes, "*.uml text eol=lf\n".getBytes(StandardCharsets.UTF_8));
+			assertNotEquals(attributesKey, StatCache.getConfigKey(git.getRepository()));
+		}
+	}
+
+	@Test
+	public void testDropsEntriesNotLookedUp() throws Exception {
+		StatCache cache = new StatCache(cacheFile, "false");
+		cache.put(PATH, OLD_TIME, 12, "inode", BLOB_ID);
+		cache.put("project/deleted.ecore", OLD_TIME, 12, "inode", BLOB_ID);
+		cache.write();
+
+		try (Git git = Git.init().setDirectory(tmpFolder.resolve("repo").toFile()).call()) {
+			StatCache readCache = new StatCache(cacheFile, "false");
+			readCache.read();
+			readCache.createIterator(git.getRepository());
+			assertEquals(BLOB_ID, readCache.get(PATH, OLD_TIME, 12, "inode"));
+			readCache.write();
+		}
+
+		StatCache prunedCache = new StatCache(cacheFile, "false");
+		prunedCache.read();
+		assertEquals(1, prunedCache.size());
+		assertEquals(BLOB_ID, prunedCache.get(PATH, OLD_TIME, 12, "inode"));
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
@@ -13,6 +13,7 @@ package org.eclipse.emf.compare.git.pgm.internal.cmd;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -53,6 +54,18 @@ public abstract class AbstractCommandTest extends AbstractIntegrationTest {
 		assertEquals(Returns.COMPLETE.code(), result);
 	}
 
+	@Test
+	public void helpOutsideOfRepositoryTest() throws Exception {
+		// The usage does not need any repository
+		setCmdLocation(getTestTmpFolder().toString());
+		getContext().addArg(getCommandName(), "-h");
+		Object result = getApp().start(getContext());
+		assertOutput(getExpectedUsage());
+		assertEmptyErrorMessage();
+		assertNull(getLogicalCommand().getRepository());
+		assertEquals(Returns.COMPLETE.code(), result);
+	}
+
 	@Test
 	public void incorrectSetupFileTest() throws Exception {
 		setCmdLocation(getRepositoryPath().toString());
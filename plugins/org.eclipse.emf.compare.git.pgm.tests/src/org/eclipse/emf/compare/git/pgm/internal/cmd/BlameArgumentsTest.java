@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.util.OomphUserModelBuilder;
+import org.eclipse.emf.compare.git.pgm.util.ProjectBuilder;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.Test;
+
+/**
+ * Tests the arguments of the logicalblame command.
+ */
+@SuppressWarnings("nls")
+public class BlameArgumentsTest extends AbstractCommandTest {
+
+	@Override
+	protected String getCommandName() {
+		return BlameCommand.LOGICAL_BLAME_CMD_NAME;
+	}
+
+	@Override
+	protected String getExpectedUsage() {
+		//@formatter:off
+		return "logicalblame <setup> <path> [<commit>] [--dry-run] [--git-dir gitFolderPath] [--help (-h)] [--jfr file] [--progress-log file] [--show-stack-trace]" + EOL 
+				+ EOL 
+				+ " <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL 
+				+ "                           model." + EOL 
+				+ " <path>                  : Path, in the repository, of the model file." + EOL 
+				+ " <commit>                : Commit ID or branch name from which the history is" + EOL 
+				+ "                           walked, HEAD if not specified." + EOL 
+				+ " --dry-run               : Validates the command and predicts its result" + EOL 
+				+ "                           without provisioning nor launching the installed" + EOL 
+				+ "                           product." + EOL 
+				+ " --git-dir gitFolderPath : Path to the .git folder of your repository." + EOL 
+				+ " --help (-h)             : Dispays help for this command." + EOL 
+				+ " --jfr file              : Records the run, including the launched product," + EOL 
+				+ "                           with Java Flight Recorder to the given file." + EOL 
+				+ " --progress-log file     : Writes the setup tasks, their duration and logs," + EOL 
+				+ "                           then their summary to the given file, as JSON lines." + EOL 
+				+ " --show-stack-trace      : Use this option to display java stack trace in" + EOL 
+				+ "                           console on error." + EOL 
+				+ EOL ;
+		//@formatter:on
+	}
+
+	@Test
+	public void missingPathTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		new ProjectBuilder(this) //
+				.addNewFileContent("aFile.txt", "Some content") //
+				.create(getRepositoryPath().resolve("Project"));
+		RevCommit commit = addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "Project/model.ecore");
+		Object result = getApp().start(getContext());
+		assertOutput("fatal: Project/model.ecore does not exist in " + commit.abbreviate(7).name() + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
+	@Test
+	public void argumentsTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		new ProjectBuilder(this) //
+				.addNewFileContent("aFile.txt", "Some content") //
+				.create(getRepositoryPath().resolve("Project"));
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "Project/aFile.txt", "master",
+				"--help");
+		getApp().start(getContext());
+		assertTrue(getLogicalCommand() instanceof BlameCommand);
+		BlameCommand blameCmd = (BlameCommand)getLogicalCommand();
+		assertEquals("Project/aFile.txt", blameCmd.getPath());
+		assertNotNull(blameCmd.getCommit());
+	}
+}
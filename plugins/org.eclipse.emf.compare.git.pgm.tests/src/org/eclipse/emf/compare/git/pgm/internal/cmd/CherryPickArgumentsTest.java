@@ -42,14 +42,22 @@ public class CherryPickArgumentsTest extends AbstractCommandTest {
 	protected String getExpectedUsage() {
 		//@formatter:off
 		
-		String usage = "logicalcherry-pick <setup> <commit> [--debug (-d)] [--git-dir gitFolderPath] [--help (-h)] [--show-stack-trace]" + EOL;
+		String usage = "logicalcherry-pick <setup> <commit> ... [--debug (-d)] [--dry-run] [--git-dir gitFolderPath] [--help (-h)] [--jfr file] [--progress-log file] [--show-stack-trace]" + EOL;
 		usage += EOL;
 		usage += " <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL;
 		usage += "                           model." +EOL;
-		usage += " <commit>                : Commit ID to cherry pick." + EOL;
+		usage += " <commit>                : Commit IDs or ranges of commits (A..B) to cherry" + EOL;
+		usage += "                           pick." + EOL;
 		usage += " --debug (-d)            : Launches the provisionned eclipse in debug mode." + EOL;
+		usage += " --dry-run               : Validates the command and predicts its result" + EOL;
+		usage += "                           without provisioning nor launching the installed" + EOL;
+		usage += "                           product." + EOL;
 		usage += " --git-dir gitFolderPath : Path to the .git folder of your repository."+ EOL;
 		usage += " --help (-h)             : Dispays help for this command." + EOL;
+		usage += " --jfr file              : Records the run, including the launched product," + EOL;
+		usage += "                           with Java Flight Recorder to the given file." + EOL;
+		usage += " --progress-log file     : Writes the setup tasks, their duration and logs," + EOL;
+		usage += "                           then their summary to the given file, as JSON lines." + EOL;
 		usage += " --show-stack-trace      : Use this option to display java stack trace in" + EOL;
 		usage += "                           console on error." + EOL;
 		usage += EOL;
@@ -184,6 +192,24 @@ public class CherryPickArgumentsTest extends AbstractCommandTest {
 		assertEquals(Returns.ERROR.code(), result);
 	}
 
+	@Test
+	public void validRepoEmptyRangeTest() throws Exception {
+		File newSetupFile = setUp();
+
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		// Gives a range that does not hold any commit
+		getContext().addArg(getCommandName(), newSetupFile.getAbsolutePath(), "master..master");
+		Object result = getApp().start(getContext());
+		assertOutput("fatal: empty revision range 'master..master'." + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
 	@Test
 	public void tooManyArgsTest() throws Exception {
 		File newSetupFile = setUp();
@@ -12,6 +12,7 @@ package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.nio.file.Files;
@@ -19,6 +20,8 @@ import java.nio.file.Path;
 import java.nio.file.attribute.FileAttribute;
 
 import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.util.MatchStrategy;
+import org.eclipse.emf.compare.git.pgm.internal.util.ProxyResolution;
 import org.eclipse.emf.compare.git.pgm.util.OomphUserModelBuilder;
 import org.eclipse.emf.compare.git.pgm.util.ProjectBuilder;
 import org.junit.Test;
@@ -49,22 +52,53 @@ public class DiffArgumentsTest extends AbstractCommandTest {
 	@Override
 	protected String getExpectedUsage() {
 		//@formatter:off
-		return "logicaldiff <setup> <commit> [<compareWithCommit>] [-- <path...>] [--git-dir gitFolderPath] [--help (-h)] [--show-stack-trace]" + EOL 
+		return "logicaldiff <setup> <commit> [<compareWithCommit>] [-- <path...>] [--dry-run] [--git-dir gitFolderPath] [--help (-h)] [--jfr file] [--match-engine strategy] [--max-heap-fraction fraction] [--max-resources count] [--merge-base] [--progress-log file] [--proxy-resolution policy] [--show-stack-trace] [--threads count]" + EOL 
 				+ EOL 
-				+ " <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL 
-				+ "                           model." + EOL 
-				+ " <commit>                : Commit ID or branch name." + EOL 
-				+ " <compareWithCommit>     : Commit ID or branch name. This is to view the" + EOL 
-				+ "                           changes between <commit> and <compareWithCommit> or" + EOL 
-				+ "                           HEAD if not specified." + EOL 
-				+ " -- <path...>            : This is used to limit the diff to the named paths" + EOL 
-				+ "                           (you can give directory names and get diff for all" + EOL 
-				+ "                           files under them)." + EOL 
-				+ " --git-dir gitFolderPath : Path to the .git folder of your repository." + EOL 
-				+ " --help (-h)             : Dispays help for this command." + EOL 
-				+ " --show-stack-trace      : Use this option to display java stack trace in" + EOL 
-				+ "                           console on error." + EOL 
-				+ EOL ; 
+				+ " <setup>                      : Path to the setup file. The setup file is a" + EOL 
+				+ "                                Oomph model." + EOL 
+				+ " <commit>                     : Commit ID or branch name." + EOL 
+				+ " <compareWithCommit>          : Commit ID or branch name. This is to view the" + EOL 
+				+ "                                changes between <commit> and <compareWithCommit>" + EOL 
+				+ "                                or HEAD if not specified." + EOL 
+				+ " -- <path...>                 : This is used to limit the diff to the named" + EOL 
+				+ "                                paths (you can give directory names and get" + EOL 
+				+ "                                diff for all files under them)." + EOL 
+				+ " --dry-run                    : Validates the command and predicts its result" + EOL 
+				+ "                                without provisioning nor launching the" + EOL 
+				+ "                                installed product." + EOL 
+				+ " --git-dir gitFolderPath      : Path to the .git folder of your repository." + EOL 
+				+ " --help (-h)                  : Dispays help for this command." + EOL 
+				+ " --jfr file                   : Records the run, including the launched" + EOL 
+				+ "                                product, with Java Flight Recorder to the given" + EOL 
+				+ "                                file." + EOL 
+				+ " --match-engine strategy      : Strategy matching the elements of the models:" + EOL 
+				+ "                                \"default\" matches them by ID when they have one" + EOL 
+				+ "                                and by similarity otherwise, \"id\" only matches" + EOL 
+				+ "                                them by ID, which is much faster on models" + EOL 
+				+ "                                whose elements all have an ID." + EOL 
+				+ " --max-heap-fraction fraction : Fraction of the maximum heap size above which" + EOL 
+				+ "                                the comparisons switch to a lower-memory mode" + EOL 
+				+ "                                (between 0 and 1, 0.8 by default)." + EOL 
+				+ " --max-resources count        : Maximum number of resources loaded for each" + EOL 
+				+ "                                side of a compared logical model, unbounded by" + EOL 
+				+ "                                default." + EOL 
+				+ " --merge-base                 : Compares <commit> and <compareWithCommit> from" + EOL 
+				+ "                                their merge base and only displays the" + EOL 
+				+ "                                conflicts." + EOL 
+				+ " --progress-log file          : Writes the setup tasks, their duration and" + EOL 
+				+ "                                logs, then their summary to the given file, as" + EOL 
+				+ "                                JSON lines." + EOL 
+				+ " --proxy-resolution policy    : Policy resolving the proxies to the resources" + EOL 
+				+ "                                out of the compared logical models: \"traversal\"" + EOL 
+				+ "                                never resolves them, \"lazy\" resolves them when" + EOL 
+				+ "                                the comparison needs them, \"all\" resolves them" + EOL 
+				+ "                                all as soon as the models are loaded. \"lazy\" by" + EOL 
+				+ "                                default." + EOL 
+				+ " --show-stack-trace           : Use this option to display java stack trace in" + EOL 
+				+ "                                console on error." + EOL 
+				+ " --threads count              : Number of threads computing the differences of" + EOL 
+				+ "                                a comparison in parallel, 1 by default." + EOL 
+				+ EOL ;  
 		//@formatter:on
 	}
 
@@ -135,6 +169,27 @@ public class DiffArgumentsTest extends AbstractCommandTest {
 		assertEquals(Returns.ERROR.code(), result);
 	}
 
+	@Test
+	public void incorrectMaxHeapFractionTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		// Gives a fraction greater than 1
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "master", "--max-heap-fraction",
+				"2");
+		Object result = getApp().start(getContext());
+		assertOutput("fatal: bad fraction '2', it must be greater than 0 and lower or equal to 1." + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
 	@Test
 	public void tooManyArgsTest() throws Exception {
 		setCmdLocation(getRepositoryPath().toString());
@@ -159,6 +214,142 @@ public class DiffArgumentsTest extends AbstractCommandTest {
 		assertEquals(Returns.ERROR.code(), result);
 	}
 
+	@Test
+	public void mergeBaseTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "master", "--merge-base",
+				"--help");
+		getApp().start(getContext());
+		assertTrue(getLogicalCommand() instanceof DiffCommand);
+		assertTrue(((DiffCommand)getLogicalCommand()).isMergeBase());
+	}
+
+	@Test
+	public void matchEngineTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "master", "--match-engine", "id",
+				"--help");
+		getApp().start(getContext());
+		assertTrue(getLogicalCommand() instanceof DiffCommand);
+		assertEquals(MatchStrategy.ID, ((DiffCommand)getLogicalCommand()).getMatchStrategy());
+	}
+
+	@Test
+	public void threadsTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "master", "--threads", "8",
+				"--help");
+		getApp().start(getContext());
+		assertTrue(getLogicalCommand() instanceof DiffCommand);
+		assertEquals(Integer.valueOf(8), ((DiffCommand)getLogicalCommand()).getThreads());
+	}
+
+	@Test
+	public void incorrectThreadsTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "master", "--threads", "0");
+		Object result = getApp().start(getContext());
+		assertOutput("fatal: bad count '0', it must be greater than 0." + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
+	@Test
+	public void proxyResolutionTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "master", "--proxy-resolution",
+				"traversal", "--max-resources", "50", "--help");
+		getApp().start(getContext());
+		assertTrue(getLogicalCommand() instanceof DiffCommand);
+		assertEquals(ProxyResolution.TRAVERSAL, ((DiffCommand)getLogicalCommand()).getProxyResolution());
+		assertEquals(Integer.valueOf(50), ((DiffCommand)getLogicalCommand()).getMaxResources());
+	}
+
+	@Test
+	public void incorrectProxyResolutionTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "master", "--proxy-resolution",
+				"none");
+		Object result = getApp().start(getContext());
+		assertOutput("fatal: bad proxy resolution 'none', it must be one of traversal, lazy, all." + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
+	@Test
+	public void incorrectMatchEngineTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File setupFile = new OomphUserModelBuilder()//
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+		// Creates some content for the first commit.
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), setupFile.getAbsolutePath(), "master", "--match-engine",
+				"proximity");
+		Object result = getApp().start(getContext());
+		assertOutput("fatal: bad match engine 'proximity', it must be one of default, id." + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
 	@Test
 	public void isNotAGitRepoTest() throws Exception {
 		Path myTmpDir = Files.createTempDirectory(getTestTmpFolder(), "NotARepo", new FileAttribute<?>[] {});
@@ -13,7 +13,9 @@ package org.eclipse.emf.compare.git.pgm.internal.cmd;
 import static org.eclipse.emf.compare.git.pgm.internal.cmd.MergeCommand.LOGICAL_MERGE_CMD_NAME;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -42,14 +44,24 @@ public class MergeArgumentsTest extends AbstractCommandTest {
 	@Override
 	protected String getExpectedUsage() {
 		//@formatter:off
-		return "logicalmerge <setup> <commit> [--debug (-d)] [--git-dir gitFolderPath] [--help (-h)] [--show-stack-trace] [-m message]" + EOL 
+		return "logicalmerge <setup> <commit> [--auto-resolve] [--debug (-d)] [--dry-run] [--git-dir gitFolderPath] [--help (-h)] [--jfr file] [--progress-log file] [--show-stack-trace] [-m message]" + EOL 
 				+ EOL 
 				+ " <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL 
 				+ "                           model." +EOL
 				+ " <commit>                : Commit ID or branch name to merge." + EOL 
+				+ " --auto-resolve          : Merges the non-conflicting differences of the" + EOL
+				+ "                           conflicting models and leaves only the real" + EOL
+				+ "                           conflicts to the logicalmergetool command." + EOL
 				+ " --debug (-d)            : Launches the provisionned eclipse in debug mode."+ EOL
+				+ " --dry-run               : Validates the command and predicts its result" + EOL
+				+ "                           without provisioning nor launching the installed" + EOL
+				+ "                           product." + EOL
 				+ " --git-dir gitFolderPath : Path to the .git folder of your repository."+ EOL
 				+ " --help (-h)             : Dispays help for this command." + EOL 
+				+ " --jfr file              : Records the run, including the launched product," + EOL
+				+ "                           with Java Flight Recorder to the given file." + EOL
+				+ " --progress-log file     : Writes the setup tasks, their duration and logs," + EOL
+				+ "                           then their summary to the given file, as JSON lines." + EOL
 				+ " --show-stack-trace      : Use this option to display java stack trace in" + EOL
 				+ "                           console on error." + EOL
 				+ " -m message              : Set the commit message to be used for the merge" + EOL 
@@ -268,4 +280,70 @@ public class MergeArgumentsTest extends AbstractCommandTest {
 		assertEquals("My message", ((MergeCommand)getLogicalCommand()).getMessage());
 
 	}
+
+	@Test
+	public void autoResolveTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		Path oomphFolderPath = getTestTmpFolder().resolve("oomphFolder");
+		File newSetupFile = new OomphUserModelBuilder().setInstallationLocation(oomphFolderPath.toString())
+				.setWorkspaceLocation(oomphFolderPath.resolve("ws").toString()).saveTo(
+						getTestTmpFolder().resolve("setup.setup").toString());
+
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+		addAllAndCommit("First commit");
+
+		getContext().addArg(getCommandName(), newSetupFile.getAbsolutePath(), "master", "--auto-resolve",
+				"--help");
+		getApp().start(getContext());
+		assertTrue(getLogicalCommand() instanceof MergeCommand);
+		assertTrue(((MergeCommand)getLogicalCommand()).isAutoResolve());
+	}
+
+	@Test
+	public void dryRunTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		Path oomphFolderPath = getTestTmpFolder().resolve("oomphFolder");
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationLocation(oomphFolderPath.toString()) //
+				.setWorkspaceLocation(oomphFolderPath.resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		Path projectPath = getRepositoryPath().resolve("Project");
+		new ProjectBuilder(this) //
+				.addNewFileContent("aFile.txt", "Some content") //
+				.addNewFileContent("other.txt", "Other content") //
+				.create(projectPath);
+		String baseId = getShortId(addAllAndCommit("First commit"));
+
+		createBranchAndCheckout("branch1", "master");
+		new ProjectBuilder(this) //
+				.addNewFileContent("aFile.txt", "Content on branch1") //
+				.addNewFileContent("other.txt", "Other content on branch1") //
+				.create(projectPath);
+		addAllAndCommit("Second commit");
+
+		getGit().checkout().setName("master").call();
+		new ProjectBuilder(this) //
+				.addNewFileContent("aFile.txt", "Content on master") //
+				.create(projectPath);
+		addAllAndCommit("Third commit");
+
+		getContext().addArg(getCommandName(), newSetupFile.getAbsolutePath(), "branch1", "--dry-run");
+		Object result = getApp().start(getContext());
+
+		// Neither the installation nor the workspace have been provisioned
+		assertNull(getLogicalCommand().getPerformer());
+		assertFalse(oomphFolderPath.toFile().exists());
+		//@formatter:off
+		String expected = "Merge base: [" + baseId + "] First commit" + EOL
+				+ "Files modified on both sides:" + EOL
+				+ "\tProject/aFile.txt" + EOL;
+		//@formatter:on
+		assertOutput(expected);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.COMPLETE.code(), result);
+	}
 }
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.util.OomphUserModelBuilder;
+import org.eclipse.emf.compare.git.pgm.util.ProjectBuilder;
+import org.junit.Test;
+
+/**
+ * Tests the arguments of the logicalmergedriver command.
+ */
+@SuppressWarnings("nls")
+public class MergeDriverArgumentsTest extends AbstractCommandTest {
+
+	@Override
+	protected String getCommandName() {
+		return MergeDriverCommand.LOGICAL_MERGE_DRIVER_CMD_NAME;
+	}
+
+	@Override
+	protected String getExpectedUsage() {
+		//@formatter:off
+		return "logicalmergedriver <setup> <base> <current> <other> <path> [--dry-run] [--git-dir gitFolderPath] [--help (-h)] [--jfr file] [--progress-log file] [--show-stack-trace]" + EOL
+				+ EOL
+				+ " <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL
+				+ "                           model." + EOL
+				+ " <base>                  : File holding the common ancestor version (%O)." + EOL
+				+ " <current>               : File holding the current version, overwritten with" + EOL
+				+ "                           the result of the merge (%A)." + EOL
+				+ " <other>                 : File holding the version of the other side (%B)." + EOL
+				+ " <path>                  : Path of the merged file in the repository (%P)." + EOL
+				+ " --dry-run               : Validates the command and predicts its result" + EOL
+				+ "                           without provisioning nor launching the installed" + EOL
+				+ "                           product." + EOL
+				+ " --git-dir gitFolderPath : Path to the .git folder of your repository." + EOL
+				+ " --help (-h)             : Dispays help for this command." + EOL
+				+ " --jfr file              : Records the run, including the launched product," + EOL
+				+ "                           with Java Flight Recorder to the given file." + EOL
+				+ " --progress-log file     : Writes the setup tasks, their duration and logs," + EOL
+				+ "                           then their summary to the given file, as JSON lines." + EOL
+				+ " --show-stack-trace      : Use this option to display java stack trace in" + EOL
+				+ "                           console on error." + EOL
+				+ EOL ;
+		//@formatter:on
+	}
+
+	@Test
+	public void missingVersionFileTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		File newSetupFile = new OomphUserModelBuilder() //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		Path project = getRepositoryPath().resolve("Project");
+		new ProjectBuilder(this) //
+				.addNewFileContent("base.txt", "base") //
+				.addNewFileContent("current.txt", "current") //
+				.create(project);
+
+		String missingFile = project.resolve("other.txt").toString();
+		getContext().addArg(getCommandName(), newSetupFile.getAbsolutePath(),
+				project.resolve("base.txt").toString(), project.resolve("current.txt").toString(),
+				missingFile, "Project/model.ecore");
+		Object result = getApp().start(getContext());
+		assertOutput("fatal: " + missingFile + " does not exist" + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.ERROR.code(), result);
+	}
+
+	@Test
+	public void dryRunTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		Path oomphFolderPath = getTestTmpFolder().resolve("oomphFolder");
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationLocation(oomphFolderPath.toString()) //
+				.setWorkspaceLocation(oomphFolderPath.resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		Path project = getRepositoryPath().resolve("Project");
+		new ProjectBuilder(this) //
+				.addNewFileContent("base.txt", "base") //
+				.addNewFileContent("current.txt", "current") //
+				.addNewFileContent("other.txt", "other") //
+				.create(project);
+
+		getContext().addArg(getCommandName(), "--dry-run", newSetupFile.getAbsolutePath(),
+				project.resolve("base.txt").toString(), project.resolve("current.txt").toString(),
+				project.resolve("other.txt").toString(), "Project/model.ecore");
+		Object result = getApp().start(getContext());
+		assertNull(getLogicalCommand().getPerformer());
+		assertOutput("The logicalmergedriver command is valid." + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.COMPLETE.code(), result);
+	}
+}
@@ -38,12 +38,19 @@ public class MergeToolArgumentsTest extends AbstractCommandTest {
 	@Override
 	protected String getExpectedUsage() {
 		//@formatter:off
-		return "logicalmergetool <setup> [--git-dir gitFolderPath] [--help (-h)] [--show-stack-trace]" + EOL 
+		return "logicalmergetool <setup> [--dry-run] [--git-dir gitFolderPath] [--help (-h)] [--jfr file] [--progress-log file] [--show-stack-trace]" + EOL 
 				+ EOL 
 				+ " <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL 
 				+ "                           model." + EOL 
+				+ " --dry-run               : Validates the command and predicts its result" + EOL 
+				+ "                           without provisioning nor launching the installed" + EOL 
+				+ "                           product." + EOL 
 				+ " --git-dir gitFolderPath : Path to the .git folder of your repository." + EOL 
 				+ " --help (-h)             : Dispays help for this command." + EOL 
+				+ " --jfr file              : Records the run, including the launched product," + EOL 
+				+ "                           with Java Flight Recorder to the given file." + EOL 
+				+ " --progress-log file     : Writes the setup tasks, their duration and logs," + EOL 
+				+ "                           then their summary to the given file, as JSON lines." + EOL 
 				+ " --show-stack-trace      : Use this option to display java stack trace in" + EOL 
 				+ "                           console on error."+ EOL
 				+ EOL ; //
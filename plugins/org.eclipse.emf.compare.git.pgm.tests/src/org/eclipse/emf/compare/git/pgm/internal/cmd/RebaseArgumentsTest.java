@@ -46,7 +46,7 @@ public class RebaseArgumentsTest extends AbstractCommandTest {
 	@Override
 	protected String getExpectedUsage() {
 		//@formatter:off
-		return "logicalrebase <setup> [<upstream>] [<branch>] [--abort] [--continue] [--git-dir gitFolderPath] [--help (-h)] [--show-stack-trace] [--skip]" + EOL
+		return "logicalrebase <setup> [<upstream>] [<branch>] [--abort] [--continue] [--dry-run] [--git-dir gitFolderPath] [--help (-h)] [--incremental] [--jfr file] [--keep-alive] [--progress-log file] [--show-stack-trace] [--skip]" + EOL
 				+ EOL
 				+" <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL
 				+"                           model." + EOL
@@ -57,8 +57,22 @@ public class RebaseArgumentsTest extends AbstractCommandTest {
 				+"                           operation." + EOL
 				+" --continue              : Use this option to continue an in going rebase" + EOL
 				+"                           operation." + EOL
+				+" --dry-run               : Validates the command and predicts its result" + EOL
+				+"                           without provisioning nor launching the installed" + EOL
+				+"                           product." + EOL
 				+" --git-dir gitFolderPath : Path to the .git folder of your repository." + EOL
 				+" --help (-h)             : Dispays help for this command." + EOL
+				+" --incremental           : Replays the commits in memory, keeping the models" + EOL
+				+"                           loaded from one commit to the next. Falls back to a" + EOL
+				+"                           regular rebase on conflicts." + EOL
+				+" --jfr file              : Records the run, including the launched product," + EOL
+				+"                           with Java Flight Recorder to the given file." + EOL
+				+" --keep-alive            : Keeps the application running when the rebase stops" + EOL
+				+"                           on a conflict, so that it processes the next" + EOL
+				+"                           --continue, --skip or --abort without being" + EOL
+				+"                           relaunched." + EOL
+				+" --progress-log file     : Writes the setup tasks, their duration and logs," + EOL
+				+"                           then their summary to the given file, as JSON lines." + EOL
 				+" --show-stack-trace      : Use this option to display java stack trace in" + EOL
 				+"                           console on error." + EOL
 				+" --skip                  : Use this option to skip the current commit being" + EOL
@@ -135,6 +149,17 @@ public class RebaseArgumentsTest extends AbstractCommandTest {
 		assertEmptyErrorMessage();
 		assertEquals(Returns.ERROR.code(), result);
 
+		// Tests one option plus the incremental option
+		resetApp();
+		resetContext();
+		getContext().addArg(getCommandName(), newSetupFile.getAbsolutePath(), "--continue", "--incremental");
+
+		result = getApp().start(getContext());
+		assertOutput(expected);
+
+		assertEmptyErrorMessage();
+		assertEquals(Returns.ERROR.code(), result);
+
 		// Tests using two options
 		resetApp();
 		resetContext();
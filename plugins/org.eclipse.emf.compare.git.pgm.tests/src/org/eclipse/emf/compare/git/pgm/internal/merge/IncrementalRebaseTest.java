@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.merge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link IncrementalRebase}.
+ */
+@SuppressWarnings("nls")
+public class IncrementalRebaseTest {
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\""
+			+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+			+ " xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"p\" nsPrefix=\"p\" nsURI=\"";
+
+	private Path tmpFolder;
+
+	private Git git;
+
+	private IncrementalRebase rebase;
+
+	@Before
+	public void before() throws Exception {
+		Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().putIfAbsent("ecore",
+				new EcoreResourceFactoryImpl());
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		git = Git.init().setDirectory(tmpFolder.toFile()).call();
+		rebase = new IncrementalRebase(git.getRepository(), new RevisionModelLoader(git.getRepository()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ModelDependencyIndex.flush(git.getRepository());
+		git.close();
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testCleanTextMerge() throws Exception {
+		write("model.ecore", ecore("http://p", "A"));
+		write("readme.txt", "one\ntwo\nthree\nfour\n");
+		RevCommit base = commit("Base");
+		write("readme.txt", "one upstream\ntwo\nthree\nfour\n");
+		RevCommit upstream = commit("Upstream");
+		checkoutNewBranch(base);
+		write("readme.txt", "one\ntwo\nthree\nfour topic\n");
+		RevCommit topic = commit("Topic");
+
+		RevCommit newHead = rebase.rebase(upstream, topic);
+
+		assertNotNull(newHead);
+		assertEquals(upstream, newHead.getParent(0));
+		assertEquals("Topic", newHead.getFullMessage());
+		assertEquals("one upstream\ntwo\nthree\nfour topic\n", read(newHead, "readme.txt"));
+		assertEquals(ecore("http://p", "A"), read(newHead, "model.ecore"));
+		assertEquals(0, rebase.getLogicalMergeCount());
+		assertEquals(1, rebase.getReplayed().size());
+		assertFalse(rebase.isFailed());
+	}
+
+	@Test
+	public void testModelsAreMergedLogicallyEvenWhenTheTextMergeIsClean() throws Exception {
+		write("model.ecore", ecore("http://p", "A", "B", "C"));
+		write("readme.txt", "one\ntwo\nthree\nfour\n");
+		RevCommit base = commit("Base");
+		write("model.ecore", ecore("http://upstream", "A", "B", "C"));
+		write("readme.txt", "one upstream\ntwo\nthree\nfour\n");
+		RevCommit upstream = commit("Upstream");
+		checkoutNewBranch(base);
+		write("model.ecore", ecore("http://p", "A", "B", "C", "D"));
+		write("readme.txt", "one\ntwo\nthree\nfour topic\n");
+		RevCommit topic = commit("Topic");
+
+		RevCommit newHead = rebase.rebase(upstream, topic);
+
+		assertNotNull(newHead);
+		assertEquals(1, rebase.getLogicalMergeCount());
+		String merged = read(newHead, "model.ecore");
+		assertTrue(merged.contains("nsURI=\"http://upstream\""));
+		assertTrue(merged.contains("name=\"D\""));
+		assertEquals("one upstream\ntwo\nthree\nfour topic\n", read(newHead, "readme.txt"));
+	}
+
+	@Test
+	public void testLogicalMergeOfTextConflict() throws Exception {
+		write("model.ecore", ecore("http://p", "A"));
+		RevCommit base = commit("Base");
+		write("model.ecore", ecore("http://p", "A", "B"));
+		RevCommit upstream = commit("Upstream");
+		checkoutNewBranch(base);
+		write("model.ecore", ecore("http://p", "A", "C"));
+		RevCommit topic = commit("Topic");
+
+		RevCommit newHead = rebase.rebase(upstream, topic);
+
+		assertNotNull(newHead);
+		assertEquals(1, rebase.getLogicalMergeCount());
+		String merged = read(newHead, "model.ecore");
+		assertTrue(merged.contains("name=\"B\""));
+		assertTrue(merged.contains("name=\"C\""));
+	}
+
+	@Test
+	public void testModelConflictFallsBack() throws Exception {
+		write("model.ecore", ecore("http://p", "A"));
+		RevCommit base = commit("Base");
+		write("model.ecore", ecore("http://upstream", "A"));
+		RevCommit upstream = commit("Upstream");
+		checkoutNewBranch(base);
+		write("model.ecore", ecore("http://topic", "A"));
+		RevCommit topic = commit("Topic");
+
+		assertNull(rebase.rebase(upstream, topic));
+		assertTrue(rebase.isFailed());
+		assertTrue(rebase.getReplayed().isEmpty());
+		assertEquals(topic, git.getRepository().resolve(Constants.HEAD));
+	}
+
+	@Test
+	public void testTextConflictFallsBack() throws Exception {
+		write("readme.txt", "one\n");
+		RevCommit base = commit("Base");
+		write("readme.txt", "one upstream\n");
+		RevCommit upstream = commit("Upstream");
+		checkoutNewBranch(base);
+		write("readme.txt", "one topic\n");
+		RevCommit topic = commit("Topic");
+
+		assertNull(rebase.rebase(upstream, topic));
+		assertTrue(rebase.isFailed());
+	}
+
+	@Test
+	public void testUpToDate() throws Exception {
+		write("readme.txt", "one\n");
+		RevCommit base = commit("Base");
+		write("readme.txt", "two\n");
+		RevCommit head = commit("Head");
+
+		assertNull(rebase.rebase(base, head));
+		assertFalse(rebase.isFailed());
+	}
+
+	private static String ecore(String nsURI, String... classNames) {
+		StringBuilder builder = new StringBuilder(HEADER).append(nsURI).append("\">\n");
+		for (String className : classNames) {
+			builder.append("  <eClassifiers xsi:type=\"ecore:EClass\" name=\"").append(className).append(
+					"\"/>\n");
+		}
+		return builder.append("</ecore:EPackage>\n").toString();
+	}
+
+	private String read(RevCommit commit, String path) throws Exception {
+		try (TreeWalk walk = TreeWalk.forPath(git.getRepository(), path, commit.getTree())) {
+			assertNotNull(path + " is missing", walk);
+			return new String(git.getRepository().open(walk.getObjectId(0)).getBytes(),
+					StandardCharsets.UTF_8);
+		}
+	}
+
+	private void checkoutNewBranch(RevCommit startPoint) throws Exception {
+		git.checkout().setCreateBranch(true).setName("topic").setStartPoint(startPoint).call();
+	}
+
+	private void write(String path, String content) throws Exception {
+		File file = new File(tmpFolder.toFile(), path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private RevCommit commit(String message) throws Exception {
+		git.add().addFilepattern(".").call();
+		return git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr")
+				.setCommitter("Logical test author", "logicaltest@obeo.fr").setMessage(message).call();
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
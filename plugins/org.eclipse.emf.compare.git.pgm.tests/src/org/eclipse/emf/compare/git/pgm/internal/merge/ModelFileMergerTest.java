@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.merge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ComparisonCache;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ModelFileMerger}.
+ */
+@SuppressWarnings("nls")
+public class ModelFileMergerTest {
+
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\""
+			+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+			+ " xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"p\" nsPrefix=\"p\" nsURI=\"";
+
+	private Path tmpFolder;
+
+	private Git git;
+
+	private URI uri;
+
+	@Before
+	public void before() throws Exception {
+		Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().putIfAbsent("ecore",
+				new EcoreResourceFactoryImpl());
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		git = Git.init().setDirectory(tmpFolder.resolve("repo").toFile()).call();
+		uri = URI.createFileURI(tmpFolder.resolve("repo").resolve("model.ecore").toString());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		git.close();
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testMergesChangesOfBothSides() throws Exception {
+		File base = write("base", ecore("http://p", "A"));
+		File current = write("current", ecore("http://p", "A", "B"));
+		File other = write("other", ecore("http://p", "A", "C"));
+
+		assertTrue(new ModelFileMerger().merge(uri, base, current, other));
+		EPackage merged = load(current);
+		assertEquals(3, merged.getEClassifiers().size());
+		assertEquals("B", merged.getEClassifiers().get(1).getName());
+		assertEquals("C", merged.getEClassifiers().get(2).getName());
+	}
+
+	@Test
+	public void testConflictLeavesCurrentVersion() throws Exception {
+		File base = write("base", ecore("http://p", "A"));
+		String currentContent = ecore("http://current", "A");
+		File current = write("current", currentContent);
+		File other = write("other", ecore("http://other", "A"));
+
+		assertFalse(new ModelFileMerger().merge(uri, base, current, other));
+		assertEquals(currentContent, new String(Files.readAllBytes(current.toPath()),
+				StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testAddedOnBothSides() throws Exception {
+		File base = write("base", "");
+		File current = write("current", ecore("http://p", "A"));
+		File other = write("other", ecore("http://p", "B"));
+
+		assertFalse(new ModelFileMerger().merge(uri, base, current, other));
+	}
+
+	@Test
+	public void testAddedIdenticallyOnBothSides() throws Exception {
+		File base = write("base", "");
+		String currentContent = ecore("http://p", "A");
+		File current = write("current", currentContent);
+		// Same model, serialized differently
+		File other = write("other", ecore("http://p", "A").replace("\"/>", "\"></eClassifiers>"));
+
+		assertTrue(new ModelFileMerger().merge(uri, base, current, other));
+		assertEquals(currentContent, new String(Files.readAllBytes(current.toPath()),
+				StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testKeepsLineDelimiterAndEncoding() throws Exception {
+		File base = write("base", ecore("http://p", "A").replace("\n", "\r\n").replace("UTF-8",
+				"ISO-8859-1"));
+		File current = write("current", ecore("http://p", "A", "B").replace("\n", "\r\n").replace(
+				"UTF-8", "ISO-8859-1"));
+		File other = write("other", ecore("http://p", "A", "C").replace("\n", "\r\n").replace("UTF-8",
+				"ISO-8859-1"));
+
+		assertTrue(new ModelFileMerger().merge(uri, base, current, other));
+		String merged = new String(Files.readAllBytes(current.toPath()), StandardCharsets.ISO_8859_1);
+		assertTrue(merged.startsWith("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\r\n"));
+		assertFalse(merged.replace("\r\n", "").contains("\n"));
+		assertTrue(merged.contains("name=\"C\""));
+	}
+
+	@Test
+	public void testReplaysMergeFromCache() throws Exception {
+		ComparisonCache cache = new ComparisonCache(tmpFolder.resolve("cache").toFile());
+		File base = write("base", ecore("http://p", "A"));
+		String currentContent = ecore("http://p", "A", "B");
+		File current = write("current", currentContent);
+		File other = write("other", ecore("http://p", "A", "C"));
+
+		assertTrue(new ModelFileMerger(git.getRepository(), cache).merge(uri, base, current, other));
+		byte[] merged = Files.readAllBytes(current.toPath());
+		assertEquals(1, cache.size());
+
+		Files.write(current.toPath(), currentContent.getBytes(StandardCharsets.UTF_8));
+		long hits = ComparisonCache.getHitCount();
+		assertTrue(new ModelFileMerger(git.getRepository(), cache).merge(uri, base, current, other));
+		assertEquals(hits + 1, ComparisonCache.getHitCount());
+		assertEquals(new String(merged, StandardCharsets.UTF_8), new String(Files.readAllBytes(current
+				.toPath()), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testReferencedFilesTakePartInCacheKey() throws Exception {
+		ComparisonCache cache = new ComparisonCache(tmpFolder.resolve("cache").toFile());
+		File dependency = tmpFolder.resolve("repo").resolve("dependency.ecore").toFile();
+		Files.write(dependency.toPath(), ecore("http://d", "D").getBytes(StandardCharsets.UTF_8));
+		String reference = "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"E\""
+				+ " eSuperTypes=\"dependency.ecore#//D\"/>\n";
+		File base = write("base", ecore("http://p", "A").replace("</ecore", reference + "</ecore"));
+		String currentContent = ecore("http://p", "A", "B").replace("</ecore", reference + "</ecore");
+		File current = write("current", currentContent);
+		File other = write("other", ecore("http://p", "A", "C").replace("</ecore", reference + "</ecore"));
+
+		assertTrue(new ModelFileMerger(git.getRepository(), cache).merge(uri, base, current, other));
+		assertEquals(1, cache.size());
+
+		// Git has merged the referenced file meanwhile
+		Files.write(dependency.toPath(), ecore("http://d", "D", "F").getBytes(StandardCharsets.UTF_8));
+		Files.write(current.toPath(), currentContent.getBytes(StandardCharsets.UTF_8));
+		long hits = ComparisonCache.getHitCount();
+		assertTrue(new ModelFileMerger(git.getRepository(), cache).merge(uri, base, current, other));
+		assertEquals(hits, ComparisonCache.getHitCount());
+		assertEquals(2, cache.size());
+	}
+
+	private static String ecore(String nsURI, String... classNames) {
+		StringBuilder builder = new StringBuilder(HEADER).append(nsURI).append("\">\n");
+		for (String className : classNames) {
+			builder.append("  <eClassifiers xsi:type=\"ecore:EClass\" name=\"").append(className).append(
+					"\"/>\n");
+		}
+		return builder.append("</ecore:EPackage>\n").toString();
+	}
+
+	private File write(String name, String content) throws Exception {
+		File file = tmpFolder.resolve(name + ".ecore").toFile();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	private EPackage load(File file) {
+		Resource resource = new ResourceSetImpl().getResource(URI.createFileURI(file.getAbsolutePath()),
+				true);
+		return (EPackage)resource.getContents().get(0);
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.PlatformObject;
+import org.eclipse.emf.compare.ide.ui.logical.SynchronizationModel;
+import org.eclipse.emf.compare.ide.utils.StorageTraversal;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link BlobIdResourceMinimizer}.
+ */
+@SuppressWarnings("nls")
+public class BlobIdResourceMinimizerTest {
+
+	private Path tmpFolder;
+
+	private Git git;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		git = Git.init().setDirectory(tmpFolder.toFile()).call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		git.close();
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testTwoWay() throws Exception {
+		write("a.xmi", "<a/>");
+		write("b.xmi", "<b/>");
+		RevCommit left = commit("Left");
+		write("b.xmi", "<b name=\"changed\"/>");
+		RevCommit right = commit("Right");
+
+		SynchronizationModel syncModel = new SynchronizationModel(traversal("a.xmi", "b.xmi"), traversal(
+				"a.xmi", "b.xmi"), traversal());
+		int removed = new BlobIdResourceMinimizer(git.getRepository(), left, right, null).minimize(
+				syncModel, new NullProgressMonitor());
+
+		assertEquals(1, removed);
+		assertEquals(Collections.singleton("b.xmi"), getNames(syncModel.getLeftTraversal()));
+		assertEquals(Collections.singleton("b.xmi"), getNames(syncModel.getRightTraversal()));
+	}
+
+	@Test
+	public void testThreeWay() throws Exception {
+		write("a.xmi", "<a/>");
+		write("b.xmi", "<b/>");
+		write("c.xmi", "<c/>");
+		RevCommit origin = commit("Origin");
+		write("b.xmi", "<b name=\"left\"/>");
+		// Changed the same way on both sides
+		write("c.xmi", "<c name=\"both\"/>");
+		RevCommit left = commit("Left");
+		write("b.xmi", "<b/>");
+		RevCommit right = commit("Right");
+
+		SynchronizationModel syncModel = new SynchronizationModel(traversal("a.xmi", "b.xmi", "c.xmi"),
+				traversal("a.xmi", "b.xmi", "c.xmi"), traversal("a.xmi", "b.xmi", "c.xmi"));
+		int removed = new BlobIdResourceMinimizer(git.getRepository(), left, right, origin).minimize(
+				syncModel, new NullProgressMonitor());
+
+		assertEquals(1, removed);
+		Set<String> changed = new TreeSet<String>();
+		changed.add("b.xmi");
+		changed.add("c.xmi");
+		assertEquals(changed, getNames(syncModel.getLeftTraversal()));
+		assertEquals(changed, getNames(syncModel.getRightTraversal()));
+		assertEquals(changed, getNames(syncModel.getOriginTraversal()));
+	}
+
+	@Test
+	public void testKeepsStoragesMissingOnASide() throws Exception {
+		write("a.xmi", "<a/>");
+		RevCommit left = commit("Left");
+		write("b.xmi", "<b/>");
+		RevCommit right = commit("Right");
+
+		SynchronizationModel syncModel = new SynchronizationModel(traversal("a.xmi", "b.xmi"), traversal(
+				"a.xmi", "b.xmi"), traversal());
+		new BlobIdResourceMinimizer(git.getRepository(), left, right, null).minimize(syncModel,
+				new NullProgressMonitor());
+
+		assertEquals(Collections.singleton("b.xmi"), getNames(syncModel.getLeftTraversal()));
+	}
+
+	@Test
+	public void testKeepsStoragesOutOfTheRepository() throws Exception {
+		write("a.xmi", "<a/>");
+		RevCommit commit = commit("Commit");
+		StorageTraversal left = new StorageTraversal(Collections.singleton(new PathStorage(tmpFolder
+				.getParent().resolve("a.xmi").toFile())));
+
+		SynchronizationModel syncModel = new SynchronizationModel(left, traversal("a.xmi"), traversal());
+		int removed = new BlobIdResourceMinimizer(git.getRepository(), commit, commit, null).minimize(
+				syncModel, new NullProgressMonitor());
+
+		assertEquals(0, removed);
+		assertEquals(Collections.singleton("a.xmi"), getNames(syncModel.getRightTraversal()));
+	}
+
+	private StorageTraversal traversal(String... paths) {
+		Set<IStorage> storages = new LinkedHashSet<IStorage>();
+		for (String path : paths) {
+			storages.add(new PathStorage(tmpFolder.resolve(path).toFile()));
+		}
+		return new StorageTraversal(storages);
+	}
+
+	private static Set<String> getNames(StorageTraversal traversal) {
+		Set<String> names = new TreeSet<String>();
+		for (IStorage storage : traversal.getStorages()) {
+			names.add(storage.getName());
+		}
+		return names;
+	}
+
+	private void write(String path, String content) throws Exception {
+		File file = new File(tmpFolder.toFile(), path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private RevCommit commit(String message) throws Exception {
+		git.add().addFilepattern(".").call();
+		return git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr")
+				.setCommitter("Logical test author", "logicaltest@obeo.fr").setMessage(message).call();
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+
+	/**
+	 * Storage located by its absolute path, as the storages of the work tree.
+	 */
+	private static final class PathStorage extends PlatformObject implements IStorage {
+
+		private final IPath path;
+
+		PathStorage(File file) {
+			this.path = new org.eclipse.core.runtime.Path(file.getAbsolutePath());
+		}
+
+		public InputStream getContents() {
+			throw new UnsupportedOperationException("The minimizer must not read the storages");
+		}
+
+		public IPath getFullPath() {
+			return path;
+		}
+
+		public String getName() {
+			return path.lastSegment();
+		}
+
+		public boolean isReadOnly() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.jgit.util.io.ThrowingPrintWriter;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link CommandSession}.
+ */
+@SuppressWarnings("nls")
+public class CommandSessionTest {
+
+	private Path sessionFolder;
+
+	private ExecutorService executor;
+
+	@Before
+	public void before() throws Exception {
+		sessionFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+		for (File file : sessionFolder.toFile().listFiles()) {
+			file.delete();
+		}
+		sessionFolder.toFile().delete();
+	}
+
+	@Test
+	public void testStepsUntilRebaseIsOver() throws Exception {
+		final CommandSession session = CommandSession.open(sessionFolder.toFile());
+		Future<Integer> served = executor.submit(() -> {
+			try {
+				return session.serve((step, out) -> {
+					out.println("Processing " + step);
+					System.err.println("Done");
+					if ("--skip".equals(step)) {
+						return Returns.ABORTED.code();
+					}
+					return Returns.COMPLETE.code();
+				}, CommandSession.DEFAULT_IDLE_TIMEOUT);
+			} finally {
+				session.close();
+			}
+		});
+
+		assertEquals(Returns.ABORTED.code(), sendStep("--skip", "Processing --skip" + EOL + "Done" + EOL));
+		assertFalse(served.isDone());
+		assertEquals(Returns.COMPLETE.code(), sendStep("--continue", "Processing --continue" + EOL + "Done"
+				+ EOL));
+
+		assertEquals(Returns.COMPLETE.code(), served.get(10, TimeUnit.SECONDS));
+		assertFalse(new File(sessionFolder.toFile(), CommandSession.SESSION_FILE).exists());
+		assertNull(CommandSession.connect(sessionFolder.toFile()));
+	}
+
+	@Test
+	public void testStaleSessionFile() throws Exception {
+		CommandSession session = CommandSession.open(sessionFolder.toFile());
+		File sessionFile = new File(sessionFolder.toFile(), CommandSession.SESSION_FILE);
+		byte[] content = Files.readAllBytes(sessionFile.toPath());
+		session.close();
+		// Simulates a session that has ended without deleting its file
+		Files.write(sessionFile.toPath(), content);
+
+		assertNull(CommandSession.connect(sessionFolder.toFile()));
+		assertFalse(sessionFile.exists());
+	}
+
+	@Test
+	public void testSessionFileIsOwnerOnly() throws Exception {
+		Assume.assumeTrue(sessionFolder.getFileSystem().supportedFileAttributeViews().contains("posix"));
+		try (CommandSession session = CommandSession.open(sessionFolder.toFile())) {
+			File sessionFile = new File(sessionFolder.toFile(), CommandSession.SESSION_FILE);
+			assertEquals(PosixFilePermissions.fromString("rw-------"),
+					Files.getPosixFilePermissions(sessionFile.toPath()));
+		}
+	}
+
+	@Test
+	public void testInvalidSessionFile() throws Exception {
+		File sessionFile = new File(sessionFolder.toFile(), CommandSession.SESSION_FILE);
+		Files.write(sessionFile.toPath(), "invalid".getBytes(StandardCharsets.UTF_8));
+
+		assertNull(CommandSession.connect(sessionFolder.toFile()));
+		assertFalse(sessionFile.exists());
+	}
+
+	@Test
+	public void testWrongToken() throws Exception {
+		CommandSession session = CommandSession.open(sessionFolder.toFile());
+		File sessionFile = new File(sessionFolder.toFile(), CommandSession.SESSION_FILE);
+		String content = new String(Files.readAllBytes(sessionFile.toPath()), StandardCharsets.UTF_8);
+		Files.write(sessionFile.toPath(), (content.split(" ")[0] + " wrongToken")
+				.getBytes(StandardCharsets.UTF_8));
+		executor.submit(() -> session.serve((step, out) -> Returns.COMPLETE.code(), 2000));
+
+		CommandSession.Client client = CommandSession.connect(sessionFolder.toFile());
+		assertNotNull(client);
+		try {
+			client.sendStep("--continue", new ThrowingPrintWriter(new StringWriter()));
+			fail("The step should have been refused");
+		} catch (IOException e) {
+			// Expected, the session closes the connection
+		} finally {
+			client.close();
+			session.close();
+		}
+	}
+
+	private Integer sendStep(String step, String expectedOutput) throws Exception {
+		CommandSession.Client client = CommandSession.connect(sessionFolder.toFile());
+		assertNotNull(client);
+		StringWriter output = new StringWriter();
+		try {
+			ThrowingPrintWriter out = new ThrowingPrintWriter(output);
+			Integer code = client.sendStep(step, out);
+			out.flush();
+			assertEquals(expectedOutput, output.toString());
+			return code;
+		} finally {
+			client.close();
+		}
+	}
+}
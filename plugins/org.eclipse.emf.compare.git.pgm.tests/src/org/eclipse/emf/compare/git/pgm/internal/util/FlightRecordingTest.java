@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link FlightRecording}. The JVM running the tests may or may not have a flight recorder, both
+ * cases are checked.
+ */
+@SuppressWarnings("nls")
+public class FlightRecordingTest {
+
+	private Path tmpFolder;
+
+	private PrintStream out;
+
+	private PrintStream err;
+
+	private ByteArrayOutputStream outStream;
+
+	private ByteArrayOutputStream errStream;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		out = System.out;
+		err = System.err;
+		outStream = new ByteArrayOutputStream();
+		errStream = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(outStream, true, "UTF-8"));
+		System.setErr(new PrintStream(errStream, true, "UTF-8"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		System.setOut(out);
+		System.setErr(err);
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testStartAndStop() throws Exception {
+		File destination = tmpFolder.resolve("command.jfr").toFile();
+		FlightRecording recording = FlightRecording.start(destination);
+		if (recording == null) {
+			// No flight recorder: the command goes on with a warning on the error stream
+			assertNull(FlightRecording.getCurrent());
+			assertTrue(getErr(), getErr().startsWith("warning: "));
+			assertTrue(getErr(), getErr().contains(destination.getPath()));
+			assertFalse(destination.exists());
+		} else {
+			assertSame(recording, FlightRecording.getCurrent());
+			Phase.COMPARE.begin("model.ecore").end();
+			recording.stop();
+			assertNull(FlightRecording.getCurrent());
+			assertTrue(destination.isFile());
+			assertEquals("", getErr());
+		}
+		assertEquals("", new String(outStream.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testParts() throws Exception {
+		File destination = tmpFolder.resolve("command.jfr").toFile();
+		FlightRecording recording = FlightRecording.start(destination);
+		if (recording == null) {
+			return;
+		}
+		File first = recording.newPart();
+		File second = recording.newPart();
+		assertEquals(destination.getAbsolutePath() + ".1.part", first.getPath());
+		assertEquals(destination.getAbsolutePath() + ".2.part", second.getPath());
+
+		// The first application has written its recording, the second one is still running
+		Files.write(first.toPath(), new byte[] {1, 2, 3 });
+		recording.stop();
+		byte[] written = Files.readAllBytes(destination.toPath());
+		assertTrue(written.length > 3);
+		assertArrayEquals(new byte[] {1, 2, 3 }, Arrays.copyOfRange(written, written.length - 3,
+				written.length));
+		assertFalse(first.exists());
+		assertFalse(second.exists());
+	}
+
+	@Test
+	public void testScopes() throws Exception {
+		Metrics.Scope scope = Metrics.scope();
+		try {
+			FlightRecording recording = FlightRecording.start(tmpFolder.resolve("request.jfr").toFile());
+			if (recording == null) {
+				return;
+			}
+			FlightRecording[] other = new FlightRecording[1];
+			// A request running at the same time has its own scope
+			Thread thread = new Thread(() -> {
+				Metrics.Scope otherScope = Metrics.scope();
+				try {
+					other[0] = FlightRecording.getCurrent();
+				} finally {
+					otherScope.close();
+				}
+			});
+			thread.start();
+			thread.join();
+			assertNull(other[0]);
+			assertSame(recording, FlightRecording.getCurrent());
+			recording.stop();
+			assertNull(FlightRecording.getCurrent());
+		} finally {
+			scope.close();
+		}
+	}
+
+	private String getErr() {
+		return new String(errStream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Collections;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link GitTreeURIHandler}.
+ */
+@SuppressWarnings("nls")
+public class GitTreeURIHandlerTest {
+
+	private Path tmpFolder;
+
+	private Git git;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		git = Git.init().setDirectory(tmpFolder.resolve("repo").toFile()).call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		git.close();
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testToRepositoryPath() throws Exception {
+		RevCommit commit = commit("p/model.xmi", "<model/>");
+		GitTreeURIHandler handler = new GitTreeURIHandler(git.getRepository(), commit.getTree());
+
+		assertEquals("p/model.xmi", handler.toRepositoryPath(uri("p/model.xmi")));
+		assertTrue(handler.canHandle(uri("p/missing.xmi")));
+		// The work tree itself and the files out of it are not handled
+		assertNull(handler.toRepositoryPath(URI.createFileURI(git.getRepository().getWorkTree()
+				.getAbsolutePath())));
+		assertFalse(handler.canHandle(URI.createFileURI(tmpFolder.resolve("other.xmi").toString())));
+		assertFalse(handler.canHandle(URI.createURI("http://www.eclipse.org/emf/2002/Ecore")));
+	}
+
+	@Test
+	public void testReadsTheTree() throws Exception {
+		RevCommit first = commit("p/model.xmi", "<first/>");
+		RevCommit second = commit("p/model.xmi", "<second/>");
+		// The work tree is not read
+		write("p/model.xmi", "<work/>");
+		GitTreeURIHandler handler = new GitTreeURIHandler(git.getRepository(), first.getTree());
+
+		assertEquals("<first/>", read(handler, "p/model.xmi"));
+		assertTrue(handler.exists(uri("p/model.xmi"), null));
+		assertFalse(handler.exists(uri("p/missing.xmi"), null));
+		// Folders are not blobs
+		assertNull(handler.getBlobId("p"));
+		assertEquals(Boolean.TRUE, handler.getAttributes(uri("p/model.xmi"), null).get(
+				URIConverter.ATTRIBUTE_READ_ONLY));
+
+		handler.setTreeId(second.getTree());
+		assertEquals(second.getTree(), handler.getTreeId());
+		assertEquals("<second/>", read(handler, "p/model.xmi"));
+	}
+
+	@Test
+	public void testReadOnly() throws Exception {
+		RevCommit commit = commit("model.xmi", "<model/>");
+		GitTreeURIHandler handler = new GitTreeURIHandler(git.getRepository(), commit.getTree());
+		try {
+			handler.createOutputStream(uri("model.xmi"), null);
+			fail("Revisions must be read-only");
+		} catch (IOException e) {
+			// Expected
+		}
+		try {
+			handler.createInputStream(uri("missing.xmi"), Collections.emptyMap());
+			fail("There is no blob to read");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	private URI uri(String path) {
+		return URI.createFileURI(new File(git.getRepository().getWorkTree(), path).getAbsolutePath());
+	}
+
+	private String read(GitTreeURIHandler handler, String path) throws IOException {
+		try (InputStream in = handler.createInputStream(uri(path), null)) {
+			return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+		}
+	}
+
+	private void write(String path, String content) throws Exception {
+		File file = new File(git.getRepository().getWorkTree(), path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private RevCommit commit(String path, String content) throws Exception {
+		write(path, content);
+		git.add().addFilepattern(".").call();
+		return git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr")
+				.setCommitter("Logical test author", "logicaltest@obeo.fr").setMessage(path).call();
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.AttributeChange;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.Diff;
+import org.eclipse.emf.compare.DifferenceKind;
+import org.eclipse.emf.compare.EMFCompare;
+import org.eclipse.emf.compare.Match;
+import org.eclipse.emf.compare.scope.DefaultComparisonScope;
+import org.eclipse.emf.compare.scope.IComparisonScope;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.junit.Test;
+
+/**
+ * Tests the {@link IdenticalSubtreeFilter}.
+ */
+@SuppressWarnings("nls")
+public class IdenticalSubtreeFilterTest {
+
+	private static final URI MODEL_URI = URI.createURI("model.ecore");
+
+	@Test
+	public void testIdenticalSubtreesAreExcluded() throws Exception {
+		ResourceSet left = createModel("A", "B", "C");
+		ResourceSet right = createModel("A", "B2", "C");
+		IComparisonScope scope = new DefaultComparisonScope(left, right, null);
+
+		assertTrue(new IdenticalSubtreeFilter().apply(scope) > 0);
+		List<EObject> covered = getCovered(scope, left);
+		assertTrue(covered.contains(getPackage(left)));
+		assertTrue(covered.contains(getClassifier(left, "B")));
+		assertFalse(covered.contains(getClassifier(left, "A")));
+		assertFalse(covered.contains(getClassifier(left, "C")));
+
+		Comparison comparison = EMFCompare.builder().build().compare(scope);
+		assertEquals(1, comparison.getDifferences().size());
+		AttributeChange change = (AttributeChange)comparison.getDifferences().get(0);
+		assertEquals(EcorePackage.Literals.ENAMED_ELEMENT__NAME, change.getAttribute());
+		assertEquals("B", change.getValue());
+	}
+
+	@Test
+	public void testMovedElementsAreNotExcluded() throws Exception {
+		ResourceSet left = createModel("A", "B", "C");
+		ResourceSet right = createModel("C", "B", "A");
+		IComparisonScope scope = new DefaultComparisonScope(left, right, null);
+
+		// Only B keeps its location
+		assertTrue(new IdenticalSubtreeFilter().apply(scope) > 0);
+		List<EObject> covered = getCovered(scope, left);
+		assertFalse(covered.contains(getClassifier(left, "B")));
+		assertTrue(covered.contains(getClassifier(left, "A")));
+		assertTrue(covered.contains(getClassifier(left, "C")));
+
+		Comparison comparison = EMFCompare.builder().build().compare(scope);
+		assertFalse(comparison.getDifferences().isEmpty());
+		for (Diff diff : comparison.getDifferences()) {
+			assertEquals(DifferenceKind.MOVE, diff.getKind());
+		}
+	}
+
+	@Test
+	public void testSubtreeChangedFromOriginIsNotExcluded() throws Exception {
+		ResourceSet left = createModel("A", "B", "C");
+		ResourceSet right = createModel("A", "B", "C");
+		ResourceSet origin = createModel("A", "B", "C0");
+		IComparisonScope scope = new DefaultComparisonScope(left, right, origin);
+
+		assertTrue(new IdenticalSubtreeFilter().apply(scope) > 0);
+		List<EObject> covered = getCovered(scope, left);
+		assertFalse(covered.contains(getClassifier(left, "A")));
+		assertFalse(covered.contains(getClassifier(left, "B")));
+		// Changed the same way on both sides, C is in a pseudo conflict
+		assertTrue(covered.contains(getClassifier(left, "C")));
+
+		Comparison comparison = EMFCompare.builder().build().compare(scope);
+		assertEquals(2, comparison.getDifferences().size());
+		assertEquals(1, comparison.getConflicts().size());
+	}
+
+	@Test
+	public void testIdenticalModelsAreExcluded() throws Exception {
+		ResourceSet left = createModel("A", "B");
+		ResourceSet right = createModel("A", "B");
+		IComparisonScope scope = new DefaultComparisonScope(left, right, null);
+
+		assertTrue(new IdenticalSubtreeFilter().apply(scope) > 0);
+		assertTrue(getCovered(scope, left).isEmpty());
+		assertTrue(EMFCompare.builder().build().compare(scope).getDifferences().isEmpty());
+	}
+
+	@Test
+	public void testExcludedSubtreesAreMatched() throws Exception {
+		ResourceSet left = createModel("A", "B", "C");
+		ResourceSet right = createModel("A", "B2", "C");
+		IComparisonScope scope = new DefaultComparisonScope(left, right, null);
+		IdenticalSubtreeFilter filter = new IdenticalSubtreeFilter();
+		filter.apply(scope);
+		Comparison comparison = EMFCompare.builder().build().compare(scope);
+		assertEquals(null, comparison.getMatch(getClassifier(left, "A")));
+
+		// A and C, with their attribute
+		assertEquals(4, filter.addMatches(scope, comparison));
+		assertEquals(0, filter.addMatches(scope, comparison));
+		for (String name : new String[] {"A", "C" }) {
+			Match match = comparison.getMatch(getClassifier(left, name));
+			assertEquals(getClassifier(right, name), match.getRight());
+			assertEquals(comparison.getMatch(getPackage(left)), match.eContainer());
+			assertEquals(1, match.getSubmatches().size());
+			assertEquals(((EClass)getClassifier(right, name)).getEStructuralFeatures().get(0), match
+					.getSubmatches().get(0).getRight());
+		}
+		assertEquals(1, comparison.getDifferences().size());
+	}
+
+	private static ResourceSet createModel(String... classNames) {
+		EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+		ePackage.setName("p");
+		for (String className : classNames) {
+			EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+			eClass.setName(className);
+			EAttribute attribute = EcoreFactory.eINSTANCE.createEAttribute();
+			attribute.setName("name");
+			attribute.setEType(EcorePackage.Literals.ESTRING);
+			eClass.getEStructuralFeatures().add(attribute);
+			ePackage.getEClassifiers().add(eClass);
+		}
+		ResourceSet resourceSet = new ResourceSetImpl();
+		Resource resource = new ResourceImpl(MODEL_URI);
+		resource.getContents().add(ePackage);
+		resourceSet.getResources().add(resource);
+		return resourceSet;
+	}
+
+	private static EPackage getPackage(ResourceSet resourceSet) {
+		return (EPackage)resourceSet.getResources().get(0).getContents().get(0);
+	}
+
+	private static EObject getClassifier(ResourceSet resourceSet, String name) {
+		return getPackage(resourceSet).getEClassifier(name);
+	}
+
+	private static List<EObject> getCovered(IComparisonScope scope, ResourceSet resourceSet) {
+		return Lists.newArrayList(scope.getCoveredEObjects(resourceSet.getResources().get(0)));
+	}
+}
@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Cache;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link LogicalService} and its {@link ServiceRequest}s.
+ */
+@SuppressWarnings("nls")
+public class LogicalServiceTest {
+
+	private Path tmpFolder;
+
+	private Git git;
+
+	private File setupFile;
+
+	private File stateFile;
+
+	private String token;
+
+	private LogicalService service;
+
+	private ExecutorService executor;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		git = Git.init().setDirectory(tmpFolder.resolve("repo").toFile()).call();
+		setupFile = tmpFolder.resolve("service.setup").toFile();
+		Files.write(setupFile.toPath(), new byte[0]);
+		stateFile = tmpFolder.resolve("state").toFile();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (service != null) {
+			service.close();
+		}
+		executor.shutdownNow();
+		git.close();
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testParseObject() throws Exception {
+		Map<String, Object> members = ServiceRequest.parseObject(" {\"repository\" : \"/a \\\"b\\\"\\u00e9\","
+				+ "\"args\":[\"--threads\", \"2\"], \"setup\":\"s\\\\t\\n\", \"empty\":[]} ");
+		assertEquals("/a \"b\"\u00e9", members.get("repository"));
+		assertEquals(Arrays.asList("--threads", "2"), members.get("args"));
+		assertEquals("s\\t\n", members.get("setup"));
+		assertEquals(Arrays.asList(), members.get("empty"));
+
+		assertInvalid("{\"args\":[1]}");
+		assertInvalid("{\"repository\":\"a\"");
+		assertInvalid("{\"repository\":\"a\"} x");
+		assertInvalid("{\"repository\":\"\\q\"}");
+	}
+
+	@Test
+	public void testReadRequest() throws Exception {
+		String body = "{\"repository\":\"repo\"}";
+		String request = "POST /diff?verbose HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length()
+				+ "\r\nContent-Type: application/json\r\nExpect: 100-continue\r\n\r\n" + body;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ServiceRequest read = ServiceRequest.read(
+				new ByteArrayInputStream(request.getBytes(StandardCharsets.UTF_8)), out);
+		assertEquals("POST", read.getMethod());
+		assertEquals("/diff", read.getPath());
+		assertEquals("repo", read.getString("repository"));
+		assertEquals("application/json", read.getHeader("content-type"));
+		assertEquals("localhost", read.getHeader("HOST"));
+		assertNull(read.getHeader("Origin"));
+		assertNull(read.getString("setup"));
+		assertEquals(Arrays.asList(), read.getStrings("args"));
+		assertEquals("HTTP/1.1 100 Continue\r\n\r\n", out.toString("US-ASCII"));
+
+		try {
+			read.getStrings("repository");
+			fail("The repository is not an array");
+		} catch (ProtocolException e) {
+			// Expected
+		}
+		assertNull(ServiceRequest.read(new ByteArrayInputStream(new byte[0]), out));
+	}
+
+	@Test
+	public void testStreamsCommand() throws Exception {
+		startService((endpoint, gitDir, setup, args) -> {
+			System.out.println(endpoint + " of " + gitDir.getName() + " " + args);
+			new Thread(() -> System.err.println("from a thread of the command")).start();
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return Returns.ABORTED.code();
+		});
+
+		HttpURLConnection connection = post("/diff", "{\"repository\":\"" + json(tmpFolder.resolve("repo"))
+				+ "\",\"args\":[\"HEAD\"]}");
+		assertEquals(200, connection.getResponseCode());
+		try (BufferedReader reader = reader(connection)) {
+			String gitDir = git.getRepository().getDirectory().getCanonicalPath();
+			assertEquals("{\"event\":\"queued\",\"repository\":\"" + json(gitDir) + "\",\"position\":0}",
+					reader.readLine());
+			assertEquals("{\"event\":\"start\",\"command\":\"diff\"}", reader.readLine());
+			assertEquals("{\"event\":\"output\",\"stream\":\"stdout\",\"line\":\"diff of .git [HEAD]\"}",
+					reader.readLine());
+			assertEquals("{\"event\":\"output\",\"stream\":\"stderr\","
+					+ "\"line\":\"from a thread of the command\"}", reader.readLine());
+			assertEquals("{\"event\":\"exit\",\"code\":" + Returns.ABORTED.code() + "}", reader.readLine());
+			assertNull(reader.readLine());
+		}
+	}
+
+	@Test
+	public void testQueuesRequestsOfRepository() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		startService((endpoint, gitDir, setup, args) -> {
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return Returns.COMPLETE.code();
+		});
+
+		String body = "{\"repository\":\"" + json(git.getRepository().getDirectory()) + "\"}";
+		HttpURLConnection first = post("/merge", body);
+		HttpURLConnection second = post("/rebase", body);
+		try (BufferedReader firstReader = reader(first); BufferedReader secondReader = reader(second)) {
+			assertEquals(true, firstReader.readLine().endsWith("\"position\":0}"));
+			assertEquals(true, secondReader.readLine().endsWith("\"position\":1}"));
+			release.countDown();
+			assertEquals("{\"event\":\"exit\",\"code\":0}", lastLine(firstReader));
+			assertEquals("{\"event\":\"exit\",\"code\":0}", lastLine(secondReader));
+		}
+	}
+
+	@Test
+	public void testBadRequests() throws Exception {
+		startService((endpoint, gitDir, setup, args) -> Returns.COMPLETE.code());
+
+		assertEquals(404, post("/log", "{}").getResponseCode());
+		assertEquals(400, post("/diff", "{}").getResponseCode());
+		assertEquals(400, post("/diff", "{\"repository\":\"" + json(tmpFolder) + "\"}").getResponseCode());
+		assertEquals(400, post("/diff", "{\"repository\":\"" + json(tmpFolder.resolve("repo"))
+				+ "\",\"setup\":\"missing.setup\"}").getResponseCode());
+		assertEquals(400, post("/diff", "[]").getResponseCode());
+		assertEquals(400, post("/diff", "{\"repository\":\"" + json(tmpFolder.resolve("repo"))
+				+ "\",\"args\":[\"--git-dir\", \"" + json(tmpFolder) + "\"]}").getResponseCode());
+		assertEquals(400, post("/diff", "{\"repository\":\"" + json(tmpFolder.resolve("repo"))
+				+ "\",\"args\":[\"--git-dir=" + json(tmpFolder) + "\"]}").getResponseCode());
+
+		HttpURLConnection status = (HttpURLConnection)new URL("http://localhost:" + service.getPort()
+				+ "/status").openConnection();
+		status.setRequestProperty("Authorization", "Bearer " + token);
+		assertEquals(200, status.getResponseCode());
+	}
+
+	@Test
+	public void testStateFile() throws Exception {
+		startService((endpoint, gitDir, setup, args) -> Returns.COMPLETE.code());
+
+		String[] portAndToken = new String(Files.readAllBytes(stateFile.toPath()), StandardCharsets.UTF_8)
+				.split(" ");
+		assertEquals(2, portAndToken.length);
+		assertEquals(String.valueOf(service.getPort()), portAndToken[0]);
+		if (stateFile.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+			assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(stateFile
+					.toPath())));
+		}
+
+		service.close();
+		assertFalse(stateFile.exists());
+	}
+
+	@Test
+	public void testRejectsUnauthorizedRequests() throws Exception {
+		startService((endpoint, gitDir, setup, args) -> Returns.COMPLETE.code());
+		String body = "{\"repository\":\"" + json(tmpFolder.resolve("repo")) + "\"}";
+
+		// No token
+		HttpURLConnection connection = (HttpURLConnection)new URL("http://localhost:" + service.getPort()
+				+ "/status").openConnection();
+		assertEquals(401, connection.getResponseCode());
+		assertEquals("Bearer", connection.getHeaderField("WWW-Authenticate"));
+		// Wrong token
+		token = token + "x";
+		assertEquals(401, post("/diff", body).getResponseCode());
+	}
+
+	@Test
+	public void testRejectsForeignHostsAndOrigins() throws Exception {
+		startService((endpoint, gitDir, setup, args) -> Returns.COMPLETE.code());
+		String authorization = "Authorization: Bearer " + token + "\r\n";
+
+		// A page of another site sending a request to the service
+		assertEquals("HTTP/1.1 403 Forbidden", statusLine("GET /status HTTP/1.1\r\nHost: localhost\r\n"
+				+ "Origin: http://example.com\r\n" + authorization + "\r\n"));
+		assertEquals("HTTP/1.1 403 Forbidden", statusLine("GET /status HTTP/1.1\r\nHost: localhost\r\n"
+				+ "Origin: null\r\n" + authorization + "\r\n"));
+		assertEquals("HTTP/1.1 200 OK", statusLine("GET /status HTTP/1.1\r\nHost: localhost\r\n"
+				+ "Origin: http://127.0.0.1:" + service.getPort() + "\r\n" + authorization + "\r\n"));
+
+		// A host name rebound to the loopback interface
+		assertEquals("HTTP/1.1 403 Forbidden", statusLine("GET /status HTTP/1.1\r\nHost: example.com:"
+				+ service.getPort() + "\r\n" + authorization + "\r\n"));
+		assertEquals("HTTP/1.1 403 Forbidden", statusLine("GET /status HTTP/1.1\r\n" + authorization
+				+ "\r\n"));
+		assertEquals("HTTP/1.1 200 OK", statusLine("GET /status HTTP/1.1\r\nHost: [::1]:" + service.getPort()
+				+ "\r\n" + authorization + "\r\n"));
+	}
+
+	@Test
+	public void testRejectsOtherMediaTypes() throws Exception {
+		startService((endpoint, gitDir, setup, args) -> Returns.COMPLETE.code());
+		String body = "{\"repository\":\"" + json(tmpFolder.resolve("repo")) + "\"}";
+
+		// A simple cross-site request is sent as text/plain without preflight
+		assertEquals(415, send(connect("/diff", body, "text/plain"), body).getResponseCode());
+		assertEquals(415, send(connect("/diff", body, null), body).getResponseCode());
+	}
+
+	@Test
+	public void testScopesMetricsByRequest() throws Exception {
+		startService((endpoint, gitDir, setup, args) -> {
+			Metrics.recordLookup(Cache.STAT, true);
+			Thread thread = new Thread(() -> Metrics.recordLookup(Cache.STAT, true));
+			thread.start();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			System.out.println(Metrics.getHitCount(Cache.STAT));
+			return Returns.COMPLETE.code();
+		});
+
+		long hits = Metrics.getHitCount(Cache.STAT);
+		String body = "{\"repository\":\"" + json(tmpFolder.resolve("repo")) + "\"}";
+		for (int i = 0; i < 2; i++) {
+			try (BufferedReader reader = reader(post("/diff", body))) {
+				reader.readLine();
+				reader.readLine();
+				assertEquals("{\"event\":\"output\",\"stream\":\"stdout\",\"line\":\"2\"}",
+						reader.readLine());
+			}
+		}
+		assertEquals(hits, Metrics.getHitCount(Cache.STAT));
+	}
+
+	private void startService(LogicalService.RequestHandler handler) throws Exception {
+		service = LogicalService.open(0, stateFile, setupFile);
+		token = new String(Files.readAllBytes(stateFile.toPath()), StandardCharsets.UTF_8).split(" ")[1];
+		executor.submit(() -> {
+			service.serve(handler);
+			return null;
+		});
+	}
+
+	private HttpURLConnection post(String path, String body) throws Exception {
+		return send(connect(path, body, "application/json"), body);
+	}
+
+	private HttpURLConnection connect(String path, String body, String contentType) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection)new URL("http://localhost:" + service.getPort()
+				+ path).openConnection();
+		connection.setRequestProperty("Authorization", "Bearer " + token);
+		if (body != null) {
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+		}
+		if (contentType != null) {
+			connection.setRequestProperty("Content-Type", contentType);
+		}
+		return connection;
+	}
+
+	private static HttpURLConnection send(HttpURLConnection connection, String body) throws Exception {
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		return connection;
+	}
+
+	private String statusLine(String request) throws Exception {
+		try (Socket socket = new Socket(InetAddress.getByName(null), service.getPort())) {
+			socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+			socket.getOutputStream().flush();
+			return new BufferedReader(new InputStreamReader(socket.getInputStream(),
+					StandardCharsets.US_ASCII)).readLine();
+		}
+	}
+
+	private static BufferedReader reader(HttpURLConnection connection) throws Exception {
+		return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+	}
+
+	private static String lastLine(BufferedReader reader) throws Exception {
+		String last = null;
+		String line = reader.readLine();
+		while (line != null) {
+			last = line;
+			line = reader.readLine();
+		}
+		return last;
+	}
+
+	private static String json(Object path) {
+		return path.toString().replace("\\", "\\\\");
+	}
+
+	private static void assertInvalid(String json) {
+		try {
+			ServiceRequest.parseObject(json);
+			fail(json + " should be invalid");
+		} catch (ProtocolException e) {
+			// Expected
+		}
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
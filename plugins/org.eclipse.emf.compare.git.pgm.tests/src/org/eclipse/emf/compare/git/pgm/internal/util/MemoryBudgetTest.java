@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link MemoryBudget}.
+ */
+@SuppressWarnings("nls")
+public class MemoryBudgetTest {
+
+	private static final long MB = 1024 * 1024;
+
+	@Test
+	public void testLimit() {
+		long maxMemory = Runtime.getRuntime().maxMemory();
+		assertEquals(maxMemory, new MemoryBudget(1).getLimit());
+		assertEquals((long)(maxMemory * 0.5), new MemoryBudget(0.5).getLimit());
+		assertTrue(new MemoryBudget(MemoryBudget.DEFAULT_FRACTION).getUsed() > 0);
+	}
+
+	@Test
+	public void testInvalidFractions() {
+		for (double fraction : new double[] {0, -0.5, 1.5, Double.NaN }) {
+			try {
+				new MemoryBudget(fraction);
+				fail(fraction + " should be rejected");
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testIsNearLimit() {
+		assertFalse(MemoryBudget.isNearLimit(100 * MB, 0));
+		assertFalse(MemoryBudget.isNearLimit(100 * MB, 100 * MB - 1));
+		assertTrue(MemoryBudget.isNearLimit(100 * MB, 100 * MB));
+		assertTrue(MemoryBudget.isNearLimit(100 * MB, 200 * MB));
+	}
+
+	@Test
+	public void testWorkerCount() {
+		long limit = 10 * MemoryBudget.WORKER_HEAP;
+		// Enough room for all the requested workers
+		assertEquals(4, MemoryBudget.getWorkerCount(4, limit, 0));
+		assertEquals(4, MemoryBudget.getWorkerCount(4, limit, 6 * MemoryBudget.WORKER_HEAP));
+		// Bounded by what is left of the budget
+		assertEquals(3, MemoryBudget.getWorkerCount(4, limit, 7 * MemoryBudget.WORKER_HEAP));
+		assertEquals(2, MemoryBudget.getWorkerCount(4, limit, 7 * MemoryBudget.WORKER_HEAP + 1));
+		// Sequential near and above the limit
+		assertEquals(1, MemoryBudget.getWorkerCount(4, limit, 9 * MemoryBudget.WORKER_HEAP));
+		assertEquals(1, MemoryBudget.getWorkerCount(4, limit, limit));
+		assertEquals(1, MemoryBudget.getWorkerCount(4, limit, 2 * limit));
+	}
+}
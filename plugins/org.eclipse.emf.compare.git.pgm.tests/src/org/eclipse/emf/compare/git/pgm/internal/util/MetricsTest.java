@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.List;
+
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Cache;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Counter;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Sample;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link Metrics}.
+ */
+@SuppressWarnings("nls")
+public class MetricsTest {
+
+	private Path tmpFolder;
+
+	private Git git;
+
+	@Before
+	public void before() throws Exception {
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		git = Git.init().setDirectory(tmpFolder.resolve("repo").toFile()).call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		git.close();
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testSampleFormats() throws Exception {
+		Sample sample = new Sample("diffs", 3).label("phase", "a\"b").of("logicaldiff", "command");
+		assertEquals("emfcompare_diffs{command=\"logicaldiff\",process=\"command\",phase=\"a\\\"b\"} 3",
+				sample.toPrometheus());
+		assertEquals("{\"name\":\"emfcompare_diffs\",\"command\":\"logicaldiff\",\"process\":\"command\","
+				+ "\"phase\":\"a\\\"b\",\"value\":3}", sample.toJson());
+
+		Sample ratio = new Sample("cache_hit_ratio", 0.25);
+		assertEquals("emfcompare_cache_hit_ratio 0.25", ratio.toPrometheus());
+		assertEquals("{\"name\":\"emfcompare_cache_hit_ratio\",\"value\":0.25}", ratio.toJson());
+	}
+
+	@Test
+	public void testNotConfigured() throws Exception {
+		assertNull(Metrics.forRepository(git.getRepository(), "logicaldiff"));
+	}
+
+	@Test
+	public void testMergesApplicationPart() throws Exception {
+		File directory = tmpFolder.resolve("metrics").toFile();
+		configure(directory.getAbsolutePath(), null);
+
+		Metrics metrics = Metrics.forRepository(git.getRepository(), "logicaldiff");
+		assertSame(metrics, Metrics.getCurrent());
+		File part = metrics.newPart();
+
+		// The launched application records to its part
+		Metrics application = Metrics.forPart(part);
+		Metrics.add(Counter.FILES_DIFFED, 2);
+		Phase.COMPARE.begin("model.ecore").end();
+		application.write(0);
+		assertTrue(part.isFile());
+
+		metrics.write(1);
+		assertNull(Metrics.getCurrent());
+		assertFalse(part.exists());
+		List<String> lines = Files.readAllLines(new File(directory, "emfcompare_logicaldiff.prom").toPath(),
+				StandardCharsets.UTF_8);
+		assertEquals("# HELP emfcompare_run_duration_seconds Duration of the run.", lines.get(0));
+		assertEquals("# TYPE emfcompare_run_duration_seconds gauge", lines.get(1));
+		assertTrue(lines.contains("emfcompare_run_exit_code{command=\"logicaldiff\",process=\"command\"} 1"));
+		assertTrue(lines.contains(
+				"emfcompare_run_exit_code{command=\"logicaldiff\",process=\"application\"} 0"));
+		assertTrue(lines.contains(
+				"# HELP emfcompare_phase_occurrences Number of occurrences of a phase."));
+		assertTrue(hasSample(lines, "emfcompare_phase_duration_seconds{command=\"logicaldiff\","
+				+ "process=\"application\",phase=\"compare\"}"));
+		assertTrue(hasSample(lines, "emfcompare_files_diffed{command=\"logicaldiff\","
+				+ "process=\"application\"}"));
+		// The peak of the heap is the one of the whole JVM
+		assertTrue(hasSample(lines, "emfcompare_heap_peak_bytes{command=\"logicaldiff\","
+				+ "process=\"command\",scope=\"jvm\"}"));
+		assertFalse(new File(directory, "emfcompare_logicaldiff.prom.tmp").exists());
+	}
+
+	@Test
+	public void testJsonFormat() throws Exception {
+		configure("metrics", Metrics.JSON);
+
+		Metrics metrics = Metrics.forRepository(git.getRepository(), "logicalmerge");
+		metrics.write(0);
+
+		// Relative directories are resolved from the .git folder
+		File file = new File(git.getRepository().getDirectory(), "metrics/emfcompare_logicalmerge.json");
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertTrue(lines.get(0).startsWith("{\"name\":\"emfcompare_run_duration_seconds\","
+				+ "\"command\":\"logicalmerge\",\"process\":\"command\",\"value\":"));
+		assertTrue(lines.contains("{\"name\":\"emfcompare_run_exit_code\",\"command\":\"logicalmerge\","
+				+ "\"process\":\"command\",\"value\":0}"));
+	}
+
+	@Test
+	public void testScopes() throws Exception {
+		configure(tmpFolder.resolve("metrics").toFile().getAbsolutePath(), null);
+		long hits = Metrics.getHitCount(Cache.BINARY);
+		Metrics metrics = Metrics.forRepository(git.getRepository(), "logicaldiff");
+
+		Metrics.Scope scope = Metrics.scope();
+		try {
+			assertEquals(0, Metrics.getHitCount(Cache.BINARY));
+			assertNull(Metrics.getCurrent());
+			Metrics.recordLookup(Cache.BINARY, true);
+			Thread thread = new Thread(() -> Metrics.recordLookup(Cache.BINARY, true));
+			thread.start();
+			thread.join();
+			assertEquals(2, Metrics.getHitCount(Cache.BINARY));
+		} finally {
+			scope.close();
+		}
+
+		assertEquals(hits, Metrics.getHitCount(Cache.BINARY));
+		assertSame(metrics, Metrics.getCurrent());
+		metrics.write(0);
+	}
+
+	private void configure(String directory, String format) throws Exception {
+		StoredConfig config = git.getRepository().getConfig();
+		config.setString(BinaryResourceCache.CONFIG_SECTION, null, Metrics.CONFIG_DIRECTORY, directory);
+		if (format != null) {
+			config.setString(BinaryResourceCache.CONFIG_SECTION, null, Metrics.CONFIG_FORMAT, format);
+		}
+		config.save();
+	}
+
+	private static boolean hasSample(List<String> lines, String prefix) {
+		for (String line : lines) {
+			if (line.startsWith(prefix + ' ')) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.AttributeChange;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.Diff;
+import org.eclipse.emf.compare.EMFCompare;
+import org.eclipse.emf.compare.Match;
+import org.eclipse.emf.compare.ReferenceChange;
+import org.eclipse.emf.compare.scope.DefaultComparisonScope;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ParallelDiffEngine}.
+ */
+@SuppressWarnings("nls")
+public class ParallelDiffEngineTest {
+
+	private static final int THREADS = 4;
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void before() throws Exception {
+		pool = new ForkJoinPool(THREADS);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void testSameDifferencesAsSequential() throws Exception {
+		Comparison sequential = EMFCompare.builder().build().compare(createScope());
+		Comparison parallel = EMFCompare.builder().setDiffEngine(new ParallelDiffEngine(pool, THREADS))
+				.build().compare(createScope());
+
+		List<String> expected = describe(sequential);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, describe(parallel));
+		assertEquals(sequential.getEquivalences().size(), parallel.getEquivalences().size());
+	}
+
+	@Test
+	public void testSameConflictsAsSequential() throws Exception {
+		Comparison sequential = EMFCompare.builder().build().compare(createThreeWayScope());
+		Comparison parallel = EMFCompare.builder().setDiffEngine(new ParallelDiffEngine(pool, THREADS))
+				.build().compare(createThreeWayScope());
+
+		assertEquals(describe(sequential), describe(parallel));
+		assertFalse(sequential.getConflicts().isEmpty());
+		assertEquals(sequential.getConflicts().size(), parallel.getConflicts().size());
+	}
+
+	private static DefaultComparisonScope createScope() {
+		return new DefaultComparisonScope(createModel(0), createModel(1), null);
+	}
+
+	private static DefaultComparisonScope createThreeWayScope() {
+		return new DefaultComparisonScope(createModel(1), createModel(2), createModel(0));
+	}
+
+	/**
+	 * Creates a model of packages of classes, which names and attributes depend on the revision.
+	 */
+	private static ResourceSet createModel(int revision) {
+		EPackage root = EcoreFactory.eINSTANCE.createEPackage();
+		root.setName("root");
+		for (int p = 0; p < 10; p++) {
+			EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+			ePackage.setName("p" + p);
+			for (int c = 0; c < 20; c++) {
+				EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+				eClass.setName("C" + p + "_" + c);
+				if (revision > 0 && c % 7 == p % 3) {
+					eClass.setAbstract(true);
+				}
+				if (revision > 1 && c % 5 == 0) {
+					eClass.setInterface(true);
+					eClass.setAbstract(c % 2 == 0);
+				}
+				for (int a = 0; a < 3; a++) {
+					EAttribute attribute = EcoreFactory.eINSTANCE.createEAttribute();
+					attribute.setName("a" + a);
+					if (revision > 0 && (c + a) % 11 == 0) {
+						attribute.setName("renamed" + a);
+					}
+					attribute.setEType(EcorePackage.Literals.ESTRING);
+					eClass.getEStructuralFeatures().add(attribute);
+				}
+				if (revision == 0 || c % 13 != 1) {
+					ePackage.getEClassifiers().add(eClass);
+				}
+			}
+			root.getESubpackages().add(ePackage);
+		}
+		ResourceSet resourceSet = new ResourceSetImpl();
+		Resource resource = new ResourceImpl(URI.createURI("model.ecore"));
+		resource.getContents().add(root);
+		resourceSet.getResources().add(resource);
+		return resourceSet;
+	}
+
+	private static List<String> describe(Comparison comparison) {
+		List<String> descriptions = new ArrayList<String>();
+		for (Diff diff : comparison.getDifferences()) {
+			StringBuilder description = new StringBuilder();
+			description.append(diff.getKind()).append(' ').append(diff.getSource()).append(' ');
+			description.append(describe(diff.getMatch())).append(' ');
+			if (diff instanceof ReferenceChange) {
+				ReferenceChange change = (ReferenceChange)diff;
+				description.append(change.getReference().getName()).append(' ');
+				description.append(describe(comparison.getMatch(change.getValue())));
+			} else if (diff instanceof AttributeChange) {
+				AttributeChange change = (AttributeChange)diff;
+				description.append(change.getAttribute().getName()).append(' ').append(change.getValue());
+			}
+			description.append(' ').append(diff.getRequires().size());
+			descriptions.add(description.toString());
+		}
+		return descriptions;
+	}
+
+	private static String describe(Match match) {
+		if (match == null) {
+			return "null";
+		}
+		EObject object = match.getLeft();
+		if (object == null) {
+			object = match.getRight();
+		}
+		if (object == null) {
+			object = match.getOrigin();
+		}
+		return object.eResource().getURIFragment(object);
+	}
+}
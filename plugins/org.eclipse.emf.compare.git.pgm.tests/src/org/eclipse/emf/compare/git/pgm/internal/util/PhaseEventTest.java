@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link PhaseEvent}.
+ */
+@SuppressWarnings("nls")
+public class PhaseEventTest {
+
+	@Test
+	public void testEndRecordsOnce() throws Exception {
+		long count = Metrics.getPhaseCount(Phase.SERIALIZE);
+		PhaseEvent event = Phase.SERIALIZE.begin("model.ecore");
+		assertEquals(count, Metrics.getPhaseCount(Phase.SERIALIZE));
+
+		event.end();
+		assertEquals(count + 1, Metrics.getPhaseCount(Phase.SERIALIZE));
+		event.end();
+		assertEquals(count + 1, Metrics.getPhaseCount(Phase.SERIALIZE));
+	}
+
+	@Test
+	public void testWithoutDetail() throws Exception {
+		long count = Metrics.getPhaseCount(Phase.COMPARE);
+		Phase.COMPARE.begin(null).end();
+		assertEquals(count + 1, Metrics.getPhaseCount(Phase.COMPARE));
+	}
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link Phase}.
+ */
+@SuppressWarnings("nls")
+public class PhaseTest {
+
+	@Test
+	public void testLabelsAndDescriptions() throws Exception {
+		Set<String> labels = new HashSet<String>();
+		Set<String> eventNames = new HashSet<String>();
+		for (Phase phase : Phase.values()) {
+			assertFalse(phase.name(), phase.getLabel().isEmpty());
+			assertFalse(phase.name(), phase.getDescription().isEmpty());
+			assertTrue(phase.getLabel(), labels.add(phase.getLabel()));
+			// The name of the flight recorder event type is the label without spaces
+			assertTrue(phase.getLabel(), eventNames.add(phase.getLabel().replace(" ", "")));
+		}
+	}
+
+	@Test
+	public void testBegin() throws Exception {
+		for (Phase phase : Phase.values()) {
+			PhaseEvent event = phase.begin("detail");
+			try {
+				assertSame(phase, event.getPhase());
+			} finally {
+				event.end();
+			}
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Strings;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link RevisionModelLoader}.
+ */
+@SuppressWarnings("nls")
+public class RevisionModelLoaderTest {
+
+	private Path tmpFolder;
+
+	private Git git;
+
+	private RevisionModelLoader loader;
+
+	@Before
+	public void before() throws Exception {
+		Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().putIfAbsent("ecore",
+				new EcoreResourceFactoryImpl());
+		tmpFolder = Files.createTempDirectory("emfcompare-git-pgm", new FileAttribute<?>[] {});
+		git = Git.init().setDirectory(tmpFolder.toFile()).call();
+		loader = new RevisionModelLoader(git.getRepository());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		git.close();
+		deleteRecursively(tmpFolder.toFile());
+	}
+
+	@Test
+	public void testGetURI() throws Exception {
+		// The repository holds no project of the workspace
+		assertEquals(URI.createFileURI(new File(tmpFolder.toFile(), "p/a.ecore").getAbsolutePath()), loader
+				.getURI("p/a.ecore"));
+	}
+
+	@Test
+	public void testLoadsRevisionWithReferences() throws Exception {
+		write("p/a.ecore", ecore("a", "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"A\""
+				+ " eSuperTypes=\"b.ecore#//B\"/>\n"), StandardCharsets.UTF_8);
+		write("p/b.ecore", ecore("b", "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"B\"/>\n"),
+				StandardCharsets.UTF_8);
+		RevCommit first = commit("First");
+		write("p/b.ecore", ecore("b", "  <eClassifiers xsi:type=\"ecore:EClass\" name=\"Renamed\"/>\n"),
+				StandardCharsets.UTF_8);
+		commit("Second");
+
+		ResourceSet resourceSet = loader.load(first, Arrays.asList("p/a.ecore"));
+		try {
+			EClass a = (EClass)((EPackage)resourceSet.getResources().get(0).getContents().get(0))
+					.getEClassifiers().get(0);
+			// The referenced resource is read from the same revision, not from the work tree
+			EClass b = a.getESuperTypes().get(0);
+			assertFalse(b.eIsProxy());
+			assertEquals("B", b.getName());
+			assertEquals(loader.getURI("p/b.ecore"), b.eResource().getURI());
+		} finally {
+			RevisionModelLoader.unload(resourceSet);
+		}
+		assertTrue(resourceSet.getResources().isEmpty());
+	}
+
+	@Test
+	public void testSaveOptions() throws Exception {
+		String longLine = "  <!-- " + Strings.repeat("x", 10000) + " -->";
+		write("crlf.ecore", ecore("crlf", longLine + "\n").replace("\n", "\r\n"), StandardCharsets.UTF_8);
+		write("lf.ecore", ecore("lf", "").replace("UTF-8", "ISO-8859-1"), StandardCharsets.ISO_8859_1);
+		write("single.ecore", ecore("single", "").replace("\n", ""), StandardCharsets.UTF_8);
+		RevCommit commit = commit("Commit");
+		GitTreeURIHandler handler = new GitTreeURIHandler(git.getRepository(), commit.getTree());
+
+		ResourceSet resourceSet = loader.load(commit, Arrays.asList("crlf.ecore", "lf.ecore",
+				"single.ecore"));
+		try (ObjectReader reader = git.getRepository().newObjectReader()) {
+			Map<Object, Object> options = getSaveOptions(resourceSet, handler, "crlf.ecore", reader);
+			assertEquals("\r\n", options.get(Resource.OPTION_LINE_DELIMITER));
+			assertEquals("UTF-8", options.get(XMLResource.OPTION_ENCODING));
+
+			options = getSaveOptions(resourceSet, handler, "lf.ecore", reader);
+			assertEquals("\n", options.get(Resource.OPTION_LINE_DELIMITER));
+			assertEquals("ISO-8859-1", options.get(XMLResource.OPTION_ENCODING));
+
+			options = getSaveOptions(resourceSet, handler, "single.ecore", reader);
+			assertFalse(options.containsKey(Resource.OPTION_LINE_DELIMITER));
+
+			// A new resource keeps the default line delimiter
+			options = RevisionModelLoader.getSaveOptions(resourceSet.getResources().get(0), null, reader);
+			assertFalse(options.containsKey(Resource.OPTION_LINE_DELIMITER));
+		} finally {
+			RevisionModelLoader.unload(resourceSet);
+		}
+	}
+
+	private Map<Object, Object> getSaveOptions(ResourceSet resourceSet, GitTreeURIHandler handler,
+			String path, ObjectReader reader) throws Exception {
+		Resource resource = resourceSet.getResource(loader.getURI(path), false);
+		ObjectId blobId = handler.getBlobId(path);
+		return RevisionModelLoader.getSaveOptions(resource, blobId, reader);
+	}
+
+	private static String ecore(String name, String content) {
+		return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\""
+				+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+				+ " xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"" + name + "\" nsPrefix=\""
+				+ name + "\" nsURI=\"http://" + name + "\">\n" + content + "</ecore:EPackage>\n";
+	}
+
+	private void write(String path, String content, Charset charset) throws Exception {
+		File file = new File(tmpFolder.toFile(), path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(charset));
+	}
+
+	private RevCommit commit(String message) throws Exception {
+		git.add().addFilepattern(".").call();
+		return git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr")
+				.setCommitter("Logical test author", "logicaltest@obeo.fr").setMessage(message).call();
+	}
+
+	private void deleteRecursively(File f) {
+		if (f.isDirectory()) {
+			for (File content : f.listFiles()) {
+				deleteRecursively(content);
+			}
+		}
+		f.delete();
+	}
+}
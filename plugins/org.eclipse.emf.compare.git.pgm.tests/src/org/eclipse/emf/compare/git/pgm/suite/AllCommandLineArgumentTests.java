@@ -15,9 +15,12 @@ import junit.framework.Test;
 import junit.textui.TestRunner;
 
 import org.eclipse.emf.compare.git.pgm.LogicalAppTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.BlameArgumentsTest;
 import org.eclipse.emf.compare.git.pgm.internal.cmd.CherryPickArgumentsTest;
 import org.eclipse.emf.compare.git.pgm.internal.cmd.DiffArgumentsTest;
 import org.eclipse.emf.compare.git.pgm.internal.cmd.MergeArgumentsTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.LogArgumentsTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.MergeDriverArgumentsTest;
 import org.eclipse.emf.compare.git.pgm.internal.cmd.MergeToolArgumentsTest;
 import org.eclipse.emf.compare.git.pgm.internal.cmd.PullArgumentsTest;
 import org.eclipse.emf.compare.git.pgm.internal.cmd.RebaseArgumentsTest;
@@ -31,7 +34,8 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({LogicalAppTest.class, MergeArgumentsTest.class, MergeToolArgumentsTest.class,
 		DiffArgumentsTest.class, CherryPickArgumentsTest.class, RebaseArgumentsTest.class,
-		PullArgumentsTest.class })
+		PullArgumentsTest.class, MergeDriverArgumentsTest.class, LogArgumentsTest.class,
+		BlameArgumentsTest.class })
 public class AllCommandLineArgumentTests {
 
 	public static void main(String[] args) {
@@ -14,9 +14,12 @@ import junit.framework.JUnit4TestAdapter;
 import junit.framework.Test;
 import junit.textui.TestRunner;
 
+import org.eclipse.emf.compare.git.pgm.internal.app.BlameApplicationTest;
 import org.eclipse.emf.compare.git.pgm.internal.app.CherryPickApplicationTest;
 import org.eclipse.emf.compare.git.pgm.internal.app.DiffApplicationTest;
+import org.eclipse.emf.compare.git.pgm.internal.app.LogApplicationTest;
 import org.eclipse.emf.compare.git.pgm.internal.app.MergeApplicationTest;
+import org.eclipse.emf.compare.git.pgm.internal.app.MergeDriverApplicationTest;
 import org.eclipse.emf.compare.git.pgm.internal.app.PullApplicationTest;
 import org.eclipse.emf.compare.git.pgm.internal.app.RebaseApplicationTest;
 import org.junit.runner.RunWith;
@@ -28,7 +31,8 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({MergeApplicationTest.class, DiffApplicationTest.class, CherryPickApplicationTest.class,
-		RebaseApplicationTest.class, PullApplicationTest.class })
+		RebaseApplicationTest.class, PullApplicationTest.class, MergeDriverApplicationTest.class,
+		LogApplicationTest.class, BlameApplicationTest.class })
 public class AllLogicalApplicationTests {
 
 	public static void main(String[] args) {
@@ -14,6 +14,25 @@ import junit.framework.JUnit4TestAdapter;
 import junit.framework.Test;
 import junit.textui.TestRunner;
 
+import org.eclipse.emf.compare.git.pgm.internal.ProgressPageLogTest;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCacheTest;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ComparisonCacheTest;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndexTest;
+import org.eclipse.emf.compare.git.pgm.internal.cache.StatCacheTest;
+import org.eclipse.emf.compare.git.pgm.internal.merge.IncrementalRebaseTest;
+import org.eclipse.emf.compare.git.pgm.internal.merge.ModelFileMergerTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.BlobIdResourceMinimizerTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.CommandSessionTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.FlightRecordingTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitTreeURIHandlerTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.IdenticalSubtreeFilterTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalServiceTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.MemoryBudgetTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.MetricsTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.ParallelDiffEngineTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.PhaseEventTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.PhaseTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoaderTest;
 import org.eclipse.emf.compare.git.pgm.internal.util.UtilTests;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -23,7 +42,13 @@ import org.junit.runners.Suite.SuiteClasses;
  * @author <a href="mailto:axel.richard@obeo.fr">Axel Richard</a>
  */
 @RunWith(Suite.class)
-@SuiteClasses({UtilTests.class })
+@SuiteClasses({UtilTests.class, ModelDependencyIndexTest.class, BinaryResourceCacheTest.class,
+		CommandSessionTest.class, StatCacheTest.class, ComparisonCacheTest.class,
+		IdenticalSubtreeFilterTest.class, ParallelDiffEngineTest.class, ProgressPageLogTest.class,
+		MetricsTest.class, LogicalServiceTest.class, ModelFileMergerTest.class, PhaseTest.class,
+		PhaseEventTest.class, FlightRecordingTest.class, BlobIdResourceMinimizerTest.class,
+		GitTreeURIHandlerTest.class, RevisionModelLoaderTest.class, MemoryBudgetTest.class,
+		IncrementalRebaseTest.class })
 public class AllUtilTests {
 
 	public static void main(String[] args) {
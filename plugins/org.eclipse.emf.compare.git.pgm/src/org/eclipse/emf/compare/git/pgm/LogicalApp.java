@@ -128,16 +128,39 @@ public class LogicalApp implements IApplication {
 			} else {
 				showStackTrace = false;
 			}
-			return EMFCompareGitPGMUtil.handleDieError(error, showStackTrace);
+			returnCode = EMFCompareGitPGMUtil.handleDieError(error, showStackTrace);
+			writeMetrics(returnCode);
+			return returnCode;
 		}
 
 		if (System.out.checkError() || System.err.checkError()) {
 			System.out.println("Unknown error");
 			returnCode = ERROR;
 		}
+		writeMetrics(returnCode);
 		return returnCode;
 	}
 
+	/**
+	 * Writes the metrics of the command, if they have been configured.
+	 * 
+	 * @param returnCode
+	 *            the return code of the command.
+	 */
+	private void writeMetrics(Object returnCode) {
+		if (logicalCommand != null) {
+			final Integer exitCode;
+			if (returnCode instanceof Returns) {
+				exitCode = ((Returns)returnCode).code();
+			} else if (returnCode instanceof Integer) {
+				exitCode = (Integer)returnCode;
+			} else {
+				exitCode = ERROR.code();
+			}
+			logicalCommand.writeMetrics(exitCode.intValue());
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -185,14 +208,17 @@ public class LogicalApp implements IApplication {
 			throw new DiesOn(FATAL).displaying(out.toString()).ready();
 		}
 
-		logicalCommand.build(arguments, environmentSetupURI);
-
 		Object returnCode;
 		try {
-			// Do not catch exception but flush what was currently writing the command
-			returnCode = logicalCommand.execute();
+			logicalCommand.build(arguments, environmentSetupURI);
+			try {
+				// Do not catch exception but flush what was currently writing the command
+				returnCode = logicalCommand.execute();
+			} finally {
+				logicalCommand.flushOutW();
+			}
 		} finally {
-			logicalCommand.flushOutW();
+			logicalCommand.stopFlightRecording();
 		}
 		return returnCode;
 	}
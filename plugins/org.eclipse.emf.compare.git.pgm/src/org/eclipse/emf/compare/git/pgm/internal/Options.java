@@ -26,6 +26,18 @@ public final class Options {
 	/** Apply the command on a specific git repository. */
 	public static final String GIT_DIR_OPT = "--git-dir"; //$NON-NLS-1$
 
+	/** Validate the command and predict its result without launching it. */
+	public static final String DRY_RUN_OPT = "--dry-run"; //$NON-NLS-1$
+
+	/** Write the events of the setup tasks to a file. */
+	public static final String PROGRESS_LOG_OPT = "--progress-log"; //$NON-NLS-1$
+
+	/** Record the run with Java Flight Recorder. */
+	public static final String JFR_OPT = "--jfr"; //$NON-NLS-1$
+
+	/** Write the metrics of a launched application to a part of the metrics of the command. */
+	public static final String METRICS_PART_OPT = "--metrics-part"; //$NON-NLS-1$
+
 	/**
 	 * Internal constructor.
 	 */
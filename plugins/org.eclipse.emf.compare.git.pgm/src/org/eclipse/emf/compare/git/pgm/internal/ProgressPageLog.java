@@ -10,23 +10,67 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.emf.compare.git.pgm.internal.util.JsonLine;
 import org.eclipse.oomph.setup.SetupTask;
 import org.eclipse.oomph.setup.log.ProgressLog;
 import org.eclipse.oomph.util.OomphPlugin;
 
 /**
  * Specific {@link ProgressLog}.
+ * <p>
+ * Besides printing the log lines, it times each setup task and counts its warnings, errors and downloaded
+ * bytes. If an event stream is given, each task start and end, each log line and, once terminating, the
+ * summary of each type of task are written to it as JSON lines. The summary is then also printed.
+ * </p>
  * 
  * @author <a href="mailto:axel.richard@obeo.fr">Axel Richard</a>
  */
 public class ProgressPageLog implements ProgressLog {
 
+	/**
+	 * Pattern of the p2 progress of a download: the artifact, then either the downloaded size or the
+	 * downloaded and total sizes.
+	 */
+	private static final Pattern DOWNLOAD_PATTERN = Pattern.compile("Fetching (\\S+) from " //$NON-NLS-1$
+			+ ".*?\\((?:[\\d.,]+\\s*[kKMG]?B of )?([\\d.,]+)\\s*([kKMG]?B)"); //$NON-NLS-1$
+
+	/** Pattern of a number which digits are grouped by three with commas, such as 1,234. */
+	private static final Pattern GROUPED_PATTERN = Pattern.compile("\\d{1,3}(?:,\\d{3})+"); //$NON-NLS-1$
+
+	/** Number of bytes in a kilobyte. */
+	private static final long KILO = 1024;
+
 	/** The print stream where to log. */
 	private final PrintStream out;
 
+	/** The print stream where to write the events, may be <code>null</code>. */
+	private final PrintStream events;
+
+	/** Records of the tasks performed so far, in the order they have started. */
+	private final List<TaskRecord> records = new ArrayList<TaskRecord>();
+
+	/** Record of the task being performed, may be <code>null</code>. */
+	private TaskRecord current;
+
+	/** Whether the summary has been written. */
+	private boolean terminated;
+
 	/**
 	 * Constructor.
 	 * 
@@ -34,8 +78,43 @@ public class ProgressPageLog implements ProgressLog {
 	 *            the print stream where to log.
 	 */
 	public ProgressPageLog(PrintStream out) {
+		this(out, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out
+	 *            the print stream where to log.
+	 * @param events
+	 *            the print stream where to write the events as JSON lines, may be <code>null</code>. It is
+	 *            closed once terminating.
+	 */
+	public ProgressPageLog(PrintStream out, PrintStream events) {
 		super();
 		this.out = out;
+		this.events = events;
+	}
+
+	/**
+	 * Creates a log writing its events to a file.
+	 *
+	 * @param out
+	 *            the print stream where to log.
+	 * @param eventFile
+	 *            the file where to write the events, may be <code>null</code>.
+	 * @param append
+	 *            <code>true</code> to append the events to the file, <code>false</code> to overwrite it.
+	 * @return the log.
+	 * @throws IOException
+	 *             if the file can not be opened.
+	 */
+	public static ProgressPageLog create(PrintStream out, File eventFile, boolean append) throws IOException {
+		if (eventFile == null) {
+			return new ProgressPageLog(out);
+		}
+		return new ProgressPageLog(out, new PrintStream(new FileOutputStream(eventFile, append), true,
+				"UTF-8")); //$NON-NLS-1$
 	}
 
 	/**
@@ -49,22 +128,14 @@ public class ProgressPageLog implements ProgressLog {
 	 * {@inheritDoc}.
 	 */
 	public void log(String line) {
-		out.println(line);
+		log(line, true, Severity.INFO);
 	}
 
 	/**
 	 * {@inheritDoc}.
 	 */
 	public void log(String line, boolean filter) {
-		/*
-		 * No documentation is available on the filter parameter. However empirical tests show that filter is
-		 * set to false when logging IStatus or exceptions. In our case we do not want to show that kind of
-		 * information on the progress page log. It will be displayed later on the application is the
-		 * --show-stack-trace option is set to true.
-		 */
-		if (filter) {
-			out.println(line);
-		}
+		log(line, filter, Severity.INFO);
 	}
 
 	/**
@@ -72,7 +143,23 @@ public class ProgressPageLog implements ProgressLog {
 	 */
 	public void log(IStatus status) {
 		String string = OomphPlugin.toString(status);
-		log(string, false);
+		final Severity severity;
+		switch (status.getSeverity()) {
+			case IStatus.ERROR:
+			case IStatus.CANCEL:
+				severity = Severity.ERROR;
+				break;
+			case IStatus.WARNING:
+				severity = Severity.WARNING;
+				break;
+			case IStatus.OK:
+				severity = Severity.OK;
+				break;
+			default:
+				severity = Severity.INFO;
+				break;
+		}
+		log(string, false, severity);
 	}
 
 	/**
@@ -80,30 +167,314 @@ public class ProgressPageLog implements ProgressLog {
 	 */
 	public void log(Throwable t) {
 		String string = OomphPlugin.toString(t);
-		log(string, false);
+		log(string, false, Severity.ERROR);
 	}
 
 	/**
 	 * {@inheritDoc}.
 	 */
-	public void task(SetupTask setupTask) {
+	public void log(String line, Severity severity) {
+		log(line, true, severity);
 	}
 
 	/**
 	 * {@inheritDoc}.
 	 */
-	public void setTerminating() {
+	public synchronized void log(String line, boolean filter, Severity severity) {
+		/*
+		 * No documentation is available on the filter parameter. However empirical tests show that filter is
+		 * set to false when logging IStatus or exceptions. In our case we do not want to show that kind of
+		 * information on the progress page log. It will be displayed later on the application is the
+		 * --show-stack-trace option is set to true. The event stream still gets them.
+		 */
+		if (filter) {
+			out.println(line);
+		}
+		if (current != null) {
+			current.count(severity);
+			final Matcher matcher = DOWNLOAD_PATTERN.matcher(line);
+			if (matcher.find()) {
+				current.download(matcher.group(1), parseSize(matcher.group(2), matcher.group(3)));
+			}
+		}
+		if (events != null) {
+			final JsonLine event = new JsonLine().add("event", "log") //$NON-NLS-1$ //$NON-NLS-2$
+					.add("time", System.currentTimeMillis()); //$NON-NLS-1$
+			if (current != null) {
+				event.add("task", current.name); //$NON-NLS-1$
+			}
+			event.add("severity", severity.name()).add("hidden", !filter) //$NON-NLS-1$ //$NON-NLS-2$
+					.add("message", line); //$NON-NLS-1$
+			events.println(event);
+		}
+	}
 
+	/**
+	 * {@inheritDoc}.
+	 * <p>
+	 * Ends the task being performed, if any, and starts the given one.
+	 * </p>
+	 */
+	public synchronized void task(SetupTask setupTask) {
+		endTask();
+		if (setupTask != null) {
+			current = new TaskRecord(setupTask);
+			records.add(current);
+			if (events != null) {
+				events.println(new JsonLine().add("event", "taskStart") //$NON-NLS-1$ //$NON-NLS-2$
+						.add("time", System.currentTimeMillis()) //$NON-NLS-1$
+						.add("task", current.name).add("type", current.type)); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
 	}
 
-	public void log(String line, Severity severity) {
-		// TODO Auto-generated method stub
+	/**
+	 * {@inheritDoc}.
+	 * <p>
+	 * Ends the task being performed, if any. If an event stream has been given, writes and prints the summary
+	 * of the tasks, then closes the stream.
+	 * </p>
+	 */
+	public synchronized void setTerminating() {
+		endTask();
+		if (events != null && !terminated) {
+			terminated = true;
+			for (TaskRecord summary : summarize()) {
+				events.println(new JsonLine().add("event", "summary") //$NON-NLS-1$ //$NON-NLS-2$
+						.add("type", summary.type).add("count", summary.count) //$NON-NLS-1$ //$NON-NLS-2$
+						.add("elapsed", summary.elapsed) //$NON-NLS-1$
+						.add("bytes", summary.getBytes()) //$NON-NLS-1$
+						.add("warnings", summary.warnings) //$NON-NLS-1$
+						.add("errors", summary.errors)); //$NON-NLS-1$
+				out.println(summary.type + ": " + summary.count //$NON-NLS-1$
+						+ " task(s) in " + summary.elapsed + " ms, " //$NON-NLS-1$ //$NON-NLS-2$
+						+ summary.getBytes() + " bytes downloaded, " //$NON-NLS-1$
+						+ summary.warnings + " warning(s), " //$NON-NLS-1$
+						+ summary.errors + " error(s)"); //$NON-NLS-1$
+			}
+			events.close();
+		}
+	}
 
+	/**
+	 * Ends the task being performed, if any.
+	 */
+	private void endTask() {
+		if (current != null) {
+			current.end();
+			if (events != null) {
+				events.println(new JsonLine().add("event", "taskEnd") //$NON-NLS-1$ //$NON-NLS-2$
+						.add("time", System.currentTimeMillis()) //$NON-NLS-1$
+						.add("task", current.name).add("type", current.type) //$NON-NLS-1$ //$NON-NLS-2$
+						.add("elapsed", current.elapsed) //$NON-NLS-1$
+						.add("bytes", current.getBytes()) //$NON-NLS-1$
+						.add("warnings", current.warnings) //$NON-NLS-1$
+						.add("errors", current.errors)); //$NON-NLS-1$
+			}
+			current = null;
+		}
 	}
 
-	public void log(String line, boolean filter, Severity severity) {
-		// TODO Auto-generated method stub
+	/**
+	 * Aggregates the records of the tasks by type.
+	 *
+	 * @return a record per type of task, from the longest to the shortest.
+	 */
+	private List<TaskRecord> summarize() {
+		final Map<String, TaskRecord> byType = new LinkedHashMap<String, TaskRecord>();
+		for (TaskRecord record : records) {
+			TaskRecord summary = byType.get(record.type);
+			if (summary == null) {
+				summary = new TaskRecord(record.type, record.type);
+				summary.count = 0;
+				byType.put(record.type, summary);
+			}
+			summary.add(record);
+		}
+		final List<TaskRecord> summaries = new ArrayList<TaskRecord>(byType.values());
+		Collections.sort(summaries, new Comparator<TaskRecord>() {
+			public int compare(TaskRecord r1, TaskRecord r2) {
+				return Long.compare(r2.elapsed, r1.elapsed);
+			}
+		});
+		return summaries;
+	}
 
+	/**
+	 * Parses a size printed by p2, such as <code>1.5MB</code>, <code>1,5MB</code> or <code>1,234kB</code>.
+	 * When the number holds both a point and a comma, the last one is the decimal separator and the other
+	 * one groups the digits. A comma alone is a decimal separator unless it groups the digits by three.
+	 *
+	 * @param number
+	 *            the number, with a decimal point or comma and possibly grouping separators.
+	 * @param unit
+	 *            the unit.
+	 * @return the number of bytes, -1 if the number can not be parsed.
+	 */
+	static long parseSize(String number, String unit) {
+		final String normalized;
+		final int lastPoint = number.lastIndexOf('.');
+		final int lastComma = number.lastIndexOf(',');
+		if (lastPoint >= 0 && lastComma > lastPoint) {
+			normalized = number.replace(".", "").replace(',', '.'); //$NON-NLS-1$ //$NON-NLS-2$
+		} else if (lastPoint >= 0 || GROUPED_PATTERN.matcher(number).matches()) {
+			normalized = number.replace(",", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		} else {
+			normalized = number.replace(',', '.');
+		}
+		final double value;
+		try {
+			value = Double.parseDouble(normalized);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+		long multiplier = 1;
+		switch (Character.toUpperCase(unit.charAt(0))) {
+			case 'G':
+				multiplier = KILO * KILO * KILO;
+				break;
+			case 'M':
+				multiplier = KILO * KILO;
+				break;
+			case 'K':
+				multiplier = KILO;
+				break;
+			default:
+				break;
+		}
+		return Math.round(value * multiplier);
 	}
 
+	/**
+	 * Duration, log counts and downloads of a setup task, or of all the tasks of a type.
+	 */
+	private static final class TaskRecord {
+
+		/** Name of the task. */
+		private final String name;
+
+		/** Type of the task. */
+		private final String type;
+
+		/** Start of the task, in nanoseconds. */
+		private final long start = System.nanoTime();
+
+		/** Number of tasks. */
+		private int count = 1;
+
+		/** Duration of the task, in milliseconds. */
+		private long elapsed;
+
+		/** Number of warnings logged during the task. */
+		private int warnings;
+
+		/** Number of errors logged during the task. */
+		private int errors;
+
+		/** Downloaded bytes, by artifact. */
+		private final Map<String, Long> downloads = new HashMap<String, Long>();
+
+		/** Downloaded bytes of the aggregated tasks. */
+		private long aggregatedBytes;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param setupTask
+		 *            the task.
+		 */
+		TaskRecord(SetupTask setupTask) {
+			this(getName(setupTask), setupTask.eClass().getName());
+		}
+
+		/**
+		 * Constructor.
+		 *
+		 * @param name
+		 *            name of the task.
+		 * @param type
+		 *            type of the task.
+		 */
+		TaskRecord(String name, String type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		/**
+		 * Gets the name of a task: its ID or, if it has none, its type.
+		 *
+		 * @param setupTask
+		 *            the task.
+		 * @return the name.
+		 */
+		private static String getName(SetupTask setupTask) {
+			if (setupTask.getID() != null) {
+				return setupTask.getID();
+			}
+			return setupTask.eClass().getName();
+		}
+
+		/**
+		 * Counts a log line.
+		 *
+		 * @param severity
+		 *            severity of the line.
+		 */
+		void count(Severity severity) {
+			if (severity == Severity.ERROR) {
+				errors++;
+			} else if (severity == Severity.WARNING) {
+				warnings++;
+			}
+		}
+
+		/**
+		 * Records the progress of a download.
+		 *
+		 * @param artifact
+		 *            the downloaded artifact.
+		 * @param bytes
+		 *            the number of bytes downloaded so far or to download.
+		 */
+		void download(String artifact, long bytes) {
+			final Long previous = downloads.get(artifact);
+			if (previous == null || previous.longValue() < bytes) {
+				downloads.put(artifact, Long.valueOf(bytes));
+			}
+		}
+
+		/**
+		 * Ends the task.
+		 */
+		void end() {
+			elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+
+		/**
+		 * Aggregates a task to this record.
+		 *
+		 * @param record
+		 *            record of the task.
+		 */
+		void add(TaskRecord record) {
+			count += record.count;
+			elapsed += record.elapsed;
+			warnings += record.warnings;
+			errors += record.errors;
+			aggregatedBytes += record.getBytes();
+		}
+
+		/**
+		 * Gets the number of downloaded bytes.
+		 *
+		 * @return the number of bytes.
+		 */
+		long getBytes() {
+			long bytes = aggregatedBytes;
+			for (Long artifactBytes : downloads.values()) {
+				bytes += Math.max(0, artifactBytes.longValue());
+			}
+			return bytes;
+		}
+	}
 }
@@ -10,12 +10,17 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.app;
 
+import static org.eclipse.emf.compare.git.pgm.internal.Options.JFR_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.METRICS_PART_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.PROGRESS_LOG_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.Options.SHOW_STACK_TRACE_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EMPTY_STRING;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.SEP;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.toFileWithAbsolutePath;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.waitEgitJobs;
 
+import com.google.common.collect.Maps;
+
 import java.io.File;
 import java.io.IOException;
 import java.security.cert.Certificate;
@@ -37,6 +42,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.egit.core.op.IEGitOperation;
 import org.eclipse.egit.core.synchronize.GitResourceVariantTreeSubscriber;
 import org.eclipse.egit.core.synchronize.GitSubscriberResourceMappingContext;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeData;
@@ -48,10 +54,16 @@ import org.eclipse.emf.compare.git.pgm.internal.ProgressPageLog;
 import org.eclipse.emf.compare.git.pgm.internal.args.CmdLineParserRepositoryBuilder;
 import org.eclipse.emf.compare.git.pgm.internal.args.GitDirHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.SetupFileHandler;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
 import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.internal.util.FlightRecording;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.Phase;
+import org.eclipse.emf.compare.git.pgm.internal.util.PhaseEvent;
 import org.eclipse.emf.compare.ide.ui.internal.logical.EMFModelProvider;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
@@ -66,6 +78,7 @@ import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.AbstractTreeIterator;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
@@ -125,11 +138,39 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	@Option(name = SHOW_STACK_TRACE_OPT, usage = "Use this option to display java stack trace in console on error.")
 	private boolean showStackTrace;
 
+	/**
+	 * Holds the file where the events of the setup are appended, if any.
+	 */
+	@Option(name = PROGRESS_LOG_OPT, metaVar = "file", usage = "Appends the setup tasks, their duration and logs, then their summary to the given file, as JSON lines.")
+	private File progressLog;
+
+	/**
+	 * Holds the file where the flight recording of the application is written, if any.
+	 */
+	@Option(name = JFR_OPT, metaVar = "file", usage = "Records the run with Java Flight Recorder to the given file.")
+	private File jfr;
+
+	/**
+	 * Flight recording of this application, if any.
+	 */
+	private FlightRecording flightRecording;
+
+	/**
+	 * Holds the part file where the metrics of the application are written, if any.
+	 */
+	@Option(name = METRICS_PART_OPT, metaVar = "file", usage = "Writes the metrics of the run to the given part of the metrics of the command.")
+	private File metricsPart;
+
 	/**
 	 * Instance of {@link Git} from {@link #repo}.
 	 */
 	private Git git;
 
+	/**
+	 * Model dependency indexes already loaded by this application, by tree id.
+	 */
+	private final Map<ObjectId, ModelDependencyIndex> modelIndexes = Maps.newHashMap();
+
 	/**
 	 * {@inheritDoc}.
 	 */
@@ -147,8 +188,16 @@ public abstract class AbstractLogicalApplication implements IApplication {
 				.newEGitRepoBuilderCmdParser(this);
 		try {
 			clp.parseArgument(appArgs);
+			if (jfr != null) {
+				flightRecording = FlightRecording.start(jfr);
+			}
+			if (metricsPart != null) {
+				Metrics.forPart(metricsPart);
+			}
 			repo = clp.getRepo();
 			git = new Git(repo);
+			// Honors core.streamFileThreshold so that large model blobs get streamed
+			GitUtils.installWindowCacheConfig(repo);
 		} catch (CmdLineException err) {
 			if (showStackTrace) {
 				err.printStackTrace();
@@ -175,6 +224,10 @@ public abstract class AbstractLogicalApplication implements IApplication {
 		}
 		// CHECKSTYLE.ON: IllegalCatch
 
+		final Metrics metrics = Metrics.getCurrent();
+		if (metrics != null) {
+			metrics.write(code.intValue());
+		}
 		return code;
 	}
 
@@ -230,14 +283,24 @@ public abstract class AbstractLogicalApplication implements IApplication {
 			performerStartup.put(ILicense.class, confirmer);
 			performerStartup.put(Certificate.class, confirmer);
 
-			progressPageLog = new ProgressPageLog(System.out);
+			progressPageLog = ProgressPageLog.create(System.out, progressLog, true);
 			performerStartup.setProgress(progressPageLog);
 
-			cleanWorkspace();
+			final PhaseEvent cleanEvent = Phase.WORKSPACE_CLEAN.begin(null);
+			try {
+				cleanWorkspace();
+			} finally {
+				cleanEvent.end();
+			}
 
 			handleImportProjects(startupSetupProject, performerStartup);
 
-			performerStartup.perform(new NullProgressMonitor());
+			final PhaseEvent importEvent = Phase.PROJECT_IMPORT.begin(setupFile.getName());
+			try {
+				performerStartup.perform(new NullProgressMonitor());
+			} finally {
+				importEvent.end();
+			}
 
 			validatePerform(performerStartup);
 
@@ -266,18 +329,46 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	}
 
 	/**
-	 * Close the repository and the log.
+	 * Executes an EGit operation.
+	 * 
+	 * @param operation
+	 *            the operation.
+	 * @throws CoreException
+	 *             if the operation fails.
+	 */
+	protected void execute(IEGitOperation operation) throws CoreException {
+		final PhaseEvent event = Phase.EGIT_OPERATION.begin(operation.getClass().getSimpleName());
+		try {
+			operation.execute(new NullProgressMonitor());
+		} finally {
+			event.end();
+		}
+	}
+
+	/**
+	 * Close the repository, the log and the flight recording, and persist the pending model dependency
+	 * indexes.
 	 */
 	protected void dispose() {
 		if (git != null) {
 			git.close();
 		}
 		if (repo != null) {
+			try {
+				ModelDependencyIndex.flush(repo);
+			} catch (IOException e) {
+				System.err.println("warning: the model dependency indexes can not be written: " //$NON-NLS-1$
+						+ e.getMessage());
+			}
 			repo.close();
 		}
 		if (progressPageLog != null) {
 			progressPageLog.setTerminating();
 		}
+		if (flightRecording != null) {
+			flightRecording.stop();
+			flightRecording = null;
+		}
 	}
 
 	/**
@@ -291,6 +382,7 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	 * @return true if the file to test is EMFCompare compliant, false otherwise.
 	 */
 	protected boolean isEMFCompareCompliantFile(RemoteResourceMappingContext mergeContext, IFile file) {
+		final PhaseEvent event = Phase.MAPPING_RESOLUTION.begin(file.getFullPath().toString());
 		try {
 			EMFModelProvider modelProvider = new EMFModelProvider();
 			ResourceMapping[] modelMappings = modelProvider.getMappings(file, mergeContext,
@@ -300,11 +392,58 @@ public abstract class AbstractLogicalApplication implements IApplication {
 			}
 		} catch (CoreException e) {
 			e.printStackTrace();
+		} finally {
+			event.end();
 		}
 
 		return false;
 	}
 
+	/**
+	 * Gets the mappings of a file, answering from the model dependency index of the compared tree whether the
+	 * model providers accept the file. The providers are only queried for the files they have not already
+	 * been queried for in this tree, or accepted, and their answer is recorded in the index.
+	 * 
+	 * @param index
+	 *            the model dependency index of the compared tree.
+	 * @param path
+	 *            the path of the file in the repository.
+	 * @param mergeContext
+	 *            a resource mapping context.
+	 * @param file
+	 *            the file for which we need the associated resource mappings.
+	 * @return the mappings of the file, empty if it is not EMFCompare compliant.
+	 */
+	protected ResourceMapping[] getResourceMappings(ModelDependencyIndex index, String path,
+			RemoteResourceMappingContext mergeContext, IFile file) {
+		if (Boolean.FALSE.equals(index.getProviderResult(path))) {
+			return new ResourceMapping[0];
+		}
+		final ResourceMapping[] mappings = getResourceMappings(mergeContext, file);
+		index.setProviderResult(path, mappings.length > 0);
+		return mappings;
+	}
+
+	/**
+	 * Gets the model dependency index of the tree of the given commit. Indexes are persisted in the git
+	 * directory and kept in memory for the lifetime of the application.
+	 * 
+	 * @param commit
+	 *            the commit.
+	 * @return the model dependency index of the commit tree.
+	 * @throws IOException
+	 *             e
+	 */
+	protected ModelDependencyIndex getModelDependencyIndex(RevCommit commit) throws IOException {
+		final ObjectId treeId = commit.getTree().getId();
+		ModelDependencyIndex index = modelIndexes.get(treeId);
+		if (index == null) {
+			index = ModelDependencyIndex.get(repo, treeId);
+			modelIndexes.put(index.getTreeId(), index);
+		}
+		return index;
+	}
+
 	/**
 	 * Gets the tree iterator of the id located in the repository.
 	 * 
@@ -356,7 +495,12 @@ public abstract class AbstractLogicalApplication implements IApplication {
 				.getName(), false);
 		final GitSynchronizeDataSet dataSet = new GitSynchronizeDataSet(data);
 		GitResourceVariantTreeSubscriber subscriber = new GitResourceVariantTreeSubscriber(dataSet);
-		subscriber.init(new NullProgressMonitor());
+		final PhaseEvent event = Phase.SUBSCRIBER_INIT.begin(comparedFile.getFullPath().toString());
+		try {
+			subscriber.init(new NullProgressMonitor());
+		} finally {
+			event.end();
+		}
 		return new GitSubscriberResourceMappingContext(subscriber, dataSet);
 	}
 
@@ -372,6 +516,7 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	 */
 	protected ResourceMapping[] getResourceMappings(RemoteResourceMappingContext mergeContext, IFile file) {
 		final Set<ResourceMapping> mappings = new LinkedHashSet<ResourceMapping>();
+		final PhaseEvent event = Phase.MAPPING_RESOLUTION.begin(file.getFullPath().toString());
 		try {
 			EMFModelProvider modelProvider = new EMFModelProvider();
 			ResourceMapping[] modelMappings = modelProvider.getMappings(file, mergeContext,
@@ -381,6 +526,8 @@ public abstract class AbstractLogicalApplication implements IApplication {
 			}
 		} catch (CoreException e) {
 			e.printStackTrace();
+		} finally {
+			event.end();
 		}
 		return mappings.toArray(new ResourceMapping[mappings.size()]);
 	}
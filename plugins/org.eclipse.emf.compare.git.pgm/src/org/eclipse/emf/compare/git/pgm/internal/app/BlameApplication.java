@@ -0,0 +1,435 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.Diff;
+import org.eclipse.emf.compare.DifferenceKind;
+import org.eclipse.emf.compare.EMFCompare;
+import org.eclipse.emf.compare.Match;
+import org.eclipse.emf.compare.ReferenceChange;
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.compare.scope.IComparisonScope;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.kohsuke.args4j.Argument;
+
+/**
+ * Logical blame application. <h3>Name</h3>
+ * <p>
+ * logicalblame - Git Logical Blame
+ * </p>
+ * <h4>Synopsis</h4>
+ * <p>
+ * logicalblame &lt;setup&gt; &lt;path&gt; &lt;commit&gt;
+ * </p>
+ * <h4>Description</h4>
+ * <p>
+ * Walks the first-parent history of the file from the given commit and keeps the commits that change its
+ * blob. The history is walked batch after batch of as many changing commits as there are processors: each
+ * commit of a batch is compared with its parent, the comparisons running in parallel, and is credited with
+ * the elements it adds or changes that are not attributed yet. The elements of the blamed revision are
+ * followed from one commit to its parent through the matches of their comparison, since the URI fragment of
+ * an element that has no ID may change from one revision to another. The walk stops as soon as every element
+ * of the file has been attributed. The revisions are loaded through the binary resource cache, by a loader of
+ * their own in each thread. Each element is printed on its own line, in the order of the file:
+ * </p>
+ *
+ * <pre>
+ * &lt;commit&gt; TAB &lt;author&gt; TAB &lt;date&gt; TAB &lt;uriFragment&gt; TAB &lt;eClass&gt;
+ * </pre>
+ */
+public class BlameApplication extends AbstractLogicalApplication {
+
+	/** Holds the path of the blamed model file. */
+	@Argument(index = 2, required = true, metaVar = "<path>", usage = "Path, in the repository, of the model file.")
+	private String path;
+
+	/** Holds the commit from which the history is walked. */
+	@Argument(index = 3, required = true, metaVar = "<commit>", usage = "Commit ID or branch name from which the history is walked.", handler = RevCommitHandler.class)
+	private RevCommit commit;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Integer performGitCommand() throws Die {
+		final RevisionModelLoader loader = new RevisionModelLoader(repo, BinaryResourceCache
+				.forRepository(repo));
+		// Elements of the blamed revision, in the order of the file
+		final Map<String, String> elements = new LinkedHashMap<String, String>();
+		final Map<String, RevCommit> attributions;
+		try (RevWalk walk = new RevWalk(repo)) {
+			final Changes changes = new Changes(walk);
+			if (!changes.exists()) {
+				throw new DiesOn(DeathType.FATAL).displaying(
+						path + " does not exist in " + commit.name()).ready(); //$NON-NLS-1$
+			}
+			if (!getModelDependencyIndex(commit).isModel(path)) {
+				throw new DiesOn(DeathType.FATAL).displaying(
+						path + " is not a model resource").ready(); //$NON-NLS-1$
+			}
+
+			final ResourceSet resourceSet = loader.load(commit, Collections.singleton(path));
+			try {
+				final Resource resource = resourceSet.getResource(loader.getURI(path), false);
+				if (resource == null) {
+					throw new DiesOn(DeathType.FATAL).displaying(
+							path + " can not be loaded as a model").ready(); //$NON-NLS-1$
+				}
+				for (Iterator<EObject> it = resource.getAllContents(); it.hasNext();) {
+					EObject object = it.next();
+					elements.put(resource.getURIFragment(object), object.eClass().getName());
+				}
+			} finally {
+				RevisionModelLoader.unload(resourceSet);
+			}
+			attributions = attribute(changes, elements.keySet());
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.ERROR).duedTo(e).displaying(e.getMessage()).ready();
+		}
+
+		final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd"); //$NON-NLS-1$
+		for (Map.Entry<String, String> element : elements.entrySet()) {
+			final RevCommit attribution = attributions.get(element.getKey());
+			final StringBuilder line = new StringBuilder();
+			if (attribution != null) {
+				line.append(attribution.abbreviate(Constants.OBJECT_ID_ABBREV_STRING_LENGTH).name()).append(
+						TAB).append(attribution.getAuthorIdent().getName()).append(TAB).append(
+						dateFormat.format(attribution.getAuthorIdent().getWhen()));
+			} else {
+				line.append(ObjectId.zeroId().abbreviate(Constants.OBJECT_ID_ABBREV_STRING_LENGTH).name())
+						.append(TAB).append(TAB);
+			}
+			line.append(TAB).append(element.getKey()).append(TAB).append(element.getValue());
+			System.out.println(line);
+		}
+		return Returns.COMPLETE.code();
+	}
+
+	/**
+	 * Gets the blob id of the file in a commit.
+	 *
+	 * @param revision
+	 *            the commit.
+	 * @return the blob id or <code>null</code> if the file does not exist in the commit.
+	 * @throws IOException
+	 *             if the tree can not be read.
+	 */
+	private ObjectId getBlobId(RevCommit revision) throws IOException {
+		try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, revision.getTree())) {
+			if (treeWalk == null) {
+				return null;
+			}
+			return treeWalk.getObjectId(0);
+		}
+	}
+
+	/**
+	 * Attributes the elements to the changing commits. The comparisons run in parallel by batches, and the
+	 * walk of the changing commits stops once all the elements have been attributed.
+	 *
+	 * @param changes
+	 *            the walk of the changing commits.
+	 * @param elements
+	 *            URI fragments of the elements to attribute, in the blamed revision.
+	 * @return the commits, by URI fragment of the element they are attributed to.
+	 * @throws Die
+	 *             if a comparison fails.
+	 * @throws IOException
+	 *             if the history can not be walked.
+	 */
+	private Map<String, RevCommit> attribute(Changes changes, Set<String> elements) throws Die,
+			IOException {
+		final Map<String, RevCommit> attributions = new HashMap<String, RevCommit>();
+		// URI fragments of the elements not attributed yet, in the child revision of the next change
+		final Map<String, String> followed = new HashMap<String, String>();
+		for (String element : elements) {
+			followed.put(element, element);
+		}
+		final int batchSize = Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor = Executors.newFixedThreadPool(batchSize);
+		try {
+			while (!followed.isEmpty()) {
+				final List<RevCommit[]> batchChanges = new ArrayList<RevCommit[]>();
+				RevCommit[] next = changes.next();
+				while (next != null) {
+					batchChanges.add(next);
+					if (batchChanges.size() < batchSize) {
+						next = changes.next();
+					} else {
+						next = null;
+					}
+				}
+				if (batchChanges.isEmpty()) {
+					break;
+				}
+				final List<Future<ChangedElements>> batch = new ArrayList<Future<ChangedElements>>();
+				for (RevCommit[] change : batchChanges) {
+					batch.add(executor.submit(new ChangedElements(change[0], change[1])));
+				}
+				// The results are processed from the most recent commit
+				for (int i = 0; i < batch.size(); i++) {
+					final ChangedElements changed = batch.get(i).get();
+					for (Iterator<Map.Entry<String, String>> it = followed.entrySet().iterator(); it
+							.hasNext();) {
+						final Map.Entry<String, String> element = it.next();
+						final String parentFragment = changed.getParentFragment(element.getValue());
+						if (parentFragment == null) {
+							attributions.put(element.getKey(), batchChanges.get(i)[0]);
+							it.remove();
+						} else {
+							// The parent revision has the same blob as the child revision of the next change
+							element.setValue(parentFragment);
+						}
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DiesOn(DeathType.ERROR).duedTo(e).displaying(e.getMessage()).ready();
+		} catch (ExecutionException e) {
+			throw new DiesOn(DeathType.ERROR).duedTo(e.getCause()).displaying(e.getCause().getMessage())
+					.ready();
+		} finally {
+			executor.shutdownNow();
+		}
+		return attributions;
+	}
+
+	/**
+	 * Walks the first-parent history of the file from the blamed commit, one changing commit at a time.
+	 */
+	private final class Changes {
+
+		/** The walk parsing the commits. */
+		private final RevWalk walk;
+
+		/** The next commit to look at, <code>null</code> once the file does not exist anymore. */
+		private RevCommit current;
+
+		/** Blob id of the file in {@link #current}. */
+		private ObjectId blobId;
+
+		/** Whether the file exists in the blamed commit. */
+		private final boolean exists;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param walk
+		 *            the walk parsing the commits.
+		 * @throws IOException
+		 *             if the blamed commit can not be read.
+		 */
+		private Changes(RevWalk walk) throws IOException {
+			this.walk = walk;
+			current = walk.parseCommit(commit);
+			blobId = getBlobId(current);
+			exists = blobId != null;
+			if (!exists) {
+				current = null;
+			}
+		}
+
+		/**
+		 * Tells whether the file exists in the blamed commit.
+		 *
+		 * @return <code>true</code> if the file exists in the blamed commit.
+		 */
+		public boolean exists() {
+			return exists;
+		}
+
+		/**
+		 * Walks the history up to the next commit changing the blob of the file.
+		 *
+		 * @return the commit and its parent, <code>null</code> if the file does not exist in the parent, or
+		 *         <code>null</code> if the walk is over.
+		 * @throws IOException
+		 *             if a commit can not be read.
+		 */
+		public RevCommit[] next() throws IOException {
+			while (current != null) {
+				final RevCommit child = current;
+				RevCommit parent = null;
+				ObjectId parentBlobId = null;
+				if (child.getParentCount() > 0) {
+					parent = walk.parseCommit(child.getParent(0));
+					parentBlobId = getBlobId(parent);
+				}
+				final ObjectId childBlobId = blobId;
+				current = parent;
+				blobId = parentBlobId;
+				if (parentBlobId == null) {
+					// The file has been added by this commit
+					current = null;
+					return new RevCommit[] {child, null };
+				} else if (!childBlobId.equals(parentBlobId)) {
+					return new RevCommit[] {child, parent };
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Computes the elements of the file that a commit adds or changes compared with its parent, and the
+	 * elements of the parent revision the other ones match.
+	 * <p>
+	 * The revisions are loaded by a loader of this task, so that the tasks running in parallel share no
+	 * resource set nor cache instance.
+	 * </p>
+	 */
+	private final class ChangedElements implements Callable<ChangedElements> {
+
+		/** The changing commit. */
+		private final RevCommit child;
+
+		/** Its parent, <code>null</code> if the file does not exist in the parent. */
+		private final RevCommit parent;
+
+		/** URI fragments, in the parent revision, of the unchanged elements, by URI fragment in the child. */
+		private final Map<String, String> parentFragments = new HashMap<String, String>();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param child
+		 *            the changing commit.
+		 * @param parent
+		 *            its parent, <code>null</code> if the file does not exist in the parent.
+		 */
+		private ChangedElements(RevCommit child, RevCommit parent) {
+			this.child = child;
+			this.parent = parent;
+		}
+
+		/**
+		 * Gets the URI fragment an element of the child revision has in the parent revision.
+		 *
+		 * @param childFragment
+		 *            the URI fragment of the element in the child revision.
+		 * @return the URI fragment of the element in the parent revision, <code>null</code> if the commit
+		 *         adds or changes the element.
+		 */
+		public String getParentFragment(String childFragment) {
+			return parentFragments.get(childFragment);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public ChangedElements call() throws IOException {
+			if (parent == null) {
+				// Everything has been added by this commit
+				return this;
+			}
+			final RevisionModelLoader loader = new RevisionModelLoader(repo, BinaryResourceCache
+					.forRepository(repo));
+			final URI uri = loader.getURI(path);
+			final ResourceSet childSet = loader.load(child, Collections.singleton(path));
+			final ResourceSet parentSet = loader.load(parent, Collections.singleton(path));
+			final Resource childResource = childSet.getResource(uri, false);
+			final Resource parentResource = parentSet.getResource(uri, false);
+			final IComparisonScope scope = loader.createScope(childSet, parentSet, null);
+			try {
+				final Comparison comparison = EMFCompare.builder().build().compare(scope);
+				Metrics.recordComparison(comparison);
+				for (Match match : comparison.getMatches()) {
+					addMatch(match, childResource, parentResource);
+					for (Match submatch : match.getAllSubmatches()) {
+						addMatch(submatch, childResource, parentResource);
+					}
+				}
+				for (Diff diff : comparison.getDifferences()) {
+					removeChanged(childResource, diff.getMatch().getLeft());
+					if (diff instanceof ReferenceChange && diff.getKind() == DifferenceKind.ADD
+							&& ((ReferenceChange)diff).getReference().isContainment()) {
+						final EObject added = ((ReferenceChange)diff).getValue();
+						removeChanged(childResource, added);
+						for (Iterator<EObject> it = added.eAllContents(); it.hasNext();) {
+							removeChanged(childResource, it.next());
+						}
+					}
+				}
+			} finally {
+				RevisionModelLoader.unload(scope);
+			}
+			return this;
+		}
+
+		/**
+		 * Records the URI fragment in the parent revision of an element of the child revision.
+		 *
+		 * @param match
+		 *            the match of the element.
+		 * @param childResource
+		 *            the child revision of the file.
+		 * @param parentResource
+		 *            the parent revision of the file.
+		 */
+		private void addMatch(Match match, Resource childResource, Resource parentResource) {
+			final EObject left = match.getLeft();
+			final EObject right = match.getRight();
+			if (left != null && right != null && left.eResource() == childResource
+					&& right.eResource() == parentResource) {
+				parentFragments.put(childResource.getURIFragment(left), parentResource.getURIFragment(right));
+			}
+		}
+
+		/**
+		 * Forgets the parent revision of an element of the child revision that the commit adds or changes.
+		 *
+		 * @param childResource
+		 *            the child revision of the file.
+		 * @param object
+		 *            the element, ignored if <code>null</code> or if it belongs to another resource.
+		 */
+		private void removeChanged(Resource childResource, EObject object) {
+			if (object != null && object.eResource() == childResource) {
+				parentFragments.remove(childResource.getURIFragment(object));
+			}
+		}
+	}
+}
@@ -18,18 +18,19 @@ import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getCommitsB
 import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getOneLineCommitMsg;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.egit.core.op.CherryPickOperation;
 import org.eclipse.emf.compare.git.pgm.Returns;
-import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitRangeHandler;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
 import org.eclipse.jgit.api.CherryPickResult;
+import org.eclipse.jgit.api.CherryPickResult.CherryPickStatus;
 import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
@@ -44,11 +45,14 @@ import org.kohsuke.args4j.Argument;
  * </p>
  * <h4>Synopsis</h4>
  * <p>
- * logicalcherry-pick &lt;setup&gt; &lt;commit&gt; [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;]
+ * logicalcherry-pick &lt;setup&gt; &lt;commit&gt;... [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;]
  * </p>
  * <h4>Description</h4>
  * <p>
- * The logical cherry-pick is used to cherry-pick one revision using logical model.
+ * The logical cherry-pick is used to cherry-pick revisions using logical model. The revisions are picked one
+ * after the other in the same session, so that the workspace is only set up once; the cherry-pick stops on
+ * the first revision that can not be applied. The revisions that follow it are abandoned: they are listed
+ * so that they can be cherry-picked again once the conflict has been resolved and committed.
  * </p>
  * 
  * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
@@ -56,10 +60,10 @@ import org.kohsuke.args4j.Argument;
 @SuppressWarnings({"restriction", "nls" })
 public class CherryPickApplication extends AbstractLogicalApplication {
 	/**
-	 * Holds {@link RevCommit} that needs to be merged.
+	 * Holds the {@link RevCommit}s that need to be merged, in order.
 	 */
-	@Argument(index = 2, required = true, metaVar = "<commit>", usage = "Commit ID to cherry pick.", handler = RevCommitHandler.class)
-	private RevCommit commit;
+	@Argument(index = 2, required = true, multiValued = true, metaVar = "<commit>", usage = "Commit IDs or ranges of commits (A..B) to cherry pick.", handler = RevCommitRangeHandler.class)
+	private List<RevCommit> commits;
 
 	/** Holds a reference to the HEAD before any operation. */
 	private ObjectId oldHead;
@@ -71,27 +75,42 @@ public class CherryPickApplication extends AbstractLogicalApplication {
 		} catch (RevisionSyntaxException | IOException e) {
 			throw new DiesOn(DeathType.ERROR).duedTo(e).displaying(e.getMessage()).ready();
 		}
-		final CherryPickResult result;
 		try {
-			result = startCherryPick();
-			waitEgitJobs();
-			return handleCherryPickResult(result);
+			CherryPickResult result = null;
+			RevCommit lastCommit = null;
+			List<RevCommit> remainingCommits = Collections.emptyList();
+			for (int i = 0; i < commits.size(); i++) {
+				final RevCommit commit = commits.get(i);
+				lastCommit = commit;
+				final long start = System.currentTimeMillis();
+				result = startCherryPick(commit);
+				waitEgitJobs();
+				System.out.println(getOneLineCommitMsg(commit) + ": " + result.getStatus() + " ("
+						+ (System.currentTimeMillis() - start) + " ms)");
+				if (result.getStatus() != CherryPickStatus.OK) {
+					remainingCommits = commits.subList(i + 1, commits.size());
+					break;
+				}
+			}
+			return handleCherryPickResult(result, lastCommit, remainingCommits);
 		} catch (CoreException | IOException e) {
 			throw new DiesOn(DeathType.ERROR).duedTo(e).displaying(e.getMessage()).ready();
 		}
 	}
 
 	/**
-	 * Starts to cherry pick commit.
+	 * Starts to cherry pick a commit.
 	 * 
+	 * @param commit
+	 *            the commit to cherry-pick.
 	 * @return {@link CherryPickResult}.
 	 * @throws CoreException
 	 *             from {@link CherryPickOperation#execute(org.eclipse.core.runtime.IProgressMonitor)}
 	 */
-	private CherryPickResult startCherryPick() throws CoreException {
+	private CherryPickResult startCherryPick(RevCommit commit) throws CoreException {
 		final CherryPickResult result;
 		CherryPickOperation cherryPickOperation = new CherryPickOperation(repo, commit);
-		cherryPickOperation.execute(new NullProgressMonitor());
+		execute(cherryPickOperation);
 		result = cherryPickOperation.getResult();
 		return result;
 	}
@@ -103,14 +122,19 @@ public class CherryPickApplication extends AbstractLogicalApplication {
 	 * </p>
 	 * 
 	 * @param cherryPickResult
-	 *            result to handle.
+	 *            result of the last cherry-picked commit.
+	 * @param lastCommit
+	 *            the last cherry-picked commit.
+	 * @param remainingCommits
+	 *            the commits that have not been cherry-picked because the last one could not be applied.
 	 * @return the return code of this operation.
 	 * @throws Die
 	 *             if an error is found in the result.
 	 * @throws IOException
 	 *             propagates JGit {@link IOException}.
 	 */
-	private Integer handleCherryPickResult(CherryPickResult cherryPickResult) throws Die, IOException {
+	private Integer handleCherryPickResult(CherryPickResult cherryPickResult, RevCommit lastCommit,
+			List<RevCommit> remainingCommits) throws Die, IOException {
 		final Integer result;
 		final String message;
 
@@ -123,11 +147,13 @@ public class CherryPickApplication extends AbstractLogicalApplication {
 				// FIXME write the conflict commit message is .git/COMMIT_MSG and propose to the user to
 				// modify it
 				result = Returns.ABORTED.code();
-				message = getConflictMessage(cherryPickResult.getFailingPaths());
+				message = getSuccessfullCherryPickMessage()
+						+ getConflictMessage(cherryPickResult.getFailingPaths(), lastCommit)
+						+ getRemainingCommitsMessage(remainingCommits);
 				break;
 			case FAILED:
 				result = Returns.ERROR.code();
-				message = "failed";
+				message = "failed" + EOL + getRemainingCommitsMessage(remainingCommits);
 				break;
 			default:
 				throw new DiesOn(DeathType.ERROR).displaying(
@@ -143,11 +169,14 @@ public class CherryPickApplication extends AbstractLogicalApplication {
 	 * 
 	 * @param failingPaths
 	 *            List of failing paths
+	 * @param commit
+	 *            the commit that could not be applied.
 	 * @return the message to display.
 	 * @throws IOException
 	 *             propagates JGIt exception.
 	 */
-	private String getConflictMessage(Map<String, MergeFailureReason> failingPaths) throws IOException {
+	private String getConflictMessage(Map<String, MergeFailureReason> failingPaths, RevCommit commit)
+			throws IOException {
 		StringBuilder messageBuilder = new StringBuilder();
 
 		// Displays the conflicting files
@@ -175,6 +204,26 @@ public class CherryPickApplication extends AbstractLogicalApplication {
 		return messageBuilder.toString();
 	}
 
+	/**
+	 * Gets the message listing the commits that have not been cherry-picked.
+	 * 
+	 * @param remainingCommits
+	 *            the commits that have not been cherry-picked.
+	 * @return the message to display, empty if all the commits have been cherry-picked.
+	 */
+	private String getRemainingCommitsMessage(List<RevCommit> remainingCommits) {
+		if (remainingCommits.isEmpty()) {
+			return "";
+		}
+		StringBuilder messageBuilder = new StringBuilder();
+		messageBuilder.append("hint: The following revisions were not cherry-picked:").append(EOL);
+		for (RevCommit remainingCommit : remainingCommits) {
+			messageBuilder.append(TAB).append(getOneLineCommitMsg(remainingCommit)).append(EOL);
+		}
+		messageBuilder.append("hint: Cherry-pick them again once the conflict is committed.").append(EOL);
+		return messageBuilder.toString();
+	}
+
 	/**
 	 * Gets the message that notifies the user of new successfully cherry-picked commit.
 	 * 
@@ -188,7 +237,11 @@ public class CherryPickApplication extends AbstractLogicalApplication {
 		if (successfullCommits != null && !successfullCommits.isEmpty()) {
 			final String message;
 			StringBuilder messageBuilder = new StringBuilder();
-			messageBuilder.append("The following revision was successfully cherry-picked:").append(EOL);
+			if (successfullCommits.size() == 1) {
+				messageBuilder.append("The following revision was successfully cherry-picked:").append(EOL);
+			} else {
+				messageBuilder.append("The following revisions were successfully cherry-picked:").append(EOL);
+			}
 			for (RevCommit successfullCommit : successfullCommits) {
 				messageBuilder.append(TAB).append(getOneLineCommitMsg(successfullCommit)).append(EOL);
 			}
@@ -10,14 +10,31 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.app;
 
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.DiffCommand.MATCH_ENGINE_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.DiffCommand.MAX_HEAP_FRACTION_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.DiffCommand.MAX_RESOURCES_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.DiffCommand.MERGE_BASE_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.DiffCommand.PROXY_RESOLUTION_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.DiffCommand.THREADS_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.toRepositoryPath;
+
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IStorage;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.resources.mapping.RemoteResourceMappingContext;
@@ -26,29 +43,55 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.compare.CompareFactory;
 import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.Conflict;
 import org.eclipse.emf.compare.EMFCompare;
 import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.args.FractionHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.MatchStrategyHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.PathFilterHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.PositiveIntegerHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.ProxyResolutionHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.merge.MergePrediction;
+import org.eclipse.emf.compare.git.pgm.internal.util.BlobIdResourceMinimizer;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.emf.compare.git.pgm.internal.util.IdenticalSubtreeFilter;
+import org.eclipse.emf.compare.git.pgm.internal.util.MatchStrategy;
+import org.eclipse.emf.compare.git.pgm.internal.util.MemoryBudget;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Counter;
+import org.eclipse.emf.compare.git.pgm.internal.util.ParallelDiffEngine;
+import org.eclipse.emf.compare.git.pgm.internal.util.Phase;
+import org.eclipse.emf.compare.git.pgm.internal.util.PhaseEvent;
+import org.eclipse.emf.compare.git.pgm.internal.util.ProxyResolution;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
 import org.eclipse.emf.compare.ide.ui.internal.logical.ComparisonScopeBuilder;
 import org.eclipse.emf.compare.ide.ui.internal.logical.EMFResourceMapping;
 import org.eclipse.emf.compare.ide.ui.internal.logical.IdenticalResourceMinimizer;
 import org.eclipse.emf.compare.ide.ui.logical.IModelMinimizer;
 import org.eclipse.emf.compare.ide.ui.logical.SynchronizationModel;
+import org.eclipse.emf.compare.ide.utils.StorageTraversal;
 import org.eclipse.emf.compare.scope.IComparisonScope;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.util.EcoreUtil.Copier;
+import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
 import org.eclipse.jgit.api.DiffCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.kohsuke.args4j.Argument;
@@ -61,11 +104,13 @@ import org.kohsuke.args4j.Option;
  * </p>
  * <h4>Synopsis</h4>
  * <p>
- * logicaldiff &lt;setup&gt; &lt;commit&gt; [&lt;compareWithCommit&gt;] [ -- &lt;paths...&gt;]
+ * logicaldiff &lt;setup&gt; &lt;commit&gt; [&lt;compareWithCommit&gt;] [--merge-base] [ -- &lt;paths...&gt;]
  * </p>
  * <h4>Description</h4>
  * <p>
- * The logical diff is used to display differences using logical model.
+ * The logical diff is used to display differences using logical model. With <code>--merge-base</code>, the
+ * two commits are compared three-way from their merge base and only the conflicts, with the differences
+ * they hold, are displayed.
  * </p>
  * </p>
  * 
@@ -92,11 +137,93 @@ public class DiffApplication extends AbstractLogicalApplication {
 	@Option(name = "--", metaVar = "<path...>", multiValued = false, handler = PathFilterHandler.class, usage = "This is used to limit the diff to the named paths (you can give directory names and get diff for all files under them).")
 	private TreeFilter pathFilter;
 
+	/**
+	 * Fraction of the maximum heap size bounding the diff threads, above which the comparisons switch to a
+	 * lower-memory mode.
+	 */
+	@Option(name = MAX_HEAP_FRACTION_OPT, metaVar = "fraction", handler = FractionHandler.class, usage = "Fraction of the maximum heap size above which the comparisons switch to a lower-memory mode (between 0 and 1, 0.8 by default).")
+	private double maxHeapFraction = MemoryBudget.DEFAULT_FRACTION;
+
+	/**
+	 * Displays only the conflicts between the two commits, compared from their merge base.
+	 */
+	@Option(name = MERGE_BASE_OPT, usage = "Compares <commit> and <compareWithCommit> from their merge base and only displays the conflicts.")
+	private boolean mergeBaseOpt;
+
+	/**
+	 * Strategy matching the elements of the compared models.
+	 */
+	@Option(name = MATCH_ENGINE_OPT, metaVar = "strategy", handler = MatchStrategyHandler.class, usage = "Strategy matching the elements of the models: \"default\" matches them by ID when they have one and by similarity otherwise, \"id\" only matches them by ID, which is much faster on models whose elements all have an ID.")
+	private MatchStrategy matchStrategy = MatchStrategy.DEFAULT;
+
+	/**
+	 * Number of threads computing the differences of a comparison.
+	 */
+	@Option(name = THREADS_OPT, metaVar = "count", handler = PositiveIntegerHandler.class, usage = "Number of threads computing the differences of a comparison in parallel, 1 by default.")
+	private int threads = 1;
+
+	/**
+	 * Policy resolving the proxies to the resources out of the compared logical models.
+	 */
+	@Option(name = PROXY_RESOLUTION_OPT, metaVar = "policy", handler = ProxyResolutionHandler.class, usage = "Policy resolving the proxies to the resources out of the compared logical models: \"traversal\" never resolves them, \"lazy\" resolves them when the comparison needs them, \"all\" resolves them all as soon as the models are loaded. \"lazy\" by default.")
+	private ProxyResolution proxyResolution = ProxyResolution.LAZY;
+
+	/**
+	 * Maximum number of resources loaded for each side of a compared logical model, 0 if unbounded.
+	 */
+	@Option(name = MAX_RESOURCES_OPT, metaVar = "count", handler = PositiveIntegerHandler.class, usage = "Maximum number of resources loaded for each side of a compared logical model, unbounded by default.")
+	private int maxResources;
+
+	/**
+	 * Compares the logical models.
+	 */
+	private EMFCompare comparator;
+
+	/**
+	 * Budget bounding the diff threads and choosing how the comparisons are printed.
+	 */
+	private MemoryBudget budget;
+
 	/**
 	 * {@inheritDoc}.
 	 */
 	@Override
 	protected Integer performGitCommand() throws Die {
+		final EMFCompare.Builder builder = matchStrategy.createBuilder();
+		budget = new MemoryBudget(maxHeapFraction);
+		final ForkJoinPool pool;
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads);
+			builder.setDiffEngine(new ParallelDiffEngine(pool, threads, budget));
+		} else {
+			pool = null;
+		}
+		comparator = builder.build();
+		try {
+			if (mergeBaseOpt) {
+				try {
+					return printMergeBaseConflicts();
+				} catch (IOException e) {
+					throw new DiesOn(DeathType.ERROR).duedTo(e).displaying(e.getMessage()).ready();
+				}
+			}
+			return printDifferences();
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Compares the logical models modified between {@link #commit} and {@link #commitWith}, and prints their
+	 * differences.
+	 *
+	 * @return {@link Returns#COMPLETE}.
+	 * @throws Die
+	 *             if the repository can not be read.
+	 */
+	private Integer printDifferences() throws Die {
 		IWorkspace ws = ResourcesPlugin.getWorkspace();
 
 		// Call JGit diff to get the files involved
@@ -112,7 +239,7 @@ public class DiffApplication extends AbstractLogicalApplication {
 			if (pathFilter != null) {
 				diffCommand = diffCommand.setPathFilter(pathFilter);
 			}
-			Set<IFile> files = new HashSet<IFile>();
+			Map<String, IFile> files = new LinkedHashMap<String, IFile>();
 			List<DiffEntry> entries = diffCommand.call();
 
 			for (DiffEntry diffEntry : entries) {
@@ -120,7 +247,7 @@ public class DiffApplication extends AbstractLogicalApplication {
 				if (path != null) {
 					IFile file = ws.getRoot().getFile(new Path(path));
 					if (file != null) {
-						files.add(file);
+						files.put(path, file);
 					}
 				}
 			}
@@ -130,15 +257,38 @@ public class DiffApplication extends AbstractLogicalApplication {
 				return Returns.COMPLETE.code();
 			}
 
-			for (IFile file : files) {
+			final ModelDependencyIndex index = getModelDependencyIndex(commit);
+			// Drops the resources that have the same blob on all sides before they get loaded
+			final BlobIdResourceMinimizer blobIdMinimizer;
+			final RevCommit mergeBase;
+			if (commitWith != null) {
+				mergeBase = GitUtils.getMergeBase(repo, commit, commitWith);
+				blobIdMinimizer = new BlobIdResourceMinimizer(repo, commit, commitWith, mergeBase);
+			} else {
+				mergeBase = null;
+				blobIdMinimizer = null;
+			}
+			final RevisionModelLoader loader = createLoader();
+			// Skips the matching of the subtrees that are identical on all sides
+			final IdenticalSubtreeFilter subtreeFilter = IdenticalSubtreeFilter.forRepository(repo);
+			// Resources that have already been compared by the mapping of a previous file
+			final Set<String> displayed = new HashSet<String>();
+			for (Map.Entry<String, IFile> entry : files.entrySet()) {
+				final String path = entry.getKey();
+				final IFile file = entry.getValue();
+				if (displayed.contains(path)) {
+					continue;
+				}
+				Metrics.add(Counter.FILES_DIFFED, 1);
 				RemoteResourceMappingContext mergeContext = createSubscriberForComparison(repo, commit,
 						commitWith, file);
-				if (!isEMFCompareCompliantFile(mergeContext, file)) {
+				final ResourceMapping[] emfMappings = getResourceMappings(index, path, mergeContext, file);
+				if (emfMappings.length == 0) {
 					diffCommand.setPathFilter(PathFilter.create(file.getProjectRelativePath().toString()));
 					diffCommand.call();
 					System.out.println(out.toString());
 				} else {
-					final ResourceMapping[] emfMappings = getResourceMappings(mergeContext, file);
+					displayed.add(path);
 					for (ResourceMapping mapping : emfMappings) {
 						if (mapping instanceof EMFResourceMapping) {
 							/*
@@ -151,22 +301,52 @@ public class DiffApplication extends AbstractLogicalApplication {
 							mapping.getTraversals(mergeContext, nullProgressMonitor);
 							final SynchronizationModel syncModel = ((EMFResourceMapping)mapping)
 									.getLatestModel();
+							// Only what the mapping has actually resolved is covered by this comparison
+							addComparedPaths(displayed, syncModel);
+							if (blobIdMinimizer != null) {
+								blobIdMinimizer.minimize(syncModel, nullProgressMonitor);
+							}
 							minimizer.minimize(syncModel, nullProgressMonitor);
-							final IComparisonScope scope = ComparisonScopeBuilder.create(syncModel,
-									nullProgressMonitor);
+							IComparisonScope scope = null;
+							if (commitWith != null) {
+								// Streams the revisions from the object database
+								scope = loader.createScope(syncModel, commit, commitWith, mergeBase);
+							}
+							if (scope == null) {
+								scope = ComparisonScopeBuilder.create(syncModel, nullProgressMonitor);
+							}
+							try {
+								if (subtreeFilter != null) {
+									subtreeFilter.apply(scope);
+								}
 
-							final Comparison comparison = EMFCompare.builder().build().compare(scope,
-									BasicMonitor.toMonitor(nullProgressMonitor));
+								final Comparison comparison;
+								final PhaseEvent compareEvent = Phase.COMPARE.begin(path);
+								try {
+									comparison = comparator.compare(scope,
+											BasicMonitor.toMonitor(nullProgressMonitor));
+								} finally {
+									compareEvent.end();
+								}
+								if (subtreeFilter != null) {
+									subtreeFilter.addMatches(scope, comparison);
+								}
+								Metrics.recordComparison(comparison);
 
-							Resource resource = new XMIResourceImpl();
-							Copier copier = new Copier(false);
-							EObject comparisonCopy = copier.copy(comparison);
-							copier.copyReferences();
-							resource.getContents().add(comparisonCopy);
-
-							ByteArrayOutputStream baos = new ByteArrayOutputStream();
-							resource.save(baos, null);
-							System.out.println(baos.toString("UTF-8")); //$NON-NLS-1$
+								final PhaseEvent serializeEvent = Phase.SERIALIZE.begin(path);
+								try {
+									if (budget.isNearLimit()) {
+										printInPlace(comparison);
+									} else {
+										printCopy(comparison);
+									}
+								} finally {
+									serializeEvent.end();
+								}
+							} finally {
+								// The models of this logical model are not needed anymore
+								RevisionModelLoader.unload(scope);
+							}
 						}
 					}
 				}
@@ -178,4 +358,238 @@ public class DiffApplication extends AbstractLogicalApplication {
 		return Returns.COMPLETE.code();
 	}
 
+	/**
+	 * Adds the repository paths of the storages resolved by a synchronization model, i.e. of the resources
+	 * compared with it.
+	 * 
+	 * @param paths
+	 *            the paths to add to.
+	 * @param syncModel
+	 *            the synchronization model, before it is minimized.
+	 */
+	private void addComparedPaths(Set<String> paths, SynchronizationModel syncModel) {
+		for (StorageTraversal traversal : Arrays.asList(syncModel.getLeftTraversal(), syncModel
+				.getRightTraversal(), syncModel.getOriginTraversal())) {
+			if (traversal != null) {
+				for (IStorage storage : traversal.getStorages()) {
+					final String storagePath = toRepositoryPath(repo, storage);
+					if (storagePath != null) {
+						paths.add(storagePath);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compares three-way, from their merge base, the logical models modified on both sides of
+	 * {@link #commit} and {@link #commitWith}, and prints their conflicts.
+	 * 
+	 * @return {@link Returns#COMPLETE}.
+	 * @throws Die
+	 *             if the commits have no merge base.
+	 * @throws IOException
+	 *             if the repository can not be read or a conflict serialized.
+	 */
+	private Integer printMergeBaseConflicts() throws Die, IOException {
+		final RevCommit other;
+		if (commitWith != null) {
+			other = commitWith;
+		} else {
+			try (RevWalk walk = new RevWalk(repo)) {
+				other = walk.parseCommit(repo.resolve(Constants.HEAD));
+			}
+		}
+		final MergePrediction prediction = MergePrediction.predict(repo, commit, other);
+		final RevCommit mergeBase = prediction.getBase();
+		if (mergeBase == null) {
+			throw new DiesOn(DeathType.ERROR).displaying(
+					"No merge base between " + commit.name() + " and " + other.name()).ready();
+		}
+		final ModelDependencyIndex commitIndex = getModelDependencyIndex(commit);
+		final ModelDependencyIndex otherIndex = getModelDependencyIndex(other);
+		final ModelDependencyIndex baseIndex = getModelDependencyIndex(mergeBase);
+		final RevisionModelLoader loader = createLoader();
+		final IdenticalSubtreeFilter subtreeFilter = IdenticalSubtreeFilter.forRepository(repo);
+		// Resources of the logical models that have already been compared
+		final Set<String> compared = new HashSet<String>();
+		int conflictCount = 0;
+		for (String path : prediction.getLogicalMergePaths()) {
+			if (compared.contains(path) || !isInPathFilter(path)) {
+				continue;
+			}
+			final Set<String> logicalModel = new TreeSet<String>();
+			logicalModel.addAll(commitIndex.getLogicalModel(path));
+			logicalModel.addAll(otherIndex.getLogicalModel(path));
+			compared.addAll(logicalModel);
+
+			ResourceSet leftSet = null;
+			ResourceSet rightSet = null;
+			ResourceSet originSet = null;
+			try {
+				leftSet = loader.load(commit, filter(logicalModel, commitIndex));
+				rightSet = loader.load(other, filter(logicalModel, otherIndex));
+				originSet = loader.load(mergeBase, filter(logicalModel, baseIndex));
+				final IComparisonScope scope = loader.createScope(leftSet, rightSet, originSet);
+				if (subtreeFilter != null) {
+					subtreeFilter.apply(scope);
+				}
+				final PhaseEvent compareEvent = Phase.COMPARE.begin(path);
+				final Comparison comparison;
+				try {
+					comparison = comparator.compare(scope);
+				} finally {
+					compareEvent.end();
+				}
+				if (subtreeFilter != null) {
+					subtreeFilter.addMatches(scope, comparison);
+				}
+				Metrics.recordComparison(comparison);
+				if (!comparison.getConflicts().isEmpty()) {
+					conflictCount += comparison.getConflicts().size();
+					final PhaseEvent serializeEvent = Phase.SERIALIZE.begin(path);
+					try {
+						printConflicts(comparison);
+					} finally {
+						serializeEvent.end();
+					}
+				}
+			} finally {
+				RevisionModelLoader.unload(leftSet);
+				RevisionModelLoader.unload(rightSet);
+				RevisionModelLoader.unload(originSet);
+			}
+		}
+		if (conflictCount == 0) {
+			System.out.println("No conflict to display.");
+		}
+		return Returns.COMPLETE.code();
+	}
+
+	/**
+	 * Creates the loader of the compared revisions, which resolves the proxies and bounds the number of
+	 * loaded resources as required by the options.
+	 *
+	 * @return the loader.
+	 */
+	private RevisionModelLoader createLoader() {
+		final RevisionModelLoader loader = new RevisionModelLoader(repo, BinaryResourceCache
+				.forRepository(repo));
+		loader.setProxyResolution(proxyResolution);
+		loader.setMaxResources(maxResources);
+		return loader;
+	}
+
+	/**
+	 * Returns <code>true</code> if a path is selected by the path filter of the command, if any.
+	 * 
+	 * @param path
+	 *            a repository path.
+	 * @return <code>true</code> if there is no path filter or if it selects the path.
+	 */
+	private boolean isInPathFilter(String path) {
+		if (!(pathFilter instanceof PathFilter)) {
+			return true;
+		}
+		final String filtered = ((PathFilter)pathFilter).getPath();
+		return path.equals(filtered) || path.startsWith(filtered + '/');
+	}
+
+	/**
+	 * Keeps the paths which are model resources of a tree.
+	 * 
+	 * @param paths
+	 *            repository paths.
+	 * @param index
+	 *            model dependency index of the tree.
+	 * @return the model resources of the tree.
+	 */
+	private static List<String> filter(Set<String> paths, ModelDependencyIndex index) {
+		final List<String> filtered = new ArrayList<String>();
+		for (String path : paths) {
+			if (index.isModel(path)) {
+				filtered.add(path);
+			}
+		}
+		return filtered;
+	}
+
+	/**
+	 * Prints the conflicts of a comparison and the differences they hold. The matches are not serialized:
+	 * the differences only reference the compared model elements.
+	 * 
+	 * @param comparison
+	 *            the three-way comparison.
+	 * @throws IOException
+	 *             if the conflicts can not be serialized.
+	 */
+	private void printConflicts(Comparison comparison) throws IOException {
+		final Resource resource = new XMIResourceImpl();
+		final Copier copier = new Copier(false, true);
+		final Comparison conflicts = CompareFactory.eINSTANCE.createComparison();
+		conflicts.setThreeWay(true);
+		resource.getContents().add(conflicts);
+		for (Conflict conflict : comparison.getConflicts()) {
+			conflicts.getConflicts().add((Conflict)copier.copy(conflict));
+			resource.getContents().addAll(copier.copyAll(conflict.getDifferences()));
+		}
+		copier.copyReferences();
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		resource.save(baos, Collections.singletonMap(XMLResource.OPTION_PROCESS_DANGLING_HREF,
+				XMLResource.OPTION_PROCESS_DANGLING_HREF_DISCARD));
+		System.out.println(baos.toString("UTF-8")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Prints a copy of a comparison, serialized in memory before being printed.
+	 * 
+	 * @param comparison
+	 *            the comparison to print.
+	 * @throws IOException
+	 *             if the comparison can not be serialized.
+	 */
+	private void printCopy(Comparison comparison) throws IOException {
+		Resource resource = new XMIResourceImpl();
+		Copier copier = new Copier(false);
+		EObject comparisonCopy = copier.copy(comparison);
+		copier.copyReferences();
+		resource.getContents().add(comparisonCopy);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		resource.save(baos, null);
+		System.out.println(baos.toString("UTF-8")); //$NON-NLS-1$
+	}
+
+	/**
+	 * Prints a comparison with neither copying it nor buffering its serialization: used once the memory
+	 * budget is reached.
+	 * 
+	 * @param comparison
+	 *            the comparison to print.
+	 * @throws IOException
+	 *             if the comparison can not be serialized.
+	 */
+	private void printInPlace(Comparison comparison) throws IOException {
+		Resource resource = new XMIResourceImpl();
+		resource.getContents().add(comparison);
+		try {
+			// The standard output must stay open
+			resource.save(new FilterOutputStream(System.out) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+				}
+
+				@Override
+				public void close() throws IOException {
+					flush();
+				}
+			}, null);
+		} finally {
+			resource.getContents().clear();
+		}
+		System.out.println();
+	}
+
 }
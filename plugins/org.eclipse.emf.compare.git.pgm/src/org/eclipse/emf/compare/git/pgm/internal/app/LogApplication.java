@@ -0,0 +1,400 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.LogCommand.ELEMENT_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.LogCommand.MAX_COUNT_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.AttributeChange;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.Diff;
+import org.eclipse.emf.compare.EMFCompare;
+import org.eclipse.emf.compare.Match;
+import org.eclipse.emf.compare.ReferenceChange;
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.merge.LogicalModelSession;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Logical log application. <h3>Name</h3>
+ * <p>
+ * logicallog - Git Logical Log
+ * </p>
+ * <h4>Synopsis</h4>
+ * <p>
+ * logicallog &lt;setup&gt; &lt;path&gt; &lt;commit&gt; [--element &lt;uriFragment&gt;] [-n &lt;count&gt;]
+ * </p>
+ * <h4>Description</h4>
+ * <p>
+ * Walks the history from the given commit and compares each commit that changes a blob of the logical model
+ * with its first parent. The walk only yields the commits that change a file with the extension of a model
+ * resource, their parents being rewritten to the previous such commits, so that the logical model is only
+ * computed again for them, from the resources the given path refers to in the commit and in its parents:
+ * the resources that left or joined the model are followed. The commits are compared from two
+ * {@link LogicalModelSession}s that swap sides from one commit to the next: the parent side of a comparison
+ * is the child side of the next one, so that only the resources which blob differs are loaded again. Each
+ * difference is printed on its own line:
+ * </p>
+ *
+ * <pre>
+ * &lt;commit&gt; TAB &lt;kind&gt; TAB &lt;path&gt;#&lt;uriFragment&gt; TAB &lt;feature&gt;
+ * </pre>
+ * <p>
+ * Merge commits are simplified the way <code>git log -- &lt;path&gt;</code> does: a merge whose logical
+ * model is the same as in one of its parents is skipped, since the changes it brings are listed with the
+ * commits of the merged branch. A merge that changes the model compared with all its parents, such as the
+ * resolution of a conflict, is compared with its first parent.
+ * </p>
+ */
+public class LogApplication extends AbstractLogicalApplication {
+
+	/** Number of logical models kept for the next walked commits. */
+	private static final int LOGICAL_MODELS_CACHE_SIZE = 16;
+
+	/** Holds the path of the model which history is displayed. */
+	@Argument(index = 2, required = true, metaVar = "<path>", usage = "Path, in the repository, of a resource of the logical model.")
+	private String path;
+
+	/** Holds the commit from which the history is walked. */
+	@Argument(index = 3, required = true, metaVar = "<commit>", usage = "Commit ID or branch name from which the history is walked.", handler = RevCommitHandler.class)
+	private RevCommit commit;
+
+	/** Holds the URI fragment of the element which changes are displayed. */
+	@Option(name = ELEMENT_OPT, metaVar = "uriFragment", usage = "Only displays the changes of the element with the given URI fragment or ID.")
+	private String element;
+
+	/** Holds the maximum number of commits displayed. */
+	@Option(name = MAX_COUNT_OPT, metaVar = "count", usage = "Stops after the given number of commits changing the model.")
+	private int maxCount;
+
+	/** Paths of the resources of the logical model, by URI. */
+	private final Map<URI, String> pathsByURI = new HashMap<URI, String>();
+
+	/**
+	 * Logical models of the displayed path in the last walked commits, by tree id: a commit is usually
+	 * walked as a parent right before being walked as a child.
+	 */
+	private final Map<ObjectId, Set<String>> logicalModels = new LinkedHashMap<ObjectId, Set<String>>() {
+		/** Serial version UID. */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ObjectId, Set<String>> eldest) {
+			return size() > LOGICAL_MODELS_CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Integer performGitCommand() throws Die {
+		try {
+			if (!getModelDependencyIndex(commit).isModel(path)) {
+				throw new DiesOn(DeathType.FATAL).displaying(
+						path + " is not a model resource").ready(); //$NON-NLS-1$
+			}
+			walk(new RevisionModelLoader(repo, BinaryResourceCache.forRepository(repo)));
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.ERROR).duedTo(e).displaying(e.getMessage()).ready();
+		}
+		return Returns.COMPLETE.code();
+	}
+
+	/**
+	 * Walks the history and prints the differences of the commits changing the logical model.
+	 *
+	 * @param loader
+	 *            loader of the revisions.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	private void walk(RevisionModelLoader loader) throws IOException {
+		LogicalModelSession child = null;
+		LogicalModelSession parent = null;
+		int count = 0;
+		try (RevWalk walk = new RevWalk(repo)) {
+			// The logical model can only change with the blob of a model resource
+			walk.setTreeFilter(AndTreeFilter.create(createModelFilter(), TreeFilter.ANY_DIFF));
+			// Sorting makes the walk rewrite the parents to the walked commits, which models are cached
+			walk.sort(RevSort.COMMIT_TIME_DESC);
+			walk.markStart(walk.parseCommit(commit));
+			for (RevCommit current : walk) {
+				final Set<String> childModel = getLogicalModel(current);
+				final RevCommit parentCommit;
+				if (current.getParentCount() > 0) {
+					parentCommit = walk.parseCommit(current.getParent(0));
+				} else {
+					parentCommit = null;
+				}
+				final Set<String> logicalModel = new TreeSet<String>(childModel);
+				logicalModel.addAll(getLogicalModel(parentCommit));
+				final Map<String, ObjectId> childBlobs = getBlobs(current, logicalModel);
+				final Map<String, ObjectId> parentBlobs = getBlobs(parentCommit, logicalModel);
+				if (childBlobs.equals(parentBlobs) || isSameAsMergedParent(walk, current, childModel)) {
+					continue;
+				}
+				for (String modelPath : logicalModel) {
+					pathsByURI.put(loader.getURI(modelPath), modelPath);
+				}
+
+				// The parent side of the previous comparison usually holds the blobs of this child side
+				final LogicalModelSession swapped = child;
+				child = parent;
+				parent = swapped;
+				child = moveTo(child, loader, current, childBlobs);
+				final ResourceSet parentSet;
+				if (parentCommit != null) {
+					parent = moveTo(parent, loader, parentCommit, parentBlobs);
+					parentSet = parent.getResourceSet();
+				} else {
+					parentSet = loader.createResourceSet(current);
+				}
+
+				final Comparison comparison = EMFCompare.builder().build().compare(
+						loader.createScope(child.getResourceSet(), parentSet, null));
+				Metrics.recordComparison(comparison);
+				print(current, comparison);
+				count++;
+				if (maxCount > 0 && count >= maxCount) {
+					break;
+				}
+			}
+		} finally {
+			if (child != null) {
+				child.dispose();
+			}
+			if (parent != null) {
+				parent.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Creates the filter of the paths with the extension of a model resource.
+	 *
+	 * @return the filter, {@link TreeFilter#ALL} if no model extension is registered.
+	 */
+	private static TreeFilter createModelFilter() {
+		final List<TreeFilter> filters = new ArrayList<TreeFilter>();
+		for (String extension : ModelDependencyIndex.getDefaultModelExtensions()) {
+			filters.add(PathSuffixFilter.create('.' + extension));
+		}
+		if (filters.isEmpty()) {
+			return TreeFilter.ALL;
+		} else if (filters.size() == 1) {
+			return filters.get(0);
+		}
+		return OrTreeFilter.create(filters);
+	}
+
+	/**
+	 * Tells whether the logical model of a merge commit is the same as in one of its merged parents, in
+	 * which case the merge brings no change of its own to the model.
+	 *
+	 * @param walk
+	 *            the walk of the history.
+	 * @param merge
+	 *            the commit.
+	 * @param mergeModel
+	 *            paths of the resources of the logical model in the commit.
+	 * @return <code>true</code> if the commit is a merge and its logical model is the same as in one of the
+	 *         parents other than the first one.
+	 * @throws IOException
+	 *             if a parent can not be read.
+	 */
+	private boolean isSameAsMergedParent(RevWalk walk, RevCommit merge, Set<String> mergeModel)
+			throws IOException {
+		for (int i = 1; i < merge.getParentCount(); i++) {
+			final RevCommit mergedParent = walk.parseCommit(merge.getParent(i));
+			final Set<String> logicalModel = new TreeSet<String>(mergeModel);
+			logicalModel.addAll(getLogicalModel(mergedParent));
+			if (getBlobs(merge, logicalModel).equals(getBlobs(mergedParent, logicalModel))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the logical model of the displayed path in a commit.
+	 *
+	 * @param revision
+	 *            the commit, may be <code>null</code>.
+	 * @return the paths of the resources of the logical model, empty if the path is not a model resource of
+	 *         the commit.
+	 * @throws IOException
+	 *             if the tree can not be read.
+	 */
+	private Set<String> getLogicalModel(RevCommit revision) throws IOException {
+		if (revision == null) {
+			return Collections.emptySet();
+		}
+		Set<String> logicalModel = logicalModels.get(revision.getTree());
+		if (logicalModel == null) {
+			logicalModel = ModelDependencyIndex.get(repo, revision.getTree()).getLogicalModel(path);
+			logicalModels.put(revision.getTree().copy(), logicalModel);
+		}
+		return logicalModel;
+	}
+
+	/**
+	 * Moves a session to a commit, creating it if needed, and loads the resources of the logical model that
+	 * exist in the commit.
+	 *
+	 * @param session
+	 *            the session, <code>null</code> if it has not been created yet.
+	 * @param loader
+	 *            loader of the revisions.
+	 * @param target
+	 *            the commit.
+	 * @param blobs
+	 *            blob ids of the resources of the logical model in the commit, by path.
+	 * @return the session.
+	 * @throws IOException
+	 *             if the commit can not be read.
+	 */
+	private static LogicalModelSession moveTo(LogicalModelSession session, RevisionModelLoader loader,
+			RevCommit target, Map<String, ObjectId> blobs) throws IOException {
+		final LogicalModelSession moved;
+		if (session == null) {
+			moved = new LogicalModelSession(loader, target);
+		} else {
+			moved = session;
+			moved.moveTo(target.getTree());
+		}
+		for (String blobPath : blobs.keySet()) {
+			moved.getResource(blobPath);
+		}
+		return moved;
+	}
+
+	/**
+	 * Gets the blob ids of the resources of the logical model in a commit.
+	 *
+	 * @param revision
+	 *            the commit, may be <code>null</code>.
+	 * @param logicalModel
+	 *            paths of the resources of the logical model.
+	 * @return the blob ids of the resources that exist in the commit, by path.
+	 * @throws IOException
+	 *             if the tree can not be read.
+	 */
+	private Map<String, ObjectId> getBlobs(RevCommit revision, Set<String> logicalModel) throws IOException {
+		if (revision == null || logicalModel.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		final Map<String, ObjectId> blobs = new HashMap<String, ObjectId>();
+		try (TreeWalk treeWalk = new TreeWalk(repo)) {
+			treeWalk.addTree(revision.getTree());
+			treeWalk.setRecursive(true);
+			treeWalk.setFilter(PathFilterGroup.createFromStrings(logicalModel));
+			while (treeWalk.next()) {
+				blobs.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+			}
+		}
+		return blobs;
+	}
+
+	/**
+	 * Prints the differences of a commit, one per line.
+	 *
+	 * @param revision
+	 *            the commit.
+	 * @param comparison
+	 *            the comparison of the commit with its parent.
+	 */
+	private void print(RevCommit revision, Comparison comparison) {
+		final String commitId = revision.abbreviate(Constants.OBJECT_ID_ABBREV_STRING_LENGTH).name();
+		for (Diff diff : comparison.getDifferences()) {
+			final String changed = getChangedElement(diff.getMatch());
+			if (changed == null || (element != null && !changed.endsWith('#' + element))) {
+				continue;
+			}
+			final StringBuilder line = new StringBuilder(commitId).append(TAB).append(diff.getKind())
+					.append(TAB).append(changed);
+			final EStructuralFeature feature;
+			if (diff instanceof ReferenceChange) {
+				feature = ((ReferenceChange)diff).getReference();
+			} else if (diff instanceof AttributeChange) {
+				feature = ((AttributeChange)diff).getAttribute();
+			} else {
+				feature = null;
+			}
+			if (feature != null) {
+				line.append(TAB).append(feature.getName());
+			}
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * Describes the element of a match as the path of its resource and its URI fragment.
+	 *
+	 * @param match
+	 *            the match.
+	 * @return the description or <code>null</code> if the element does not belong to a resource.
+	 */
+	private String getChangedElement(Match match) {
+		EObject object = match.getLeft();
+		if (object == null) {
+			object = match.getRight();
+		}
+		if (object == null || object.eResource() == null) {
+			return null;
+		}
+		final Resource resource = object.eResource();
+		String resourcePath = pathsByURI.get(resource.getURI());
+		if (resourcePath == null) {
+			resourcePath = resource.getURI().toString();
+		}
+		return resourcePath + '#' + resource.getURIFragment(object);
+	}
+}
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.app;
 
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.MergeCommand.AUTO_RESOLVE_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 
 import com.google.common.base.Joiner;
@@ -17,28 +18,44 @@ import com.google.common.collect.Lists;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
 
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.egit.core.op.MergeOperation;
 import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
-import org.eclipse.jgit.api.Git;
+import org.eclipse.emf.compare.git.pgm.internal.merge.LogicalConflictResolver;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorktreeStatus;
+import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
 import org.eclipse.jgit.errors.NoWorkTreeException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdRef;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.merge.MergeMessageFormatter;
 import org.eclipse.jgit.merge.MergeStrategy;
 import org.eclipse.jgit.merge.ResolveMerger.MergeFailureReason;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -80,6 +97,12 @@ public class MergeApplication extends AbstractLogicalApplication {
 	@Option(name = "-m", metaVar = "message", required = false, usage = " Set the commit message to be used for the merge commit (in case one is created).")
 	private String message;
 
+	/**
+	 * Merges the non-conflicting differences of the conflicting models.
+	 */
+	@Option(name = AUTO_RESOLVE_OPT, usage = "Merges the non-conflicting differences of the conflicting models and leaves only the real conflicts to the logicalmergetool command.")
+	private boolean autoResolve;
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -90,7 +113,7 @@ public class MergeApplication extends AbstractLogicalApplication {
 			if (message != null) {
 				merge.setMessage(message);
 			}
-			merge.execute(new NullProgressMonitor());
+			execute(merge);
 			MergeResult result = merge.getResult();
 			Ref oldHead = repo.getRef(Constants.HEAD);
 
@@ -135,8 +158,16 @@ public class MergeApplication extends AbstractLogicalApplication {
 				returnCode = Returns.COMPLETE.code();
 				break;
 			case CONFLICTING:
-				returnCode = Returns.ABORTED.code();
-				messageToPrint = buildConflictingMessage(mergeResult);
+				if (autoResolve && autoResolveConflicts()) {
+					commitMerge();
+					returnCode = Returns.COMPLETE.code();
+					messageToPrint = new StringBuilder().append(
+							"Automatic merge resolved all the conflicts; merge made by '").append(
+							strategy.getName()).append("' strategy.").append(EOL).toString();
+				} else {
+					returnCode = Returns.ABORTED.code();
+					messageToPrint = buildConflictingMessage(mergeResult);
+				}
 				break;
 			case FAILED:
 				throw new DiesOn(DeathType.ERROR).displaying(getFailedMessage(mergeResult)).ready();
@@ -188,7 +219,7 @@ public class MergeApplication extends AbstractLogicalApplication {
 		try {
 			// Should use mergeResult.getConflicting() however due to its random result we prefer using the
 			// status of the git repository.
-			final Status status = Git.wrap(repo).status().call();
+			final Status status = WorktreeStatus.refresh(repo);
 			List<String> conflictingFile = Lists.newArrayList(status.getConflicting());
 			// In order to have a determinist order.
 			Collections.sort(conflictingFile);
@@ -207,6 +238,127 @@ public class MergeApplication extends AbstractLogicalApplication {
 		return messageBuilder.toString();
 	}
 
+	/**
+	 * Merges, in the work tree, the logical models of the conflicting model files. The files of the logical
+	 * models which hold no real conflict are written and added to the index. The other ones are left
+	 * untouched, so that the logicalmergetool command finds them as the conflicting entries of the index
+	 * describe them.
+	 * 
+	 * @return <code>true</code> if all the conflicts have been resolved.
+	 * @throws IOException
+	 *             if the revisions can not be read, or a merged file written.
+	 */
+	private boolean autoResolveConflicts() throws IOException {
+		final List<String> conflicting;
+		try {
+			conflicting = Lists.newArrayList(WorktreeStatus.refresh(repo).getConflicting());
+		} catch (GitAPIException e) {
+			return false;
+		}
+		Collections.sort(conflicting);
+		final RevCommit ours;
+		try (RevWalk walk = new RevWalk(repo)) {
+			ours = walk.parseCommit(repo.resolve(Constants.HEAD));
+		}
+		final RevCommit base = GitUtils.getMergeBase(repo, ours, commit);
+		if (base == null) {
+			return false;
+		}
+		final ModelDependencyIndex oursIndex = getModelDependencyIndex(ours);
+		final ModelDependencyIndex theirsIndex = getModelDependencyIndex(commit);
+		final DirCache dirCache = repo.readDirCache();
+		final LogicalConflictResolver resolver = new LogicalConflictResolver(new RevisionModelLoader(repo,
+				BinaryResourceCache.forRepository(repo)));
+		final Set<String> handled = new HashSet<String>();
+		final List<String> resolved = Lists.newArrayList();
+		for (String path : conflicting) {
+			if (handled.contains(path) || !oursIndex.isModel(path) && !theirsIndex.isModel(path)) {
+				continue;
+			}
+			final Set<String> logicalModel = new TreeSet<String>(oursIndex.getLogicalModel(path));
+			logicalModel.addAll(theirsIndex.getLogicalModel(path));
+			logicalModel.add(path);
+			final List<String> modelConflicts = Lists.newArrayList();
+			boolean addedOrDeleted = false;
+			for (String conflictingPath : conflicting) {
+				if (logicalModel.contains(conflictingPath)) {
+					modelConflicts.add(conflictingPath);
+					addedOrDeleted |= !hasAllStages(dirCache, conflictingPath);
+				}
+			}
+			handled.addAll(modelConflicts);
+			if (addedOrDeleted) {
+				// Added or deleted on one side, there is no version to merge into
+				continue;
+			}
+			final int left = resolver.resolve(base, ours, commit, logicalModel, modelConflicts);
+			final String files = Joiner.on(", ").join(modelConflicts); //$NON-NLS-1$
+			if (left == 0) {
+				resolved.addAll(modelConflicts);
+				System.out.println("Auto-resolved " + files); //$NON-NLS-1$
+			} else {
+				System.out.println("Could not auto-resolve " + files //$NON-NLS-1$
+						+ ": " + left + " conflict(s) left"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		try {
+			if (!resolved.isEmpty()) {
+				final AddCommand add = getGit().add();
+				for (String path : resolved) {
+					add.addFilepattern(path);
+				}
+				add.call();
+			}
+			ResourcesPlugin.getWorkspace().getRoot().refreshLocal(IResource.DEPTH_INFINITE,
+					new NullProgressMonitor());
+		} catch (GitAPIException | CoreException e) {
+			throw new IOException(e.getMessage(), e);
+		}
+		return resolved.size() == conflicting.size();
+	}
+
+	/**
+	 * Commits the merge once all its conflicts have been resolved, with the message given to the command or
+	 * the one git would have used had the merge succeeded.
+	 * 
+	 * @throws Die
+	 *             if the merge can not be committed.
+	 */
+	private void commitMerge() throws Die {
+		try {
+			String commitMessage = message;
+			if (commitMessage == null) {
+				final Ref merged = new ObjectIdRef.Unpeeled(Ref.Storage.LOOSE, commit.getName(), commit);
+				commitMessage = new MergeMessageFormatter().format(Collections.singletonList(merged), repo
+						.getRef(Constants.HEAD));
+			}
+			getGit().commit().setMessage(commitMessage).call();
+		} catch (GitAPIException | IOException e) {
+			throw new DiesOn(DeathType.ERROR).duedTo(e).displaying(
+					"Cannot commit the auto-resolved merge: " + e.getMessage()).ready(); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Tells whether a conflicting path has a version at each stage of the index.
+	 * 
+	 * @param dirCache
+	 *            the index.
+	 * @param path
+	 *            the conflicting path.
+	 * @return <code>false</code> if the path has been added or deleted on one side.
+	 */
+	private static boolean hasAllStages(DirCache dirCache, String path) {
+		final boolean[] stages = new boolean[DirCacheEntry.STAGE_3 + 1];
+		int i = dirCache.findEntry(path);
+		while (i >= 0 && i < dirCache.getEntryCount() && dirCache.getEntry(i).getPathString().equals(path)) {
+			stages[dirCache.getEntry(i).getStage()] = true;
+			i++;
+		}
+		return stages[DirCacheEntry.STAGE_1] && stages[DirCacheEntry.STAGE_2]
+				&& stages[DirCacheEntry.STAGE_3];
+	}
+
 	/**
 	 * Builds the message to display to the user when the merge ends on a FAILED status.
 	 * 
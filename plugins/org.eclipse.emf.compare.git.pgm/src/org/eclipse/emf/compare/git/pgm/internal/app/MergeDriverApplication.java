@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.MergeDriverCommand.getSessionFolder;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ComparisonCache;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.merge.ModelFileMerger;
+import org.eclipse.emf.compare.git.pgm.internal.util.CommandSession;
+import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
+import org.kohsuke.args4j.Argument;
+
+/**
+ * Logical merge driver application. <h3>Name</h3>
+ * <p>
+ * logicalmergedriver - Git Logical Merge Driver
+ * </p>
+ * <h4>Synopsis</h4>
+ * <p>
+ * logicalmergedriver &lt;setup&gt; &lt;base&gt; &lt;current&gt; &lt;other&gt; &lt;path&gt;
+ * </p>
+ * <h4>Description</h4>
+ * <p>
+ * Merges a model file on behalf of git, then keeps running to merge the next files sent by the
+ * logicalmergedriver command until it has been idle for {@link #IDLE_TIMEOUT} milliseconds.
+ * </p>
+ */
+public class MergeDriverApplication extends AbstractLogicalApplication {
+
+	/** Time, in milliseconds, after which the idle application ends. */
+	static final int IDLE_TIMEOUT = 10 * 60 * 1000;
+
+	/** Number of attributes of a file to merge. */
+	private static final int MERGE_ATTRIBUTES = 4;
+
+	/** Holds the common ancestor version of the file. */
+	@Argument(index = 2, required = true, metaVar = "<base>", usage = "File holding the common ancestor version.")
+	private File base;
+
+	/** Holds the current version of the file. */
+	@Argument(index = 3, required = true, metaVar = "<current>", usage = "File holding the current version.")
+	private File current;
+
+	/** Holds the version of the file on the other side. */
+	@Argument(index = 4, required = true, metaVar = "<other>", usage = "File holding the version of the other side.")
+	private File other;
+
+	/** Holds the path of the merged file. */
+	@Argument(index = 5, required = true, metaVar = "<path>", usage = "Path of the merged file in the repository.")
+	private String path;
+
+	/** Merger of the model files, shared by all the merges of the application and created on the first one. */
+	private ModelFileMerger merger;
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The projects are not imported: the files are merged outside of the workspace, and git holds the lock of
+	 * the index while the driver runs.
+	 * </p>
+	 */
+	@Override
+	protected void performStartup() throws Die {
+		// Nothing to import
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Integer performGitCommand() throws Die {
+		final Integer code = mergeFile(System.out);
+		try {
+			return keepAlive(code);
+		} catch (IOException e) {
+			// The file has been merged anyway, the next ones will launch a new application
+			return code;
+		}
+	}
+
+	/**
+	 * Merges the current file.
+	 *
+	 * @param out
+	 *            the stream on which the outcome of the merge is printed.
+	 * @return {@link Returns#COMPLETE} if the file has been merged, {@link Returns#ABORTED} if it holds a
+	 *         conflict.
+	 */
+	private Integer mergeFile(PrintStream out) {
+		final URI uri = URI.createFileURI(new File(repo.getWorkTree(), path).getAbsolutePath());
+		// CHECKSTYLE.OFF: IllegalCatch - EMF wraps the loading errors in runtime exceptions
+		try {
+			if (merger == null) {
+				merger = new ModelFileMerger(repo, ComparisonCache.forRepository(repo));
+			}
+			if (merger.merge(uri, base, current, other)) {
+				out.println("Merged " + path + " logically."); //$NON-NLS-1$ //$NON-NLS-2$
+				return Returns.COMPLETE.code();
+			}
+			out.println("CONFLICT (logical): Merge conflict in " + path); //$NON-NLS-1$
+			return Returns.ABORTED.code();
+		} catch (Exception e) {
+			return EMFCompareGitPGMUtil.handleDieError(new DiesOn(DeathType.ERROR).duedTo(e).displaying(
+					"Cannot merge " + path + ": " + e.getMessage()).ready(), isShowStackTrace()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		// CHECKSTYLE.ON: IllegalCatch
+	}
+
+	/**
+	 * Hands the result of the first merge over to the command and keeps the application running to merge the
+	 * next files.
+	 *
+	 * @param code
+	 *            return code of the first merge.
+	 * @return return code of the last merge.
+	 * @throws IOException
+	 *             if the session can not be opened.
+	 */
+	private Integer keepAlive(Integer code) throws IOException {
+		try (CommandSession session = CommandSession.open(getSessionFolder(repo, setupFile))) {
+			LogicalApplicationLauncher.detach(code);
+			return session.serveUntilIdle(new CommandSession.StepHandler() {
+				public Integer performStep(String step, PrintStream out) {
+					return performSessionStep(step, out);
+				}
+			}, IDLE_TIMEOUT);
+		}
+	}
+
+	/**
+	 * Merges a file sent to the session.
+	 *
+	 * @param step
+	 *            the base, current and other files and the path of the merged file, separated by tabs.
+	 * @param out
+	 *            the stream sent to the client of the session.
+	 * @return the return code of the merge.
+	 */
+	private Integer performSessionStep(String step, PrintStream out) {
+		final String[] attributes = step.split(TAB);
+		if (attributes.length != MERGE_ATTRIBUTES) {
+			return EMFCompareGitPGMUtil.handleDieError(new DiesOn(DeathType.FATAL).displaying(
+					"Invalid file to merge " + step).ready(), isShowStackTrace()); //$NON-NLS-1$
+		}
+		base = new File(attributes[0]);
+		current = new File(attributes[1]);
+		other = new File(attributes[2]);
+		path = attributes[3];
+		return mergeFile(out);
+	}
+}
@@ -23,13 +23,12 @@ import java.util.Map.Entry;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.egit.core.op.PullOperation;
 import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
-import org.eclipse.jgit.api.Git;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorktreeStatus;
 import org.eclipse.jgit.api.MergeResult;
 import org.eclipse.jgit.api.PullResult;
 import org.eclipse.jgit.api.Status;
@@ -66,7 +65,7 @@ public class PullApplication extends AbstractLogicalApplication {
 	protected Integer performGitCommand() throws Die {
 		try {
 			PullOperation operation = new PullOperation(Sets.newHashSet(repo), TIMEOUT);
-			operation.execute(new NullProgressMonitor());
+			execute(operation);
 			Object value = operation.getResults().get(repo);
 			if (value instanceof PullResult) {
 				PullResult result = (PullResult)value;
@@ -220,7 +219,7 @@ public class PullApplication extends AbstractLogicalApplication {
 		try {
 			// Should use mergeResult.getConflicting() however due to its random result we prefer using the
 			// status of the git repository.
-			final Status status = Git.wrap(repo).status().call();
+			final Status status = WorktreeStatus.refresh(repo);
 			List<String> conflictingFile = Lists.newArrayList(status.getConflicting());
 			// In order to have a determinist order.
 			Collections.sort(conflictingFile);
@@ -12,6 +12,8 @@ package org.eclipse.emf.compare.git.pgm.internal.app;
 
 import static org.eclipse.emf.compare.git.pgm.internal.cmd.RebaseCommand.ABORT_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.cmd.RebaseCommand.CONTINUE_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.RebaseCommand.INCREMENTAL_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.cmd.RebaseCommand.KEEP_ALIVE_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.cmd.RebaseCommand.SKIP_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
@@ -19,28 +21,44 @@ import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil
 import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getCommitsBetween;
 import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getCurrentBranchRemoteTrackingRef;
 import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getOneLineCommitMsg;
+import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getRebaseStateDirectory;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.List;
 
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.egit.core.op.BranchOperation;
 import org.eclipse.egit.core.op.RebaseOperation;
 import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.args.RefHandler;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ComparisonCache;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.merge.IncrementalRebase;
+import org.eclipse.emf.compare.git.pgm.internal.util.CommandSession;
+import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorktreeStatus;
 import org.eclipse.jgit.api.CheckoutResult;
 import org.eclipse.jgit.api.RebaseCommand.Operation;
 import org.eclipse.jgit.api.RebaseResult;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCacheCheckout;
+import org.eclipse.jgit.errors.CheckoutConflictException;
 import org.eclipse.jgit.errors.NoWorkTreeException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.kohsuke.args4j.Argument;
@@ -54,7 +72,7 @@ import org.kohsuke.args4j.Option;
  * <h4>Synopsis</h4>
  * <p>
  * logicalrebase &lt;setup&gt; [&lt;upstream&gt;] [&lt;branch&gt;] [--abort] [--continue] [--skip]
- * [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;]
+ * [--incremental] [--keep-alive] [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;]
  * </p>
  * <h4>Description</h4>
  * <p>
@@ -86,6 +104,17 @@ public class RebaseApplication extends AbstractLogicalApplication {
 	@Option(required = false, name = SKIP_OPT, usage = "Use this option to skip the current commit being rebased.")
 	private boolean skipOpt;
 
+	/** Incremental option. */
+	@Option(required = false, name = INCREMENTAL_OPT, usage = "Replays the commits in memory, keeping the models loaded from one commit to the next. Falls back to a regular rebase on conflicts.")
+	private boolean incrementalOpt;
+
+	/** Keep alive option. */
+	@Option(required = false, name = KEEP_ALIVE_OPT, usage = "Keeps the application running when the rebase stops on a conflict, so that it processes the next --continue, --skip or --abort without being relaunched.")
+	private boolean keepAliveOpt;
+
+	/** Stream sent to the client of the session while a step is processed, <code>null</code> otherwise. */
+	private PrintStream stepOut;
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -106,10 +135,20 @@ public class RebaseApplication extends AbstractLogicalApplication {
 			if (continueOpt || abortOpt || skipOpt) {
 				result = processRebaseStep();
 			} else {
+				if (incrementalOpt) {
+					Integer code = startIncrementalRebase();
+					if (code != null) {
+						return code;
+					}
+				}
 				result = startRebase();
 			}
 			waitEgitJobs();
-			return handleRebaseResult(result);
+			Integer code = handleRebaseResult(result);
+			if (keepAliveOpt && Returns.ABORTED.code().equals(code)) {
+				code = keepAlive(code);
+			}
+			return code;
 
 		} catch (CoreException | IOException e) {
 			throw new DiesOn(DeathType.ERROR).duedTo(e).displaying(e.getMessage()).ready();
@@ -130,7 +169,7 @@ public class RebaseApplication extends AbstractLogicalApplication {
 	private void checkoutNewHead(Ref ref) throws Die, IOException {
 		try {
 			BranchOperation checkoutOperation = new BranchOperation(repo, ref.getName());
-			checkoutOperation.execute(new NullProgressMonitor());
+			execute(checkoutOperation);
 
 			waitEgitJobs();
 
@@ -147,7 +186,7 @@ public class RebaseApplication extends AbstractLogicalApplication {
 							.displaying(message) //
 							.ready();
 				case OK:
-					System.out.println("Switched to branch '" + ref.getName() + "'" + EOL);
+					out().println("Switched to branch '" + ref.getName() + "'" + EOL);
 					break;
 				case CONFLICTS:
 					// Fallback to default since it should not happen since we force the repository to have no
@@ -211,33 +250,33 @@ public class RebaseApplication extends AbstractLogicalApplication {
 		switch (rebaseResult.getStatus()) {
 			case OK:
 				result = Returns.COMPLETE.code();
-				System.out.println(getSuccessfullRebaseMessage());
+				out().println(getSuccessfullRebaseMessage());
 				break;
 			case UP_TO_DATE:
 				result = Returns.COMPLETE.code();
-				System.out.println("Current branch '" + toRebase.getName() + "' is up to date." + EOL);
+				out().println("Current branch '" + toRebase.getName() + "' is up to date." + EOL);
 				break;
 			case FAST_FORWARD:
 				// FIXME: Test this use case again after correction of
 				// https://bugs.eclipse.org/bugs/show_bug.cgi?id=451159
 				result = Returns.COMPLETE.code();
-				System.out.println("Fast forwarded '" + toRebase.getName() + "' to '" + upstream.getName()
+				out().println("Fast forwarded '" + toRebase.getName() + "' to '" + upstream.getName()
 						+ "'." + EOL);
 				break;
 			case ABORTED:
 				result = Returns.COMPLETE.code();
-				System.out.println("Aborted." + EOL);
+				out().println("Aborted." + EOL);
 				break;
 			case STOPPED:
 				result = handleStopped(rebaseResult.getCurrentCommit());
 				break;
 			case CONFLICTS:
 				result = Returns.ABORTED.code();
-				System.out.println(getConflictDuringCheckoutMessage(rebaseResult.getConflicts()));
+				out().println(getConflictDuringCheckoutMessage(rebaseResult.getConflicts()));
 				break;
 			case FAILED:
 				result = Returns.ERROR.code();
-				System.out.println("Failed.");
+				out().println("Failed.");
 				break;
 			case NOTHING_TO_COMMIT:
 				result = handleNothingToCommit();
@@ -270,7 +309,7 @@ public class RebaseApplication extends AbstractLogicalApplication {
 		msg += "When you have resolved this problem, run \"git logicalrebase --continue\"." + EOL;
 		msg += "If you prefer to skip this patch, run \"git logicalrebase --skip\" instead." + EOL;
 		msg += "To check out the original branch and stop rebasing, run \"git logicalrebase --abort\"." + EOL;
-		System.out.println(msg);
+		out().println(msg);
 		return result;
 	}
 
@@ -290,7 +329,7 @@ public class RebaseApplication extends AbstractLogicalApplication {
 		result = Returns.ABORTED.code();
 		Status status;
 		try {
-			status = getGit().status().call();
+			status = WorktreeStatus.refresh(repo);
 		} catch (NoWorkTreeException e) {
 			status = null;
 		} catch (GitAPIException e) {
@@ -299,7 +338,7 @@ public class RebaseApplication extends AbstractLogicalApplication {
 		if (status != null && !status.getConflicting().isEmpty()) {
 			// FIXME Write the conflict commit message is .git/COMMIT_MSG and propose to the user to
 			// modify it
-			System.out.println(getStopOnConflictMessage(currentCommit));
+			out().println(getStopOnConflictMessage(currentCommit));
 		} else {
 			// While we do not handle interactive rebase the only use case of a stopping rebase is a
 			// conflict (which is handled above). The other use cases should not happen.
@@ -388,6 +427,98 @@ public class RebaseApplication extends AbstractLogicalApplication {
 	 *             Throws a {@link Die} exception if it was not able to find a valid reference for upstream.
 	 */
 	private RebaseResult startRebase() throws CoreException, Die, IOException {
+		resolveUpstream();
+		RebaseOperation rebaseOperation = new RebaseOperation(repo, upstream);
+		execute(rebaseOperation);
+		return rebaseOperation.getResult();
+	}
+
+	/**
+	 * Replays the commits to rebase in memory with an {@link IncrementalRebase}. The branch is only moved, and
+	 * the work tree checked out, if all the commits have been replayed. As with a regular rebase,
+	 * <code>ORIG_HEAD</code> then designates the previous head of the branch.
+	 * 
+	 * @return the return code or <code>null</code> if the rebase must be performed by a
+	 *         {@link RebaseOperation}.
+	 * @throws CoreException
+	 *             Propagates Eclipse exceptions.
+	 * @throws IOException
+	 *             Propagates JGit exceptions.
+	 * @throws Die
+	 *             Throws a {@link Die} exception if it was not able to find a valid reference for upstream.
+	 */
+	private Integer startIncrementalRebase() throws CoreException, Die, IOException {
+		resolveUpstream();
+		final RevisionModelLoader loader = new RevisionModelLoader(repo, BinaryResourceCache
+				.forRepository(repo));
+		final IncrementalRebase rebase = new IncrementalRebase(repo, loader, ComparisonCache
+				.forRepository(repo));
+		final ObjectId oldHead = repo.resolve(Constants.HEAD);
+		final RevCommit newHead = rebase.rebase(upstream.getObjectId(), oldHead);
+		if (newHead == null) {
+			if (rebase.isFailed()) {
+				out().println("Could not rebase in memory, falling back to a regular rebase.");
+			}
+			return null;
+		}
+		finishIncrementalRebase(oldHead, newHead);
+		ResourcesPlugin.getWorkspace().getRoot().refreshLocal(IResource.DEPTH_INFINITE,
+				new NullProgressMonitor());
+		waitEgitJobs();
+		out().println(getSuccessfullRebaseMessage());
+		return Returns.COMPLETE.code();
+	}
+
+	/**
+	 * Moves the rebased branch to the head computed by an {@link IncrementalRebase}: the work tree and the
+	 * index are checked out, <code>ORIG_HEAD</code> is set to the previous head and the move is logged in the
+	 * reflogs of the branch and of <code>HEAD</code>.
+	 * 
+	 * @param oldHead
+	 *            the head of the branch before the rebase.
+	 * @param newHead
+	 *            the head of the rebased branch.
+	 * @throws IOException
+	 *             Propagates JGit exceptions.
+	 * @throws Die
+	 *             Throws a {@link Die} exception if the work tree or the branch can not be updated.
+	 */
+	private void finishIncrementalRebase(ObjectId oldHead, RevCommit newHead) throws IOException, Die {
+		try (RevWalk walk = new RevWalk(repo)) {
+			final DirCacheCheckout checkout = new DirCacheCheckout(repo, walk.parseCommit(oldHead).getTree(),
+					repo.lockDirCache(), newHead.getTree());
+			checkout.setFailOnConflict(true);
+			checkout.checkout();
+		} catch (CheckoutConflictException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).displaying(
+					"Your local changes would be overwritten by the rebase: " + e.getMessage()).ready();
+		}
+		repo.writeOrigHead(oldHead);
+		final RefUpdate refUpdate = repo.updateRef(Constants.HEAD);
+		refUpdate.setExpectedOldObjectId(oldHead);
+		refUpdate.setNewObjectId(newHead);
+		refUpdate.setRefLogMessage("rebase (finish): " + toRebase.getName() + " onto "
+				+ upstream.getObjectId().name(), false);
+		final RefUpdate.Result result = refUpdate.forceUpdate();
+		switch (result) {
+			case FORCED:
+			case FAST_FORWARD:
+			case NO_CHANGE:
+				break;
+			default:
+				throw new DiesOn(DeathType.ERROR).displaying(
+						"Could not move " + toRebase.getName() + " to the rebased commits: " + result)
+						.ready();
+		}
+	}
+
+	/**
+	 * Resolves the upstream reference if it has not been given.
+	 * 
+	 * @throws Die
+	 *             Throws a {@link Die} exception if it was not able to find a valid reference for upstream.
+	 */
+	private void resolveUpstream() throws Die {
 		if (upstream == null) {
 			// If <upstream> is not specified, the upstream configured in branch.<name>.remote and
 			// branch.<name>.merge options will be used; see git-config(1) for details. If you are currently
@@ -400,9 +531,6 @@ public class RebaseApplication extends AbstractLogicalApplication {
 			throw new DiesOn(DeathType.FATAL).displaying(
 					"Please specify which branch you want to rebase against.").ready();
 		}
-		RebaseOperation rebaseOperation = new RebaseOperation(repo, upstream);
-		rebaseOperation.execute(new NullProgressMonitor());
-		return rebaseOperation.getResult();
 	}
 
 	/**
@@ -433,6 +561,79 @@ public class RebaseApplication extends AbstractLogicalApplication {
 		return message;
 	}
 
+	/**
+	 * Keeps the application running to process the next steps of the rebase through a
+	 * {@link CommandSession}. The launcher of the application is detached so that the user gets back the
+	 * hand.
+	 * 
+	 * @param code
+	 *            the return code of the step that stopped the rebase.
+	 * @return the return code of the last processed step.
+	 * @throws IOException
+	 *             if the session can not be opened.
+	 */
+	private Integer keepAlive(Integer code) throws IOException {
+		final File stateDirectory = getRebaseStateDirectory(repo);
+		if (stateDirectory == null) {
+			return code;
+		}
+		try (CommandSession session = CommandSession.open(stateDirectory)) {
+			LogicalApplicationLauncher.detach(code);
+			return session.serve(new CommandSession.StepHandler() {
+				public Integer performStep(String step, PrintStream out) {
+					return performSessionStep(step, out);
+				}
+			}, CommandSession.DEFAULT_IDLE_TIMEOUT);
+		}
+	}
+
+	/**
+	 * Processes a step of the rebase sent to the {@link CommandSession}. The workspace is refreshed first
+	 * since the user has resolved the conflicts in between.
+	 * 
+	 * @param step
+	 *            the option of the step, i.e. --continue, --skip or --abort.
+	 * @param out
+	 *            the stream sent to the client of the session.
+	 * @return the return code of the step.
+	 */
+	private Integer performSessionStep(String step, PrintStream out) {
+		stepOut = out;
+		try {
+			return performSessionStep(step);
+		} finally {
+			stepOut = null;
+		}
+	}
+
+	/**
+	 * Processes a step of the rebase sent to the {@link CommandSession}.
+	 * 
+	 * @param step
+	 *            the option of the step, i.e. --continue, --skip or --abort.
+	 * @return the return code of the step.
+	 */
+	private Integer performSessionStep(String step) {
+		continueOpt = CONTINUE_OPT.equals(step);
+		abortOpt = ABORT_OPT.equals(step);
+		skipOpt = SKIP_OPT.equals(step);
+		try {
+			if (!continueOpt && !abortOpt && !skipOpt) {
+				throw new DiesOn(DeathType.FATAL).displaying("Invalid rebase step " + step).ready();
+			}
+			ResourcesPlugin.getWorkspace().getRoot().refreshLocal(IResource.DEPTH_INFINITE,
+					new NullProgressMonitor());
+			RebaseResult result = processRebaseStep();
+			waitEgitJobs();
+			return handleRebaseResult(result);
+		} catch (Die e) {
+			return EMFCompareGitPGMUtil.handleDieError(e, isShowStackTrace());
+		} catch (CoreException | IOException e) {
+			return EMFCompareGitPGMUtil.handleDieError(new DiesOn(DeathType.ERROR).duedTo(e).displaying(
+					e.getMessage()).ready(), isShowStackTrace());
+		}
+	}
+
 	/**
 	 * Processes a rebase step. This method handles one of the following option:
 	 * <ul>
@@ -458,7 +659,20 @@ public class RebaseApplication extends AbstractLogicalApplication {
 			op = Operation.CONTINUE;
 		}
 		RebaseOperation rebaseOperation = new RebaseOperation(repo, op);
-		rebaseOperation.execute(new NullProgressMonitor());
+		execute(rebaseOperation);
 		return rebaseOperation.getResult();
 	}
+
+	/**
+	 * Gets the stream on which the messages of the rebase are printed.
+	 * 
+	 * @return the stream sent to the client of the session while a step is processed, the standard output
+	 *         otherwise.
+	 */
+	private PrintStream out() {
+		if (stepOut != null) {
+			return stepOut;
+		}
+		return System.out;
+	}
 }
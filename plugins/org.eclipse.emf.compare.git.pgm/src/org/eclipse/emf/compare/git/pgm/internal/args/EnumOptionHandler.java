@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.args;
+
+import org.eclipse.emf.compare.git.pgm.internal.exception.ArgumentValidationError;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.OptionDef;
+import org.kohsuke.args4j.spi.OptionHandler;
+import org.kohsuke.args4j.spi.Parameters;
+import org.kohsuke.args4j.spi.Setter;
+
+/**
+ * {@link OptionHandler} that converts a string into a literal of an enumeration, from the name the literal
+ * has on the command line.
+ *
+ * @param <T>
+ *            the type of the enumeration.
+ */
+public abstract class EnumOptionHandler<T extends Enum<T>> extends OptionHandler<T> {
+
+	/** The type of the enumeration. */
+	private final Class<T> type;
+
+	/** What the literals stand for, as displayed in the error message. */
+	private final String description;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser
+	 *            {@link OptionHandler#owner}
+	 * @param option
+	 *            {@link OptionHandler#option}
+	 * @param setter
+	 *            {@link OptionHandler#setter}
+	 * @param type
+	 *            the type of the enumeration.
+	 * @param description
+	 *            what the literals stand for, as displayed in the error message.
+	 */
+	protected EnumOptionHandler(CmdLineParser parser, OptionDef option, Setter<? super T> setter,
+			Class<T> type, String description) {
+		super(parser, option, setter);
+		this.type = type;
+		this.description = description;
+	}
+
+	/**
+	 * Gets the name of a literal on the command line.
+	 *
+	 * @param literal
+	 *            the literal.
+	 * @return its name.
+	 */
+	protected abstract String getName(T literal);
+
+	@Override
+	public int parseArguments(Parameters params) throws CmdLineException {
+		final String value = params.getParameter(0);
+		final StringBuilder names = new StringBuilder();
+		for (T literal : type.getEnumConstants()) {
+			if (getName(literal).equals(value)) {
+				setter.addValue(literal);
+				return 1;
+			}
+			if (names.length() > 0) {
+				names.append(", "); //$NON-NLS-1$
+			}
+			names.append(getName(literal));
+		}
+		throw new ArgumentValidationError(owner, "bad " + description + " '" + value
+				+ "', it must be one of " + names + ".");
+	}
+
+}
@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.args;
+
+import org.eclipse.emf.compare.git.pgm.internal.exception.ArgumentValidationError;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.OptionDef;
+import org.kohsuke.args4j.spi.OptionHandler;
+import org.kohsuke.args4j.spi.Parameters;
+import org.kohsuke.args4j.spi.Setter;
+
+/**
+ * {@link OptionHandler} that converts a string into a fraction, that is to say a number greater than 0 and
+ * lower or equal to 1.
+ */
+public class FractionHandler extends OptionHandler<Double> {
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser
+	 *            {@link OptionHandler#owner}
+	 * @param option
+	 *            {@link OptionHandler#option}
+	 * @param setter
+	 *            {@link OptionHandler#setter}
+	 */
+	public FractionHandler(CmdLineParser parser, OptionDef option, Setter<? super Double> setter) {
+		super(parser, option, setter);
+	}
+
+	@Override
+	public int parseArguments(Parameters params) throws CmdLineException {
+		final String value = params.getParameter(0);
+		final double fraction;
+		try {
+			fraction = Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw new ArgumentValidationError(owner, "bad fraction '" + value + "'.");
+		}
+		if (!(fraction > 0 && fraction <= 1)) {
+			throw new ArgumentValidationError(owner, "bad fraction '" + value
+					+ "', it must be greater than 0 and lower or equal to 1.");
+		}
+		setter.addValue(Double.valueOf(fraction));
+		return 1;
+	}
+
+	@Override
+	public String getDefaultMetaVariable() {
+		return "fraction"; //$NON-NLS-1$
+	}
+
+}
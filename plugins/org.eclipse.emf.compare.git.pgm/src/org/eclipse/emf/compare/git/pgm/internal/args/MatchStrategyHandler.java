@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.args;
+
+import org.eclipse.emf.compare.git.pgm.internal.util.MatchStrategy;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.OptionDef;
+import org.kohsuke.args4j.spi.OptionHandler;
+import org.kohsuke.args4j.spi.Setter;
+
+/**
+ * {@link OptionHandler} that converts a string into a {@link MatchStrategy}.
+ */
+public class MatchStrategyHandler extends EnumOptionHandler<MatchStrategy> {
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser
+	 *            {@link OptionHandler#owner}
+	 * @param option
+	 *            {@link OptionHandler#option}
+	 * @param setter
+	 *            {@link OptionHandler#setter}
+	 */
+	public MatchStrategyHandler(CmdLineParser parser, OptionDef option,
+			Setter<? super MatchStrategy> setter) {
+		super(parser, option, setter, MatchStrategy.class, "match engine"); //$NON-NLS-1$
+	}
+
+	@Override
+	protected String getName(MatchStrategy literal) {
+		return literal.getName();
+	}
+
+	@Override
+	public String getDefaultMetaVariable() {
+		return "strategy"; //$NON-NLS-1$
+	}
+
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.args;
+
+
+import org.eclipse.emf.compare.git.pgm.internal.exception.ArgumentValidationError;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.OptionDef;
+import org.kohsuke.args4j.spi.OptionHandler;
+import org.kohsuke.args4j.spi.Parameters;
+import org.kohsuke.args4j.spi.Setter;
+
+/**
+ * {@link OptionHandler} that converts a string into an integer greater than 0.
+ */
+public class PositiveIntegerHandler extends OptionHandler<Integer> {
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser
+	 *            {@link OptionHandler#owner}
+	 * @param option
+	 *            {@link OptionHandler#option}
+	 * @param setter
+	 *            {@link OptionHandler#setter}
+	 */
+	public PositiveIntegerHandler(CmdLineParser parser, OptionDef option, Setter<? super Integer> setter) {
+		super(parser, option, setter);
+	}
+
+	@Override
+	public int parseArguments(Parameters params) throws CmdLineException {
+		final String value = params.getParameter(0);
+		final int count;
+		try {
+			count = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new ArgumentValidationError(owner, "bad count '" + value + "'.");
+		}
+		if (count <= 0) {
+			throw new ArgumentValidationError(owner, "bad count '" + value + "', it must be greater than 0.");
+		}
+		setter.addValue(Integer.valueOf(count));
+		return 1;
+	}
+
+	@Override
+	public String getDefaultMetaVariable() {
+		return "count"; //$NON-NLS-1$
+	}
+
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.args;
+
+import org.eclipse.emf.compare.git.pgm.internal.util.ProxyResolution;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.OptionDef;
+import org.kohsuke.args4j.spi.OptionHandler;
+import org.kohsuke.args4j.spi.Setter;
+
+/**
+ * {@link OptionHandler} that converts a string into a {@link ProxyResolution}.
+ */
+public class ProxyResolutionHandler extends EnumOptionHandler<ProxyResolution> {
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser
+	 *            {@link OptionHandler#owner}
+	 * @param option
+	 *            {@link OptionHandler#option}
+	 * @param setter
+	 *            {@link OptionHandler#setter}
+	 */
+	public ProxyResolutionHandler(CmdLineParser parser, OptionDef option,
+			Setter<? super ProxyResolution> setter) {
+		super(parser, option, setter, ProxyResolution.class, "proxy resolution"); //$NON-NLS-1$
+	}
+
+	@Override
+	protected String getName(ProxyResolution literal) {
+		return literal.getName();
+	}
+
+	@Override
+	public String getDefaultMetaVariable() {
+		return "policy"; //$NON-NLS-1$
+	}
+
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.args;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+
+import org.eclipse.emf.compare.git.pgm.internal.exception.ArgumentValidationError;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.OptionDef;
+import org.kohsuke.args4j.spi.OptionHandler;
+import org.kohsuke.args4j.spi.Parameters;
+import org.kohsuke.args4j.spi.Setter;
+
+/**
+ * {@link OptionHandler} that converts a string into one or several {@link RevCommit}s. The string is either
+ * a single revision or a range <code>A..B</code>, which stands for the commits reachable from <code>B</code>
+ * but not from <code>A</code>, from the oldest to the newest. Any side of a range left empty defaults to
+ * <code>HEAD</code>.
+ */
+public class RevCommitRangeHandler extends OptionHandler<RevCommit> {
+
+	/** Separator of the bounds of a range. */
+	private static final String RANGE_SEPARATOR = ".."; //$NON-NLS-1$
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parser
+	 *            {@link OptionHandler#owner}.
+	 * @param option
+	 *            {@link OptionHandler#option}
+	 * @param setter
+	 *            {@link OptionHandler#setter}
+	 */
+	public RevCommitRangeHandler(CmdLineParser parser, OptionDef option, Setter<? super RevCommit> setter) {
+		super(parser, option, setter);
+		Preconditions.checkArgument(parser instanceof CmdLineParserRepositoryBuilder);
+	}
+
+	@Override
+	public int parseArguments(Parameters params) throws CmdLineException {
+		String ref = params.getParameter(0);
+
+		Repository repo;
+		try {
+			repo = ((CmdLineParserRepositoryBuilder)owner).getRepo();
+		} catch (Die e) {
+			throw new ArgumentValidationError(owner, e);
+		}
+
+		final int separator = ref.indexOf(RANGE_SEPARATOR);
+		try (RevWalk revWalk = new RevWalk(repo)) {
+			if (separator < 0) {
+				setter.addValue(parseCommit(repo, revWalk, ref));
+			} else {
+				String from = ref.substring(0, separator);
+				String to = ref.substring(separator + RANGE_SEPARATOR.length());
+				if (to.startsWith(".")) { //$NON-NLS-1$
+					throw new ArgumentValidationError(owner, "bad revision range '" + ref + "'.");
+				}
+				revWalk.markUninteresting(parseCommit(repo, revWalk, defaultToHead(from)));
+				revWalk.markStart(parseCommit(repo, revWalk, defaultToHead(to)));
+				revWalk.sort(RevSort.TOPO);
+				revWalk.sort(RevSort.REVERSE, true);
+				boolean empty = true;
+				for (RevCommit commit : revWalk) {
+					if (commit.getParentCount() > 1) {
+						throw new ArgumentValidationError(owner, "revision range '" + ref
+								+ "' contains the merge commit " + commit.name() + ".");
+					}
+					setter.addValue(commit);
+					empty = false;
+				}
+				if (empty) {
+					throw new ArgumentValidationError(owner, "empty revision range '" + ref + "'.");
+				}
+			}
+		} catch (IOException e) {
+			throw new ArgumentValidationError(owner, e);
+		}
+		return 1;
+	}
+
+	/**
+	 * Resolves a revision into a commit.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param revWalk
+	 *            the walk parsing the commit.
+	 * @param ref
+	 *            the revision.
+	 * @return the commit.
+	 * @throws CmdLineException
+	 *             if the revision does not designate a commit.
+	 */
+	private RevCommit parseCommit(Repository repo, RevWalk revWalk, String ref) throws CmdLineException {
+		ObjectId objectID;
+		try {
+			objectID = repo.resolve(ref);
+		} catch (RevisionSyntaxException | IOException e) {
+			throw new ArgumentValidationError(owner, e);
+		}
+
+		if (objectID == null) {
+			throw new ArgumentValidationError(owner, "bad revision '" + ref + "'.");
+		}
+
+		try {
+			return revWalk.parseCommit(objectID);
+		} catch (IOException e) {
+			throw new ArgumentValidationError(owner, "bad revision '" + ref + "'.");
+		}
+	}
+
+	/**
+	 * Gets the revision of a bound of a range.
+	 *
+	 * @param ref
+	 *            the bound, may be empty.
+	 * @return the bound or <code>HEAD</code> if it is empty.
+	 */
+	private static String defaultToHead(String ref) {
+		if (ref.isEmpty()) {
+			return Constants.HEAD;
+		}
+		return ref;
+	}
+
+	@Override
+	public String getDefaultMetaVariable() {
+		return "commit"; //$NON-NLS-1$
+	}
+
+}
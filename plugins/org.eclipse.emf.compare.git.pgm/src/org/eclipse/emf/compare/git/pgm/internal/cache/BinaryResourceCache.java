@@ -0,0 +1,432 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Cache;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectInputStream;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectOutputStream;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * On-disk cache of parsed model resources, stored in the EMF binary format and keyed by the id of the blob
+ * they have been parsed from and by their URI, since the same blob may be loaded at several paths.
+ * <p>
+ * An entry holds the URI of the resource, the namespace URIs of the metamodels of its content, the XML ids
+ * of its objects (if any) and the binary encoding of its content. An entry is only reused if all its
+ * metamodels are still registered. The size of the cache is bounded: the least recently used entries are
+ * evicted once it exceeds its limit, which is read from the <code>emfcompare.binaryCacheSize</code>
+ * configuration of the repository.
+ * </p>
+ * <p>
+ * The instances of a repository may be used from several threads: the entries are written to temporary
+ * files that are moved in place once complete, and the eviction runs in one thread at a time, leaving the
+ * temporary files alone. The folder is only listed when the estimated size of the cache exceeds its limit,
+ * or every {@value #MEASURE_INTERVAL} stores to take the entries written by other processes into account.
+ * </p>
+ */
+public final class BinaryResourceCache {
+
+	/** Name of the folder, in the EMF Compare data directory, holding the cache. */
+	public static final String CACHE_FOLDER = "binary"; //$NON-NLS-1$
+
+	/** Git configuration section of EMF Compare. */
+	public static final String CONFIG_SECTION = "emfcompare"; //$NON-NLS-1$
+
+	/** Git configuration key of the maximum size of the cache. */
+	public static final String CONFIG_MAX_SIZE = "binaryCacheSize"; //$NON-NLS-1$
+
+	/** Default maximum size of the cache: 512 MiB. */
+	public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+	/** Identifies an entry of the cache. */
+	private static final int MAGIC = 0x454D4642;
+
+	/** Version of the format of the entries. */
+	private static final int FORMAT_VERSION = 1;
+
+	/** Suffix of the entries being written. */
+	private static final String TMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+	/** Lock of the eviction, shared by the instances of all the repositories. */
+	private static final Object PRUNE_LOCK = new Object();
+
+	/** Ratio of the maximum size down to which the cache is pruned. */
+	private static final double PRUNE_RATIO = 0.8;
+
+	/** Number of stores after which the size of the cache is measured again. */
+	private static final int MEASURE_INTERVAL = 256;
+
+	/** Estimated size of the cache in each folder, guarded by {@link #PRUNE_LOCK}. */
+	private static final Map<File, Usage> USAGES = new HashMap<File, Usage>();
+
+	/** Folder holding the entries. */
+	private final File folder;
+
+	/** Maximum size of the cache, in bytes. */
+	private final long maxSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param folder
+	 *            folder holding the entries.
+	 * @param maxSize
+	 *            maximum size of the cache, in bytes.
+	 */
+	public BinaryResourceCache(File folder, long maxSize) {
+		this.folder = folder;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets the cache of a repository, sized from its configuration.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the cache or <code>null</code> if it has been disabled by setting its size to 0.
+	 * @throws IOException
+	 *             if the folder of the cache can not be created.
+	 */
+	public static BinaryResourceCache forRepository(Repository repo) throws IOException {
+		final long size = repo.getConfig().getLong(CONFIG_SECTION, null, CONFIG_MAX_SIZE, DEFAULT_MAX_SIZE);
+		if (size <= 0) {
+			return null;
+		}
+		return new BinaryResourceCache(GitUtils.getDataDirectory(repo, CACHE_FOLDER), size);
+	}
+
+	/**
+	 * Gets the number of resources read from a cache in the current {@link Metrics#scope() scope}.
+	 *
+	 * @return the number of cache hits.
+	 */
+	public static long getHitCount() {
+		return Metrics.getHitCount(Cache.BINARY);
+	}
+
+	/**
+	 * Gets the number of resources looked up in a cache and not found in the current
+	 * {@link Metrics#scope() scope}.
+	 *
+	 * @return the number of cache misses.
+	 */
+	public static long getMissCount() {
+		return Metrics.getMissCount(Cache.BINARY);
+	}
+
+	/**
+	 * Loads a resource from the entry of the given blob.
+	 *
+	 * @param blobId
+	 *            id of the blob the resource would be parsed from.
+	 * @param resource
+	 *            the empty resource to load.
+	 * @return <code>true</code> if the resource has been loaded from the cache, <code>false</code> if it
+	 *         still has to be parsed.
+	 */
+	public boolean load(AnyObjectId blobId, Resource resource) {
+		final File entry = getEntry(blobId, resource.getURI());
+		if (!entry.isFile()) {
+			Metrics.recordLookup(Cache.BINARY, false);
+			return false;
+		}
+		boolean loaded = false;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+			if (readHeader(in, resource)) {
+				final List<String> ids = readIds(in);
+				new EObjectInputStream(in, Collections.emptyMap()).loadResource(resource);
+				if (resource instanceof XMLResource) {
+					restoreIds((XMLResource)resource, ids);
+				}
+				resource.setModified(false);
+				loaded = true;
+			}
+		} catch (IOException | RuntimeException e) {
+			// Corrupted or incompatible entry, the resource will be parsed again
+			loaded = false;
+		}
+		if (loaded) {
+			Metrics.recordLookup(Cache.BINARY, true);
+			// Records the access for the eviction; failing to do so only gets the entry evicted earlier
+			entry.setLastModified(System.currentTimeMillis());
+		} else {
+			resource.unload();
+			Metrics.recordLookup(Cache.BINARY, false);
+			if (!entry.delete()) {
+				entry.deleteOnExit();
+			}
+		}
+		return loaded;
+	}
+
+	/**
+	 * Stores a freshly parsed resource in the cache.
+	 *
+	 * @param blobId
+	 *            id of the blob the resource has been parsed from.
+	 * @param resource
+	 *            the loaded resource.
+	 * @throws IOException
+	 *             if the entry can not be written.
+	 */
+	public void store(AnyObjectId blobId, Resource resource) throws IOException {
+		final Set<String> nsURIs = new LinkedHashSet<String>();
+		final List<String> ids = new ArrayList<String>();
+		final XMLResource xmlResource;
+		if (resource instanceof XMLResource) {
+			xmlResource = (XMLResource)resource;
+		} else {
+			xmlResource = null;
+		}
+		for (TreeIterator<EObject> it = resource.getAllContents(); it.hasNext();) {
+			EObject eObject = it.next();
+			String nsURI = eObject.eClass().getEPackage().getNsURI();
+			if (nsURIs.add(nsURI) && !EPackage.Registry.INSTANCE.containsKey(nsURI)) {
+				// Dynamic metamodels can not be restored
+				return;
+			}
+			if (xmlResource != null) {
+				ids.add(xmlResource.getID(eObject));
+			}
+		}
+
+		final File tmp = File.createTempFile(blobId.name(), TMP_SUFFIX, folder);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(resource.getURI().toString());
+			out.writeInt(nsURIs.size());
+			for (String nsURI : nsURIs) {
+				out.writeUTF(nsURI);
+			}
+			out.writeInt(ids.size());
+			for (String id : ids) {
+				out.writeBoolean(id != null);
+				if (id != null) {
+					out.writeUTF(id);
+				}
+			}
+			EObjectOutputStream binary = new EObjectOutputStream(out, Collections.emptyMap());
+			binary.saveResource(resource);
+			binary.flush();
+		} catch (IOException e) {
+			if (!tmp.delete()) {
+				tmp.deleteOnExit();
+			}
+			throw e;
+		}
+		final long length = tmp.length();
+		Files.move(tmp.toPath(), getEntry(blobId, resource.getURI()).toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		if (isPruneNeeded(length)) {
+			prune();
+		}
+	}
+
+	/**
+	 * Adds a new entry to the estimated size of the cache and tells whether the folder has to be listed.
+	 *
+	 * @param length
+	 *            the length of the new entry.
+	 * @return <code>true</code> if the cache may exceed its maximum size or has not been measured for a
+	 *         while.
+	 */
+	private boolean isPruneNeeded(long length) {
+		synchronized (PRUNE_LOCK) {
+			final Usage usage = USAGES.get(folder);
+			if (usage == null) {
+				return true;
+			}
+			usage.size += length;
+			usage.stores++;
+			return usage.size > maxSize || usage.stores >= MEASURE_INTERVAL;
+		}
+	}
+
+	/**
+	 * Gets the file of the entry of a blob loaded under the given URI.
+	 *
+	 * @param blobId
+	 *            id of the blob.
+	 * @param uri
+	 *            URI of the resource.
+	 * @return the file of the entry, which may not exist.
+	 */
+	private File getEntry(AnyObjectId blobId, URI uri) {
+		final MessageDigest digest = Constants.newMessageDigest();
+		final byte[] uriHash = digest.digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+		return new File(folder, blobId.name() + '-' + ObjectId.fromRaw(uriHash).name());
+	}
+
+	/**
+	 * Reads the header of an entry and checks that it can be used for the given resource.
+	 *
+	 * @param in
+	 *            the entry.
+	 * @param resource
+	 *            the resource to load.
+	 * @return <code>true</code> if the entry can be used.
+	 * @throws IOException
+	 *             if the entry can not be read.
+	 */
+	private static boolean readHeader(DataInputStream in, Resource resource) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			return false;
+		}
+		if (!resource.getURI().toString().equals(in.readUTF())) {
+			return false;
+		}
+		final int nsURICount = in.readInt();
+		for (int i = 0; i < nsURICount; i++) {
+			if (!EPackage.Registry.INSTANCE.containsKey(in.readUTF())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the XML ids of the objects of an entry.
+	 *
+	 * @param in
+	 *            the entry.
+	 * @return the ids of the objects, in the order of the content tree.
+	 * @throws IOException
+	 *             if the entry can not be read.
+	 */
+	private static List<String> readIds(DataInputStream in) throws IOException {
+		final int count = in.readInt();
+		final List<String> ids = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			if (in.readBoolean()) {
+				ids.add(in.readUTF());
+			} else {
+				ids.add(null);
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Restores the XML ids of the objects of a resource.
+	 *
+	 * @param resource
+	 *            the loaded resource.
+	 * @param ids
+	 *            the ids of the objects, in the order of the content tree.
+	 * @throws IOException
+	 *             if the ids do not match the content of the resource.
+	 */
+	private static void restoreIds(XMLResource resource, List<String> ids) throws IOException {
+		if (ids.isEmpty()) {
+			return;
+		}
+		final Iterator<String> idIterator = ids.iterator();
+		for (TreeIterator<EObject> it = resource.getAllContents(); it.hasNext();) {
+			EObject eObject = it.next();
+			if (!idIterator.hasNext()) {
+				throw new IOException("Unexpected number of ids"); //$NON-NLS-1$
+			}
+			String id = idIterator.next();
+			if (id != null) {
+				resource.setID(eObject, id);
+			}
+		}
+	}
+
+	/**
+	 * Measures the cache and evicts the least recently used entries if it exceeds its maximum size. The
+	 * entries being written are neither counted nor evicted.
+	 */
+	private void prune() {
+		synchronized (PRUNE_LOCK) {
+			final File[] files = folder.listFiles();
+			if (files == null) {
+				return;
+			}
+			final List<File> entries = new ArrayList<File>();
+			// Other threads or processes may read the entries meanwhile: their access times are frozen
+			final Map<File, Long> accesses = new HashMap<File, Long>();
+			long size = 0;
+			for (File file : files) {
+				if (!file.getName().endsWith(TMP_SUFFIX)) {
+					entries.add(file);
+					accesses.put(file, Long.valueOf(file.lastModified()));
+					size += file.length();
+				}
+			}
+			final Usage usage = new Usage();
+			USAGES.put(folder, usage);
+			if (size <= maxSize) {
+				usage.size = size;
+				return;
+			}
+			Collections.sort(entries, new Comparator<File>() {
+				public int compare(File f1, File f2) {
+					return accesses.get(f1).compareTo(accesses.get(f2));
+				}
+			});
+			final long target = (long)(maxSize * PRUNE_RATIO);
+			for (int i = 0; i < entries.size() && size > target; i++) {
+				long length = entries.get(i).length();
+				if (entries.get(i).delete()) {
+					size -= length;
+				}
+			}
+			usage.size = size;
+		}
+	}
+
+	/**
+	 * Estimated size of the cache of a folder.
+	 */
+	private static final class Usage {
+
+		/** Size measured by the last pruning plus the length of the entries written since. */
+		private long size;
+
+		/** Number of entries written since the last pruning. */
+		private int stores;
+	}
+}
@@ -0,0 +1,427 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Cache;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.osgi.framework.Bundle;
+
+/**
+ * On-disk cache of the results of the three-way logical merges, keyed by the blob ids of the merged files
+ * on each side.
+ * <p>
+ * A merge that has already been computed for the same (base, ours, theirs) blobs, for instance when a
+ * rebase is aborted and retried, is not compared again: the cache tells whether it holds real conflicts,
+ * and which ones, or gives the blobs of the merged files. The key also covers the version of EMF Compare
+ * since another version may merge differently. The number of entries is bounded: the least recently used
+ * ones are evicted once it exceeds {@link #MAX_ENTRIES}. The cache can be disabled by setting the
+ * <code>emfcompare.comparisonCache</code> configuration of the repository to <code>false</code>.
+ * </p>
+ */
+public final class ComparisonCache {
+
+	/** Name of the folder, in the EMF Compare data directory, holding the cache. */
+	public static final String CACHE_FOLDER = "comparison"; //$NON-NLS-1$
+
+	/** Git configuration key enabling the cache. */
+	public static final String CONFIG_ENABLED = "comparisonCache"; //$NON-NLS-1$
+
+	/** Maximum number of entries. */
+	public static final int MAX_ENTRIES = 4096;
+
+	/** Identifies an entry of the cache. */
+	private static final int MAGIC = 0x454D4643;
+
+	/** Version of the format of the entries. */
+	private static final int FORMAT_VERSION = 1;
+
+	/** Ratio of the maximum number of entries down to which the cache is pruned. */
+	private static final double PRUNE_RATIO = 0.8;
+
+	/** Symbolic name of the EMF Compare bundle. */
+	private static final String EMF_COMPARE_BUNDLE = "org.eclipse.emf.compare"; //$NON-NLS-1$
+
+	/** Folder holding the entries. */
+	private final File folder;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param folder
+	 *            folder holding the entries.
+	 */
+	public ComparisonCache(File folder) {
+		this.folder = folder;
+	}
+
+	/**
+	 * Gets the cache of a repository.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the cache or <code>null</code> if it has been disabled.
+	 * @throws IOException
+	 *             if the folder of the cache can not be created.
+	 */
+	public static ComparisonCache forRepository(Repository repo) throws IOException {
+		if (!repo.getConfig().getBoolean(BinaryResourceCache.CONFIG_SECTION, CONFIG_ENABLED, true)) {
+			return null;
+		}
+		return new ComparisonCache(GitUtils.getDataDirectory(repo, CACHE_FOLDER));
+	}
+
+	/**
+	 * Gets the number of merge results read from a cache in the current {@link Metrics#scope() scope}.
+	 *
+	 * @return the number of cache hits.
+	 */
+	public static long getHitCount() {
+		return Metrics.getHitCount(Cache.COMPARISON);
+	}
+
+	/**
+	 * Gets the number of merges looked up in a cache and not found in the current
+	 * {@link Metrics#scope() scope}.
+	 *
+	 * @return the number of cache misses.
+	 */
+	public static long getMissCount() {
+		return Metrics.getMissCount(Cache.COMPARISON);
+	}
+
+	/**
+	 * Gets the result of a merge.
+	 *
+	 * @param key
+	 *            the key of the merge.
+	 * @return the result or <code>null</code> if the merge has not been cached.
+	 */
+	public Result get(Key key) {
+		final File entry = getEntry(key);
+		if (!entry.isFile()) {
+			Metrics.recordLookup(Cache.COMPARISON, false);
+			return null;
+		}
+		Result result;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(entry)))) {
+			result = read(in);
+		} catch (IOException e) {
+			result = null;
+		}
+		if (result != null) {
+			Metrics.recordLookup(Cache.COMPARISON, true);
+			// Records the access for the eviction; failing to do so only gets the entry evicted earlier
+			entry.setLastModified(System.currentTimeMillis());
+		} else {
+			Metrics.recordLookup(Cache.COMPARISON, false);
+			if (!entry.delete()) {
+				entry.deleteOnExit();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Records that a merge holds real conflicts.
+	 *
+	 * @param key
+	 *            the key of the merge.
+	 * @param conflicts
+	 *            descriptions of the conflicts.
+	 * @throws IOException
+	 *             if the entry can not be written.
+	 */
+	public void putConflicting(Key key, List<String> conflicts) throws IOException {
+		write(key, new Result(conflicts, Collections.<String, ObjectId> emptyMap()));
+	}
+
+	/**
+	 * Records the result of a merge without real conflict.
+	 *
+	 * @param key
+	 *            the key of the merge.
+	 * @param mergedBlobs
+	 *            ids of the blobs of the merged files, by path. The blobs must have been inserted in the
+	 *            repository.
+	 * @throws IOException
+	 *             if the entry can not be written.
+	 */
+	public void putMerged(Key key, Map<String, ObjectId> mergedBlobs) throws IOException {
+		write(key, new Result(Collections.<String> emptyList(), mergedBlobs));
+	}
+
+	/**
+	 * Gets the number of entries of the cache.
+	 *
+	 * @return the number of entries.
+	 */
+	public int size() {
+		final File[] entries = folder.listFiles();
+		if (entries == null) {
+			return 0;
+		}
+		return entries.length;
+	}
+
+	/**
+	 * Writes an entry.
+	 *
+	 * @param key
+	 *            the key of the merge.
+	 * @param result
+	 *            the result of the merge.
+	 * @throws IOException
+	 *             if the entry can not be written.
+	 */
+	private void write(Key key, Result result) throws IOException {
+		final File tmp = File.createTempFile(key.getId().name(), null, folder);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(result.conflicts.size());
+			for (String conflict : result.conflicts) {
+				out.writeUTF(conflict);
+			}
+			out.writeInt(result.mergedBlobs.size());
+			for (Map.Entry<String, ObjectId> merged : result.mergedBlobs.entrySet()) {
+				out.writeUTF(merged.getKey());
+				out.writeUTF(merged.getValue().name());
+			}
+		} catch (IOException e) {
+			if (!tmp.delete()) {
+				tmp.deleteOnExit();
+			}
+			throw e;
+		}
+		Files.move(tmp.toPath(), getEntry(key).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		prune();
+	}
+
+	/**
+	 * Reads an entry.
+	 *
+	 * @param in
+	 *            the entry.
+	 * @return the result or <code>null</code> if the entry has not been written in the current format.
+	 * @throws IOException
+	 *             if the entry can not be read.
+	 */
+	private static Result read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			return null;
+		}
+		final int conflictCount = in.readInt();
+		final List<String> conflicts = new ArrayList<String>(conflictCount);
+		for (int i = 0; i < conflictCount; i++) {
+			conflicts.add(in.readUTF());
+		}
+		final int mergedCount = in.readInt();
+		final Map<String, ObjectId> mergedBlobs = new LinkedHashMap<String, ObjectId>();
+		for (int i = 0; i < mergedCount; i++) {
+			String path = in.readUTF();
+			mergedBlobs.put(path, ObjectId.fromString(in.readUTF()));
+		}
+		return new Result(conflicts, mergedBlobs);
+	}
+
+	/**
+	 * Gets the file of the entry of a merge.
+	 *
+	 * @param key
+	 *            the key of the merge.
+	 * @return the file of the entry, which may not exist.
+	 */
+	private File getEntry(Key key) {
+		return new File(folder, key.getId().name());
+	}
+
+	/**
+	 * Evicts the least recently used entries once the cache exceeds its maximum number of entries.
+	 */
+	private void prune() {
+		final File[] entries = folder.listFiles();
+		if (entries == null || entries.length <= MAX_ENTRIES) {
+			return;
+		}
+		Arrays.sort(entries, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+		final int toDelete = entries.length - (int)(MAX_ENTRIES * PRUNE_RATIO);
+		for (int i = 0; i < toDelete; i++) {
+			entries[i].delete();
+		}
+	}
+
+	/**
+	 * Gets the version of EMF Compare, which takes part in the keys.
+	 *
+	 * @return the version or an empty string if it is unknown.
+	 */
+	private static String getEMFCompareVersion() {
+		// CHECKSTYLE.OFF: IllegalCatch - The platform is not running in plain Java tests
+		try {
+			final Bundle bundle = Platform.getBundle(EMF_COMPARE_BUNDLE);
+			if (bundle != null) {
+				return bundle.getVersion().toString();
+			}
+		} catch (RuntimeException e) {
+			// Unknown version
+		}
+		// CHECKSTYLE.ON: IllegalCatch
+		return ""; //$NON-NLS-1$
+	}
+
+	/**
+	 * Key of a merge: the blob ids of the merged files on each side.
+	 */
+	public static final class Key {
+
+		/** Blob ids of the base, ours and theirs versions, by path. */
+		private final SortedMap<String, String> versions = new TreeMap<String, String>();
+
+		/** The id of the key, computed once all the files have been added. */
+		private ObjectId id;
+
+		/**
+		 * Adds a merged file to the key.
+		 *
+		 * @param path
+		 *            path of the file.
+		 * @param base
+		 *            blob id of the base version, <code>null</code> if the file does not exist.
+		 * @param ours
+		 *            blob id of our version, <code>null</code> if the file does not exist.
+		 * @param theirs
+		 *            blob id of their version, <code>null</code> if the file does not exist.
+		 * @return this key.
+		 */
+		public Key add(String path, AnyObjectId base, AnyObjectId ours, AnyObjectId theirs) {
+			versions.put(path, name(base) + ' ' + name(ours) + ' ' + name(theirs));
+			id = null;
+			return this;
+		}
+
+		/**
+		 * Gets the id of the key.
+		 *
+		 * @return the SHA-1 of the merged files and their versions.
+		 */
+		public ObjectId getId() {
+			if (id == null) {
+				final MessageDigest digest = Constants.newMessageDigest();
+				digest.update((FORMAT_VERSION + " " + getEMFCompareVersion() + '\n') //$NON-NLS-1$
+						.getBytes(StandardCharsets.UTF_8));
+				for (Map.Entry<String, String> version : versions.entrySet()) {
+					digest.update((version.getKey() + '\0' + version.getValue() + '\n')
+							.getBytes(StandardCharsets.UTF_8));
+				}
+				id = ObjectId.fromRaw(digest.digest());
+			}
+			return id;
+		}
+
+		/**
+		 * Gets the name of a blob id.
+		 *
+		 * @param blobId
+		 *            the blob id, may be <code>null</code>.
+		 * @return the name of the blob id, the one of the zero id if it is <code>null</code>.
+		 */
+		private static String name(AnyObjectId blobId) {
+			if (blobId == null) {
+				return ObjectId.zeroId().name();
+			}
+			return blobId.name();
+		}
+	}
+
+	/**
+	 * Result of a merge: either the descriptions of its real conflicts or the blobs of the merged files.
+	 */
+	public static final class Result {
+
+		/** Descriptions of the real conflicts. */
+		private final List<String> conflicts;
+
+		/** Ids of the blobs of the merged files, by path. */
+		private final Map<String, ObjectId> mergedBlobs;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param conflicts
+		 *            descriptions of the real conflicts.
+		 * @param mergedBlobs
+		 *            ids of the blobs of the merged files, by path.
+		 */
+		private Result(List<String> conflicts, Map<String, ObjectId> mergedBlobs) {
+			this.conflicts = Collections.unmodifiableList(new ArrayList<String>(conflicts));
+			this.mergedBlobs = Collections.unmodifiableMap(new LinkedHashMap<String, ObjectId>(mergedBlobs));
+		}
+
+		/**
+		 * Returns <code>true</code> if the merge holds real conflicts.
+		 *
+		 * @return <code>true</code> if the merge holds real conflicts.
+		 */
+		public boolean isConflicting() {
+			return !conflicts.isEmpty();
+		}
+
+		/**
+		 * Gets the descriptions of the real conflicts of the merge.
+		 *
+		 * @return an unmodifiable list of descriptions, empty if the merge holds no real conflict.
+		 */
+		public List<String> getConflicts() {
+			return conflicts;
+		}
+
+		/**
+		 * Gets the blobs of the merged files.
+		 *
+		 * @return an unmodifiable map of blob ids by path, empty if the merge holds real conflicts.
+		 */
+		public Map<String, ObjectId> getMergedBlobs() {
+			return mergedBlobs;
+		}
+	}
+}
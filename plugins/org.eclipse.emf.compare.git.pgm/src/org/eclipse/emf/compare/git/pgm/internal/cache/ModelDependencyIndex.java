@@ -0,0 +1,867 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cache;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Cache;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Index of the cross-references between the model resources of a Git tree.
+ * <p>
+ * For each model resource of a tree, the index holds the paths of the resources it references. The logical
+ * model of a resource is then computed from the index, without loading any model. Indexes are persisted in
+ * the Git directory, one file per tree id, and a new index is computed incrementally from the last indexed
+ * tree: only the blobs that differ between both trees are scanned.
+ * </p>
+ * <p>
+ * The computed indexes are kept in memory until they are {@link #flush(Repository) flushed}, by the end of
+ * the command or once too many of them are pending, so that walking the history does not write an index
+ * file per commit. The index also records whether the EMF model providers accept a file, so that the
+ * providers are queried once per file of a tree.
+ * </p>
+ */
+public final class ModelDependencyIndex {
+
+	/** Name of the folder, in the EMF Compare data directory, holding the persisted indexes. */
+	public static final String INDEX_FOLDER = "index"; //$NON-NLS-1$
+
+	/** Maximum number of indexes kept on disk. */
+	private static final int MAX_PERSISTED_INDEXES = 64;
+
+	/** Maximum number of indexes of a repository kept in memory before they are persisted. */
+	private static final int MAX_PENDING_INDEXES = 16;
+
+	/** Name of the file holding the id of the last indexed tree. */
+	private static final String LAST_INDEXED_TREE = "LAST"; //$NON-NLS-1$
+
+	/** First line of a persisted index. */
+	private static final String FORMAT_HEADER = "# emfcompare model index 2"; //$NON-NLS-1$
+
+	/** Last line of a persisted index, missing if the file has been truncated. */
+	private static final String FORMAT_TRAILER = "# end"; //$NON-NLS-1$
+
+	/** Prefix of the line holding the model file extensions used to build the index. */
+	private static final String EXTENSIONS_ENTRY = "E"; //$NON-NLS-1$
+
+	/** Prefix of a line describing a project of the tree. */
+	private static final String PROJECT_ENTRY = "P"; //$NON-NLS-1$
+
+	/** Prefix of a line describing a model resource of the tree. */
+	private static final String MODEL_ENTRY = "M"; //$NON-NLS-1$
+
+	/** Prefix of a line recording whether the EMF model providers accept a file of the tree. */
+	private static final String PROVIDER_ENTRY = "C"; //$NON-NLS-1$
+
+	/** Name of the Eclipse project description file. */
+	private static final String PROJECT_DESCRIPTION = ".project"; //$NON-NLS-1$
+
+	/** Prefix of the platform resource URIs. */
+	private static final String PLATFORM_RESOURCE = "platform:/resource/"; //$NON-NLS-1$
+
+	/** Path segment separator used by Git. */
+	private static final char SLASH = '/';
+
+	/** Matches a URI, followed by a fragment, in an attribute value of a serialized model. */
+	private static final Pattern REFERENCE_PATTERN = Pattern.compile("[\\s\"']([^\\s\"'#<>]+)#"); //$NON-NLS-1$
+
+	/** Matches the name of a project in a project description file. */
+	private static final Pattern PROJECT_NAME_PATTERN = Pattern.compile("<name>([^<]*)</name>"); //$NON-NLS-1$
+
+	/** Indexes not persisted yet, by folder of the indexes then by tree id, the most recent last. */
+	private static final Map<File, Map<ObjectId, ModelDependencyIndex>> PENDING = Maps.newHashMap();
+
+	/** Id of the indexed tree. */
+	private final ObjectId treeId;
+
+	/** File extensions of the model resources. */
+	private final Set<String> modelExtensions;
+
+	/** Model resource paths to the references (repository paths or platform resource URIs) they hold. */
+	private final Map<String, Set<String>> references;
+
+	/** Project names to the path of their folder in the repository. */
+	private final Map<String, String> projects;
+
+	/** Paths to whether the EMF model providers accept them. */
+	private final Map<String, Boolean> providerResults;
+
+	/** Folder in which the index is persisted, <code>null</code> until the index is handed out. */
+	private File folder;
+
+	/** Resolved references, in both directions, lazily computed. */
+	private Map<String, Set<String>> dependencies;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param treeId
+	 *            Id of the indexed tree.
+	 * @param modelExtensions
+	 *            File extensions of the model resources.
+	 */
+	private ModelDependencyIndex(ObjectId treeId, Set<String> modelExtensions) {
+		this.treeId = treeId.copy();
+		this.modelExtensions = modelExtensions;
+		this.references = new TreeMap<String, Set<String>>();
+		this.projects = new TreeMap<String, String>();
+		this.providerResults = new TreeMap<String, Boolean>();
+	}
+
+	/**
+	 * Gets the index of the given tree using the file extensions registered in the EMF resource factory
+	 * registry.
+	 *
+	 * @param repo
+	 *            the repository holding the tree.
+	 * @param treeId
+	 *            id of the tree to index.
+	 * @return the index of the tree.
+	 * @throws IOException
+	 *             if the tree can not be read or the index can not be persisted.
+	 * @see #get(Repository, ObjectId, Set)
+	 */
+	public static ModelDependencyIndex get(Repository repo, ObjectId treeId) throws IOException {
+		return get(repo, treeId, getDefaultModelExtensions());
+	}
+
+	/**
+	 * Gets the index of the given tree.
+	 * <p>
+	 * The pending or persisted index is used if any. Otherwise the index is computed from the last indexed
+	 * tree (or from scratch if there is none) and kept pending until it is flushed.
+	 * </p>
+	 *
+	 * @param repo
+	 *            the repository holding the tree.
+	 * @param treeId
+	 *            id of the tree to index.
+	 * @param modelExtensions
+	 *            file extensions of the model resources.
+	 * @return the index of the tree.
+	 * @throws IOException
+	 *             if the tree can not be read or the index can not be persisted.
+	 */
+	public static ModelDependencyIndex get(Repository repo, ObjectId treeId, Set<String> modelExtensions)
+			throws IOException {
+		final File folder = GitUtils.getDataDirectory(repo, INDEX_FOLDER);
+		ModelDependencyIndex index = getPending(folder, treeId, modelExtensions);
+		if (index == null) {
+			index = read(new File(folder, treeId.name()), treeId, modelExtensions);
+		}
+		if (index == null) {
+			Metrics.recordLookup(Cache.INDEX, false);
+			index = new ModelDependencyIndex(treeId, modelExtensions);
+			ModelDependencyIndex last = getPending(folder, null, modelExtensions);
+			if (last == null) {
+				last = readLast(repo, folder, modelExtensions);
+			}
+			if (last != null) {
+				index.references.putAll(last.references);
+				index.projects.putAll(last.projects);
+				index.providerResults.putAll(last.providerResults);
+				index.scan(repo, last.treeId);
+			} else {
+				index.scan(repo, null);
+			}
+			index.folder = folder;
+			if (index.setPending()) {
+				flush(folder);
+			}
+		} else {
+			Metrics.recordLookup(Cache.INDEX, true);
+			index.folder = folder;
+		}
+		return index;
+	}
+
+	/**
+	 * Persists the pending indexes of the given repository, records the most recent one as the last indexed
+	 * tree and deletes the oldest persisted indexes.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @throws IOException
+	 *             if an index can not be written.
+	 */
+	public static void flush(Repository repo) throws IOException {
+		flush(GitUtils.getDataDirectory(repo, INDEX_FOLDER));
+	}
+
+	/**
+	 * Persists the pending indexes of the given folder.
+	 *
+	 * @param folder
+	 *            the folder holding the indexes.
+	 * @throws IOException
+	 *             if an index can not be written.
+	 * @see #flush(Repository)
+	 */
+	private static void flush(File folder) throws IOException {
+		final List<ModelDependencyIndex> indexes;
+		synchronized (PENDING) {
+			final Map<ObjectId, ModelDependencyIndex> pending = PENDING.remove(folder);
+			if (pending == null || pending.isEmpty()) {
+				return;
+			}
+			indexes = new ArrayList<ModelDependencyIndex>(pending.values());
+		}
+		for (ModelDependencyIndex index : indexes) {
+			index.write(folder);
+		}
+		Files.write(new File(folder, LAST_INDEXED_TREE).toPath(), indexes.get(indexes.size() - 1).treeId
+				.name().getBytes(StandardCharsets.UTF_8));
+		prune(folder);
+	}
+
+	/**
+	 * Gets a pending index of the given folder.
+	 *
+	 * @param folder
+	 *            the folder holding the indexes.
+	 * @param treeId
+	 *            id of the indexed tree, <code>null</code> for the most recent pending index.
+	 * @param modelExtensions
+	 *            file extensions of the model resources.
+	 * @return the pending index or <code>null</code> if there is none built with these model extensions.
+	 */
+	private static ModelDependencyIndex getPending(File folder, ObjectId treeId,
+			Set<String> modelExtensions) {
+		synchronized (PENDING) {
+			final Map<ObjectId, ModelDependencyIndex> pending = PENDING.get(folder);
+			ModelDependencyIndex index = null;
+			if (pending != null && treeId != null) {
+				index = pending.get(treeId);
+			} else if (pending != null) {
+				for (ModelDependencyIndex candidate : pending.values()) {
+					index = candidate;
+				}
+			}
+			if (index != null && index.modelExtensions.equals(modelExtensions)) {
+				return index;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Marks the index as pending, as the most recent one of its folder.
+	 *
+	 * @return <code>true</code> if too many indexes of the folder are pending.
+	 */
+	private boolean setPending() {
+		synchronized (PENDING) {
+			Map<ObjectId, ModelDependencyIndex> pending = PENDING.get(folder);
+			if (pending == null) {
+				pending = new LinkedHashMap<ObjectId, ModelDependencyIndex>();
+				PENDING.put(folder, pending);
+			}
+			pending.remove(treeId);
+			pending.put(treeId, this);
+			return pending.size() > MAX_PENDING_INDEXES;
+		}
+	}
+
+	/**
+	 * Gets the number of indexes read from the disk in the current {@link Metrics#scope() scope}.
+	 *
+	 * @return the number of cache hits.
+	 */
+	public static long getHitCount() {
+		return Metrics.getHitCount(Cache.INDEX);
+	}
+
+	/**
+	 * Gets the number of indexes that had to be computed in the current {@link Metrics#scope() scope}.
+	 *
+	 * @return the number of cache misses.
+	 */
+	public static long getMissCount() {
+		return Metrics.getMissCount(Cache.INDEX);
+	}
+
+	/**
+	 * Gets the file extensions registered in the EMF resource factory registry.
+	 *
+	 * @return the file extensions of the model resources.
+	 */
+	public static Set<String> getDefaultModelExtensions() {
+		Set<String> extensions = new TreeSet<String>(Resource.Factory.Registry.INSTANCE
+				.getExtensionToFactoryMap().keySet());
+		extensions.remove(Resource.Factory.Registry.DEFAULT_EXTENSION);
+		return extensions;
+	}
+
+	/**
+	 * Gets the id of the indexed tree.
+	 *
+	 * @return the id of the indexed tree.
+	 */
+	public ObjectId getTreeId() {
+		return treeId;
+	}
+
+	/**
+	 * Gets the paths of all the model resources of the tree.
+	 *
+	 * @return an unmodifiable set of paths.
+	 */
+	public Set<String> getModelPaths() {
+		return Collections.unmodifiableSet(references.keySet());
+	}
+
+	/**
+	 * Returns <code>true</code> if the given path is a model resource of the indexed tree.
+	 *
+	 * @param path
+	 *            path in the repository.
+	 * @return <code>true</code> if the given path is a model resource of the indexed tree.
+	 */
+	public boolean isModel(String path) {
+		return references.containsKey(path);
+	}
+
+	/**
+	 * Returns <code>true</code> if the given path has the extension of a model resource, whether or not it
+	 * belongs to the indexed tree.
+	 *
+	 * @param path
+	 *            path in the repository.
+	 * @return <code>true</code> if the given path has the extension of a model resource.
+	 */
+	public boolean hasModelExtension(String path) {
+		final int dot = path.lastIndexOf('.');
+		return dot > path.lastIndexOf(SLASH) && modelExtensions.contains(path.substring(dot + 1));
+	}
+
+	/**
+	 * Gets what the EMF model providers have answered for the given path of the indexed tree.
+	 *
+	 * @param path
+	 *            path in the repository.
+	 * @return whether the providers accept the file, or <code>null</code> if they have not been queried yet.
+	 */
+	public Boolean getProviderResult(String path) {
+		synchronized (providerResults) {
+			return providerResults.get(path);
+		}
+	}
+
+	/**
+	 * Records what the EMF model providers have answered for the given path of the indexed tree. The index is
+	 * persisted again on the next flush.
+	 *
+	 * @param path
+	 *            path in the repository.
+	 * @param accepted
+	 *            whether the providers accept the file.
+	 */
+	public void setProviderResult(String path, boolean accepted) {
+		final Boolean previous;
+		synchronized (providerResults) {
+			previous = providerResults.put(path, Boolean.valueOf(accepted));
+		}
+		if (folder != null && !Boolean.valueOf(accepted).equals(previous)) {
+			setPending();
+		}
+	}
+
+	/**
+	 * Gets the model resources of the tree directly referenced by the given one.
+	 *
+	 * @param path
+	 *            path of a model resource.
+	 * @return the paths of the referenced resources.
+	 */
+	public Set<String> getReferencedResources(String path) {
+		final Set<String> referenced = new TreeSet<String>();
+		final Set<String> targets = references.get(path);
+		if (targets != null) {
+			for (String target : targets) {
+				String resolved = resolve(target);
+				if (resolved != null && !resolved.equals(path)) {
+					referenced.add(resolved);
+				}
+			}
+		}
+		return referenced;
+	}
+
+	/**
+	 * Gets the logical model of the given resource: all the model resources that it references or that
+	 * reference it, directly or not.
+	 *
+	 * @param path
+	 *            path of a model resource.
+	 * @return the paths of all the resources of the logical model, including the given one, or an empty set
+	 *         if the path is not a model resource of the tree.
+	 */
+	public Set<String> getLogicalModel(String path) {
+		if (!isModel(path)) {
+			return Collections.emptySet();
+		}
+		final Map<String, Set<String>> graph = getDependencies();
+		final Set<String> logicalModel = new TreeSet<String>();
+		final Deque<String> toVisit = new ArrayDeque<String>();
+		toVisit.add(path);
+		while (!toVisit.isEmpty()) {
+			String current = toVisit.poll();
+			if (logicalModel.add(current)) {
+				toVisit.addAll(graph.get(current));
+			}
+		}
+		return logicalModel;
+	}
+
+	/**
+	 * Computes the resolved references of all the resources, in both directions.
+	 *
+	 * @return the dependency graph of the tree.
+	 */
+	private Map<String, Set<String>> getDependencies() {
+		if (dependencies == null) {
+			dependencies = new HashMap<String, Set<String>>();
+			for (String path : references.keySet()) {
+				dependencies.put(path, new LinkedHashSet<String>());
+			}
+			for (String path : references.keySet()) {
+				for (String referenced : getReferencedResources(path)) {
+					dependencies.get(path).add(referenced);
+					dependencies.get(referenced).add(path);
+				}
+			}
+		}
+		return dependencies;
+	}
+
+	/**
+	 * Resolves a reference to a model resource path of the tree.
+	 *
+	 * @param target
+	 *            repository path or platform resource URI.
+	 * @return the path of the model resource, or <code>null</code> if the target does not belong to the
+	 *         tree.
+	 */
+	private String resolve(String target) {
+		String path = target;
+		if (target.startsWith(PLATFORM_RESOURCE)) {
+			final String projectPath = target.substring(PLATFORM_RESOURCE.length());
+			final int sep = projectPath.indexOf(SLASH);
+			if (sep < 0) {
+				return null;
+			}
+			final String folder = projects.get(projectPath.substring(0, sep));
+			if (folder == null) {
+				return null;
+			} else if (folder.isEmpty()) {
+				path = projectPath.substring(sep + 1);
+			} else {
+				path = folder + SLASH + projectPath.substring(sep + 1);
+			}
+		}
+		if (references.containsKey(path)) {
+			return path;
+		}
+		return null;
+	}
+
+	/**
+	 * Scans the tree for model resources and projects. If a base tree is given, only the paths that differ
+	 * from it are scanned; the index is expected to already hold the entries of the base tree.
+	 *
+	 * @param repo
+	 *            the repository holding the trees.
+	 * @param baseTreeId
+	 *            the already indexed tree, may be <code>null</code>.
+	 * @throws IOException
+	 *             if a tree or a blob can not be read.
+	 */
+	private void scan(Repository repo, ObjectId baseTreeId) throws IOException {
+		try (TreeWalk walk = new TreeWalk(repo)) {
+			final int nth;
+			if (baseTreeId != null) {
+				walk.addTree(baseTreeId);
+				walk.addTree(treeId);
+				walk.setFilter(TreeFilter.ANY_DIFF);
+				nth = 1;
+			} else {
+				walk.addTree(treeId);
+				nth = 0;
+			}
+			walk.setRecursive(true);
+			final ObjectReader reader = walk.getObjectReader();
+			while (walk.next()) {
+				final String path = walk.getPathString();
+				references.remove(path);
+				providerResults.remove(path);
+				removeProject(path);
+				if ((walk.getRawMode(nth) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+					if (isProjectDescription(path)) {
+						String name = readProjectName(reader, walk.getObjectId(nth));
+						if (name != null) {
+							projects.put(name, getParent(path));
+						}
+					} else if (hasModelExtension(path)) {
+						references.put(path, readReferences(reader, walk.getObjectId(nth), path));
+					}
+				}
+			}
+		}
+		dependencies = null;
+	}
+
+	/**
+	 * Removes the project described by the given file, if any.
+	 *
+	 * @param path
+	 *            path of a file in the repository.
+	 */
+	private void removeProject(String path) {
+		if (isProjectDescription(path)) {
+			final String folder = getParent(path);
+			for (Iterator<String> it = projects.values().iterator(); it.hasNext();) {
+				if (folder.equals(it.next())) {
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the name of a project from its description.
+	 *
+	 * @param reader
+	 *            reader of the repository.
+	 * @param blobId
+	 *            id of the project description blob.
+	 * @return the name of the project or <code>null</code> if not found.
+	 * @throws IOException
+	 *             if the blob can not be read.
+	 */
+	private static String readProjectName(ObjectReader reader, ObjectId blobId) throws IOException {
+		final String content = new String(reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes(),
+				StandardCharsets.UTF_8);
+		final Matcher matcher = PROJECT_NAME_PATTERN.matcher(content);
+		if (matcher.find()) {
+			return matcher.group(1).trim();
+		}
+		return null;
+	}
+
+	/**
+	 * Streams a model blob to collect the URIs it references.
+	 *
+	 * @param reader
+	 *            reader of the repository.
+	 * @param blobId
+	 *            id of the model blob.
+	 * @param path
+	 *            path of the model in the repository.
+	 * @return the references held by the model.
+	 * @throws IOException
+	 *             if the blob can not be read.
+	 */
+	private static Set<String> readReferences(ObjectReader reader, ObjectId blobId, String path)
+			throws IOException {
+		final Set<String> targets = new TreeSet<String>();
+		try (BufferedReader content = new BufferedReader(new InputStreamReader(reader.open(blobId,
+				Constants.OBJ_BLOB).openStream(), StandardCharsets.UTF_8))) {
+			String line = content.readLine();
+			while (line != null) {
+				Matcher matcher = REFERENCE_PATTERN.matcher(line);
+				while (matcher.find()) {
+					String target = toTarget(path, matcher.group(1));
+					if (target != null && !target.equals(path)) {
+						targets.add(target);
+					}
+				}
+				line = content.readLine();
+			}
+		}
+		return targets;
+	}
+
+	/**
+	 * Converts a URI found in a model to a reference of the index.
+	 *
+	 * @param path
+	 *            path of the model holding the URI.
+	 * @param uri
+	 *            the URI, without its fragment.
+	 * @return a repository path, a platform resource URI or <code>null</code> if the URI can not target a
+	 *         resource of the repository.
+	 */
+	static String toTarget(String path, String uri) {
+		final String decoded = URI.decode(uri);
+		if (decoded.startsWith(PLATFORM_RESOURCE)) {
+			return decoded;
+		} else if (decoded.indexOf(':') >= 0 || decoded.charAt(0) == SLASH) {
+			// Other schemes and absolute paths are out of the repository
+			return null;
+		}
+		final Deque<String> segments = new ArrayDeque<String>();
+		final String parent = getParent(path);
+		final List<String> relative = Lists.newArrayList(Splitter.on(SLASH).split(decoded));
+		final Iterable<String> all;
+		if (parent.isEmpty()) {
+			all = relative;
+		} else {
+			List<String> absolute = Lists.newArrayList(Splitter.on(SLASH).split(parent));
+			absolute.addAll(relative);
+			all = absolute;
+		}
+		for (String segment : all) {
+			if ("..".equals(segment)) { //$NON-NLS-1$
+				if (segments.isEmpty()) {
+					return null;
+				}
+				segments.removeLast();
+			} else if (!segment.isEmpty() && !".".equals(segment)) { //$NON-NLS-1$
+				segments.addLast(segment);
+			}
+		}
+		return Joiner.on(SLASH).join(segments);
+	}
+
+	/**
+	 * Gets the path of the folder holding the given path.
+	 *
+	 * @param path
+	 *            a repository path.
+	 * @return the parent path, empty for the root of the repository.
+	 */
+	private static String getParent(String path) {
+		final int sep = path.lastIndexOf(SLASH);
+		if (sep < 0) {
+			return ""; //$NON-NLS-1$
+		}
+		return path.substring(0, sep);
+	}
+
+	/**
+	 * Returns <code>true</code> if the path is the one of a project description file.
+	 *
+	 * @param path
+	 *            a repository path.
+	 * @return <code>true</code> if the path is the one of a project description file.
+	 */
+	private static boolean isProjectDescription(String path) {
+		return path.equals(PROJECT_DESCRIPTION) || path.endsWith(SLASH + PROJECT_DESCRIPTION);
+	}
+
+	/**
+	 * Reads the index of the last indexed tree.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param folder
+	 *            the folder holding the indexes.
+	 * @param modelExtensions
+	 *            file extensions of the model resources.
+	 * @return the last index or <code>null</code> if there is none or if it is not usable.
+	 * @throws IOException
+	 *             if the index can not be read.
+	 */
+	private static ModelDependencyIndex readLast(Repository repo, File folder, Set<String> modelExtensions)
+			throws IOException {
+		final File last = new File(folder, LAST_INDEXED_TREE);
+		if (!last.isFile()) {
+			return null;
+		}
+		final String name = new String(Files.readAllBytes(last.toPath()), StandardCharsets.UTF_8).trim();
+		if (!ObjectId.isId(name)) {
+			return null;
+		}
+		final ObjectId lastTreeId = ObjectId.fromString(name);
+		if (!repo.getObjectDatabase().has(lastTreeId)) {
+			return null;
+		}
+		return read(new File(folder, name), lastTreeId, modelExtensions);
+	}
+
+	/**
+	 * Reads a persisted index.
+	 *
+	 * @param file
+	 *            the file holding the index.
+	 * @param treeId
+	 *            id of the indexed tree.
+	 * @param modelExtensions
+	 *            file extensions of the model resources.
+	 * @return the index or <code>null</code> if there is none, if it has been built with other model
+	 *         extensions or if it is truncated.
+	 * @throws IOException
+	 *             if the file can not be read.
+	 */
+	private static ModelDependencyIndex read(File file, ObjectId treeId, Set<String> modelExtensions)
+			throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		final ModelDependencyIndex index = new ModelDependencyIndex(treeId, modelExtensions);
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				StandardCharsets.UTF_8))) {
+			if (!FORMAT_HEADER.equals(reader.readLine())) {
+				return null;
+			}
+			final Splitter splitter = Splitter.on(TAB);
+			String line = reader.readLine();
+			if (line == null) {
+				return null;
+			}
+			final List<String> extensions = Lists.newArrayList(splitter.split(line));
+			if (!EXTENSIONS_ENTRY.equals(extensions.remove(0))
+					|| !modelExtensions.equals(new TreeSet<String>(extensions))) {
+				return null;
+			}
+			line = reader.readLine();
+			while (line != null && !FORMAT_TRAILER.equals(line)) {
+				List<String> entry = Lists.newArrayList(splitter.split(line));
+				String kind = entry.get(0);
+				if (PROJECT_ENTRY.equals(kind) && entry.size() == 3) {
+					index.projects.put(entry.get(1), entry.get(2));
+				} else if (MODEL_ENTRY.equals(kind) && entry.size() >= 2) {
+					index.references.put(entry.get(1), new TreeSet<String>(entry.subList(2, entry.size())));
+				} else if (PROVIDER_ENTRY.equals(kind) && entry.size() == 3) {
+					index.providerResults.put(entry.get(1), Boolean.valueOf(entry.get(2)));
+				} else {
+					return null;
+				}
+				line = reader.readLine();
+			}
+			if (line == null) {
+				// Truncated
+				return null;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Persists the index.
+	 *
+	 * @param folder
+	 *            the folder holding the indexes.
+	 * @throws IOException
+	 *             if the index can not be written.
+	 */
+	private void write(File folder) throws IOException {
+		final File tmp = File.createTempFile(treeId.name(), null, folder);
+		final Joiner joiner = Joiner.on(TAB);
+		try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp),
+				StandardCharsets.UTF_8))) {
+			writer.write(FORMAT_HEADER);
+			writer.newLine();
+			writer.write(EXTENSIONS_ENTRY);
+			for (String extension : modelExtensions) {
+				writer.write(TAB);
+				writer.write(extension);
+			}
+			writer.newLine();
+			for (Map.Entry<String, String> project : projects.entrySet()) {
+				joiner.appendTo(writer, PROJECT_ENTRY, project.getKey(), project.getValue());
+				writer.newLine();
+			}
+			for (Map.Entry<String, Set<String>> model : references.entrySet()) {
+				writer.write(MODEL_ENTRY);
+				writer.write(TAB);
+				writer.write(model.getKey());
+				for (String target : model.getValue()) {
+					writer.write(TAB);
+					writer.write(target);
+				}
+				writer.newLine();
+			}
+			synchronized (providerResults) {
+				for (Map.Entry<String, Boolean> result : providerResults.entrySet()) {
+					joiner.appendTo(writer, PROVIDER_ENTRY, result.getKey(), result.getValue());
+					writer.newLine();
+				}
+			}
+			writer.write(FORMAT_TRAILER);
+			writer.newLine();
+		}
+		Files.move(tmp.toPath(), new File(folder, treeId.name()).toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Deletes the oldest persisted indexes so that at most {@link #MAX_PERSISTED_INDEXES} are kept.
+	 *
+	 * @param folder
+	 *            the folder holding the indexes.
+	 */
+	private static void prune(File folder) {
+		final File[] indexes = folder.listFiles();
+		if (indexes == null || indexes.length <= MAX_PERSISTED_INDEXES + 1) {
+			return;
+		}
+		Arrays.sort(indexes, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				return Long.compare(f2.lastModified(), f1.lastModified());
+			}
+		});
+		int kept = 0;
+		for (File index : indexes) {
+			if (ObjectId.isId(index.getName())) {
+				kept++;
+				if (kept > MAX_PERSISTED_INDEXES && !index.delete()) {
+					index.deleteOnExit();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,501 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics.Cache;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.util.FS;
+
+/**
+ * On-disk cache of the content ids of the files of the work tree, keyed by their path and validated by their
+ * stat data (modification time, size and file key, i.e. inode where available).
+ * <p>
+ * JGit only trusts the stat data recorded in the index. A file touched without being modified, or modified
+ * then reverted, is hashed again by each status until the index is rewritten. This cache records the id of
+ * such files across invocations. To be safe against racy modifications, an entry is only recorded if the
+ * file has not been modified during the last {@link #RACY_MARGIN} milliseconds before the scan: a later
+ * modification of the file necessarily changes its modification time.
+ * </p>
+ * <p>
+ * The content ids depend on the conversions applied to the files: the cache is keyed by a fingerprint of the
+ * line ending and filter configuration and of the stat data of the attributes files. The entries that the
+ * last walk of the work tree has not looked up, such as the ones of deleted files or of files whose stat
+ * data the index records again, are dropped when the cache is written.
+ * </p>
+ */
+public final class StatCache {
+
+	/** Name of the folder, in the EMF Compare data directory, holding the cache. */
+	public static final String CACHE_FOLDER = "status"; //$NON-NLS-1$
+
+	/** Time, in milliseconds, covering the timestamp granularity of the file systems. */
+	public static final long RACY_MARGIN = 2000;
+
+	/** Name of the file holding the cache. */
+	private static final String CACHE_FILE = "stat-cache"; //$NON-NLS-1$
+
+	/** Identifies the cache file. */
+	private static final int MAGIC = 0x454D4653;
+
+	/** Version of the format of the cache file. */
+	private static final int FORMAT_VERSION = 1;
+
+	/** The file holding the cache. */
+	private final File file;
+
+	/** Name of the git configuration section of the filters. */
+	private static final String FILTER_SECTION = "filter"; //$NON-NLS-1$
+
+	/** Name of the attributes files of the work tree. */
+	private static final String ATTRIBUTES_FILE = ".gitattributes"; //$NON-NLS-1$
+
+	/** Configuration the content ids depend on, i.e. the line ending conversion and the filters. */
+	private final String configKey;
+
+	/** The entries, by repository path. */
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	/** Paths looked up since the last walk of the work tree has started. */
+	private final Set<String> lookedUp = new HashSet<String>();
+
+	/** Whether a walk of the work tree has been started. */
+	private boolean walked;
+
+	/** Time from which file modifications are considered racy. */
+	private long racyTime;
+
+	/** Whether the entries have changed since the cache has been read. */
+	private boolean dirty;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param file
+	 *            the file holding the cache.
+	 * @param configKey
+	 *            the configuration the content ids depend on.
+	 */
+	public StatCache(File file, String configKey) {
+		this.file = file;
+		this.configKey = configKey;
+		this.racyTime = System.currentTimeMillis() - RACY_MARGIN;
+	}
+
+	/**
+	 * Gets the cache of a repository, read from its file.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the cache.
+	 * @throws IOException
+	 *             if the folder of the cache can not be created.
+	 */
+	public static StatCache forRepository(Repository repo) throws IOException {
+		final StatCache cache = new StatCache(new File(GitUtils.getDataDirectory(repo, CACHE_FOLDER),
+				CACHE_FILE), getConfigKey(repo));
+		cache.read();
+		return cache;
+	}
+
+	/**
+	 * Computes the fingerprint of the configuration the content ids of the files of a repository depend on:
+	 * the line ending configuration, the filters and the stat data of the attributes files, i.e. the global
+	 * one, the one of the git directory and the ones of the index.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the fingerprint.
+	 * @throws IOException
+	 *             if the index can not be read.
+	 */
+	static String getConfigKey(Repository repo) throws IOException {
+		final Config config = repo.getConfig();
+		final StringBuilder key = new StringBuilder();
+		final String[] lineEndingKeys = {ConfigConstants.CONFIG_KEY_AUTOCRLF, "eol", "safecrlf" }; //$NON-NLS-1$ //$NON-NLS-2$
+		for (String name : lineEndingKeys) {
+			key.append(name).append('=').append(config.getString(ConfigConstants.CONFIG_CORE_SECTION, null,
+					name)).append('\n');
+		}
+		for (String filter : new TreeSet<String>(config.getSubsections(FILTER_SECTION))) {
+			for (String name : new TreeSet<String>(config.getNames(FILTER_SECTION, filter))) {
+				key.append(FILTER_SECTION).append('.').append(filter).append('.').append(name).append('=')
+						.append(config.getString(FILTER_SECTION, filter, name)).append('\n');
+			}
+		}
+		final List<File> attributesFiles = new ArrayList<File>();
+		final String globalAttributes = config.getString(ConfigConstants.CONFIG_CORE_SECTION, null,
+				"attributesfile"); //$NON-NLS-1$
+		if (globalAttributes != null) {
+			if (globalAttributes.startsWith("~/") && repo.getFS().userHome() != null) { //$NON-NLS-1$
+				attributesFiles.add(new File(repo.getFS().userHome(), globalAttributes.substring(2)));
+			} else {
+				attributesFiles.add(new File(globalAttributes));
+			}
+		}
+		attributesFiles.add(new File(repo.getDirectory(), "info/attributes")); //$NON-NLS-1$
+		if (!repo.isBare()) {
+			final DirCache dirCache = repo.readDirCache();
+			for (int i = 0; i < dirCache.getEntryCount(); i++) {
+				final String path = dirCache.getEntry(i).getPathString();
+				if (path.equals(ATTRIBUTES_FILE) || path.endsWith('/' + ATTRIBUTES_FILE)) {
+					attributesFiles.add(new File(repo.getWorkTree(), path));
+				}
+			}
+		}
+		for (File attributesFile : attributesFiles) {
+			key.append(attributesFile.getPath()).append(':').append(attributesFile.lastModified()).append(':')
+					.append(attributesFile.length()).append('\n');
+		}
+		final MessageDigest digest = Constants.newMessageDigest();
+		return ObjectId.fromRaw(digest.digest(key.toString().getBytes(StandardCharsets.UTF_8))).name();
+	}
+
+	/**
+	 * Gets the number of ids read from a cache in the current {@link Metrics#scope() scope}.
+	 *
+	 * @return the number of cache hits.
+	 */
+	public static long getHitCount() {
+		return Metrics.getHitCount(Cache.STAT);
+	}
+
+	/**
+	 * Gets the number of ids looked up in a cache and not found or outdated in the current
+	 * {@link Metrics#scope() scope}.
+	 *
+	 * @return the number of cache misses.
+	 */
+	public static long getMissCount() {
+		return Metrics.getMissCount(Cache.STAT);
+	}
+
+	/**
+	 * Creates an iterator over the work tree of a repository that reads the content ids from this cache and
+	 * records the ids it computes.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the iterator.
+	 */
+	public WorkingTreeIterator createIterator(Repository repo) {
+		racyTime = System.currentTimeMillis() - RACY_MARGIN;
+		lookedUp.clear();
+		walked = true;
+		return new CachingIterator(repo, this);
+	}
+
+	/**
+	 * Gets the number of entries of the cache.
+	 *
+	 * @return the number of entries.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the id recorded for a file.
+	 *
+	 * @param path
+	 *            repository path of the file.
+	 * @param lastModified
+	 *            modification time of the file.
+	 * @param length
+	 *            size of the file.
+	 * @param fileKey
+	 *            file key of the file.
+	 * @return the recorded id or <code>null</code> if there is none or if the stat data differ.
+	 */
+	public ObjectId get(String path, long lastModified, long length, String fileKey) {
+		lookedUp.add(path);
+		final Entry entry = entries.get(path);
+		if (entry != null && entry.matches(lastModified, length, fileKey)) {
+			Metrics.recordLookup(Cache.STAT, true);
+			return entry.id;
+		}
+		Metrics.recordLookup(Cache.STAT, false);
+		return null;
+	}
+
+	/**
+	 * Records the id of a file, unless it has been modified too recently to be safely cached.
+	 *
+	 * @param path
+	 *            repository path of the file.
+	 * @param lastModified
+	 *            modification time of the file.
+	 * @param length
+	 *            size of the file.
+	 * @param fileKey
+	 *            file key of the file.
+	 * @param id
+	 *            content id of the file.
+	 */
+	public void put(String path, long lastModified, long length, String fileKey, ObjectId id) {
+		lookedUp.add(path);
+		if (lastModified < racyTime) {
+			entries.put(path, new Entry(lastModified, length, fileKey, id.copy()));
+			dirty = true;
+		} else if (entries.remove(path) != null) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Reads the cache from its file. A missing, outdated or corrupted file leaves the cache empty.
+	 */
+	public void read() {
+		entries.clear();
+		dirty = false;
+		if (!file.isFile()) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !configKey.equals(in.readUTF())) {
+				return;
+			}
+			final int size = in.readInt();
+			final byte[] rawId = new byte[Constants.OBJECT_ID_LENGTH];
+			for (int i = 0; i < size; i++) {
+				String path = in.readUTF();
+				long lastModified = in.readLong();
+				long length = in.readLong();
+				String fileKey = in.readUTF();
+				in.readFully(rawId);
+				entries.put(path, new Entry(lastModified, length, fileKey, ObjectId.fromRaw(rawId)));
+			}
+		} catch (IOException e) {
+			// Corrupted cache, the files will be hashed again
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Writes the cache to its file if it has changed. If a walk of the work tree has been started, the
+	 * entries it has not looked up are dropped first.
+	 *
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public void write() throws IOException {
+		if (walked && entries.keySet().retainAll(lookedUp)) {
+			dirty = true;
+		}
+		if (!dirty) {
+			return;
+		}
+		final File tmp = new File(file.getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(configKey);
+			out.writeInt(entries.size());
+			final byte[] rawId = new byte[Constants.OBJECT_ID_LENGTH];
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				Entry value = entry.getValue();
+				out.writeUTF(entry.getKey());
+				out.writeLong(value.lastModified);
+				out.writeLong(value.length);
+				out.writeUTF(value.fileKey);
+				value.id.copyRawTo(rawId, 0);
+				out.write(rawId);
+			}
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		dirty = false;
+	}
+
+	/**
+	 * Gets the file key of a file, i.e. its inode and device where available.
+	 *
+	 * @param file
+	 *            the file.
+	 * @return the file key or an empty string if it is not available.
+	 */
+	static String getFileKey(File file) {
+		try {
+			Object fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+			if (fileKey != null) {
+				return fileKey.toString();
+			}
+		} catch (IOException e) {
+			// No file key, the other stat data are still checked
+		}
+		return ""; //$NON-NLS-1$
+	}
+
+	/**
+	 * An entry of the cache.
+	 */
+	private static final class Entry {
+
+		/** Modification time of the file. */
+		private final long lastModified;
+
+		/** Size of the file. */
+		private final long length;
+
+		/** File key of the file. */
+		private final String fileKey;
+
+		/** Content id of the file. */
+		private final ObjectId id;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param lastModified
+		 *            modification time of the file.
+		 * @param length
+		 *            size of the file.
+		 * @param fileKey
+		 *            file key of the file.
+		 * @param id
+		 *            content id of the file.
+		 */
+		Entry(long lastModified, long length, String fileKey, ObjectId id) {
+			this.lastModified = lastModified;
+			this.length = length;
+			this.fileKey = fileKey;
+			this.id = id;
+		}
+
+		/**
+		 * Checks the stat data of a file against this entry.
+		 *
+		 * @param otherLastModified
+		 *            modification time of the file.
+		 * @param otherLength
+		 *            size of the file.
+		 * @param otherFileKey
+		 *            file key of the file.
+		 * @return <code>true</code> if the stat data are the recorded ones.
+		 */
+		boolean matches(long otherLastModified, long otherLength, String otherFileKey) {
+			return lastModified == otherLastModified && length == otherLength && fileKey.equals(otherFileKey);
+		}
+	}
+
+	/**
+	 * A {@link FileTreeIterator} reading the content ids of the regular files from a {@link StatCache}.
+	 */
+	private static final class CachingIterator extends FileTreeIterator {
+
+		/** The cache. */
+		private final StatCache cache;
+
+		/** Path of the entry which id has been computed last. */
+		private String lastPath;
+
+		/** Content id of the entry which id has been computed last. */
+		private byte[] lastId;
+
+		/**
+		 * Constructor of the root iterator.
+		 *
+		 * @param repo
+		 *            the repository.
+		 * @param cache
+		 *            the cache.
+		 */
+		CachingIterator(Repository repo, StatCache cache) {
+			super(repo);
+			this.cache = cache;
+		}
+
+		/**
+		 * Constructor of a subtree iterator.
+		 *
+		 * @param parent
+		 *            the parent iterator.
+		 * @param root
+		 *            the directory of the subtree.
+		 * @param fs
+		 *            the file system abstraction.
+		 * @param cache
+		 *            the cache.
+		 */
+		CachingIterator(CachingIterator parent, File root, FS fs, StatCache cache) {
+			super(parent, root, fs);
+			this.cache = cache;
+		}
+
+		@Override
+		public AbstractTreeIterator createSubtreeIterator(ObjectReader reader)
+				throws IncorrectObjectTypeException, IOException {
+			return new CachingIterator(this, getEntryFile(), fs, cache);
+		}
+
+		@Override
+		public byte[] idBuffer() {
+			final FileMode mode = getEntryFileMode();
+			if (!FileMode.REGULAR_FILE.equals(mode) && !FileMode.EXECUTABLE_FILE.equals(mode)) {
+				return super.idBuffer();
+			}
+			final String path = getEntryPathString();
+			if (path.equals(lastPath)) {
+				return lastId;
+			}
+			final long lastModified = getEntryLastModified();
+			final long length = getEntryLength();
+			final String fileKey = getFileKey(getEntryFile());
+			final ObjectId cached = cache.get(path, lastModified, length, fileKey);
+			final byte[] result;
+			if (cached != null) {
+				result = new byte[idOffset() + Constants.OBJECT_ID_LENGTH];
+				cached.copyRawTo(result, idOffset());
+			} else {
+				result = super.idBuffer();
+				ObjectId id = ObjectId.fromRaw(result, idOffset());
+				if (!ObjectId.zeroId().equals(id)) {
+					cache.put(path, lastModified, length, fileKey, id);
+				}
+			}
+			lastPath = path;
+			lastId = result;
+			return result;
+		}
+	}
+}
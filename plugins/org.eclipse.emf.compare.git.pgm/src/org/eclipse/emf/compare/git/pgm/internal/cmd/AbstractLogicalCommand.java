@@ -10,8 +10,11 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
+import static org.eclipse.emf.compare.git.pgm.internal.Options.DRY_RUN_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.Options.GIT_DIR_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.Options.HELP_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.JFR_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.PROGRESS_LOG_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.Options.SHOW_STACK_TRACE_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType.FATAL;
 import static org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType.SOFTWARE_ERROR;
@@ -44,10 +47,17 @@ import org.eclipse.emf.compare.git.pgm.internal.args.CmdLineParserRepositoryBuil
 import org.eclipse.emf.compare.git.pgm.internal.args.GitDirHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.SetupFileHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
 import org.eclipse.emf.compare.git.pgm.internal.exception.ArgumentValidationError;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.merge.MergePrediction;
+import org.eclipse.emf.compare.git.pgm.internal.util.FlightRecording;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.Phase;
+import org.eclipse.emf.compare.git.pgm.internal.util.PhaseEvent;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorktreeStatus;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.URIConverter;
@@ -55,7 +65,12 @@ import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.edit.domain.AdapterFactoryEditingDomain;
 import org.eclipse.emf.edit.provider.ComposedAdapterFactory;
 import org.eclipse.equinox.p2.metadata.ILicense;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.util.io.ThrowingPrintWriter;
 import org.eclipse.oomph.base.provider.BaseEditUtil;
 import org.eclipse.oomph.internal.setup.SetupPrompter;
@@ -98,13 +113,16 @@ public abstract class AbstractLogicalCommand {
 	/** Buffer size of the array use to generate an unique id. */
 	private static final int GEN_ID_BUFFER_SIZE = 1024;
 
+	/** Alias of the help option. */
+	private static final String HELP_ALIAS = "-h"; //$NON-NLS-1$
+
 	/** Eclipse string. */
 	private static final String ECLIPSE = "eclipse"; //$NON-NLS-1$
 
 	/**
 	 * Holds true if a user has set the help option to true.
 	 */
-	@Option(name = HELP_OPT, usage = "Dispays help for this command.", aliases = {"-h" })
+	@Option(name = HELP_OPT, usage = "Dispays help for this command.", aliases = {HELP_ALIAS })
 	private boolean help;
 
 	/**
@@ -125,6 +143,24 @@ public abstract class AbstractLogicalCommand {
 	@Option(name = GIT_DIR_OPT, metaVar = "gitFolderPath", usage = "Path to the .git folder of your repository.", handler = GitDirHandler.class)
 	private String gitdir;
 
+	/**
+	 * Holds true if the command has only to be validated, without provisioning nor launching the installation.
+	 */
+	@Option(name = DRY_RUN_OPT, usage = "Validates the command and predicts its result without provisioning nor launching the installed product.")
+	private boolean dryRun;
+
+	/**
+	 * Holds the file where the events of the setup are written, if any.
+	 */
+	@Option(name = PROGRESS_LOG_OPT, metaVar = "file", usage = "Writes the setup tasks, their duration and logs, then their summary to the given file, as JSON lines.")
+	private File progressLog;
+
+	/**
+	 * Holds the file where the flight recording of the run is written, if any.
+	 */
+	@Option(name = JFR_OPT, metaVar = "file", usage = "Records the run, including the launched product, with Java Flight Recorder to the given file.")
+	private File jfr;
+
 	/**
 	 * Name of this command.
 	 */
@@ -145,11 +181,27 @@ public abstract class AbstractLogicalCommand {
 	 */
 	private Repository repo;
 
+	/**
+	 * Flight recording of this command, if any.
+	 */
+	private FlightRecording flightRecording;
+
+	/**
+	 * Metrics of this command, if they are written.
+	 */
+	private Metrics metrics;
+
 	/**
 	 * SetupTaskPerformer of this command.
 	 */
 	private SetupTaskPerformer performer;
 
+	/**
+	 * SetupTaskPerformer that has already provisioned the installation and the workspace of this command, if
+	 * any.
+	 */
+	private SetupTaskPerformer performedSetup;
+
 	/**
 	 * Log.
 	 */
@@ -182,13 +234,21 @@ public abstract class AbstractLogicalCommand {
 	public final Integer execute() throws Die, IOException {
 		final Integer result;
 		if (!help) {
-			OS os = getPerformer().getOS();
-			if (!os.isCurrent()) {
+			if (dryRun) {
+				try {
+					result = dryRun();
+				} finally {
+					if (repo != null) {
+						// The predictions index the trees of the repository
+						ModelDependencyIndex.flush(repo);
+					}
+				}
+			} else if (performer != null && !performer.getOS().isCurrent()) {
+				// The performer is null if the setup has not been required
 				result = Returns.ERROR.code();
 			} else {
 				result = internalRun();
 			}
-
 		} else {
 			out.print(usage);
 			result = Returns.COMPLETE.code();
@@ -211,6 +271,10 @@ public abstract class AbstractLogicalCommand {
 	public void build(Collection<String> args, URI environmentSetupURI) throws Die, IOException {
 
 		repo = parseArgumentsAndBuildRepo(args);
+		if (repo != null) {
+			// A new invocation starts, the status computed by a previous one is outdated
+			WorktreeStatus.invalidate(repo);
+		}
 		if (!help) {
 			ValidationStatus validationStatus = getValidationStatus();
 			if (!validationStatus.isValid()) {
@@ -244,12 +308,28 @@ public abstract class AbstractLogicalCommand {
 			throw new DiesOn(SOFTWARE_ERROR).displaying("Cannot create input stream").ready();
 		}
 
-		if (!help) {
+		if (!help && repo != null) {
+			metrics = Metrics.forRepository(repo, commandName);
+		}
+		if (!help && jfr != null) {
+			flightRecording = FlightRecording.start(jfr);
+		}
+
+		final boolean setup = !help && !dryRun && requiresSetup();
+		if (setup && performedSetup != null) {
+			performer = performedSetup;
+		} else if (setup) {
 			// CHECKSTYLE.OFF: IllegalCatch - No choice since Oomph launch such an exception
 			try {
 				// Loads eclipse environment setup model.
 				performer = createSetupTaskPerformer(setupFile.getAbsolutePath(), environmentSetupURI);
-				performer.perform(new NullProgressMonitor());
+				final PhaseEvent bootstrapEvent = Phase.BOOTSTRAP.begin(setupFile.getName());
+				try {
+					performer.perform(new NullProgressMonitor());
+				} finally {
+					bootstrapEvent.end();
+					progressPageLog.setTerminating();
+				}
 
 				if (!performer.hasSuccessfullyPerformed()) {
 					throw new DiesOn(DeathType.FATAL).displaying("Error during Oomph operation").ready();
@@ -273,6 +353,41 @@ public abstract class AbstractLogicalCommand {
 		return showStackTrace;
 	}
 
+	/**
+	 * Stops the flight recording of this command, if any, and writes it.
+	 */
+	public void stopFlightRecording() {
+		if (flightRecording != null) {
+			flightRecording.stop();
+			flightRecording = null;
+		}
+	}
+
+	/**
+	 * Writes the metrics of this command, if they have been configured in the repository.
+	 * 
+	 * @param exitCode
+	 *            the exit code of the command.
+	 */
+	public void writeMetrics(int exitCode) {
+		if (metrics != null) {
+			metrics.write(exitCode);
+			metrics = null;
+		}
+	}
+
+	/**
+	 * Returns the file where the events of the setup are written.
+	 * 
+	 * @return the absolute file or <code>null</code> if the events are not written.
+	 */
+	public File getProgressLog() {
+		if (progressLog == null) {
+			return null;
+		}
+		return progressLog.getAbsoluteFile();
+	}
+
 	/**
 	 * Returns the user setup file associated with this command.
 	 * 
@@ -294,6 +409,140 @@ public abstract class AbstractLogicalCommand {
 		}
 	}
 
+	/**
+	 * Inherited class may override this method to skip the Oomph setup of the installation, for instance if
+	 * the command is processed by an application already running. {@link #getPerformer()} then returns
+	 * <code>null</code>.
+	 * 
+	 * @return <code>true</code> if the Oomph setup has to be performed before running the command.
+	 */
+	protected boolean requiresSetup() {
+		return true;
+	}
+
+	/**
+	 * Inherited class may override this method if their command does not work on a repository. The
+	 * {@value org.eclipse.emf.compare.git.pgm.internal.Options#GIT_DIR_OPT} option is then ignored and
+	 * {@link #getRepository()} returns <code>null</code>.
+	 * 
+	 * @return <code>true</code> if the command works on a repository.
+	 */
+	protected boolean requiresRepository() {
+		return true;
+	}
+
+	/**
+	 * Reuses a setup that has already been performed for the same repository and setup file, for instance by
+	 * a previous command of the same service, instead of performing it again when this command is built.
+	 * 
+	 * @param setup
+	 *            the SetupTaskPerformer that has provisioned the installation and the workspace.
+	 */
+	void reuseSetup(SetupTaskPerformer setup) {
+		performedSetup = setup;
+	}
+
+	/**
+	 * Predicts the result of the command without running it. This is called instead of
+	 * {@link #internalRun()} when the {@value org.eclipse.emf.compare.git.pgm.internal.Options#DRY_RUN_OPT}
+	 * option is set: the arguments have been validated but neither the installation nor the workspace have
+	 * been provisioned.
+	 * <p>
+	 * Inherited classes should override this method to report, using the trees of the repository only, what
+	 * their command would do.
+	 * </p>
+	 * 
+	 * @return Return code.
+	 * @throws Die
+	 *             if the prediction can not be computed.
+	 * @throws IOException
+	 *             exception on error.
+	 */
+	protected Integer dryRun() throws Die, IOException {
+		out().println("The " + commandName + " command is valid."); //$NON-NLS-1$ //$NON-NLS-2$
+		return Returns.COMPLETE.code();
+	}
+
+	/**
+	 * Prints the prediction of a merge and reports whether a logical merge would be needed.
+	 * 
+	 * @param prediction
+	 *            the prediction to print.
+	 * @return {@link Returns#COMPLETE} if no model file would need a logical merge, {@link Returns#ABORTED}
+	 *         otherwise.
+	 * @throws IOException
+	 *             exception on error.
+	 */
+	protected Integer printPrediction(MergePrediction prediction) throws IOException {
+		out().print(prediction.getReport());
+		final Integer result;
+		if (prediction.getLogicalMergePaths().isEmpty()) {
+			result = Returns.COMPLETE.code();
+		} else {
+			result = Returns.ABORTED.code();
+		}
+		return result;
+	}
+
+	/**
+	 * Resolves the commit checked out in the repository.
+	 * 
+	 * @return the id of the HEAD commit.
+	 * @throws Die
+	 *             if HEAD does not point to a commit.
+	 * @throws IOException
+	 *             propagates JGit exceptions.
+	 */
+	protected ObjectId resolveHead() throws Die, IOException {
+		final ObjectId head = repo.resolve(Constants.HEAD);
+		if (head == null) {
+			throw new DiesOn(FATAL).displaying("HEAD does not point to a commit.").ready(); //$NON-NLS-1$
+		}
+		return head;
+	}
+
+	/**
+	 * Validates that a file exists in a commit.
+	 * 
+	 * @param path
+	 *            path of the file in the repository.
+	 * @param commit
+	 *            the commit, <code>null</code> for HEAD.
+	 * @return an error status if the file does not exist in the commit, <code>null</code> otherwise.
+	 */
+	protected ValidationStatus validatePathInCommit(String path, ObjectId commit) {
+		try (RevWalk walk = new RevWalk(repo)) {
+			final ObjectId start;
+			if (commit != null) {
+				start = commit;
+			} else {
+				start = repo.resolve(Constants.HEAD);
+			}
+			if (start == null) {
+				return ValidationStatus.createErrorStatus("HEAD does not point to a commit."); //$NON-NLS-1$
+			}
+			final RevCommit startCommit = walk.parseCommit(start);
+			try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, startCommit.getTree())) {
+				if (treeWalk == null) {
+					return ValidationStatus.createErrorStatus(path + " does not exist in " //$NON-NLS-1$
+							+ startCommit.abbreviate(Constants.OBJECT_ID_ABBREV_STRING_LENGTH).name());
+				}
+			}
+		} catch (IOException e) {
+			return ValidationStatus.createErrorStatus(e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Returns <code>true</code> if the command is only validated.
+	 * 
+	 * @return the value of the dry-run option.
+	 */
+	protected boolean isDryRun() {
+		return dryRun;
+	}
+
 	/**
 	 * Runs the command.
 	 * 
@@ -329,16 +578,26 @@ public abstract class AbstractLogicalCommand {
 	 * Since the --git-dir option can be passed through the command line, the parser is also in charge of
 	 * building the repository
 	 * </p>
+	 * <p>
+	 * If the help is the only thing requested, the usage is computed without parsing the arguments: neither
+	 * the repository is opened nor the references resolved.
+	 * </p>
 	 * 
 	 * @param args
 	 *            arguments.
-	 * @return the Repository.
+	 * @return the Repository or <code>null</code> if only the help has been requested or the command does not
+	 *         work on a repository.
 	 * @throws Die
 	 *             if the program exits prematurely.
 	 */
 	protected Repository parseArgumentsAndBuildRepo(Collection<String> args) throws Die {
 
 		cmdLineParser = CmdLineParserRepositoryBuilder.newJGitRepoBuilderCmdParser(this);
+		if (isOnlyHelpRequested(args)) {
+			help = true;
+			usage = getUsage();
+			return null;
+		}
 		try {
 			cmdLineParser.parseArgument(args);
 		} catch (ArgumentValidationError err) {
@@ -364,15 +623,46 @@ public abstract class AbstractLogicalCommand {
 
 		if (help) {
 			// The user has used the help option. Saves the usage message for later
-			ByteArrayOutputStream localOut = new ByteArrayOutputStream();
-			PrintWriter printWritter = new PrintWriter(localOut);
-			printUsage(null, printWritter);
-			printWritter.close();
-			usage = localOut.toString();
+			usage = getUsage();
+		}
+		if (!requiresRepository()) {
+			return null;
 		}
 		return cmdLineParser.getRepo();
 	}
 
+	/**
+	 * Returns <code>true</code> if the arguments only hold help options.
+	 * 
+	 * @param args
+	 *            arguments.
+	 * @return <code>true</code> if the arguments only hold help options.
+	 */
+	private boolean isOnlyHelpRequested(Collection<String> args) {
+		if (args.isEmpty()) {
+			return false;
+		}
+		for (String arg : args) {
+			if (!HELP_OPT.equals(arg) && !HELP_ALIAS.equals(arg)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the usage of this command.
+	 * 
+	 * @return the usage of this command.
+	 */
+	private String getUsage() {
+		ByteArrayOutputStream localOut = new ByteArrayOutputStream();
+		PrintWriter printWritter = new PrintWriter(localOut);
+		printUsage(null, printWritter);
+		printWritter.close();
+		return localOut.toString();
+	}
+
 	/**
 	 * <p>
 	 * Inherited class may override this method to validate their arguements.
@@ -480,7 +770,7 @@ public abstract class AbstractLogicalCommand {
 					"The root of the setup file should be a Setup::Project").ready();
 		}
 
-		progressPageLog = new ProgressPageLog(System.out);
+		progressPageLog = ProgressPageLog.create(System.out, getProgressLog(), false);
 
 		Resource environmentSetup = rs.getResource(environmentSetupURI, true);
 		Index eclipseSetupIndex = (Index)EcoreUtil.getObjectByType(environmentSetup.getContents(),
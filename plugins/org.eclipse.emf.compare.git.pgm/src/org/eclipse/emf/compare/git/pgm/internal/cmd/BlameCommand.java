@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.kohsuke.args4j.Argument;
+
+/**
+ * Logical blame command. <h3>Name</h3>
+ * <p>
+ * logicalblame - Git Logical Blame
+ * </p>
+ * <h4>Synopsis</h4>
+ * <p>
+ * logicalblame [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;] &lt;setup&gt; &lt;path&gt;
+ * [&lt;commit&gt;]
+ * </p>
+ * <h4>Description</h4>
+ * <p>
+ * The logical blame attributes each element of a model file, identified by its ID or URI fragment, to the
+ * commit that last changed it, like <code>git blame</code> does for the lines of a text file.
+ * </p>
+ */
+public class BlameCommand extends AbstractLogicalCommand {
+
+	/** Command name. */
+	static final String LOGICAL_BLAME_CMD_NAME = "logicalblame"; //$NON-NLS-1$
+
+	/** Id of the logicalblame application. */
+	private static final String LOGICAL_BLAME_APP_ID = "emf.compare.git.logicalblame"; //$NON-NLS-1$
+
+	/** Holds the path of the blamed model file. */
+	@Argument(index = 1, required = true, metaVar = "<path>", usage = "Path, in the repository, of the model file.")
+	private String path;
+
+	/** Holds the commit from which the history is walked. */
+	@Argument(index = 2, multiValued = false, required = false, metaVar = "<commit>", usage = "Commit ID or branch name from which the history is walked, HEAD if not specified.", handler = RevCommitHandler.class)
+	private RevCommit commit;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Integer internalRun() throws Die {
+
+		String setupFileAbsolutePath = this.getSetupFile().getAbsolutePath();
+
+		String eclipsePath = getEclipsePath(setupFileAbsolutePath);
+
+		// Can not be null since it has been set in
+		// AbstractLogicalCommand.createSetupTaskPerformer(String,
+		// URI)
+		final String workspacePath = getPerformer().getWorkspaceLocation().toString();
+
+		//@formatter:off
+		LogicalApplicationLauncher launcher = new LogicalApplicationLauncher(out())
+				.setApplicationName(LOGICAL_BLAME_APP_ID)
+				.setEclipsePath(eclipsePath)
+				.setSetupFilePath(setupFileAbsolutePath)
+				.setWorkspaceLocation(workspacePath)
+				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
+		//@formatter:on
+
+		launcher.addAttribute(path);
+		if (commit != null) {
+			launcher.addAttribute(commit.name());
+		} else {
+			launcher.addAttribute(Constants.HEAD);
+		}
+
+		return launcher.launch();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#getValidationStatus()
+	 */
+	@Override
+	protected ValidationStatus getValidationStatus() {
+		final ValidationStatus status = validatePathInCommit(path, commit);
+		if (status != null) {
+			return status;
+		}
+		return super.getValidationStatus();
+	}
+
+	// For testing purpose
+	String getPath() {
+		return path;
+	}
+
+	// For testing purpose
+	RevCommit getCommit() {
+		return commit;
+	}
+}
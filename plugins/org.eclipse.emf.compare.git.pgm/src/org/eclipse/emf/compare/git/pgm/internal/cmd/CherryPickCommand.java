@@ -15,15 +15,20 @@ import static org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus.cre
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 
 import java.io.IOException;
+import java.util.List;
 
-import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitRangeHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.merge.MergePrediction;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
 import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
-import org.eclipse.jgit.api.Git;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorktreeStatus;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.NoWorkTreeException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryState;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -37,11 +42,12 @@ import org.kohsuke.args4j.Option;
  * </p>
  * <h4>Synopsis</h4>
  * <p>
- * logicalcherry-pick &lt;setup&gt; &lt;commit&gt; [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;]
+ * logicalcherry-pick &lt;setup&gt; &lt;commit&gt;... [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;]
  * </p>
  * <h4>Description</h4>
  * <p>
- * The logical cherry-pick is used to cherry-pick one revision using logical model.
+ * The logical cherry-pick is used to cherry-pick revisions using logical model. Revisions are either commits
+ * or ranges of commits (<code>A..B</code>), all of them are picked in a single application session.
  * </p>
  * 
  * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
@@ -66,9 +72,9 @@ public class CherryPickCommand extends AbstractLogicalCommand {
 	/** Tab character. */
 	private static final String TAB = "\t"; //$NON-NLS-1$
 
-	/** Holds the {@link RevCommit} that needs to be merged. */
-	@Argument(index = 1, required = true, metaVar = "<commit>", usage = "Commit ID to cherry pick.", handler = RevCommitHandler.class)
-	private RevCommit commit;
+	/** Holds the {@link RevCommit}s that need to be merged, in order. */
+	@Argument(index = 1, required = true, multiValued = true, metaVar = "<commit>", usage = "Commit IDs or ranges of commits (A..B) to cherry pick.", handler = RevCommitRangeHandler.class)
+	private List<RevCommit> commits;
 
 	/** Option debug. */
 	@Option(name = "--debug", usage = "Launches the provisionned eclipse in debug mode.", aliases = {"-d" })
@@ -94,14 +100,44 @@ public class CherryPickCommand extends AbstractLogicalCommand {
 				.setSetupFilePath(setupFileAbsolutePath)
 				.setWorkspaceLocation(workspacePath)
 				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
-				.showStackTrace(isShowStackTrace());
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
 		//@formatter:on
-		launcher.addAttribute(commit.getName());
+		for (RevCommit commit : commits) {
+			launcher.addAttribute(commit.getName());
+		}
 
 		return launcher.launch();
 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Predicts the application of each commit on the tree predicted for the previous ones, starting from
+	 * HEAD. The files modified on both sides by a commit keep their previous version in the predicted tree,
+	 * since their content is not merged: for them, the predictions of the next commits are approximate.
+	 * </p>
+	 */
+	@Override
+	protected Integer dryRun() throws Die, IOException {
+		if (commits == null || commits.isEmpty()) {
+			return super.dryRun();
+		}
+		ObjectId tree = resolveHead();
+		Integer result = Returns.COMPLETE.code();
+		for (RevCommit commit : commits) {
+			out().println("Cherry-picking " + GitUtils.getOneLineCommitMsg(commit)); //$NON-NLS-1$
+			final MergePrediction prediction = MergePrediction.predictCherryPick(getRepository(), tree,
+					commit);
+			if (!Returns.COMPLETE.code().equals(printPrediction(prediction))) {
+				result = Returns.ABORTED.code();
+			}
+			tree = prediction.writeResultTree(getRepository());
+		}
+		return result;
+	}
+
 	@Override
 	protected ValidationStatus getValidationStatus() {
 		final ValidationStatus result;
@@ -120,12 +156,12 @@ public class CherryPickCommand extends AbstractLogicalCommand {
 	 */
 	private ValidationStatus checkStartingCherryPickArguments() {
 		final ValidationStatus result;
-		boolean commitsProvided = commit != null;
+		boolean commitsProvided = commits != null && !commits.isEmpty();
 		if (!commitsProvided) {
 			result = createErrorStatusWithUsage("Argument \"<commit>\" is required");
 		} else {
 			try {
-				Status repoStatus = new Git(getRepository()).status().call();
+				Status repoStatus = WorktreeStatus.get(getRepository());
 				if (!repoStatus.getUncommittedChanges().isEmpty()) {
 					String message = "Your local changes would be overwritten by cherry-pick." + EOL;
 					message += "hint: Please commit or stash the following files before cherry-picking:"
@@ -158,7 +194,7 @@ public class CherryPickCommand extends AbstractLogicalCommand {
 	 */
 	private ValidationStatus checkRebasingCherryPickArgs() {
 		final ValidationStatus result;
-		boolean commitsProvided = commit != null;
+		boolean commitsProvided = commits != null && !commits.isEmpty();
 		if (commitsProvided) {
 			String msg = "We are currently cherry-picking commit. Please use one of the following options:"
 					+ EOL;
@@ -172,7 +208,7 @@ public class CherryPickCommand extends AbstractLogicalCommand {
 				StringBuilder msgBuilder = new StringBuilder();
 				Status status;
 				try {
-					status = new Git(getRepository()).status().call();
+					status = WorktreeStatus.get(getRepository());
 					for (String conflict : status.getConflicting()) {
 						msgBuilder.append(conflict).append(": needs merge").append(EOL);
 					}
@@ -35,10 +35,14 @@ public final class CommandFactory {
 		cmds = new HashMap<String, Class<? extends AbstractLogicalCommand>>(3);
 		cmds.put(MergeCommand.LOGICAL_MERGE_CMD_NAME, MergeCommand.class);
 		cmds.put(MergeToolCommand.LOGICAL_MERGE_TOOL_CMD_NAME, MergeToolCommand.class);
+		cmds.put(MergeDriverCommand.LOGICAL_MERGE_DRIVER_CMD_NAME, MergeDriverCommand.class);
 		cmds.put(DiffCommand.LOGICAL_DIFF_CMD_NAME, DiffCommand.class);
+		cmds.put(LogCommand.LOGICAL_LOG_CMD_NAME, LogCommand.class);
+		cmds.put(BlameCommand.LOGICAL_BLAME_CMD_NAME, BlameCommand.class);
 		cmds.put(CherryPickCommand.LOGICAL_CHERRY_PICK_CMD_NAME, CherryPickCommand.class);
 		cmds.put(RebaseCommand.LOGICAL_REBASE_CMD_NAME, RebaseCommand.class);
 		cmds.put(PullCommand.LOGICAL_PULL_CMD_NAME, PullCommand.class);
+		cmds.put(ServiceCommand.LOGICAL_SERVICE_CMD_NAME, ServiceCommand.class);
 	}
 
 	/**
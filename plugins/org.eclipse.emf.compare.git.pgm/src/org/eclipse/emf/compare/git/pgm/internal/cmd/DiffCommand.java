@@ -10,10 +10,16 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
+import org.eclipse.emf.compare.git.pgm.internal.args.FractionHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.MatchStrategyHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.PathFilterHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.PositiveIntegerHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.ProxyResolutionHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
+import org.eclipse.emf.compare.git.pgm.internal.util.MatchStrategy;
+import org.eclipse.emf.compare.git.pgm.internal.util.ProxyResolution;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
@@ -28,11 +34,16 @@ import org.kohsuke.args4j.Option;
  * <h4>Synopsis</h4>
  * <p>
  * logicaldiff &lt;setup&gt; [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;] &lt;commit&gt;
- * [&lt;compareWithCommit&gt;] [ -- &lt;paths...&gt;]
+ * [&lt;compareWithCommit&gt;] [--merge-base] [--match-engine &lt;strategy&gt;] [--threads &lt;count&gt;]
+ * [--proxy-resolution &lt;policy&gt;] [--max-resources &lt;count&gt;] [ -- &lt;paths...&gt;]
  * </p>
  * <h4>Description</h4>
  * <p>
- * The logical diff is used to display differences using logical model.
+ * The logical diff is used to display differences using logical model. With <code>--merge-base</code>, the
+ * two commits are compared three-way from their merge base and only the conflicts are displayed. With
+ * <code>--match-engine id</code>, the elements are only matched by their IDs. With <code>--threads</code>,
+ * the differences of each comparison are computed in parallel. <code>--proxy-resolution</code> and
+ * <code>--max-resources</code> bound the resources loaded for each compared logical model.
  * </p>
  * </p>
  * 
@@ -49,6 +60,24 @@ public class DiffCommand extends AbstractLogicalCommand {
 	/** Id of the logicaldiff application. */
 	private static final String LOGICAL_DIFF_APP_ID = "emf.compare.git.logicaldiff"; //$NON-NLS-1$
 
+	/** Max heap fraction option key. */
+	public static final String MAX_HEAP_FRACTION_OPT = "--max-heap-fraction"; //$NON-NLS-1$
+
+	/** Merge base option key. */
+	public static final String MERGE_BASE_OPT = "--merge-base"; //$NON-NLS-1$
+
+	/** Match engine option key. */
+	public static final String MATCH_ENGINE_OPT = "--match-engine"; //$NON-NLS-1$
+
+	/** Threads option key. */
+	public static final String THREADS_OPT = "--threads"; //$NON-NLS-1$
+
+	/** Proxy resolution option key. */
+	public static final String PROXY_RESOLUTION_OPT = "--proxy-resolution"; //$NON-NLS-1$
+
+	/** Max resources option key. */
+	public static final String MAX_RESOURCES_OPT = "--max-resources"; //$NON-NLS-1$
+
 	/**
 	 * Holds the reference from which the differences should be displayed.
 	 */
@@ -67,6 +96,42 @@ public class DiffCommand extends AbstractLogicalCommand {
 	@Option(name = "--", metaVar = "<path...>", multiValued = false, handler = PathFilterHandler.class, usage = "This is used to limit the diff to the named paths (you can give directory names and get diff for all files under them).")
 	private PathFilter treeFilter;
 
+	/**
+	 * Fraction of the maximum heap size above which the comparisons switch to a lower-memory mode.
+	 */
+	@Option(name = MAX_HEAP_FRACTION_OPT, metaVar = "fraction", handler = FractionHandler.class, usage = "Fraction of the maximum heap size above which the comparisons switch to a lower-memory mode (between 0 and 1, 0.8 by default).")
+	private Double maxHeapFraction;
+
+	/**
+	 * Displays only the conflicts between the two commits, compared from their merge base.
+	 */
+	@Option(name = MERGE_BASE_OPT, usage = "Compares <commit> and <compareWithCommit> from their merge base and only displays the conflicts.")
+	private boolean mergeBaseOpt;
+
+	/**
+	 * Strategy matching the elements of the compared models.
+	 */
+	@Option(name = MATCH_ENGINE_OPT, metaVar = "strategy", handler = MatchStrategyHandler.class, usage = "Strategy matching the elements of the models: \"default\" matches them by ID when they have one and by similarity otherwise, \"id\" only matches them by ID, which is much faster on models whose elements all have an ID.")
+	private MatchStrategy matchStrategy;
+
+	/**
+	 * Number of threads computing the differences of a comparison.
+	 */
+	@Option(name = THREADS_OPT, metaVar = "count", handler = PositiveIntegerHandler.class, usage = "Number of threads computing the differences of a comparison in parallel, 1 by default.")
+	private Integer threads;
+
+	/**
+	 * Policy resolving the proxies to the resources out of the compared logical models.
+	 */
+	@Option(name = PROXY_RESOLUTION_OPT, metaVar = "policy", handler = ProxyResolutionHandler.class, usage = "Policy resolving the proxies to the resources out of the compared logical models: \"traversal\" never resolves them, \"lazy\" resolves them when the comparison needs them, \"all\" resolves them all as soon as the models are loaded. \"lazy\" by default.")
+	private ProxyResolution proxyResolution;
+
+	/**
+	 * Maximum number of resources loaded for each side of a compared logical model.
+	 */
+	@Option(name = MAX_RESOURCES_OPT, metaVar = "count", handler = PositiveIntegerHandler.class, usage = "Maximum number of resources loaded for each side of a compared logical model, unbounded by default.")
+	private Integer maxResources;
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -89,7 +154,8 @@ public class DiffCommand extends AbstractLogicalCommand {
 				.setSetupFilePath(setupFileAbsolutePath)
 				.setWorkspaceLocation(workspacePath)
 				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
-				.showStackTrace(isShowStackTrace());
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
 		//@formatter:on
 
 		if (commit != null) {
@@ -102,6 +168,29 @@ public class DiffCommand extends AbstractLogicalCommand {
 		} else {
 			launcher.addAttribute("HEAD"); //$NON-NLS-1$
 		}
+		if (maxHeapFraction != null) {
+			launcher.addAttribute(MAX_HEAP_FRACTION_OPT);
+			launcher.addAttribute(maxHeapFraction.toString());
+		}
+		if (mergeBaseOpt) {
+			launcher.addAttribute(MERGE_BASE_OPT);
+		}
+		if (matchStrategy != null) {
+			launcher.addAttribute(MATCH_ENGINE_OPT);
+			launcher.addAttribute(matchStrategy.getName());
+		}
+		if (threads != null) {
+			launcher.addAttribute(THREADS_OPT);
+			launcher.addAttribute(threads.toString());
+		}
+		if (proxyResolution != null) {
+			launcher.addAttribute(PROXY_RESOLUTION_OPT);
+			launcher.addAttribute(proxyResolution.getName());
+		}
+		if (maxResources != null) {
+			launcher.addAttribute(MAX_RESOURCES_OPT);
+			launcher.addAttribute(maxResources.toString());
+		}
 		if (treeFilter != null) {
 			launcher.addAttribute("--"); //$NON-NLS-1$
 			launcher.addAttribute(treeFilter.getPath());
@@ -125,4 +214,34 @@ public class DiffCommand extends AbstractLogicalCommand {
 		return treeFilter;
 	}
 
+	// For testing purpose
+	Double getMaxHeapFraction() {
+		return maxHeapFraction;
+	}
+
+	// For testing purpose
+	boolean isMergeBase() {
+		return mergeBaseOpt;
+	}
+
+	// For testing purpose
+	MatchStrategy getMatchStrategy() {
+		return matchStrategy;
+	}
+
+	// For testing purpose
+	Integer getThreads() {
+		return threads;
+	}
+
+	// For testing purpose
+	ProxyResolution getProxyResolution() {
+		return proxyResolution;
+	}
+
+	// For testing purpose
+	Integer getMaxResources() {
+		return maxResources;
+	}
+
 }
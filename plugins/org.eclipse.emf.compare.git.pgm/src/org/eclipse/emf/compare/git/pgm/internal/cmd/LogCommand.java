@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
+import org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Logical log command. <h3>Name</h3>
+ * <p>
+ * logicallog - Git Logical Log
+ * </p>
+ * <h4>Synopsis</h4>
+ * <p>
+ * logicallog [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;] &lt;setup&gt; &lt;path&gt;
+ * [&lt;commit&gt;] [--element &lt;uriFragment&gt;] [-n &lt;count&gt;]
+ * </p>
+ * <h4>Description</h4>
+ * <p>
+ * The logical log walks the history of a logical model and prints, one line per changed element, the
+ * differences each commit brings to the model compared with its first parent. As with
+ * <code>git log -- &lt;path&gt;</code>, the merges that take the model of one of their parents as is are not
+ * listed.
+ * </p>
+ */
+public class LogCommand extends AbstractLogicalCommand {
+
+	/** Command name. */
+	static final String LOGICAL_LOG_CMD_NAME = "logicallog"; //$NON-NLS-1$
+
+	/** Id of the logicallog application. */
+	private static final String LOGICAL_LOG_APP_ID = "emf.compare.git.logicallog"; //$NON-NLS-1$
+
+	/** Element option key. */
+	public static final String ELEMENT_OPT = "--element"; //$NON-NLS-1$
+
+	/** Max count option key. */
+	public static final String MAX_COUNT_OPT = "-n"; //$NON-NLS-1$
+
+	/** Holds the path of the model which history is displayed. */
+	@Argument(index = 1, required = true, metaVar = "<path>", usage = "Path, in the repository, of a resource of the logical model.")
+	private String path;
+
+	/** Holds the commit from which the history is walked. */
+	@Argument(index = 2, multiValued = false, required = false, metaVar = "<commit>", usage = "Commit ID or branch name from which the history is walked, HEAD if not specified.", handler = RevCommitHandler.class)
+	private RevCommit commit;
+
+	/** Holds the URI fragment of the element which changes are displayed. */
+	@Option(name = ELEMENT_OPT, metaVar = "uriFragment", usage = "Only displays the changes of the element with the given URI fragment or ID.")
+	private String element;
+
+	/** Holds the maximum number of commits displayed. */
+	@Option(name = MAX_COUNT_OPT, metaVar = "count", usage = "Stops after the given number of commits changing the model.")
+	private int maxCount;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Integer internalRun() throws Die {
+
+		String setupFileAbsolutePath = this.getSetupFile().getAbsolutePath();
+
+		String eclipsePath = getEclipsePath(setupFileAbsolutePath);
+
+		// Can not be null since it has been set in
+		// AbstractLogicalCommand.createSetupTaskPerformer(String,
+		// URI)
+		final String workspacePath = getPerformer().getWorkspaceLocation().toString();
+
+		//@formatter:off
+		LogicalApplicationLauncher launcher = new LogicalApplicationLauncher(out())
+				.setApplicationName(LOGICAL_LOG_APP_ID)
+				.setEclipsePath(eclipsePath)
+				.setSetupFilePath(setupFileAbsolutePath)
+				.setWorkspaceLocation(workspacePath)
+				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
+		//@formatter:on
+
+		launcher.addAttribute(path);
+		if (commit != null) {
+			launcher.addAttribute(commit.name());
+		} else {
+			launcher.addAttribute(Constants.HEAD);
+		}
+		if (element != null) {
+			launcher.addAttribute(ELEMENT_OPT);
+			launcher.addAttribute(element);
+		}
+		if (maxCount > 0) {
+			launcher.addAttribute(MAX_COUNT_OPT);
+			launcher.addAttribute(Integer.toString(maxCount));
+		}
+
+		return launcher.launch();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#getValidationStatus()
+	 */
+	@Override
+	protected ValidationStatus getValidationStatus() {
+		final ValidationStatus status = validatePathInCommit(path, commit);
+		if (status != null) {
+			return status;
+		}
+		return super.getValidationStatus();
+	}
+
+	// For testing purpose
+	String getPath() {
+		return path;
+	}
+
+	// For testing purpose
+	RevCommit getCommit() {
+		return commit;
+	}
+
+	// For testing purpose
+	String getElement() {
+		return element;
+	}
+
+	// For testing purpose
+	int getMaxCount() {
+		return maxCount;
+	}
+}
@@ -12,9 +12,12 @@ package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 
+import java.io.IOException;
+
 import org.eclipse.emf.compare.git.pgm.internal.args.RevCommitHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.merge.MergePrediction;
 import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
 import org.eclipse.jgit.lib.RepositoryState;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -50,6 +53,9 @@ public class MergeCommand extends AbstractLogicalCommand {
 	/** Id of the logicalmerge application. */
 	static final String LOGICAL_MERGE_APP_ID = "emf.compare.git.logicalmerge"; //$NON-NLS-1$
 
+	/** Auto resolve option key. */
+	public static final String AUTO_RESOLVE_OPT = "--auto-resolve"; //$NON-NLS-1$
+
 	/**
 	 * Holds a ObjectId that need to be merged.
 	 */
@@ -62,6 +68,12 @@ public class MergeCommand extends AbstractLogicalCommand {
 	@Option(name = "-m", metaVar = "message", required = false, usage = "Set the commit message to be used for the merge commit (in case one is created).")
 	private String message;
 
+	/**
+	 * Merges the non-conflicting differences of the conflicting models.
+	 */
+	@Option(name = AUTO_RESOLVE_OPT, usage = "Merges the non-conflicting differences of the conflicting models and leaves only the real conflicts to the logicalmergetool command.")
+	private boolean autoResolve;
+
 	/**
 	 * Option debug.
 	 */
@@ -93,7 +105,8 @@ public class MergeCommand extends AbstractLogicalCommand {
 				.setSetupFilePath(setupFileAbsolutePath)
 				.setWorkspaceLocation(workspacePath)
 				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
-				.showStackTrace(isShowStackTrace());
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
 		//@formatter:on
 
 		if (commit != null) {
@@ -107,9 +120,24 @@ public class MergeCommand extends AbstractLogicalCommand {
 			launcher.addAttribute(message);
 		}
 
+		if (autoResolve) {
+			launcher.addAttribute(AUTO_RESOLVE_OPT);
+		}
+
 		return launcher.launch();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Predicts the merge of the given commit into HEAD.
+	 * </p>
+	 */
+	@Override
+	protected Integer dryRun() throws Die, IOException {
+		return printPrediction(MergePrediction.predict(getRepository(), resolveHead(), commit));
+	}
+
 	@Override
 	protected ValidationStatus getValidationStatus() {
 		// Checks we are not already in a conflict state
@@ -129,6 +157,11 @@ public class MergeCommand extends AbstractLogicalCommand {
 		return message;
 	}
 
+	// For testing purpose.
+	boolean isAutoResolve() {
+		return autoResolve;
+	}
+
 	// For testing purpose.
 	RevCommit getCommit() {
 		return commit;
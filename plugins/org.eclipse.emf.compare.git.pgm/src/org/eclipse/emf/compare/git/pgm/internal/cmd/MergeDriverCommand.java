@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus.createErrorStatus;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.util.CommandSession;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.kohsuke.args4j.Argument;
+
+/**
+ * Logical merge driver command. <h3>Name</h3>
+ * <p>
+ * logicalmergedriver - Git Logical Merge Driver
+ * </p>
+ * <h4>Synopsis</h4>
+ * <p>
+ * logicalmergedriver [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;] &lt;setup&gt; &lt;base&gt;
+ * &lt;current&gt; &lt;other&gt; &lt;path&gt;
+ * </p>
+ * <h4>Description</h4>
+ * <p>
+ * The logical merge driver lets git merge the trees natively and only hands the model files over to EMF
+ * Compare. It is declared as a merge driver in the git configuration and bound to the model files in the
+ * <code>.gitattributes</code> file:
+ * </p>
+ *
+ * <pre>
+ * [merge "logical"]
+ *     name = EMF Compare logical merge driver
+ *     driver = git logicalmergedriver /path/to/file.setup %O %A %B %P
+ *
+ * *.ecore merge=logical
+ * </pre>
+ * <p>
+ * The first invocation provisions the installation and launches the application, which then keeps running
+ * so that the next files are merged without being relaunched, as long as they use the same setup file. The
+ * application ends once it has been idle for a while.
+ * </p>
+ */
+public class MergeDriverCommand extends AbstractLogicalCommand {
+
+	/** Folder of the EMF Compare data directory holding the session folders of the running applications. */
+	public static final String SESSION_FOLDER = "merge-driver"; //$NON-NLS-1$
+
+	/** Command name. */
+	static final String LOGICAL_MERGE_DRIVER_CMD_NAME = "logicalmergedriver"; //$NON-NLS-1$
+
+	/** Id of the logicalmergedriver application. */
+	static final String LOGICAL_MERGE_DRIVER_APP_ID = "emf.compare.git.logicalmergedriver"; //$NON-NLS-1$
+
+	/** Holds the common ancestor version of the file. */
+	@Argument(index = 1, required = true, metaVar = "<base>", usage = "File holding the common ancestor version (%O).")
+	private File base;
+
+	/** Holds the current version of the file. */
+	@Argument(index = 2, required = true, metaVar = "<current>", usage = "File holding the current version, overwritten with the result of the merge (%A).")
+	private File current;
+
+	/** Holds the version of the file on the other side. */
+	@Argument(index = 3, required = true, metaVar = "<other>", usage = "File holding the version of the other side (%B).")
+	private File other;
+
+	/** Holds the path of the merged file. */
+	@Argument(index = 4, required = true, metaVar = "<path>", usage = "Path of the merged file in the repository (%P).")
+	private String path;
+
+	/** Client connected to the running logical merge driver application, if any. */
+	private CommandSession.Client session;
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The setup is skipped if a logical merge driver application is already running.
+	 * </p>
+	 *
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#requiresSetup()
+	 */
+	@Override
+	protected boolean requiresSetup() {
+		try {
+			session = CommandSession.connect(getSessionFolder(getRepository(), getSetupFile()));
+		} catch (IOException e) {
+			// The application will be launched
+			session = null;
+		}
+		return session == null;
+	}
+
+	/**
+	 * Gets the folder holding the session file of the logical merge driver application running for a
+	 * repository and a setup file. A running application only serves the invocations using the same setup
+	 * file, in the same version, since its installation has been provisioned from it.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param setupFile
+	 *            the setup file.
+	 * @return the folder.
+	 * @throws IOException
+	 *             if the folder can not be created.
+	 */
+	public static File getSessionFolder(Repository repo, File setupFile) throws IOException {
+		final String setupKey = setupFile.getAbsolutePath() + '@' + setupFile.lastModified();
+		final String name = ObjectId.fromRaw(
+				Constants.newMessageDigest().digest(setupKey.getBytes(StandardCharsets.UTF_8))).name();
+		return GitUtils.getDataDirectory(repo, SESSION_FOLDER + '/' + name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#internalRun()
+	 */
+	@Override
+	protected Integer internalRun() throws Die, IOException {
+		if (session != null) {
+			return runInSession();
+		}
+		String setupFileAbsolutePath = this.getSetupFile().getAbsolutePath();
+
+		String eclipsePath = getEclipsePath(setupFileAbsolutePath);
+
+		// Can not be null since it has been set in
+		// org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand.createSetupTaskPerformer(String,
+		// URI)
+		final String workspacePath = getPerformer().getWorkspaceLocation().toString();
+
+		//@formatter:off
+		LogicalApplicationLauncher launcher = new LogicalApplicationLauncher(out())
+				.setApplicationName(LOGICAL_MERGE_DRIVER_APP_ID)
+				.setEclipsePath(eclipsePath)
+				.setSetupFilePath(setupFileAbsolutePath)
+				.setWorkspaceLocation(workspacePath)
+				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
+		//@formatter:on
+		launcher.addAttribute(base.getAbsolutePath());
+		launcher.addAttribute(current.getAbsolutePath());
+		launcher.addAttribute(other.getAbsolutePath());
+		launcher.addAttribute(path);
+
+		return launcher.launch();
+	}
+
+	/**
+	 * Sends the file to merge to the running logical merge driver application.
+	 *
+	 * @return the return code of the merge.
+	 * @throws Die
+	 *             if the application ends before the file has been merged.
+	 * @throws IOException
+	 *             if the output can not be written.
+	 */
+	private Integer runInSession() throws Die, IOException {
+		final String step = base.getAbsolutePath() + TAB + current.getAbsolutePath() + TAB
+				+ other.getAbsolutePath() + TAB + path;
+		try {
+			return session.sendStep(step, out());
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).displaying(e.getMessage()).ready();
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#getValidationStatus()
+	 */
+	@Override
+	protected ValidationStatus getValidationStatus() {
+		for (File file : new File[] {base, current, other }) {
+			if (!file.isFile()) {
+				return createErrorStatus(file.getPath() + " does not exist"); //$NON-NLS-1$
+			}
+		}
+		return super.getValidationStatus();
+	}
+}
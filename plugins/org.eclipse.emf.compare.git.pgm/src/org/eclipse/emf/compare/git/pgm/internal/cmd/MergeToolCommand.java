@@ -63,7 +63,8 @@ public class MergeToolCommand extends AbstractLogicalCommand {
 				.setSetupFilePath(setupFileAbsolutePath)
 				.setWorkspaceLocation(workspacePath)
 				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
-				.showStackTrace(isShowStackTrace());
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
 		//@formatter:on
 		return launcher.launch();
 	}
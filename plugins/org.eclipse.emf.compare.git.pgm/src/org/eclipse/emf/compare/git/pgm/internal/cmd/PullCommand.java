@@ -10,10 +10,15 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
+import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getCurrentBranchRemoteTrackingRef;
+
 import java.io.IOException;
 
+import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.merge.MergePrediction;
 import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
+import org.eclipse.jgit.lib.Ref;
 import org.kohsuke.args4j.Option;
 
 /**
@@ -61,10 +66,28 @@ public class PullCommand extends AbstractLogicalCommand {
 				.setSetupFilePath(setupFileAbsolutePath)
 				.setWorkspaceLocation(workspacePath)
 				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
-				.showStackTrace(isShowStackTrace());
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
 		//@formatter:on
 
 		return launcher.launch();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Nothing is fetched: the merge of the remote tracking branch, as it was last fetched, is predicted.
+	 * </p>
+	 */
+	@Override
+	protected Integer dryRun() throws Die, IOException {
+		final Ref trackingRef = getCurrentBranchRemoteTrackingRef(getRepository());
+		if (trackingRef == null || trackingRef.getObjectId() == null) {
+			out().println("There is no tracking information for the current branch."); //$NON-NLS-1$
+			return Returns.ERROR.code();
+		}
+		out().println("Predicting the merge of " + trackingRef.getName() + " as last fetched."); //$NON-NLS-1$ //$NON-NLS-2$
+		return printPrediction(MergePrediction.predict(getRepository(), resolveHead(), trackingRef
+				.getObjectId()));
+	}
 }
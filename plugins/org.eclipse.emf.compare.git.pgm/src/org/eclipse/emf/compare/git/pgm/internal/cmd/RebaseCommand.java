@@ -15,6 +15,7 @@ import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.toFileWithAbsolutePath;
 import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getCurrentBranchRemoteTrackingRef;
+import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getRebaseStateDirectory;
 
 import java.io.File;
 import java.io.IOException;
@@ -26,11 +27,16 @@ import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.args.RefHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.ValidationStatus;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.merge.MergePrediction;
+import org.eclipse.emf.compare.git.pgm.internal.util.CommandSession;
 import org.eclipse.emf.compare.git.pgm.internal.util.LogicalApplicationLauncher;
-import org.eclipse.jgit.api.Git;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorktreeStatus;
 import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.errors.NoWorkTreeException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryState;
@@ -46,7 +52,7 @@ import org.kohsuke.args4j.Option;
  * <h4>Synopsis</h4>
  * <p>
  * logicalrebase &lt;setup&gt; [&lt;upstream&gt;] [&lt;branch&gt;] [--abort] [--continue] [--skip]
- * [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;]
+ * [--incremental] [--keep-alive] [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;]
  * </p>
  * <h4>Description</h4>
  * <p>
@@ -67,6 +73,12 @@ public class RebaseCommand extends AbstractLogicalCommand {
 	/** Skip option key. */
 	public static final String SKIP_OPT = "--skip"; //$NON-NLS-1$
 
+	/** Incremental option key. */
+	public static final String INCREMENTAL_OPT = "--incremental"; //$NON-NLS-1$
+
+	/** Keep alive option key. */
+	public static final String KEEP_ALIVE_OPT = "--keep-alive"; //$NON-NLS-1$
+
 	/** Command name. */
 	static final String LOGICAL_REBASE_CMD_NAME = "logicalrebase"; //$NON-NLS-1$
 
@@ -93,6 +105,36 @@ public class RebaseCommand extends AbstractLogicalCommand {
 	@Option(required = false, name = SKIP_OPT, usage = "Use this option to skip the current commit being rebased.")
 	private boolean skipOpt;
 
+	/** Incremental option. */
+	@Option(required = false, name = INCREMENTAL_OPT, usage = "Replays the commits in memory, keeping the models loaded from one commit to the next. Falls back to a regular rebase on conflicts.")
+	private boolean incrementalOpt;
+
+	/** Keep alive option. */
+	@Option(required = false, name = KEEP_ALIVE_OPT, usage = "Keeps the application running when the rebase stops on a conflict, so that it processes the next --continue, --skip or --abort without being relaunched.")
+	private boolean keepAliveOpt;
+
+	/** Client of the running logical rebase session processing the step, if any. */
+	private CommandSession.Client session;
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The setup is skipped if a step of the rebase can be processed by a running logical rebase session.
+	 * </p>
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#requiresSetup()
+	 */
+	@Override
+	protected boolean requiresSetup() {
+		if (getStepOption() != null) {
+			File stateDirectory = getRebaseStateDirectory(getRepository());
+			if (stateDirectory != null) {
+				session = CommandSession.connect(stateDirectory);
+			}
+		}
+		return session == null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -100,6 +142,9 @@ public class RebaseCommand extends AbstractLogicalCommand {
 	 */
 	@Override
 	protected Integer internalRun() throws Die, IOException {
+		if (session != null) {
+			return runInSession();
+		}
 		OS os = getPerformer().getOS();
 		if (!os.isCurrent()) {
 			return Returns.ERROR.code();
@@ -128,15 +173,19 @@ public class RebaseCommand extends AbstractLogicalCommand {
 				.setSetupFilePath(setupFileAbsolutePath)
 				.setWorkspaceLocation(workspaceLocation)
 				.setRepositoryPath(getRepository().getDirectory().getAbsolutePath())
-				.showStackTrace(isShowStackTrace());
+				.showStackTrace(isShowStackTrace())
+				.setProgressLog(getProgressLog());
 		//@formatter:on
-		if (continueOpt) {
-			appLauncher.addAttribute(CONTINUE_OPT);
-		} else if (abortOpt) {
-			appLauncher.addAttribute(ABORT_OPT);
-		} else if (skipOpt) {
-			appLauncher.addAttribute(SKIP_OPT);
+		if (keepAliveOpt) {
+			appLauncher.addAttribute(KEEP_ALIVE_OPT);
+		}
+		String stepOption = getStepOption();
+		if (stepOption != null) {
+			appLauncher.addAttribute(stepOption);
 		} else {
+			if (incrementalOpt) {
+				appLauncher.addAttribute(INCREMENTAL_OPT);
+			}
 			if (upstream != null) {
 				appLauncher.addAttribute(upstream.getName());
 			}
@@ -148,6 +197,73 @@ public class RebaseCommand extends AbstractLogicalCommand {
 		return appLauncher.launch();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Predicts the rebase of the branch on its upstream. The commits are not replayed one by one: the files
+	 * modified on both sides since the merge base are the ones that may conflict during the rebase.
+	 * </p>
+	 */
+	@Override
+	protected Integer dryRun() throws Die, IOException {
+		if (getStepOption() != null) {
+			return super.dryRun();
+		}
+		final Ref upstreamRef;
+		if (upstream != null) {
+			upstreamRef = upstream;
+		} else {
+			upstreamRef = getCurrentBranchRemoteTrackingRef(getRepository());
+		}
+		final ObjectId branchId;
+		if (toRebase != null) {
+			branchId = toRebase.getObjectId();
+		} else {
+			branchId = resolveHead();
+		}
+		return printPrediction(MergePrediction.predict(getRepository(), branchId, upstreamRef.getObjectId()));
+	}
+
+	/**
+	 * Sends the step of the rebase to the running logical rebase session.
+	 * 
+	 * @return the return code of the step.
+	 * @throws Die
+	 *             if the session ends before the step has been processed.
+	 * @throws IOException
+	 *             if the output can not be written.
+	 */
+	private Integer runInSession() throws Die, IOException {
+		out().println("Using the running logical rebase session...");
+		try {
+			return session.sendStep(getStepOption(), out());
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).displaying(e.getMessage()).ready();
+		} finally {
+			session.close();
+		}
+	}
+
+	/**
+	 * Gets the option of the rebase step to process.
+	 * 
+	 * @return {@link #CONTINUE_OPT}, {@link #ABORT_OPT}, {@link #SKIP_OPT} or <code>null</code> if the command
+	 *         starts a new rebase.
+	 */
+	private String getStepOption() {
+		final String result;
+		if (continueOpt) {
+			result = CONTINUE_OPT;
+		} else if (abortOpt) {
+			result = ABORT_OPT;
+		} else if (skipOpt) {
+			result = SKIP_OPT;
+		} else {
+			result = null;
+		}
+		return result;
+	}
+
 	@Override
 	protected ValidationStatus getValidationStatus() {
 		final ValidationStatus result;
@@ -202,7 +318,7 @@ public class RebaseCommand extends AbstractLogicalCommand {
 	 */
 	private ValidationStatus getCleanRepoStatus() throws GitAPIException {
 		final ValidationStatus result;
-		Status repoStatus = new Git(getRepository()).status().call();
+		Status repoStatus = WorktreeStatus.get(getRepository());
 		if (!repoStatus.getUncommittedChanges().isEmpty()) {
 			String message = "Your local changes would be overwritten by rebase." + EOL;
 			message += "hint: Please commit or stash the following files before rebasing:" + EOL;
@@ -231,7 +347,7 @@ public class RebaseCommand extends AbstractLogicalCommand {
 	private ValidationStatus checkRebasingArgs() {
 		final ValidationStatus result;
 		boolean oneOptionSet = abortOpt || skipOpt || continueOpt;
-		if (!oneOptionSet || upstream != null) {
+		if (!oneOptionSet || upstream != null || incrementalOpt) {
 			String msg = "We are currently rebasing. Please use one of the following options:" + EOL;
 			msg += TAB + CONTINUE_OPT + EOL;
 			msg += TAB + ABORT_OPT + EOL;
@@ -269,7 +385,7 @@ public class RebaseCommand extends AbstractLogicalCommand {
 		Status status;
 		try {
 			StringBuilder msgBuilder = new StringBuilder();
-			status = new Git(getRepository()).status().call();
+			status = WorktreeStatus.get(getRepository());
 			Set<String> conflicting = status.getConflicting();
 			if (!conflicting.isEmpty()) {
 				msgBuilder.append("Some files are in conflict:").append(EOL);
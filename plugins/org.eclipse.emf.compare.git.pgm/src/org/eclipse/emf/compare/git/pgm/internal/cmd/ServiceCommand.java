@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.eclipse.emf.compare.git.pgm.internal.Options.GIT_DIR_OPT;
+
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.args.PositiveIntegerHandler;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalService;
+import org.eclipse.emf.compare.git.pgm.internal.util.LogicalService.RequestHandler;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.oomph.setup.internal.core.SetupTaskPerformer;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Logical service command. It runs a {@link LogicalService} serving the logical diff, merge, cherry-pick and
+ * rebase commands over HTTP on the loopback interface, until the process is stopped.
+ * <p>
+ * The setup of a repository is performed by its first request only: the next requests using the same setup
+ * file reuse the installation and the workspace it has provisioned, as well as the caches of the repository.
+ * The setup file given to this command is used by the requests that do not give their own.
+ * </p>
+ * <p>
+ * The port and the token the clients have to send are written in a state file readable by the user only,
+ * <code>~/.emfcompare-service</code> by default.
+ * </p>
+ */
+public class ServiceCommand extends AbstractLogicalCommand {
+
+	/**
+	 * Command name.
+	 */
+	static final String LOGICAL_SERVICE_CMD_NAME = "logicalservice"; //$NON-NLS-1$
+
+	/** Prefix of the names of the logical commands. */
+	private static final String LOGICAL_CMD_PREFIX = "logical"; //$NON-NLS-1$
+
+	/**
+	 * Port on which the service listens.
+	 */
+	@Option(name = "--port", metaVar = "port", handler = PositiveIntegerHandler.class, usage = "Port on which the service listens on the loopback interface, any free port by default.")
+	private Integer port;
+
+	/**
+	 * File where the port and the token of the service are written.
+	 */
+	@Option(name = "--state-file", metaVar = "file", usage = "File where the port and the token the clients have to send are written, readable by the user only. ~/.emfcompare-service by default.")
+	private File stateFile;
+
+	/**
+	 * URI to the environment setup file, used by the commands run by the service.
+	 */
+	private URI environmentSetupURI;
+
+	/**
+	 * Setups already performed, by git directory and setup file.
+	 */
+	private final Map<String, SetupTaskPerformer> performedSetups = Maps.newConcurrentMap();
+
+	/**
+	 * Lock held while a setup is performed: Oomph provisions one installation at a time.
+	 */
+	private final Object setupLock = new Object();
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The URI to the environment setup file is kept for the commands run by the service.
+	 * </p>
+	 */
+	@Override
+	public void build(Collection<String> args, URI environmentSetup) throws Die, IOException {
+		this.environmentSetupURI = environmentSetup;
+		super.build(args, environmentSetup);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Each command run by the service performs its own setup.
+	 * </p>
+	 */
+	@Override
+	protected boolean requiresSetup() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The repositories are given by the requests.
+	 * </p>
+	 */
+	@Override
+	protected boolean requiresRepository() {
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#internalRun()
+	 */
+	@Override
+	protected Integer internalRun() throws Die, IOException {
+		if (stateFile == null) {
+			stateFile = new File(System.getProperty("user.home"), LogicalService.STATE_FILE); //$NON-NLS-1$
+		}
+		final LogicalService service;
+		try {
+			service = LogicalService.open(port == null ? 0 : port.intValue(), stateFile, getSetupFile());
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).displaying(
+					"Cannot start the service: " + e.getMessage()).ready(); //$NON-NLS-1$
+		}
+		try {
+			out().println(
+					"Listening on http://localhost:" + service.getPort() + "/"); //$NON-NLS-1$ //$NON-NLS-2$
+			out().println("The token of the clients is in " + stateFile.getAbsolutePath()); //$NON-NLS-1$
+			out().flush();
+			service.serve(new RequestHandler() {
+				public Integer run(String endpoint, File gitDir, File setupFile, List<String> args) {
+					return runCommand(LOGICAL_CMD_PREFIX + endpoint, gitDir, setupFile, args);
+				}
+			});
+		} finally {
+			service.close();
+		}
+		return Returns.COMPLETE.code();
+	}
+
+	/**
+	 * Builds and executes a logical command as {@link org.eclipse.emf.compare.git.pgm.LogicalApp} does,
+	 * reusing the setup already performed for its repository and setup file, if any.
+	 *
+	 * @param commandName
+	 *            the name of the command.
+	 * @param gitDir
+	 *            the git directory of the repository.
+	 * @param setupFile
+	 *            the setup file.
+	 * @param args
+	 *            the other arguments of the command.
+	 * @return the return code of the command.
+	 */
+	private Integer runCommand(String commandName, File gitDir, File setupFile, List<String> args) {
+		final AbstractLogicalCommand command = CommandFactory.getInstance().createCommand(commandName);
+		final List<String> arguments = new ArrayList<String>();
+		arguments.add(setupFile.getAbsolutePath());
+		// The repository has to be known before the references are resolved
+		arguments.add(GIT_DIR_OPT);
+		arguments.add(gitDir.getAbsolutePath());
+		arguments.addAll(args);
+
+		final String setupKey = gitDir.getAbsolutePath() + File.pathSeparatorChar
+				+ setupFile.getAbsolutePath() + '@' + setupFile.lastModified();
+		Integer returnCode;
+		try {
+			try {
+				final SetupTaskPerformer performedSetup = performedSetups.get(setupKey);
+				if (performedSetup != null) {
+					command.reuseSetup(performedSetup);
+					command.build(arguments, environmentSetupURI);
+				} else {
+					synchronized (setupLock) {
+						command.build(arguments, environmentSetupURI);
+					}
+					if (command.getPerformer() != null) {
+						performedSetups.put(setupKey, command.getPerformer());
+					}
+				}
+				try {
+					returnCode = command.execute();
+				} finally {
+					command.flushOutW();
+				}
+			} finally {
+				command.stopFlightRecording();
+				final Repository repository = command.getRepository();
+				if (repository != null) {
+					repository.close();
+				}
+			}
+		} catch (Die e) {
+			returnCode = EMFCompareGitPGMUtil.handleDieError(e, command.isShowStackTrace());
+		} catch (IOException e) {
+			returnCode = EMFCompareGitPGMUtil.handleDieError(new DiesOn(DeathType.SOFTWARE_ERROR).duedTo(e)
+					.displaying(e.getMessage()).ready(), command.isShowStackTrace());
+		}
+		command.writeMetrics(returnCode.intValue());
+		return returnCode;
+	}
+}
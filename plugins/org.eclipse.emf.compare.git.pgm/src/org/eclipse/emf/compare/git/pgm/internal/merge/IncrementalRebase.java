@@ -0,0 +1,755 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.merge;
+
+import static com.google.common.base.Predicates.and;
+import static com.google.common.base.Predicates.not;
+import static org.eclipse.emf.compare.utils.EMFComparePredicates.fromSide;
+import static org.eclipse.emf.compare.utils.EMFComparePredicates.hasConflict;
+
+import com.google.common.base.Predicate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.ConflictKind;
+import org.eclipse.emf.compare.DifferenceSource;
+import org.eclipse.emf.compare.EMFCompare;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ComparisonCache;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.compare.merge.BatchMerger;
+import org.eclipse.emf.compare.merge.IMerger;
+import org.eclipse.emf.compare.scope.FilterComparisonScope;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEditor.DeletePath;
+import org.eclipse.jgit.dircache.DirCacheEditor.PathEdit;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Rebases a branch by replaying its commits in memory, without touching the work tree nor the index.
+ * <p>
+ * The logical models changed on both sides by a commit are always compared and merged with EMF Compare,
+ * even when their files could be merged as text: a text merge could produce resources that are broken as
+ * models, with duplicate identifiers or dangling references for instance. The other files are merged file
+ * by file with an in-core merger. The resources of the rebased side are kept loaded in a
+ * {@link LogicalModelSession} from one commit to the next, so that only the resources which blob changed
+ * are reloaded. The rebase gives up, leaving the repository untouched, as soon as a commit can not be
+ * replayed without a conflict; the caller is then expected to fall back to a regular rebase.
+ * </p>
+ */
+public class IncrementalRebase {
+
+	/** Index of the base tree in the tree walks. */
+	private static final int BASE = 0;
+
+	/** Index of the rebased tree in the tree walks. */
+	private static final int OURS = 1;
+
+	/** Index of the replayed tree in the tree walks. */
+	private static final int THEIRS = 2;
+
+	/** The repository. */
+	private final Repository repo;
+
+	/** Loader of the revisions. */
+	private final RevisionModelLoader loader;
+
+	/** Cache of the logical merges, <code>null</code> if disabled. */
+	private final ComparisonCache cache;
+
+	/** Resources of the rebased side, created on the first logical merge. */
+	private LogicalModelSession session;
+
+	/** Commits replayed so far. */
+	private final List<RevCommit> replayed = new ArrayList<RevCommit>();
+
+	/** Number of commits that needed a logical merge. */
+	private int logicalMergeCount;
+
+	/** <code>true</code> if the last rebase gave up on a commit it could not replay. */
+	private boolean failed;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param loader
+	 *            loader of the revisions.
+	 */
+	public IncrementalRebase(Repository repo, RevisionModelLoader loader) {
+		this(repo, loader, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param loader
+	 *            loader of the revisions.
+	 * @param cache
+	 *            cache of the logical merges, <code>null</code> to compare every replayed commit.
+	 */
+	public IncrementalRebase(Repository repo, RevisionModelLoader loader, ComparisonCache cache) {
+		this.repo = repo;
+		this.loader = loader;
+		this.cache = cache;
+	}
+
+	/**
+	 * Gets the commits that have been replayed.
+	 *
+	 * @return the original commits that have been replayed, in order.
+	 */
+	public List<RevCommit> getReplayed() {
+		return replayed;
+	}
+
+	/**
+	 * Gets the number of replayed commits that needed a logical merge.
+	 *
+	 * @return the number of logical merges.
+	 */
+	public int getLogicalMergeCount() {
+		return logicalMergeCount;
+	}
+
+	/**
+	 * Returns <code>true</code> if the last rebase gave up because a commit could not be replayed, as opposed
+	 * to a branch that was up to date or that could be fast-forwarded.
+	 *
+	 * @return <code>true</code> if the rebase has to be performed another way.
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * Replays on top of <code>upstream</code> the commits reachable from <code>head</code> but not from
+	 * <code>upstream</code>. Neither the references nor the work tree are modified.
+	 *
+	 * @param upstream
+	 *            the commit on top of which the commits are replayed.
+	 * @param head
+	 *            the head of the rebased branch.
+	 * @return the new head of the branch or <code>null</code> if the commits can not be replayed without
+	 *         conflict, if the branch is up to date or if it can be fast-forwarded (see {@link #isFailed()}).
+	 * @throws IOException
+	 *             if the repository can not be read or written.
+	 */
+	public RevCommit rebase(ObjectId upstream, ObjectId head) throws IOException {
+		failed = false;
+		try (RevWalk walk = new RevWalk(repo)) {
+			RevCommit current = walk.parseCommit(upstream);
+			final RevCommit headCommit = walk.parseCommit(head);
+			if (walk.isMergedInto(headCommit, current) || walk.isMergedInto(current, headCommit)) {
+				// Up to date or fast-forward
+				return null;
+			}
+			final List<RevCommit> commits = new ArrayList<RevCommit>();
+			walk.reset();
+			walk.markStart(headCommit);
+			walk.markUninteresting(current);
+			walk.sort(RevSort.TOPO);
+			walk.sort(RevSort.REVERSE, true);
+			for (RevCommit commit : walk) {
+				if (commit.getParentCount() != 1) {
+					failed = true;
+					return null;
+				}
+				commits.add(commit);
+			}
+			for (RevCommit commit : commits) {
+				RevCommit parent = walk.parseCommit(commit.getParent(0));
+				ObjectId treeId = replay(parent, current, commit);
+				if (treeId == null || treeId.equals(current.getTree())) {
+					failed = true;
+					return null;
+				}
+				current = walk.parseCommit(commit(treeId, current, commit));
+				replayed.add(commit);
+			}
+			return current;
+		} finally {
+			if (session != null) {
+				session.dispose();
+				session = null;
+			}
+		}
+	}
+
+	/**
+	 * Replays a commit.
+	 *
+	 * @param base
+	 *            parent of the replayed commit.
+	 * @param ours
+	 *            the commit on top of which the commit is replayed.
+	 * @param theirs
+	 *            the replayed commit.
+	 * @return the id of the resulting tree or <code>null</code> if it can not be computed without conflict.
+	 * @throws IOException
+	 *             if the repository can not be read or written.
+	 */
+	private ObjectId replay(RevCommit base, RevCommit ours, RevCommit theirs) throws IOException {
+		final ModelDependencyIndex oursIndex = ModelDependencyIndex.get(repo, ours.getTree());
+		final ModelDependencyIndex theirsIndex = ModelDependencyIndex.get(repo, theirs.getTree());
+		final Set<String> paths = getLogicalModelPaths(base, ours, theirs, oursIndex, theirsIndex);
+		if (paths == null) {
+			return null;
+		}
+		final ResolveMerger merger = (ResolveMerger)MergeStrategy.RESOLVE.newMerger(repo, true);
+		if (paths.isEmpty()) {
+			merger.setBase(base);
+			if (merger.merge(ours, theirs)) {
+				return merger.getResultTreeId();
+			}
+			return null;
+		}
+		// The logical models are left out of the text merge: they hold their base version on both sides
+		merger.setBase(base.getTree());
+		if (!merger.merge(withBaseVersions(ours, base, paths), withBaseVersions(theirs, base, paths))) {
+			return null;
+		}
+		return mergeLogically(base, ours, theirs, paths, merger.getResultTreeId());
+	}
+
+	/**
+	 * Gets the resources to merge with EMF Compare: the logical models of the model resources changed by the
+	 * replayed commit that also hold a resource changed on the rebased side.
+	 *
+	 * @param base
+	 *            parent of the replayed commit.
+	 * @param ours
+	 *            the commit on top of which the commit is replayed.
+	 * @param theirs
+	 *            the replayed commit.
+	 * @param oursIndex
+	 *            model dependency index of the rebased tree.
+	 * @param theirsIndex
+	 *            model dependency index of the replayed tree.
+	 * @return the paths of the logical models, empty if all the files can be merged as text, or
+	 *         <code>null</code> if a resource changed on both sides is not a model on both sides.
+	 * @throws IOException
+	 *             if the trees can not be read.
+	 */
+	private Set<String> getLogicalModelPaths(RevCommit base, RevCommit ours, RevCommit theirs,
+			ModelDependencyIndex oursIndex, ModelDependencyIndex theirsIndex) throws IOException {
+		final Set<String> changedByOurs = new HashSet<String>();
+		final List<String> changedByTheirs = new ArrayList<String>();
+		try (TreeWalk walk = new TreeWalk(repo)) {
+			walk.addTree(base.getTree());
+			walk.addTree(ours.getTree());
+			walk.addTree(theirs.getTree());
+			walk.setRecursive(true);
+			walk.setFilter(TreeFilter.ANY_DIFF);
+			while (walk.next()) {
+				if (!isSame(walk, BASE, OURS)) {
+					changedByOurs.add(walk.getPathString());
+				}
+				if (!isSame(walk, BASE, THEIRS)) {
+					changedByTheirs.add(walk.getPathString());
+				}
+			}
+		}
+		final Set<String> paths = new TreeSet<String>();
+		for (String path : changedByTheirs) {
+			final Set<String> logicalModel = new HashSet<String>();
+			if (oursIndex.isModel(path)) {
+				logicalModel.addAll(oursIndex.getLogicalModel(path));
+			}
+			if (theirsIndex.isModel(path)) {
+				logicalModel.addAll(theirsIndex.getLogicalModel(path));
+			}
+			if (!Collections.disjoint(logicalModel, changedByOurs)) {
+				if (!oursIndex.isModel(path) || !theirsIndex.isModel(path)) {
+					return null;
+				}
+				paths.addAll(logicalModel);
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * Writes a copy of the tree of a commit in which the given paths hold their version of the base tree.
+	 *
+	 * @param commit
+	 *            the commit.
+	 * @param base
+	 *            the base commit.
+	 * @param paths
+	 *            the paths to reset to their base version.
+	 * @return the id of the written tree.
+	 * @throws IOException
+	 *             if the repository can not be read or written.
+	 */
+	private ObjectId withBaseVersions(RevCommit commit, RevCommit base, Set<String> paths)
+			throws IOException {
+		final DirCache dirCache = DirCache.newInCore();
+		try (ObjectReader reader = repo.newObjectReader();
+				ObjectInserter inserter = repo.newObjectInserter()) {
+			final DirCacheBuilder builder = dirCache.builder();
+			builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, commit.getTree());
+			builder.finish();
+
+			final DirCacheEditor editor = dirCache.editor();
+			try (TreeWalk walk = new TreeWalk(reader)) {
+				walk.addTree(base.getTree());
+				walk.addTree(commit.getTree());
+				walk.setRecursive(true);
+				walk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(paths),
+						TreeFilter.ANY_DIFF));
+				while (walk.next()) {
+					if (walk.getRawMode(BASE) == 0) {
+						editor.add(new DeletePath(walk.getPathString()));
+					} else {
+						editor.add(new SetEntry(walk.getPathString(), walk.getFileMode(BASE), walk
+								.getObjectId(BASE)));
+					}
+				}
+			}
+			editor.finish();
+			final ObjectId treeId = dirCache.writeTree(inserter);
+			inserter.flush();
+			return treeId;
+		}
+	}
+
+	/**
+	 * Merges with EMF Compare the given logical models.
+	 *
+	 * @param base
+	 *            parent of the replayed commit.
+	 * @param ours
+	 *            the commit on top of which the commit is replayed.
+	 * @param theirs
+	 *            the replayed commit.
+	 * @param paths
+	 *            the paths of the logical models to merge.
+	 * @param textTreeId
+	 *            the tree holding the text merge of the other files.
+	 * @return the id of the resulting tree or <code>null</code> if it can not be computed without conflict.
+	 * @throws IOException
+	 *             if the repository can not be read or written.
+	 */
+	private ObjectId mergeLogically(RevCommit base, RevCommit ours, RevCommit theirs, Set<String> paths,
+			ObjectId textTreeId) throws IOException {
+		final ModelDependencyIndex baseIndex = ModelDependencyIndex.get(repo, base.getTree());
+		final ModelDependencyIndex oursIndex = ModelDependencyIndex.get(repo, ours.getTree());
+		final ModelDependencyIndex theirsIndex = ModelDependencyIndex.get(repo, theirs.getTree());
+
+		ComparisonCache.Key key = null;
+		if (cache != null) {
+			// The resources the base versions depend on take part in the merge as well
+			final Set<String> keyPaths = new TreeSet<String>(paths);
+			for (String path : paths) {
+				if (baseIndex.isModel(path)) {
+					keyPaths.addAll(baseIndex.getLogicalModel(path));
+				}
+			}
+			key = getKey(base, ours, theirs, keyPaths);
+			final ComparisonCache.Result cached = cache.get(key);
+			if (cached != null && cached.isConflicting()) {
+				return null;
+			} else if (cached != null && exist(cached.getMergedBlobs().values())) {
+				final ObjectId treeId = writeTree(base, ours, theirs, textTreeId, paths, cached
+						.getMergedBlobs());
+				if (treeId != null) {
+					logicalMergeCount++;
+					return treeId;
+				}
+			}
+		}
+
+		if (session == null) {
+			session = new LogicalModelSession(loader, ours);
+		}
+		session.moveTo(ours.getTree());
+		final Set<URI> uris = new HashSet<URI>();
+		for (String path : paths) {
+			uris.add(loader.getURI(path));
+			if (oursIndex.isModel(path)) {
+				session.getResource(path);
+			}
+		}
+		final ResourceSet theirsSet = loader.load(theirs, filter(paths, theirsIndex));
+		final ResourceSet baseSet = loader.load(base, filter(paths, baseIndex));
+		try {
+			final FilterComparisonScope scope = new FilterComparisonScope(session.getResourceSet(),
+					theirsSet, baseSet);
+			scope.setResourceSetContentFilter(new Predicate<Resource>() {
+				public boolean apply(Resource input) {
+					return input != null && uris.contains(input.getURI());
+				}
+			});
+			final Comparison comparison = EMFCompare.builder().build().compare(scope);
+			Metrics.recordComparison(comparison);
+			final List<String> conflicts = RealConflicts.describe(comparison);
+			if (!conflicts.isEmpty()) {
+				if (key != null) {
+					try {
+						cache.putConflicting(key, conflicts);
+					} catch (IOException e) {
+						// The cache is best-effort, the merge has been computed anyway
+					}
+				}
+				return null;
+			}
+
+			ObjectId treeId = null;
+			try {
+				new BatchMerger(IMerger.RegistryImpl.createStandaloneInstance(), and(
+						fromSide(DifferenceSource.RIGHT), not(hasConflict(ConflictKind.PSEUDO))))
+						.copyAllRightToLeft(comparison.getDifferences(), new BasicMonitor());
+				final Map<String, ObjectId> merged = saveMerged();
+				treeId = writeTree(base, ours, theirs, textTreeId, paths, merged);
+				if (treeId != null && key != null) {
+					try {
+						cache.putMerged(key, merged);
+					} catch (IOException e) {
+						// The cache is best-effort, the commit has been replayed anyway
+					}
+				}
+			} finally {
+				if (treeId == null) {
+					// The loaded resources do not match any tree anymore
+					session.dispose();
+					session = null;
+				}
+			}
+			logicalMergeCount++;
+			return treeId;
+		} finally {
+			RevisionModelLoader.unload(theirsSet);
+			RevisionModelLoader.unload(baseSet);
+		}
+	}
+
+	/**
+	 * Computes the key of a logical merge in the comparison cache.
+	 *
+	 * @param base
+	 *            parent of the replayed commit.
+	 * @param ours
+	 *            the commit on top of which the commit is replayed.
+	 * @param theirs
+	 *            the replayed commit.
+	 * @param paths
+	 *            the paths of the merged logical model.
+	 * @return the key made of the blob ids of the paths in each commit.
+	 * @throws IOException
+	 *             if the trees can not be read.
+	 */
+	private ComparisonCache.Key getKey(RevCommit base, RevCommit ours, RevCommit theirs, Set<String> paths)
+			throws IOException {
+		final ComparisonCache.Key key = new ComparisonCache.Key();
+		try (TreeWalk walk = new TreeWalk(repo)) {
+			walk.addTree(base.getTree());
+			walk.addTree(ours.getTree());
+			walk.addTree(theirs.getTree());
+			walk.setRecursive(true);
+			walk.setFilter(PathFilterGroup.createFromStrings(paths));
+			while (walk.next()) {
+				key.add(walk.getPathString(), getBlobId(walk, BASE), getBlobId(walk, OURS), getBlobId(walk,
+						THEIRS));
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Gets the blob id of the current path in a tree of a walk.
+	 *
+	 * @param walk
+	 *            the tree walk.
+	 * @param tree
+	 *            index of the tree.
+	 * @return the blob id or <code>null</code> if the path does not exist in the tree.
+	 */
+	private static ObjectId getBlobId(TreeWalk walk, int tree) {
+		if (walk.getRawMode(tree) == 0) {
+			return null;
+		}
+		return walk.getObjectId(tree);
+	}
+
+	/**
+	 * Returns <code>true</code> if all the given blobs exist in the repository, that is if they have not
+	 * been garbage collected since they have been cached.
+	 *
+	 * @param blobIds
+	 *            the blob ids.
+	 * @return <code>true</code> if all the blobs exist.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	private boolean exist(Iterable<ObjectId> blobIds) throws IOException {
+		for (ObjectId blobId : blobIds) {
+			if (!repo.getObjectDatabase().has(blobId)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Keeps the paths which are model resources of a tree.
+	 *
+	 * @param paths
+	 *            repository paths.
+	 * @param index
+	 *            model dependency index of the tree.
+	 * @return the model resources of the tree.
+	 */
+	private static List<String> filter(Set<String> paths, ModelDependencyIndex index) {
+		final List<String> filtered = new ArrayList<String>();
+		for (String path : paths) {
+			if (index.isModel(path)) {
+				filtered.add(path);
+			}
+		}
+		return filtered;
+	}
+
+	/**
+	 * Saves the resources modified by the merge as blobs of the repository. This includes the resources that
+	 * could not be merged file by file as well as the ones of the logical model changed by the merge of
+	 * another resource, for instance when an element is moved from one resource to another.
+	 *
+	 * @return the blob ids of the merged resources, by path.
+	 * @throws IOException
+	 *             if a resource can not be saved.
+	 */
+	private Map<String, ObjectId> saveMerged() throws IOException {
+		final Map<String, ObjectId> blobIds = new HashMap<String, ObjectId>();
+		try (ObjectInserter inserter = repo.newObjectInserter();
+				ObjectReader reader = repo.newObjectReader()) {
+			for (Map.Entry<String, Resource> entry : session.getModifiedResources().entrySet()) {
+				String path = entry.getKey();
+				Resource resource = entry.getValue();
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				resource.save(out, RevisionModelLoader.getSaveOptions(resource, session.getBlobId(path),
+						reader));
+				ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, out.toByteArray());
+				blobIds.put(path, blobId);
+				session.setBlobId(path, blobId);
+			}
+			inserter.flush();
+		}
+		return blobIds;
+	}
+
+	/**
+	 * Writes the tree resulting from the replay of a commit: the logical models are added to the text merge
+	 * of the other files, the changes of the replayed commit being applied on the rebased side and the
+	 * resources saved by the logical merge being replaced by their merged blob.
+	 *
+	 * @param base
+	 *            parent of the replayed commit.
+	 * @param ours
+	 *            the commit on top of which the commit is replayed.
+	 * @param theirs
+	 *            the replayed commit.
+	 * @param textTreeId
+	 *            the tree holding the text merge of the other files.
+	 * @param paths
+	 *            the paths of the logical models.
+	 * @param merged
+	 *            blob ids of the logically merged resources, by path.
+	 * @return the id of the resulting tree or <code>null</code> if a file, changed on both sides, has not
+	 *         been merged.
+	 * @throws IOException
+	 *             if the repository can not be read or written.
+	 */
+	private ObjectId writeTree(RevCommit base, RevCommit ours, RevCommit theirs, ObjectId textTreeId,
+			Set<String> paths, Map<String, ObjectId> merged) throws IOException {
+		final DirCache dirCache = DirCache.newInCore();
+		try (ObjectReader reader = repo.newObjectReader(); ObjectInserter inserter = repo.newObjectInserter()) {
+			final DirCacheBuilder builder = dirCache.builder();
+			builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, textTreeId);
+			builder.finish();
+
+			final DirCacheEditor editor = dirCache.editor();
+			final Map<String, ObjectId> pending = new HashMap<String, ObjectId>(merged);
+			try (TreeWalk walk = new TreeWalk(reader)) {
+				walk.addTree(base.getTree());
+				walk.addTree(ours.getTree());
+				walk.addTree(theirs.getTree());
+				walk.setRecursive(true);
+				walk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(paths),
+						TreeFilter.ANY_DIFF));
+				while (walk.next()) {
+					final String path = walk.getPathString();
+					if (pending.containsKey(path)) {
+						final int side;
+						if (walk.getRawMode(OURS) != 0) {
+							side = OURS;
+						} else {
+							side = THEIRS;
+						}
+						editor.add(new SetEntry(path, walk.getFileMode(side), pending.remove(path)));
+					} else if (isSame(walk, OURS, THEIRS) || isSame(walk, BASE, THEIRS)) {
+						// The text merge holds the base version
+						editor.add(toEdit(walk, OURS));
+					} else if (isSame(walk, BASE, OURS)) {
+						editor.add(toEdit(walk, THEIRS));
+					} else {
+						return null;
+					}
+				}
+			}
+			// Resources changed by the merge only
+			for (Map.Entry<String, ObjectId> entry : pending.entrySet()) {
+				final DirCacheEntry existing = dirCache.getEntry(entry.getKey());
+				FileMode mode = FileMode.REGULAR_FILE;
+				if (existing != null) {
+					mode = existing.getFileMode();
+				}
+				editor.add(new SetEntry(entry.getKey(), mode, entry.getValue()));
+			}
+			editor.finish();
+			final ObjectId treeId = dirCache.writeTree(inserter);
+			inserter.flush();
+			return treeId;
+		}
+	}
+
+	/**
+	 * Creates the edit giving the current path of a walk the entry it has in one of its trees.
+	 *
+	 * @param walk
+	 *            the tree walk.
+	 * @param tree
+	 *            index of the tree.
+	 * @return the edit setting the entry of the tree, or deleting the path if the tree does not hold it.
+	 */
+	private static PathEdit toEdit(TreeWalk walk, int tree) {
+		if (walk.getRawMode(tree) == 0) {
+			return new DeletePath(walk.getPathString());
+		}
+		return new SetEntry(walk.getPathString(), walk.getFileMode(tree), walk.getObjectId(tree));
+	}
+
+	/**
+	 * Returns <code>true</code> if two trees of a walk hold the same entry at the current path.
+	 *
+	 * @param walk
+	 *            the tree walk.
+	 * @param tree1
+	 *            index of the first tree.
+	 * @param tree2
+	 *            index of the second tree.
+	 * @return <code>true</code> if both entries have the same mode and the same id, or are both missing.
+	 */
+	private static boolean isSame(TreeWalk walk, int tree1, int tree2) {
+		return walk.getRawMode(tree1) == walk.getRawMode(tree2) && walk.idEqual(tree1, tree2);
+	}
+
+	/**
+	 * Creates the commit replaying a commit.
+	 *
+	 * @param treeId
+	 *            the resulting tree.
+	 * @param parent
+	 *            the parent of the new commit.
+	 * @param replayedCommit
+	 *            the replayed commit.
+	 * @return the id of the new commit.
+	 * @throws IOException
+	 *             if the commit can not be written.
+	 */
+	private ObjectId commit(ObjectId treeId, RevCommit parent, RevCommit replayedCommit) throws IOException {
+		final CommitBuilder commit = new CommitBuilder();
+		commit.setTreeId(treeId);
+		commit.setParentId(parent);
+		commit.setAuthor(replayedCommit.getAuthorIdent());
+		commit.setCommitter(new PersonIdent(repo));
+		commit.setMessage(replayedCommit.getFullMessage());
+		try (ObjectInserter inserter = repo.newObjectInserter()) {
+			final ObjectId commitId = inserter.insert(commit);
+			inserter.flush();
+			return commitId;
+		}
+	}
+
+	/**
+	 * Sets the mode and the blob of an entry of a {@link DirCache}.
+	 */
+	private static final class SetEntry extends PathEdit {
+
+		/** Mode of the entry. */
+		private final FileMode mode;
+
+		/** Id of the blob. */
+		private final ObjectId blobId;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param path
+		 *            path of the entry.
+		 * @param mode
+		 *            mode of the entry.
+		 * @param blobId
+		 *            id of the blob.
+		 */
+		private SetEntry(String path, FileMode mode, ObjectId blobId) {
+			super(path);
+			this.mode = mode;
+			this.blobId = blobId;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void apply(DirCacheEntry ent) {
+			ent.setFileMode(mode);
+			ent.setObjectId(blobId);
+		}
+	}
+}
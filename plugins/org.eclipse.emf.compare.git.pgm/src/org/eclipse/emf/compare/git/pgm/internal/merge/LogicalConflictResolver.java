@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.merge;
+
+import static com.google.common.base.Predicates.and;
+import static com.google.common.base.Predicates.not;
+import static org.eclipse.emf.compare.utils.EMFComparePredicates.fromSide;
+import static org.eclipse.emf.compare.utils.EMFComparePredicates.hasConflict;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.ConflictKind;
+import org.eclipse.emf.compare.DifferenceSource;
+import org.eclipse.emf.compare.EMFCompare;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.compare.merge.BatchMerger;
+import org.eclipse.emf.compare.merge.IMerger;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Resolves in the work tree the conflicts of a merge that stopped on conflicting model files, one logical
+ * model at a time.
+ * <p>
+ * The whole logical model is loaded from the merge base and from both merged commits and compared at once,
+ * so that the differences spanning several resources, such as an element moved from one resource to
+ * another, are merged consistently. The differences of the merged side are applied to our version, which
+ * is then written over the conflicting files of the work tree. A logical model that holds a real conflict
+ * is not written: its files are left as the merge left them, in line with the conflicting entries of the
+ * index that the logicalmergetool command reads.
+ * </p>
+ */
+public class LogicalConflictResolver {
+
+	/** The loader of the revisions of the models. */
+	private final RevisionModelLoader loader;
+
+	/** The repository. */
+	private final Repository repo;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param loader
+	 *            the loader of the revisions of the models.
+	 */
+	public LogicalConflictResolver(RevisionModelLoader loader) {
+		this.loader = loader;
+		this.repo = loader.getRepository();
+	}
+
+	/**
+	 * Merges a logical model and, if it holds no real conflict, writes its conflicting files to the work
+	 * tree.
+	 *
+	 * @param base
+	 *            the merge base.
+	 * @param ours
+	 *            the commit into which the other one is merged.
+	 * @param theirs
+	 *            the merged commit.
+	 * @param logicalModel
+	 *            the paths of the resources of the logical model.
+	 * @param conflicting
+	 *            the paths of the conflicting files of the logical model, written to the work tree once
+	 *            merged.
+	 * @return the number of real conflicts, <code>0</code> if the logical model has been merged and written.
+	 * @throws IOException
+	 *             if a revision can not be read or a file written.
+	 */
+	public int resolve(RevCommit base, RevCommit ours, RevCommit theirs, Set<String> logicalModel,
+			Collection<String> conflicting) throws IOException {
+		ResourceSet oursSet = null;
+		ResourceSet theirsSet = null;
+		ResourceSet baseSet = null;
+		try {
+			oursSet = loader.load(ours, filter(logicalModel, ModelDependencyIndex.get(repo, ours.getTree())));
+			theirsSet = loader.load(theirs, filter(logicalModel, ModelDependencyIndex.get(repo, theirs
+					.getTree())));
+			baseSet = loader.load(base, filter(logicalModel, ModelDependencyIndex.get(repo, base.getTree())));
+			final Comparison comparison = EMFCompare.builder().build().compare(
+					loader.createScope(oursSet, theirsSet, baseSet));
+			Metrics.recordComparison(comparison);
+			final int conflicts = RealConflicts.describe(comparison).size();
+			if (conflicts > 0) {
+				return conflicts;
+			}
+			new BatchMerger(IMerger.RegistryImpl.createStandaloneInstance(), and(
+					fromSide(DifferenceSource.RIGHT), not(hasConflict(ConflictKind.PSEUDO))))
+					.copyAllRightToLeft(comparison.getDifferences(), new BasicMonitor());
+			try (ObjectReader reader = repo.newObjectReader()) {
+				for (String path : conflicting) {
+					final Resource resource = oursSet.getResource(loader.getURI(path), false);
+					if (resource != null) {
+						save(resource, path, ours, reader);
+					}
+				}
+			}
+			return 0;
+		} finally {
+			for (ResourceSet resourceSet : new ResourceSet[] {oursSet, theirsSet, baseSet }) {
+				if (resourceSet != null) {
+					RevisionModelLoader.unload(resourceSet);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a merged resource to the work tree, in the encoding and with the line delimiter of our version.
+	 *
+	 * @param resource
+	 *            the merged resource.
+	 * @param path
+	 *            its path in the repository.
+	 * @param ours
+	 *            the commit our version has been loaded from.
+	 * @param reader
+	 *            reader of the repository.
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	private void save(Resource resource, String path, RevCommit ours, ObjectReader reader)
+			throws IOException {
+		ObjectId originalId = null;
+		try (TreeWalk walk = TreeWalk.forPath(reader, path, ours.getTree())) {
+			if (walk != null) {
+				originalId = walk.getObjectId(0);
+			}
+		}
+		try (OutputStream out = new FileOutputStream(new File(repo.getWorkTree(), path))) {
+			resource.save(out, RevisionModelLoader.getSaveOptions(resource, originalId, reader));
+		}
+	}
+
+	/**
+	 * Keeps the paths of the model resources of a tree.
+	 *
+	 * @param paths
+	 *            the paths of a logical model.
+	 * @param index
+	 *            the model dependency index of the tree.
+	 * @return the paths that are model resources of the tree.
+	 */
+	private static List<String> filter(Set<String> paths, ModelDependencyIndex index) {
+		final List<String> filtered = new ArrayList<String>();
+		for (String path : paths) {
+			if (index.isModel(path)) {
+				filtered.add(path);
+			}
+		}
+		return filtered;
+	}
+}
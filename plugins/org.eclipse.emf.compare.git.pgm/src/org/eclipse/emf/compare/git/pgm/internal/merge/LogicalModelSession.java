@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.merge;
+
+import com.google.common.base.Objects;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitTreeURIHandler;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIHandler;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * A {@link ResourceSet} that stays loaded while it is moved from a tree of the repository to another.
+ * <p>
+ * When the session is moved to a new tree, only the resources which blob differs between both trees are
+ * unloaded; they are reloaded on demand from the new tree. The resources modified in memory, for instance by
+ * a merge, can be recorded as matching a given blob so that they are kept as is if the next tree holds this
+ * blob. The modifications of the resources are tracked, so that the ones changed by a merge can be saved.
+ * </p>
+ */
+public class LogicalModelSession {
+
+	/** Loader of the revisions. */
+	private final RevisionModelLoader loader;
+
+	/** The resource set kept loaded. */
+	private final ResourceSet resourceSet;
+
+	/** Handler reading the resources from the current tree. */
+	private final GitTreeURIHandler handler;
+
+	/** Blob ids of the loaded resources, by repository path. */
+	private final Map<String, ObjectId> loadedBlobs = new HashMap<String, ObjectId>();
+
+	/** Number of resources unloaded because their blob changed. */
+	private int unloadCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param loader
+	 *            loader of the revisions.
+	 * @param commit
+	 *            the revision from which the resources are first read.
+	 */
+	public LogicalModelSession(RevisionModelLoader loader, RevCommit commit) {
+		this.loader = loader;
+		this.resourceSet = loader.createResourceSet(commit);
+		GitTreeURIHandler treeHandler = null;
+		for (URIHandler uriHandler : resourceSet.getURIConverter().getURIHandlers()) {
+			if (uriHandler instanceof GitTreeURIHandler) {
+				treeHandler = (GitTreeURIHandler)uriHandler;
+				break;
+			}
+		}
+		this.handler = treeHandler;
+		for (Resource resource : resourceSet.getResources()) {
+			resource.setTrackingModification(true);
+		}
+		resourceSet.eAdapters().add(new AdapterImpl() {
+			@Override
+			public void notifyChanged(Notification msg) {
+				if (msg.getFeatureID(ResourceSet.class) != ResourceSet.RESOURCE_SET__RESOURCES) {
+					return;
+				}
+				if (msg.getEventType() == Notification.ADD) {
+					((Resource)msg.getNewValue()).setTrackingModification(true);
+				} else if (msg.getEventType() == Notification.ADD_MANY) {
+					for (Object added : (List<?>)msg.getNewValue()) {
+						((Resource)added).setTrackingModification(true);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gets the resource set kept loaded.
+	 *
+	 * @return the resource set.
+	 */
+	public ResourceSet getResourceSet() {
+		return resourceSet;
+	}
+
+	/**
+	 * Gets the id of the tree the resources are read from.
+	 *
+	 * @return the tree id.
+	 */
+	public ObjectId getTreeId() {
+		return handler.getTreeId();
+	}
+
+	/**
+	 * Gets the number of resources unloaded since the creation of the session because their blob changed.
+	 *
+	 * @return the number of unloaded resources.
+	 */
+	public int getUnloadCount() {
+		return unloadCount;
+	}
+
+	/**
+	 * Gets a resource of the current tree, loading it if needed.
+	 *
+	 * @param path
+	 *            repository path of the resource.
+	 * @return the loaded resource.
+	 * @throws IOException
+	 *             if the tree can not be read.
+	 */
+	public Resource getResource(String path) throws IOException {
+		final Resource resource = loader.getResource(resourceSet, path);
+		if (!loadedBlobs.containsKey(path)) {
+			loadedBlobs.put(path, handler.getBlobId(path));
+		}
+		return resource;
+	}
+
+	/**
+	 * Gets the id of the blob the in-memory content of a resource matches.
+	 *
+	 * @param path
+	 *            repository path of the resource.
+	 * @return the id of the blob the resource has been loaded from or recorded as matching, the id of the
+	 *         blob of the current tree if the resource has not been loaded through the session,
+	 *         <code>null</code> if the path does not exist in the current tree.
+	 * @throws IOException
+	 *             if the tree can not be read.
+	 */
+	public ObjectId getBlobId(String path) throws IOException {
+		final ObjectId blobId = loadedBlobs.get(path);
+		if (blobId != null) {
+			return blobId;
+		}
+		return handler.getBlobId(path);
+	}
+
+	/**
+	 * Gets the loaded resources of the repository that have been modified in memory since they have been
+	 * loaded or recorded as matching a blob.
+	 *
+	 * @return the modified resources, by repository path.
+	 */
+	public Map<String, Resource> getModifiedResources() {
+		final Map<String, Resource> modified = new TreeMap<String, Resource>();
+		for (Resource resource : resourceSet.getResources()) {
+			String path = handler.toRepositoryPath(resource.getURI());
+			if (path != null && resource.isLoaded() && resource.isModified()) {
+				modified.put(path, resource);
+			}
+		}
+		return modified;
+	}
+
+	/**
+	 * Records that the in-memory content of a resource is the one of the given blob.
+	 *
+	 * @param path
+	 *            repository path of the resource.
+	 * @param blobId
+	 *            id of the blob.
+	 */
+	public void setBlobId(String path, ObjectId blobId) {
+		loadedBlobs.put(path, blobId.copy());
+		final Resource resource = resourceSet.getResource(loader.getURI(path), false);
+		if (resource != null) {
+			resource.setModified(false);
+		}
+	}
+
+	/**
+	 * Moves the session to another tree. The loaded resources which blob differs in the new tree are
+	 * unloaded, the others are kept as is.
+	 *
+	 * @param treeId
+	 *            id of the new tree.
+	 * @throws IOException
+	 *             if the trees can not be read.
+	 */
+	public void moveTo(ObjectId treeId) throws IOException {
+		if (treeId.equals(handler.getTreeId())) {
+			return;
+		}
+		// Records the blobs of the resources loaded by proxy resolution before leaving the current tree
+		final List<Resource> loaded = new ArrayList<Resource>();
+		for (Resource resource : resourceSet.getResources()) {
+			String path = handler.toRepositoryPath(resource.getURI());
+			if (path != null && resource.isLoaded()) {
+				loaded.add(resource);
+				if (!loadedBlobs.containsKey(path)) {
+					loadedBlobs.put(path, handler.getBlobId(path));
+				}
+			}
+		}
+		handler.setTreeId(treeId);
+		for (Resource resource : loaded) {
+			String path = handler.toRepositoryPath(resource.getURI());
+			if (!Objects.equal(loadedBlobs.get(path), handler.getBlobId(path))) {
+				resource.unload();
+				loadedBlobs.remove(path);
+				unloadCount++;
+			}
+		}
+	}
+
+	/**
+	 * Unloads all the resources of the session.
+	 */
+	public void dispose() {
+		RevisionModelLoader.unload(resourceSet);
+		loadedBlobs.clear();
+	}
+}
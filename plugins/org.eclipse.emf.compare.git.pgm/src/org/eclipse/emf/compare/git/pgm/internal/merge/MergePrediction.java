@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.merge;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.TAB;
+import static org.eclipse.emf.compare.git.pgm.internal.util.GitUtils.getOneLineCommitMsg;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.emf.compare.git.pgm.internal.cache.ModelDependencyIndex;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitUtils;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEditor.DeletePath;
+import org.eclipse.jgit.dircache.DirCacheEditor.PathEdit;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Prediction of the outcome of a three-way merge, computed from the trees only: no content is merged and no
+ * model is loaded.
+ * <p>
+ * The paths modified differently on both sides since the merge base are the ones that may conflict. Among
+ * them, the model resources, together with the other resources of their logical models, are the ones that
+ * would need a logical merge.
+ * </p>
+ */
+public final class MergePrediction {
+
+	/** The merge base, <code>null</code> if the commits do not share any history. */
+	private final RevCommit base;
+
+	/** Whether theirs is already merged into ours. */
+	private final boolean upToDate;
+
+	/** Whether ours can be fast forwarded to theirs. */
+	private final boolean fastForward;
+
+	/** Paths modified differently on both sides. */
+	private final Set<String> conflictingPaths = new TreeSet<String>();
+
+	/** Paths of the model resources that would need a logical merge. */
+	private final Set<String> logicalMergePaths = new TreeSet<String>();
+
+	/** Tree of the merge base, <code>null</code> if there is none or if nothing is merged. */
+	private ObjectId baseTree;
+
+	/** Tree merged into, <code>null</code> if nothing is merged. */
+	private ObjectId oursTree;
+
+	/** Tree to merge, <code>null</code> if nothing is merged. */
+	private ObjectId theirsTree;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param base
+	 *            the merge base.
+	 * @param upToDate
+	 *            whether theirs is already merged into ours.
+	 * @param fastForward
+	 *            whether ours can be fast forwarded to theirs.
+	 */
+	private MergePrediction(RevCommit base, boolean upToDate, boolean fastForward) {
+		this.base = base;
+		this.upToDate = upToDate;
+		this.fastForward = fastForward;
+	}
+
+	/**
+	 * Predicts the merge of a commit into another, using their merge base.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param ours
+	 *            the commit merged into.
+	 * @param theirs
+	 *            the commit to merge.
+	 * @return the prediction.
+	 * @throws IOException
+	 *             if the trees can not be read.
+	 */
+	public static MergePrediction predict(Repository repo, AnyObjectId ours, AnyObjectId theirs)
+			throws IOException {
+		try (RevWalk walk = new RevWalk(repo)) {
+			final RevCommit oursCommit = walk.parseCommit(ours);
+			final RevCommit theirsCommit = walk.parseCommit(theirs);
+			final RevCommit base = GitUtils.getMergeBase(repo, oursCommit, theirsCommit);
+			final boolean upToDate = base != null && base.equals(theirsCommit);
+			final boolean fastForward = base != null && !upToDate && base.equals(oursCommit);
+			final MergePrediction prediction = new MergePrediction(base, upToDate, fastForward);
+			if (!upToDate && !fastForward) {
+				prediction.scan(repo, base, oursCommit.getTree(), theirsCommit.getTree());
+			}
+			return prediction;
+		}
+	}
+
+	/**
+	 * Predicts the application of the changes of a commit on another one, i.e. a cherry-pick.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param ours
+	 *            the commit on which the changes are applied, or the tree predicted by a previous
+	 *            cherry-pick (see {@link #writeResultTree(Repository)}).
+	 * @param theirs
+	 *            the commit which changes are applied, its first parent is used as merge base.
+	 * @return the prediction.
+	 * @throws IOException
+	 *             if the trees can not be read.
+	 */
+	public static MergePrediction predictCherryPick(Repository repo, AnyObjectId ours, AnyObjectId theirs)
+			throws IOException {
+		try (RevWalk walk = new RevWalk(repo)) {
+			final RevCommit parsed = walk.parseCommit(theirs);
+			final RevCommit base;
+			if (parsed.getParentCount() > 0) {
+				base = walk.parseCommit(parsed.getParent(0));
+			} else {
+				base = null;
+			}
+			final MergePrediction prediction = new MergePrediction(base, false, false);
+			prediction.scan(repo, base, walk.parseTree(ours), parsed.getTree());
+			return prediction;
+		}
+	}
+
+	/**
+	 * Collects the paths modified differently on both sides and the model resources that would need a
+	 * logical merge.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param baseCommit
+	 *            the merge base, may be <code>null</code>.
+	 * @param ours
+	 *            the tree merged into.
+	 * @param theirs
+	 *            the tree to merge.
+	 * @throws IOException
+	 *             if the trees can not be read.
+	 */
+	private void scan(Repository repo, RevCommit baseCommit, RevTree ours, RevTree theirs)
+			throws IOException {
+		if (baseCommit != null) {
+			baseTree = baseCommit.getTree();
+		}
+		oursTree = ours;
+		theirsTree = theirs;
+		try (TreeWalk walk = new TreeWalk(repo)) {
+			walk.setRecursive(true);
+			addTree(walk, baseTree);
+			walk.addTree(ours);
+			walk.addTree(theirs);
+			walk.setFilter(TreeFilter.ANY_DIFF);
+			while (walk.next()) {
+				if (!walk.idEqual(0, 1) && !walk.idEqual(0, 2) && !walk.idEqual(1, 2)) {
+					conflictingPaths.add(walk.getPathString());
+				}
+			}
+		}
+		if (conflictingPaths.isEmpty()) {
+			return;
+		}
+		final ModelDependencyIndex oursIndex = ModelDependencyIndex.get(repo, ours);
+		final ModelDependencyIndex theirsIndex = ModelDependencyIndex.get(repo, theirs);
+		for (String path : conflictingPaths) {
+			if (oursIndex.isModel(path) || theirsIndex.isModel(path) || oursIndex.hasModelExtension(path)) {
+				logicalMergePaths.add(path);
+				logicalMergePaths.addAll(oursIndex.getLogicalModel(path));
+				logicalMergePaths.addAll(theirsIndex.getLogicalModel(path));
+			}
+		}
+	}
+
+	/**
+	 * Writes the tree the merge is predicted to produce, so that the application of a next commit can be
+	 * predicted on top of it. The paths modified on one side only get the version of that side. The paths
+	 * modified on both sides keep the version of the tree merged into since their content is not merged: the
+	 * predictions made on top of this tree are only exact for the other paths. Only tree objects are written
+	 * to the repository.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the id of the predicted tree, <code>null</code> if nothing is merged.
+	 * @throws IOException
+	 *             if the trees can not be read or written.
+	 */
+	public ObjectId writeResultTree(Repository repo) throws IOException {
+		if (oursTree == null) {
+			return null;
+		}
+		final DirCache dirCache = DirCache.newInCore();
+		try (ObjectReader reader = repo.newObjectReader();
+				ObjectInserter inserter = repo.newObjectInserter()) {
+			final DirCacheBuilder builder = dirCache.builder();
+			builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, oursTree);
+			builder.finish();
+
+			final DirCacheEditor editor = dirCache.editor();
+			try (TreeWalk walk = new TreeWalk(reader)) {
+				walk.setRecursive(true);
+				addTree(walk, baseTree);
+				walk.addTree(oursTree);
+				walk.addTree(theirsTree);
+				walk.setFilter(TreeFilter.ANY_DIFF);
+				while (walk.next()) {
+					if (!isSame(walk, 0, 1) || isSame(walk, 0, 2)) {
+						// Modified by ours, or on both sides, or not modified by theirs
+						continue;
+					}
+					final String path = walk.getPathString();
+					if (walk.getRawMode(2) == 0) {
+						editor.add(new DeletePath(path));
+					} else {
+						final FileMode mode = walk.getFileMode(2);
+						final ObjectId blobId = walk.getObjectId(2);
+						editor.add(new PathEdit(path) {
+							@Override
+							public void apply(DirCacheEntry ent) {
+								ent.setFileMode(mode);
+								ent.setObjectId(blobId);
+							}
+						});
+					}
+				}
+			}
+			editor.finish();
+			final ObjectId treeId = dirCache.writeTree(inserter);
+			inserter.flush();
+			return treeId;
+		}
+	}
+
+	/**
+	 * Adds a tree to a walk.
+	 *
+	 * @param walk
+	 *            the tree walk.
+	 * @param treeId
+	 *            the tree, <code>null</code> for an empty tree.
+	 * @throws IOException
+	 *             if the tree can not be read.
+	 */
+	private static void addTree(TreeWalk walk, ObjectId treeId) throws IOException {
+		if (treeId != null) {
+			walk.addTree(treeId);
+		} else {
+			walk.addTree(new EmptyTreeIterator());
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if two trees of a walk hold the same entry at the current path.
+	 *
+	 * @param walk
+	 *            the tree walk.
+	 * @param tree1
+	 *            index of the first tree.
+	 * @param tree2
+	 *            index of the second tree.
+	 * @return <code>true</code> if both entries have the same mode and the same id, or are both missing.
+	 */
+	private static boolean isSame(TreeWalk walk, int tree1, int tree2) {
+		return walk.getRawMode(tree1) == walk.getRawMode(tree2) && walk.idEqual(tree1, tree2);
+	}
+
+	/**
+	 * Gets the merge base.
+	 *
+	 * @return the merge base or <code>null</code> if the commits do not share any history.
+	 */
+	public RevCommit getBase() {
+		return base;
+	}
+
+	/**
+	 * Returns <code>true</code> if there is nothing to merge.
+	 *
+	 * @return <code>true</code> if the commit to merge is already merged.
+	 */
+	public boolean isUpToDate() {
+		return upToDate;
+	}
+
+	/**
+	 * Returns <code>true</code> if the merge is a fast forward.
+	 *
+	 * @return <code>true</code> if the commit merged into is an ancestor of the commit to merge.
+	 */
+	public boolean isFastForward() {
+		return fastForward;
+	}
+
+	/**
+	 * Gets the paths modified differently on both sides, which may conflict.
+	 *
+	 * @return an unmodifiable set of paths.
+	 */
+	public Set<String> getConflictingPaths() {
+		return Collections.unmodifiableSet(conflictingPaths);
+	}
+
+	/**
+	 * Gets the paths of the model resources that would need a logical merge: the model resources modified on
+	 * both sides and the other resources of their logical models.
+	 *
+	 * @return an unmodifiable set of paths.
+	 */
+	public Set<String> getLogicalMergePaths() {
+		return Collections.unmodifiableSet(logicalMergePaths);
+	}
+
+	/**
+	 * Gets a report of the prediction to display to the user.
+	 *
+	 * @return the report.
+	 */
+	public String getReport() {
+		final StringBuilder report = new StringBuilder();
+		if (base != null) {
+			report.append("Merge base: ").append(getOneLineCommitMsg(base)).append(EOL); //$NON-NLS-1$
+		} else {
+			report.append("No merge base.").append(EOL); //$NON-NLS-1$
+		}
+		if (upToDate) {
+			report.append("Already up to date.").append(EOL); //$NON-NLS-1$
+		} else if (fastForward) {
+			report.append("Fast-forward.").append(EOL); //$NON-NLS-1$
+		} else if (conflictingPaths.isEmpty()) {
+			report.append("No file modified on both sides.").append(EOL); //$NON-NLS-1$
+		} else {
+			report.append("Files modified on both sides:").append(EOL); //$NON-NLS-1$
+			for (String path : conflictingPaths) {
+				report.append(TAB).append(path).append(EOL);
+			}
+			if (!logicalMergePaths.isEmpty()) {
+				report.append("Model files that would need a logical merge:").append(EOL); //$NON-NLS-1$
+				for (String path : logicalMergePaths) {
+					report.append(TAB).append(path).append(EOL);
+				}
+			}
+		}
+		return report.toString();
+	}
+}
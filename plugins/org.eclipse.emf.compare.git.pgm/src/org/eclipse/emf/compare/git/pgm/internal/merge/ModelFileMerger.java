@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.merge;
+
+import static com.google.common.base.Predicates.and;
+import static com.google.common.base.Predicates.not;
+import static org.eclipse.emf.compare.utils.EMFComparePredicates.fromSide;
+import static org.eclipse.emf.compare.utils.EMFComparePredicates.hasConflict;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.emf.common.util.BasicMonitor;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.ConflictKind;
+import org.eclipse.emf.compare.DifferenceSource;
+import org.eclipse.emf.compare.EMFCompare;
+import org.eclipse.emf.compare.git.pgm.internal.cache.ComparisonCache;
+import org.eclipse.emf.compare.git.pgm.internal.util.Metrics;
+import org.eclipse.emf.compare.git.pgm.internal.util.RevisionModelLoader;
+import org.eclipse.emf.compare.merge.BatchMerger;
+import org.eclipse.emf.compare.merge.IMerger;
+import org.eclipse.emf.compare.scope.DefaultComparisonScope;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Merges the three versions of a single model file with EMF Compare, as git passes them to a merge driver.
+ * <p>
+ * Each version is loaded in its own resource set under the URI of the merged file in the work tree, so that
+ * the references to the other files of the logical model resolve the same way on all sides. The changes of
+ * the other side that do not conflict are merged into the current version, which is then saved over its
+ * file. Nothing is written if the versions hold a real conflict.
+ * </p>
+ * <p>
+ * When a comparison cache is given, the outcome of the merge is recorded by the blob ids of the three
+ * versions and of the files of the work tree they refer to, and a merge that has already been computed is
+ * replayed from the cache without comparing again.
+ * </p>
+ */
+public class ModelFileMerger {
+
+	/** Options used to load the versions. */
+	private final Map<Object, Object> loadOptions = new HashMap<Object, Object>();
+
+	/** The repository holding the merged blobs, <code>null</code> if there is no cache. */
+	private final Repository repo;
+
+	/** Cache of the merges, <code>null</code> if disabled. */
+	private final ComparisonCache cache;
+
+	/**
+	 * Constructor.
+	 */
+	public ModelFileMerger() {
+		this(null, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param repo
+	 *            the repository in which the merged versions are stored for the cache.
+	 * @param cache
+	 *            cache of the merges, <code>null</code> to compare every merged file.
+	 */
+	public ModelFileMerger(Repository repo, ComparisonCache cache) {
+		this.repo = repo;
+		if (repo != null) {
+			this.cache = cache;
+		} else {
+			this.cache = null;
+		}
+		loadOptions.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+		loadOptions.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.FALSE);
+	}
+
+	/**
+	 * Merges the changes made on the other side into the current version of a model file.
+	 * <p>
+	 * An empty ancestor, for instance when the file has been added on both sides, tells nothing about which
+	 * side has changed what: the current and the other versions are then compared two-way and are only
+	 * merged if they are equal as models, the current version being left as is.
+	 * </p>
+	 *
+	 * @param uri
+	 *            URI of the merged file in the work tree.
+	 * @param base
+	 *            the common ancestor version, empty if the file has been added on both sides.
+	 * @param current
+	 *            the current version, overwritten with the result of the merge.
+	 * @param other
+	 *            the version of the other side.
+	 * @return <code>true</code> if the versions have been merged, <code>false</code> if they hold a conflict.
+	 * @throws IOException
+	 *             if a version can not be read or the result written.
+	 */
+	public boolean merge(URI uri, File base, File current, File other) throws IOException {
+		Resource baseResource = null;
+		Resource currentResource = null;
+		Resource otherResource = null;
+		try {
+			if (base.length() > 0) {
+				baseResource = load(uri, base);
+			}
+			currentResource = load(uri, current);
+			otherResource = load(uri, other);
+			ComparisonCache.Key key = null;
+			if (cache != null) {
+				key = new ComparisonCache.Key().add(uri.toString(), idFor(base), idFor(current),
+						idFor(other));
+				addDependencies(key, uri, baseResource, currentResource, otherResource);
+				final ComparisonCache.Result cached = cache.get(key);
+				if (cached != null && cached.isConflicting()) {
+					return false;
+				} else if (cached != null && cached.getMergedBlobs().size() == 1) {
+					final ObjectId mergedId = cached.getMergedBlobs().values().iterator().next();
+					if (repo.getObjectDatabase().has(mergedId)) {
+						try (OutputStream out = new FileOutputStream(current)) {
+							repo.open(mergedId, Constants.OBJ_BLOB).copyTo(out);
+						}
+						return true;
+					}
+				}
+			}
+			final Comparison comparison = EMFCompare.builder().build().compare(
+					new DefaultComparisonScope(currentResource, otherResource, baseResource));
+			Metrics.recordComparison(comparison);
+			final List<String> conflicts;
+			if (baseResource == null) {
+				conflicts = RealConflicts.describeTwoWay(comparison);
+			} else {
+				conflicts = RealConflicts.describe(comparison);
+			}
+			if (!conflicts.isEmpty()) {
+				if (key != null) {
+					try {
+						cache.putConflicting(key, conflicts);
+					} catch (IOException e) {
+						// The cache is best-effort, the merge has been computed anyway
+					}
+				}
+				return false;
+			}
+			final byte[] merged;
+			if (baseResource == null) {
+				// Both versions are equal, the current one is kept as is
+				merged = Files.readAllBytes(current.toPath());
+			} else {
+				new BatchMerger(IMerger.RegistryImpl.createStandaloneInstance(), and(
+						fromSide(DifferenceSource.RIGHT), not(hasConflict(ConflictKind.PSEUDO))))
+						.copyAllRightToLeft(comparison.getDifferences(), new BasicMonitor());
+				final Map<Object, Object> saveOptions;
+				try (InputStream in = new FileInputStream(current)) {
+					saveOptions = RevisionModelLoader.getSaveOptions(currentResource, in);
+				}
+				final ByteArrayOutputStream out = new ByteArrayOutputStream();
+				currentResource.save(out, saveOptions);
+				merged = out.toByteArray();
+				Files.write(current.toPath(), merged);
+			}
+			if (key != null) {
+				try {
+					cache.putMerged(key, Collections.singletonMap(uri.toString(), insert(merged)));
+				} catch (IOException e) {
+					// The cache is best-effort, the file has been merged anyway
+				}
+			}
+			return true;
+		} finally {
+			for (Resource resource : new Resource[] {baseResource, currentResource, otherResource }) {
+				if (resource != null) {
+					resource.unload();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds to the key of a merge the files of the work tree the versions of the merged file refer to: the
+	 * outcome of the merge depends on them as well, and git may have merged some of them since the merge has
+	 * been cached.
+	 *
+	 * @param key
+	 *            the key of the merge.
+	 * @param uri
+	 *            URI of the merged file in the work tree.
+	 * @param resources
+	 *            the loaded versions of the merged file, <code>null</code> for a version that is not loaded.
+	 * @throws IOException
+	 *             if a referred file can not be read.
+	 */
+	private static void addDependencies(ComparisonCache.Key key, URI uri, Resource... resources)
+			throws IOException {
+		final Set<String> dependencies = new TreeSet<String>();
+		for (Resource resource : resources) {
+			if (resource == null) {
+				continue;
+			}
+			for (EObject proxy : EcoreUtil.ProxyCrossReferencer.find(resource).keySet()) {
+				dependencies.add(EcoreUtil.getURI(proxy).trimFragment().toString());
+			}
+		}
+		dependencies.remove(uri.toString());
+		for (String dependency : dependencies) {
+			final URI dependencyURI = URI.createURI(dependency);
+			if (dependencyURI.isFile() && new File(dependencyURI.toFileString()).isFile()) {
+				final ObjectId id = idFor(new File(dependencyURI.toFileString()));
+				key.add(dependency, id, id, id);
+			} else {
+				key.add(dependency, null, null, null);
+			}
+		}
+	}
+
+	/**
+	 * Computes the blob id of a version.
+	 *
+	 * @param file
+	 *            the file holding the version.
+	 * @return the id the version would have as a blob.
+	 * @throws IOException
+	 *             if the version can not be read.
+	 */
+	private static ObjectId idFor(File file) throws IOException {
+		try (ObjectInserter.Formatter formatter = new ObjectInserter.Formatter()) {
+			return formatter.idFor(Constants.OBJ_BLOB, Files.readAllBytes(file.toPath()));
+		}
+	}
+
+	/**
+	 * Stores the merged version as a blob of the repository, so that the cache can replay the merge.
+	 *
+	 * @param content
+	 *            the merged version.
+	 * @return the id of the blob.
+	 * @throws IOException
+	 *             if the blob can not be written.
+	 */
+	private ObjectId insert(byte[] content) throws IOException {
+		try (ObjectInserter inserter = repo.newObjectInserter()) {
+			final ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, content);
+			inserter.flush();
+			return blobId;
+		}
+	}
+
+	/**
+	 * Loads a version of the merged file in a new resource set.
+	 *
+	 * @param uri
+	 *            URI of the merged file in the work tree.
+	 * @param file
+	 *            the file holding the version.
+	 * @return the loaded resource.
+	 * @throws IOException
+	 *             if the version can not be read.
+	 */
+	private Resource load(URI uri, File file) throws IOException {
+		final ResourceSet resourceSet = new ResourceSetImpl();
+		final Resource resource = resourceSet.createResource(uri);
+		if (resource == null) {
+			throw new IOException("No resource factory is registered for " + uri); //$NON-NLS-1$
+		}
+		try (InputStream in = new FileInputStream(file)) {
+			resource.load(in, loadOptions);
+		}
+		return resource;
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.merge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.Conflict;
+import org.eclipse.emf.compare.ConflictKind;
+import org.eclipse.emf.compare.Diff;
+import org.eclipse.emf.compare.Match;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * Describes the real conflicts of a comparison, so that they can be recorded in the comparison cache.
+ */
+final class RealConflicts {
+
+	/**
+	 * Constructor.
+	 */
+	private RealConflicts() {
+		// Utility class
+	}
+
+	/**
+	 * Describes the real conflicts of a comparison.
+	 *
+	 * @param comparison
+	 *            the comparison.
+	 * @return one description per real conflict, empty if the comparison holds no real conflict.
+	 */
+	static List<String> describe(Comparison comparison) {
+		final List<String> descriptions = new ArrayList<String>();
+		for (Conflict conflict : comparison.getConflicts()) {
+			if (conflict.getKind() == ConflictKind.REAL) {
+				descriptions.add(describe(conflict));
+			}
+		}
+		return descriptions;
+	}
+
+	/**
+	 * Describes the differences of a two-way comparison: without a common ancestor, none of them can be
+	 * attributed to a side and each of them is a conflict.
+	 *
+	 * @param comparison
+	 *            the two-way comparison.
+	 * @return one description per difference, empty if the compared versions are equal.
+	 */
+	static List<String> describeTwoWay(Comparison comparison) {
+		final List<String> descriptions = new ArrayList<String>();
+		for (Diff diff : comparison.getDifferences()) {
+			descriptions.add(describe(diff));
+		}
+		return descriptions;
+	}
+
+	/**
+	 * Describes a conflict by the URI of the first element it touches.
+	 *
+	 * @param conflict
+	 *            the conflict.
+	 * @return the description of the conflict.
+	 */
+	private static String describe(Conflict conflict) {
+		if (conflict.getDifferences().isEmpty()) {
+			return "Conflict"; //$NON-NLS-1$
+		}
+		return describe(conflict.getDifferences().get(0));
+	}
+
+	/**
+	 * Describes a difference, and the conflict it belongs to, by the URI of the element it touches.
+	 *
+	 * @param diff
+	 *            the difference.
+	 * @return the description of the conflict.
+	 */
+	private static String describe(Diff diff) {
+		final Match match = diff.getMatch();
+		EObject object = match.getLeft();
+		if (object == null) {
+			object = match.getRight();
+		}
+		if (object == null) {
+			object = match.getOrigin();
+		}
+		final StringBuilder description = new StringBuilder("Conflict on "); //$NON-NLS-1$
+		if (object != null) {
+			description.append(EcoreUtil.getURI(object));
+		} else {
+			description.append(diff.getKind());
+		}
+		return description.toString();
+	}
+}
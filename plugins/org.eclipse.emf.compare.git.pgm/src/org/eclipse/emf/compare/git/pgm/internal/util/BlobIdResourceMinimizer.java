@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.toRepositoryPath;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.emf.compare.ide.ui.logical.SynchronizationModel;
+import org.eclipse.emf.compare.ide.utils.StorageTraversal;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+/**
+ * Removes from a {@link SynchronizationModel} the storages that are identical on all the sides of the
+ * comparison.
+ * <p>
+ * Contrary to the {@link org.eclipse.emf.compare.ide.ui.internal.logical.IdenticalResourceMinimizer}, which
+ * reads the content of each storage, the storages are compared by the id of their blob in the compared
+ * commits. Nothing but the trees of the commits is read, so identical resources are dropped before any of
+ * them gets loaded by the comparison scope. Storages that can not be located in the repository are left
+ * untouched.
+ * </p>
+ */
+public final class BlobIdResourceMinimizer {
+
+	/** Index of the left side in the blob id arrays. */
+	private static final int LEFT = 0;
+
+	/** Index of the right side in the blob id arrays. */
+	private static final int RIGHT = 1;
+
+	/** Index of the origin side in the blob id arrays. */
+	private static final int ORIGIN = 2;
+
+	/** The repository holding the compared commits. */
+	private final Repository repo;
+
+	/** Commit of the left side. */
+	private final RevCommit left;
+
+	/** Commit of the right side. */
+	private final RevCommit right;
+
+	/** Commit of the origin side, may be <code>null</code>. */
+	private final RevCommit origin;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param repo
+	 *            the repository holding the compared commits.
+	 * @param left
+	 *            commit of the left side.
+	 * @param right
+	 *            commit of the right side.
+	 * @param origin
+	 *            commit of the origin side, <code>null</code> for a two-way comparison.
+	 */
+	public BlobIdResourceMinimizer(Repository repo, RevCommit left, RevCommit right, RevCommit origin) {
+		this.repo = repo;
+		this.left = left;
+		this.right = right;
+		this.origin = origin;
+	}
+
+	/**
+	 * Removes the storages which blob ids are the same on all the sides of the synchronization model.
+	 *
+	 * @param syncModel
+	 *            the synchronization model to minimize.
+	 * @param monitor
+	 *            monitor to report progress on.
+	 * @return the number of storages removed from each traversal.
+	 * @throws IOException
+	 *             if the trees of the commits can not be read.
+	 */
+	public int minimize(SynchronizationModel syncModel, IProgressMonitor monitor) throws IOException {
+		final StorageTraversal leftTraversal = syncModel.getLeftTraversal();
+		final StorageTraversal rightTraversal = syncModel.getRightTraversal();
+		final StorageTraversal originTraversal = syncModel.getOriginTraversal();
+		final boolean threeWay = originTraversal != null && !originTraversal.getStorages().isEmpty();
+		if (threeWay && origin == null) {
+			// The origin can not be compared
+			return 0;
+		}
+
+		final Map<String, IStorage> leftStorages = byPath(leftTraversal);
+		final Map<String, IStorage> rightStorages = byPath(rightTraversal);
+		final Map<String, IStorage> originStorages;
+		if (threeWay) {
+			originStorages = byPath(originTraversal);
+		} else {
+			originStorages = new HashMap<String, IStorage>();
+		}
+		leftStorages.keySet().retainAll(rightStorages.keySet());
+		if (threeWay) {
+			leftStorages.keySet().retainAll(originStorages.keySet());
+		}
+		if (leftStorages.isEmpty()) {
+			return 0;
+		}
+
+		int removed = 0;
+		final Map<String, ObjectId[]> blobIds = getBlobIds(leftStorages.keySet().toArray(
+				new String[leftStorages.size()]));
+		for (Map.Entry<String, IStorage> entry : leftStorages.entrySet()) {
+			if (monitor.isCanceled()) {
+				break;
+			}
+			final String path = entry.getKey();
+			final ObjectId[] ids = blobIds.get(path);
+			if (ids != null && isIdentical(ids, threeWay)) {
+				leftTraversal.removeStorage(entry.getValue());
+				rightTraversal.removeStorage(rightStorages.get(path));
+				if (threeWay) {
+					originTraversal.removeStorage(originStorages.get(path));
+				}
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns <code>true</code> if all the blob ids are the same.
+	 *
+	 * @param ids
+	 *            the blob ids of a path, by side.
+	 * @param threeWay
+	 *            <code>true</code> if the origin must be taken into account.
+	 * @return <code>true</code> if all the blob ids are the same.
+	 */
+	private static boolean isIdentical(ObjectId[] ids, boolean threeWay) {
+		if (ids[LEFT] == null || !ids[LEFT].equals(ids[RIGHT])) {
+			return false;
+		}
+		return !threeWay || ids[LEFT].equals(ids[ORIGIN]);
+	}
+
+	/**
+	 * Indexes the storages of a traversal by their path in the repository.
+	 *
+	 * @param traversal
+	 *            the traversal.
+	 * @return the storages that belong to the repository, by path.
+	 */
+	private Map<String, IStorage> byPath(StorageTraversal traversal) {
+		final Map<String, IStorage> storages = new LinkedHashMap<String, IStorage>();
+		for (IStorage storage : traversal.getStorages()) {
+			String path = toRepositoryPath(repo, storage);
+			if (path != null) {
+				storages.put(path, storage);
+			}
+		}
+		return storages;
+	}
+
+	/**
+	 * Reads, in a single tree walk, the blob ids of the given paths in the compared commits.
+	 *
+	 * @param paths
+	 *            paths in the repository.
+	 * @return the blob ids, by path, with a <code>null</code> id for a side that does not hold the path.
+	 * @throws IOException
+	 *             if the trees can not be read.
+	 */
+	private Map<String, ObjectId[]> getBlobIds(String... paths) throws IOException {
+		final Map<String, ObjectId[]> blobIds = new HashMap<String, ObjectId[]>();
+		try (TreeWalk walk = new TreeWalk(repo)) {
+			walk.addTree(left.getTree());
+			walk.addTree(right.getTree());
+			if (origin != null) {
+				walk.addTree(origin.getTree());
+			}
+			walk.setRecursive(true);
+			walk.setFilter(PathFilterGroup.createFromStrings(paths));
+			while (walk.next()) {
+				ObjectId[] ids = new ObjectId[ORIGIN + 1];
+				for (int i = 0; i < walk.getTreeCount(); i++) {
+					if (walk.getRawMode(i) != 0) {
+						ids[i] = walk.getObjectId(i);
+					}
+				}
+				blobIds.put(walk.getPathString(), ids);
+			}
+		}
+		return blobIds;
+	}
+}
@@ -0,0 +1,367 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.SecureRandom;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.jgit.util.io.ThrowingPrintWriter;
+
+/**
+ * A session through which a running logical application processes the steps of a command sent by the next
+ * invocations of this command, instead of being relaunched for each of them.
+ * <p>
+ * The session listens on a loopback socket. Its port and a secret token are written in a file of the folder
+ * the session is bound to, readable by its owner only. The session ends once this file is deleted: a logical
+ * rebase application that stopped on a conflict binds its session to the rebase state directory, so that
+ * the session does not survive the rebase, while the logical merge driver binds its session to a folder of
+ * the EMF Compare data directory to merge the model files one after the other in a single application.
+ * </p>
+ */
+public final class CommandSession implements Closeable {
+
+	/** Name of the session file in the folder the session is bound to. */
+	public static final String SESSION_FILE = "emfcompare-session"; //$NON-NLS-1$
+
+	/** Default time, in milliseconds, after which an idle session ends. */
+	public static final int DEFAULT_IDLE_TIMEOUT = 30 * 60 * 1000;
+
+	/** Prefix of the line holding the return code of a step. */
+	private static final String EXIT_PREFIX = "emfcompare-exit:"; //$NON-NLS-1$
+
+	/** Time, in milliseconds, between two checks of the session file. */
+	private static final int POLL_INTERVAL = 5000;
+
+	/** Time, in milliseconds, allowed to connect to a session. */
+	private static final int CONNECT_TIMEOUT = 1000;
+
+	/** Time, in milliseconds, allowed to a client to send its step once connected. */
+	private static final int READ_TIMEOUT = 10000;
+
+	/** Number of random bits of a token. */
+	private static final int TOKEN_BITS = 130;
+
+	/** Radix used to write a token. */
+	private static final int TOKEN_RADIX = 32;
+
+	/** The socket on which the session listens. */
+	private final ServerSocket serverSocket;
+
+	/** The session file. */
+	private final File sessionFile;
+
+	/** The token a client has to send before a step. */
+	private final String token;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param serverSocket
+	 *            the socket on which the session listens.
+	 * @param sessionFile
+	 *            the session file.
+	 * @param token
+	 *            the token a client has to send before a step.
+	 */
+	private CommandSession(ServerSocket serverSocket, File sessionFile, String token) {
+		this.serverSocket = serverSocket;
+		this.sessionFile = sessionFile;
+		this.token = token;
+	}
+
+	/**
+	 * Processes the steps of a command.
+	 */
+	public interface StepHandler {
+
+		/**
+		 * Processes a step of the command. Everything printed on the given stream is sent to the client, as
+		 * well as what the thread processing the step prints on the standard streams.
+		 *
+		 * @param step
+		 *            the step, e.g. the --continue, --skip or --abort option of a rebase.
+		 * @param out
+		 *            the stream sent to the client.
+		 * @return the return code of the step.
+		 */
+		Integer performStep(String step, PrintStream out);
+	}
+
+	/**
+	 * Opens a session bound to a folder.
+	 *
+	 * @param folder
+	 *            the folder in which the session file is written.
+	 * @return the session.
+	 * @throws IOException
+	 *             if the socket can not be opened or the session file written.
+	 */
+	public static CommandSession open(File folder) throws IOException {
+		final ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getByName(null));
+		final String token = new BigInteger(TOKEN_BITS, new SecureRandom()).toString(TOKEN_RADIX);
+		final File sessionFile = new File(folder, SESSION_FILE);
+		try {
+			String content = serverSocket.getLocalPort() + " " + token; //$NON-NLS-1$
+			EMFCompareGitPGMUtil.writeOwnerOnlyFile(sessionFile, content.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			serverSocket.close();
+			throw e;
+		}
+		return new CommandSession(serverSocket, sessionFile, token);
+	}
+
+	/**
+	 * Connects to the session bound to a folder. A session file left by a session that has
+	 * ended abnormally, that is an invalid file or a file which port refuses the connection, is deleted. The
+	 * file is kept on other failures, such as a timeout, since the session may still be alive.
+	 *
+	 * @param folder
+	 *            the folder in which the session file is written.
+	 * @return a client connected to the session or <code>null</code> if no session is alive.
+	 */
+	public static Client connect(File folder) {
+		final File sessionFile = new File(folder, SESSION_FILE);
+		if (!sessionFile.isFile()) {
+			return null;
+		}
+		final Socket socket = new Socket();
+		boolean ended = false;
+		try {
+			String content = new String(Files.readAllBytes(sessionFile.toPath()), StandardCharsets.UTF_8);
+			String[] portAndToken = content.trim().split(" "); //$NON-NLS-1$
+			if (portAndToken.length != 2) {
+				ended = true;
+				throw new IOException("Invalid session file " + sessionFile); //$NON-NLS-1$
+			}
+			socket.connect(new InetSocketAddress(InetAddress.getByName(null), Integer
+					.parseInt(portAndToken[0])), CONNECT_TIMEOUT);
+			return new Client(socket, portAndToken[1]);
+		} catch (ConnectException | NumberFormatException e) {
+			ended = true;
+		} catch (IOException e) {
+			// The session may still be alive
+		}
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Nothing more can be done
+		}
+		if (ended) {
+			sessionFile.delete();
+		}
+		return null;
+	}
+
+	/**
+	 * Processes the steps sent by the clients until a step does not return {@link Returns#ABORTED}, such as
+	 * the step ending a rebase, the session file is deleted or the session has been idle for too long.
+	 *
+	 * @param handler
+	 *            the handler processing the steps.
+	 * @param idleTimeout
+	 *            time, in milliseconds, after which an idle session ends.
+	 * @return the return code of the last step, {@link Returns#ABORTED} if the command is not over.
+	 * @throws IOException
+	 *             if the socket fails.
+	 */
+	public Integer serve(StepHandler handler, int idleTimeout) throws IOException {
+		return serve(handler, idleTimeout, true);
+	}
+
+	/**
+	 * Processes the steps sent by the clients until the session file is deleted or the session has been idle
+	 * for too long, whatever the return codes of the steps. This suits the sessions which, unlike a rebase,
+	 * have no end state such as the one of the merge driver.
+	 *
+	 * @param handler
+	 *            the handler processing the steps.
+	 * @param idleTimeout
+	 *            time, in milliseconds, after which an idle session ends.
+	 * @return the return code of the last step, {@link Returns#ABORTED} if no step has been processed.
+	 * @throws IOException
+	 *             if the socket fails.
+	 */
+	public Integer serveUntilIdle(StepHandler handler, int idleTimeout) throws IOException {
+		return serve(handler, idleTimeout, false);
+	}
+
+	/**
+	 * Processes the steps sent by the clients.
+	 *
+	 * @param handler
+	 *            the handler processing the steps.
+	 * @param idleTimeout
+	 *            time, in milliseconds, after which an idle session ends.
+	 * @param untilOver
+	 *            <code>true</code> if the session ends as soon as a step does not return
+	 *            {@link Returns#ABORTED}.
+	 * @return the return code of the last step, {@link Returns#ABORTED} if no step has been processed.
+	 * @throws IOException
+	 *             if the socket fails.
+	 */
+	private Integer serve(StepHandler handler, int idleTimeout, boolean untilOver) throws IOException {
+		serverSocket.setSoTimeout(Math.min(POLL_INTERVAL, idleTimeout));
+		Integer code = Returns.ABORTED.code();
+		long idleSince = System.currentTimeMillis();
+		while ((!untilOver || Returns.ABORTED.code().equals(code)) && sessionFile.isFile()
+				&& System.currentTimeMillis() - idleSince < idleTimeout) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketTimeoutException e) {
+				continue;
+			}
+			try {
+				socket.setSoTimeout(READ_TIMEOUT);
+				Integer stepCode = serveStep(socket, handler);
+				if (stepCode != null) {
+					code = stepCode;
+				}
+			} catch (SocketTimeoutException e) {
+				// The client has not sent its step in time
+			} finally {
+				socket.close();
+			}
+			idleSince = System.currentTimeMillis();
+		}
+		return code;
+	}
+
+	/**
+	 * Processes the step sent by a client. The standard streams of the current thread are routed to the
+	 * client meanwhile, the other threads of the application keep printing on the original ones.
+	 *
+	 * @param socket
+	 *            the socket connected to the client.
+	 * @param handler
+	 *            the handler processing the step.
+	 * @return the return code of the step or <code>null</code> if the client has not sent the token of the
+	 *         session.
+	 * @throws IOException
+	 *             if the socket fails.
+	 */
+	private Integer serveStep(Socket socket, StepHandler handler) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+				StandardCharsets.UTF_8));
+		if (!token.equals(reader.readLine())) {
+			return null;
+		}
+		final String step = reader.readLine();
+		final PrintStream stream = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8
+				.name());
+		OutputRouter.install();
+		final OutputRouter.Route route = OutputRouter.route(stream, stream);
+		final Integer code;
+		try {
+			code = handler.performStep(step, stream);
+		} finally {
+			route.close();
+		}
+		stream.println(EXIT_PREFIX + code);
+		stream.flush();
+		return code;
+	}
+
+	/**
+	 * Closes the socket and deletes the session file.
+	 *
+	 * @throws IOException
+	 *             if the socket can not be closed.
+	 */
+	public void close() throws IOException {
+		sessionFile.delete();
+		serverSocket.close();
+	}
+
+	/**
+	 * A client connected to a session.
+	 */
+	public static final class Client implements Closeable {
+
+		/** The socket connected to the session. */
+		private final Socket socket;
+
+		/** The token of the session. */
+		private final String token;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param socket
+		 *            the socket connected to the session.
+		 * @param token
+		 *            the token of the session.
+		 */
+		private Client(Socket socket, String token) {
+			this.socket = socket;
+			this.token = token;
+		}
+
+		/**
+		 * Sends a step to the session and prints its output.
+		 *
+		 * @param step
+		 *            the step, e.g. the --continue, --skip or --abort option of a rebase.
+		 * @param out
+		 *            the writer on which the output of the step is printed.
+		 * @return the return code of the step.
+		 * @throws IOException
+		 *             if the session ends before the step has been processed.
+		 */
+		public Integer sendStep(String step, ThrowingPrintWriter out) throws IOException {
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+			writer.write(token + '\n' + step + '\n');
+			writer.flush();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+					StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith(EXIT_PREFIX)) {
+					try {
+						return Returns.valueOf(Integer.parseInt(line.substring(EXIT_PREFIX.length())))
+								.code();
+					} catch (NumberFormatException e) {
+						return Returns.ERROR.code();
+					}
+				}
+				out.println(line);
+			}
+			throw new IOException("The logical session has ended unexpectedly."); //$NON-NLS-1$
+		}
+
+		/**
+		 * Closes the connection to the session.
+		 *
+		 * @throws IOException
+		 *             if the socket can not be closed.
+		 */
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+}
@@ -13,16 +13,24 @@ package org.eclipse.emf.compare.git.pgm.internal.util;
 import com.google.common.base.Strings;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
 
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.egit.core.JobFamilies;
 import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.jgit.lib.Repository;
 
 /**
  * Utils methods.
@@ -59,6 +67,11 @@ public final class EMFCompareGitPGMUtil {
 	 */
 	public static final String PARENT = ".."; //$NON-NLS-1$
 
+	/**
+	 * Permissions of the files only their owner may read.
+	 */
+	private static final String OWNER_ONLY_PERMISSIONS = "rw-------"; //$NON-NLS-1$
+
 	/**
 	 * Internal constructor.
 	 */
@@ -138,6 +151,70 @@ public final class EMFCompareGitPGMUtil {
 		return file;
 	}
 
+	/**
+	 * Writes a file that only its owner may read and write, such as a file holding a secret token. An
+	 * existing file is replaced.
+	 * 
+	 * @param file
+	 *            the file to write.
+	 * @param content
+	 *            the content of the file.
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public static void writeOwnerOnlyFile(File file, byte[] content) throws IOException {
+		final Path path = file.toPath();
+		Files.deleteIfExists(path);
+		if (path.getFileSystem().supportedFileAttributeViews().contains("posix")) { //$NON-NLS-1$
+			Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions
+					.fromString(OWNER_ONLY_PERMISSIONS)));
+		} else {
+			Files.createFile(path);
+			if (!(file.setReadable(false, false) && file.setReadable(true, true)
+					&& file.setWritable(false, false) && file.setWritable(true, true))) {
+				Files.delete(path);
+				throw new IOException("Cannot restrict the permissions of " + file); //$NON-NLS-1$
+			}
+		}
+		Files.write(path, content);
+	}
+
+	/**
+	 * Gets the path, relative to the work tree of the repository, of a storage. Workspace files are located
+	 * through their location whereas the storages of revisions (which are not part of the workspace) are
+	 * located through their full path.
+	 * 
+	 * @param repo
+	 *            the repository.
+	 * @param storage
+	 *            the storage.
+	 * @return the path of the storage in the repository, with '/' as separator, or <code>null</code> if the
+	 *         storage does not belong to the work tree of the repository.
+	 */
+	public static String toRepositoryPath(Repository repo, IStorage storage) {
+		IPath location;
+		if (storage instanceof IFile) {
+			location = ((IFile)storage).getLocation();
+		} else {
+			location = storage.getFullPath();
+		}
+		if (location == null) {
+			return null;
+		}
+		final IPath workTree = new org.eclipse.core.runtime.Path(repo.getWorkTree().getAbsolutePath());
+		if (!workTree.isPrefixOf(location)) {
+			if (location.segmentCount() < 2) {
+				return null;
+			}
+			// Might be a workspace path
+			location = ResourcesPlugin.getWorkspace().getRoot().getFile(location).getLocation();
+			if (location == null || !workTree.isPrefixOf(location)) {
+				return null;
+			}
+		}
+		return location.makeRelativeTo(workTree).toPortableString();
+	}
+
 	/**
 	 * Get a nice message from a IStatus.
 	 * 
@@ -180,10 +257,15 @@ public final class EMFCompareGitPGMUtil {
 	 * </p>
 	 */
 	public static void waitEgitJobs() {
-		waitForScope(JobFamilies.AUTO_SHARE);
-		waitForScope(JobFamilies.AUTO_IGNORE);
-		waitForScope(JobFamilies.REPOSITORY_CHANGED);
-		waitForScope(JobFamilies.INDEX_DIFF_CACHE_UPDATE);
+		final PhaseEvent event = Phase.WAIT_EGIT_JOBS.begin(null);
+		try {
+			waitForScope(JobFamilies.AUTO_SHARE);
+			waitForScope(JobFamilies.AUTO_IGNORE);
+			waitForScope(JobFamilies.REPOSITORY_CHANGED);
+			waitForScope(JobFamilies.INDEX_DIFF_CACHE_UPDATE);
+		} finally {
+			event.end();
+		}
 	}
 
 	/**
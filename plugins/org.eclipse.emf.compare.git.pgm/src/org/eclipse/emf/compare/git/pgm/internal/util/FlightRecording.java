@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Java Flight Recorder support of the logical commands.
+ * <p>
+ * Each {@link Phase} is an event type, created at runtime with the <code>jdk.jfr.EventFactory</code> so that
+ * the events are recorded by any recording of the JVM, including the ones started with
+ * <code>-XX:StartFlightRecording</code>. The flight recorder API is accessed by reflection: the bundle does
+ * not require a JVM that provides it, and the events do nothing if it is missing.
+ * </p>
+ * <p>
+ * A recording can also be started for the lifetime of a command. The application launched by the command
+ * records to a part file, which is appended to the recording of the command once both have stopped: since
+ * the flight recordings are made of self-contained chunks, the file holds the whole run.
+ * </p>
+ * <p>
+ * The recording of a command is kept in the {@link Metrics#scope() metrics scope} of the command, so that
+ * the {@link LogicalService} only gives its part files to the applications launched by the same request.
+ * The flight recorder itself records the events of all the threads of the JVM: the events of the requests
+ * run at the same time are told apart by their thread.
+ * </p>
+ */
+public final class FlightRecording {
+
+	/** Package of the flight recorder API. */
+	private static final String JFR_PACKAGE = "jdk.jfr."; //$NON-NLS-1$
+
+	/** Prefix of the names of the event types. */
+	private static final String EVENT_TYPE_PREFIX = "org.eclipse.emf.compare.git.pgm."; //$NON-NLS-1$
+
+	/** Category of the event types. */
+	private static final String[] CATEGORY = {"EMF Compare", "Logical Commands" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	/** Name of the field of the events holding what the phase works on. */
+	private static final String DETAIL_FIELD = "detail"; //$NON-NLS-1$
+
+	/** Event factories by phase, empty if there is no flight recorder. Initialized lazily. */
+	private static Map<Phase, Object> factories;
+
+	/** <code>EventFactory.newEvent()</code>. */
+	private static Method newEventMethod;
+
+	/** <code>Event.begin()</code>. */
+	private static Method beginMethod;
+
+	/** <code>Event.end()</code>. */
+	private static Method endMethod;
+
+	/** <code>Event.set(int, Object)</code>. */
+	private static Method setMethod;
+
+	/** <code>Event.commit()</code>. */
+	private static Method commitMethod;
+
+	/** The <code>jdk.jfr.Recording</code>. */
+	private final Object recording;
+
+	/** File where the recording is written. */
+	private final File destination;
+
+	/** Part files of the launched applications, in the order they have been launched. */
+	private final List<File> parts = new ArrayList<File>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param recording
+	 *            the <code>jdk.jfr.Recording</code>.
+	 * @param destination
+	 *            file where the recording is written.
+	 */
+	private FlightRecording(Object recording, File destination) {
+		this.recording = recording;
+		this.destination = destination;
+	}
+
+	/**
+	 * Starts a recording with the default settings of the JVM, written to the given file once stopped. Prints
+	 * a warning if the JVM has no flight recorder.
+	 *
+	 * @param destination
+	 *            the file.
+	 * @return the recording, <code>null</code> if it can not be started.
+	 */
+	public static synchronized FlightRecording start(File destination) {
+		if (!isAvailable()) {
+			System.err.println("warning: Java Flight Recorder is not available in this JVM, " //$NON-NLS-1$
+					+ destination + " is not written."); //$NON-NLS-1$
+			return null;
+		}
+		try {
+			final Class<?> configurationClass = loadClass("Configuration"); //$NON-NLS-1$
+			final Object configuration = configurationClass.getMethod("getConfiguration", //$NON-NLS-1$
+					String.class).invoke(null, "default"); //$NON-NLS-1$
+			final Class<?> recordingClass = loadClass("Recording"); //$NON-NLS-1$
+			final Object recording = recordingClass.getConstructor(configurationClass).newInstance(
+					configuration);
+			recordingClass.getMethod("setDestination", Path.class).invoke(recording, //$NON-NLS-1$
+					destination.getAbsoluteFile().toPath());
+			recordingClass.getMethod("start").invoke(recording); //$NON-NLS-1$
+			final FlightRecording started = new FlightRecording(recording, destination.getAbsoluteFile());
+			Metrics.setFlightRecording(started);
+			return started;
+		} catch (ReflectiveOperationException e) {
+			System.err.println("warning: the flight recording to " + destination //$NON-NLS-1$
+					+ " can not be started: " + getMessage(e)); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the recording started in the {@link Metrics#scope() metrics scope} of the current thread, or
+	 * out of any scope if the thread has none.
+	 *
+	 * @return the recording, <code>null</code> if none is running.
+	 */
+	public static FlightRecording getCurrent() {
+		return Metrics.getFlightRecording();
+	}
+
+	/**
+	 * Creates the part file where a launched application records.
+	 *
+	 * @return the part file, appended to this recording once stopped.
+	 */
+	public synchronized File newPart() {
+		final File part = new File(destination.getPath() + '.' + (parts.size() + 1) + ".part"); //$NON-NLS-1$
+		parts.add(part);
+		return part;
+	}
+
+	/**
+	 * Stops the recording, writes it and appends the part files of the launched applications that have
+	 * stopped. Prints a warning if the recording can not be written.
+	 */
+	public void stop() {
+		Metrics.removeFlightRecording(this);
+		try {
+			final Class<?> recordingClass = recording.getClass();
+			recordingClass.getMethod("stop").invoke(recording); //$NON-NLS-1$
+			recordingClass.getMethod("close").invoke(recording); //$NON-NLS-1$
+			appendParts();
+		} catch (ReflectiveOperationException e) {
+			System.err.println("warning: the flight recording can not be written to " //$NON-NLS-1$
+					+ destination + ": " + getMessage(e)); //$NON-NLS-1$
+		} catch (IOException e) {
+			System.err.println("warning: the flight recording can not be written to " //$NON-NLS-1$
+					+ destination + ": " + e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Appends the chunks of the part files that exist to the recording, then deletes them. The part file of
+	 * an application still running is left as is.
+	 *
+	 * @throws IOException
+	 *             if a part file can not be appended.
+	 */
+	private synchronized void appendParts() throws IOException {
+		for (File part : parts) {
+			if (part.isFile()) {
+				try (OutputStream out = new FileOutputStream(destination, true)) {
+					Files.copy(part.toPath(), out);
+				}
+				Files.delete(part.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Begins the flight recorder event of a phase.
+	 *
+	 * @param phase
+	 *            the phase.
+	 * @return the event, <code>null</code> if there is no flight recorder.
+	 */
+	static Object begin(Phase phase) {
+		if (!isAvailable()) {
+			return null;
+		}
+		try {
+			final Object event = newEventMethod.invoke(factories.get(phase));
+			beginMethod.invoke(event);
+			return event;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Ends and commits a flight recorder event.
+	 *
+	 * @param event
+	 *            the event returned by {@link #begin(Phase)}, may be <code>null</code>.
+	 * @param detail
+	 *            what the phase has worked on, may be <code>null</code>.
+	 */
+	static void commit(Object event, String detail) {
+		if (event == null) {
+			return;
+		}
+		try {
+			endMethod.invoke(event);
+			setMethod.invoke(event, Integer.valueOf(0), detail);
+			commitMethod.invoke(event);
+		} catch (ReflectiveOperationException e) {
+			// The event is lost, the command goes on
+		}
+	}
+
+	/**
+	 * Tells whether the JVM has a flight recorder, creating the event types of the phases the first time.
+	 *
+	 * @return <code>true</code> if the events of the phases are recorded.
+	 */
+	private static synchronized boolean isAvailable() {
+		if (factories == null) {
+			factories = new EnumMap<Phase, Object>(Phase.class);
+			try {
+				final Class<?> recorderClass = loadClass("FlightRecorder"); //$NON-NLS-1$
+				final Object available = recorderClass.getMethod("isAvailable").invoke(null); //$NON-NLS-1$
+				if (Boolean.TRUE.equals(available)) {
+					createEventTypes();
+				}
+			} catch (ReflectiveOperationException e) {
+				factories.clear();
+			} catch (LinkageError e) {
+				factories.clear();
+			}
+		}
+		return !factories.isEmpty();
+	}
+
+	/**
+	 * Creates the event type of each phase.
+	 *
+	 * @throws ReflectiveOperationException
+	 *             if the flight recorder API is missing.
+	 */
+	private static void createEventTypes() throws ReflectiveOperationException {
+		final Class<?> annotationClass = loadClass("AnnotationElement"); //$NON-NLS-1$
+		final Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+		final Constructor<?> field = loadClass("ValueDescriptor").getConstructor(Class.class, //$NON-NLS-1$
+				String.class);
+		final Class<?> factoryClass = loadClass("EventFactory"); //$NON-NLS-1$
+		final Method create = factoryClass.getMethod("create", List.class, List.class); //$NON-NLS-1$
+		final Class<?> eventClass = loadClass("Event"); //$NON-NLS-1$
+		newEventMethod = factoryClass.getMethod("newEvent"); //$NON-NLS-1$
+		beginMethod = eventClass.getMethod("begin"); //$NON-NLS-1$
+		endMethod = eventClass.getMethod("end"); //$NON-NLS-1$
+		setMethod = eventClass.getMethod("set", int.class, Object.class); //$NON-NLS-1$
+		commitMethod = eventClass.getMethod("commit"); //$NON-NLS-1$
+
+		final List<Object> fields = Collections.singletonList(field.newInstance(String.class, DETAIL_FIELD));
+		for (Phase phase : Phase.values()) {
+			final List<Object> annotations = Arrays.asList(
+					annotation.newInstance(loadClass("Name"), EVENT_TYPE_PREFIX //$NON-NLS-1$
+							+ phase.getLabel().replace(" ", "")), //$NON-NLS-1$ //$NON-NLS-2$
+					annotation.newInstance(loadClass("Label"), phase.getLabel()), //$NON-NLS-1$
+					annotation.newInstance(loadClass("Description"), phase.getDescription()), //$NON-NLS-1$
+					annotation.newInstance(loadClass("Category"), CATEGORY)); //$NON-NLS-1$
+			factories.put(phase, create.invoke(null, annotations, fields));
+		}
+	}
+
+	/**
+	 * Loads a class of the flight recorder API. The system class loader is used since the API is not
+	 * imported by the bundle.
+	 *
+	 * @param simpleName
+	 *            simple name of the class.
+	 * @return the class.
+	 * @throws ClassNotFoundException
+	 *             if the class does not exist in this JVM.
+	 */
+	private static Class<?> loadClass(String simpleName) throws ClassNotFoundException {
+		return Class.forName(JFR_PACKAGE + simpleName, true, ClassLoader.getSystemClassLoader());
+	}
+
+	/**
+	 * Gets the message of a reflective operation failure.
+	 *
+	 * @param e
+	 *            the failure.
+	 * @return the message of its cause if it has been thrown by the invoked method.
+	 */
+	private static String getMessage(ReflectiveOperationException e) {
+		if (e instanceof InvocationTargetException && e.getCause() != null) {
+			return e.getCause().getMessage();
+		}
+		return e.getMessage();
+	}
+}
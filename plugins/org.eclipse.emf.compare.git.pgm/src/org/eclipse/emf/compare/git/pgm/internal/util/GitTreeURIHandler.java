@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.resource.impl.URIHandlerImpl;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * {@link org.eclipse.emf.ecore.resource.URIHandler} that reads the resources of the work tree of a
+ * repository from the blobs of a given tree.
+ * <p>
+ * Blobs are opened with {@link ObjectLoader#openStream()} so that the XML parser reads large objects
+ * directly from the object database; they are never materialized as a byte array unless they are smaller
+ * than the configured <code>core.streamFileThreshold</code>. Both file URIs and platform resource URIs are
+ * handled, as long as they designate a file of the work tree. Resources are read-only.
+ * </p>
+ */
+public class GitTreeURIHandler extends URIHandlerImpl {
+
+	/** Repository holding the tree. */
+	private final Repository repo;
+
+	/** Id of the tree from which the resources are read. */
+	private ObjectId treeId;
+
+	/** Work tree of the repository. */
+	private final IPath workTree;
+
+	/** Blob ids already looked up, by repository path. */
+	private final Map<String, ObjectId> blobIds = new HashMap<String, ObjectId>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param repo
+	 *            repository holding the tree.
+	 * @param treeId
+	 *            id of the tree from which the resources are read.
+	 */
+	public GitTreeURIHandler(Repository repo, ObjectId treeId) {
+		this.repo = repo;
+		this.treeId = treeId.copy();
+		this.workTree = new org.eclipse.core.runtime.Path(repo.getWorkTree().getAbsolutePath());
+	}
+
+	/**
+	 * Gets the id of the tree from which the resources are read.
+	 *
+	 * @return the id of the tree.
+	 */
+	public ObjectId getTreeId() {
+		synchronized (blobIds) {
+			return treeId;
+		}
+	}
+
+	/**
+	 * Switches to another tree. The resources already loaded are left untouched, it is up to the caller to
+	 * unload the ones that differ between both trees.
+	 *
+	 * @param newTreeId
+	 *            id of the tree from which the resources are read from now on.
+	 */
+	public void setTreeId(ObjectId newTreeId) {
+		synchronized (blobIds) {
+			if (!treeId.equals(newTreeId)) {
+				treeId = newTreeId.copy();
+				blobIds.clear();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Handles any file or platform resource URI of the work tree of the repository.
+	 * </p>
+	 */
+	@Override
+	public boolean canHandle(URI uri) {
+		return toRepositoryPath(uri) != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InputStream createInputStream(URI uri, Map<?, ?> options) throws IOException {
+		final String path = toRepositoryPath(uri);
+		final ObjectId blobId = getBlobId(path);
+		if (blobId == null) {
+			throw new IOException("No blob for " + path + " in tree " + getTreeId().name()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		final ObjectLoader loader = repo.open(blobId, Constants.OBJ_BLOB);
+		if (options != null) {
+			Object response = options.get(URIConverter.OPTION_RESPONSE);
+			if (response instanceof Map<?, ?>) {
+				@SuppressWarnings("unchecked")
+				Map<Object, Object> responseMap = (Map<Object, Object>)response;
+				responseMap.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, Long.valueOf(0));
+			}
+		}
+		return new BufferedInputStream(loader.openStream());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Revisions are read-only.
+	 * </p>
+	 */
+	@Override
+	public OutputStream createOutputStream(URI uri, Map<?, ?> options) throws IOException {
+		throw new IOException("Read-only revision: " + uri); //$NON-NLS-1$
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Revisions are read-only.
+	 * </p>
+	 */
+	@Override
+	public void delete(URI uri, Map<?, ?> options) throws IOException {
+		throw new IOException("Read-only revision: " + uri); //$NON-NLS-1$
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean exists(URI uri, Map<?, ?> options) {
+		try {
+			return getBlobId(toRepositoryPath(uri)) != null;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, ?> getAttributes(URI uri, Map<?, ?> options) {
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+		attributes.put(URIConverter.ATTRIBUTE_READ_ONLY, Boolean.TRUE);
+		return attributes;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Revisions are read-only.
+	 * </p>
+	 */
+	@Override
+	public void setAttributes(URI uri, Map<String, ?> attributes, Map<?, ?> options) throws IOException {
+		throw new IOException("Read-only revision: " + uri); //$NON-NLS-1$
+	}
+
+	/**
+	 * Gets the id of the blob of the given path in the tree.
+	 *
+	 * @param path
+	 *            a repository path.
+	 * @return the blob id or <code>null</code> if the tree does not hold a file at this path.
+	 * @throws IOException
+	 *             if the tree can not be read.
+	 */
+	public ObjectId getBlobId(String path) throws IOException {
+		if (path == null) {
+			return null;
+		}
+		synchronized (blobIds) {
+			if (blobIds.containsKey(path)) {
+				return blobIds.get(path);
+			}
+			ObjectId blobId = null;
+			try (ObjectReader reader = repo.newObjectReader();
+					TreeWalk walk = TreeWalk.forPath(reader, path, treeId)) {
+				if (walk != null && (walk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+					blobId = walk.getObjectId(0);
+				}
+			}
+			blobIds.put(path, blobId);
+			return blobId;
+		}
+	}
+
+	/**
+	 * Converts a URI to a path in the repository.
+	 *
+	 * @param uri
+	 *            a file or platform resource URI.
+	 * @return the path, relative to the work tree and with '/' as separator, or <code>null</code> if the URI
+	 *         does not designate a file of the work tree.
+	 */
+	public String toRepositoryPath(URI uri) {
+		IPath location = null;
+		if (uri.isFile()) {
+			location = new org.eclipse.core.runtime.Path(new File(uri.toFileString()).getAbsolutePath());
+		} else if (uri.isPlatformResource() && uri.segmentCount() > 2) {
+			IFile file = ResourcesPlugin.getWorkspace().getRoot().getFile(
+					new org.eclipse.core.runtime.Path(uri.toPlatformString(true)));
+			location = file.getLocation();
+		}
+		if (location == null || !workTree.isPrefixOf(location) || workTree.equals(location)) {
+			return null;
+		}
+		return location.makeRelativeTo(workTree).toPortableString();
+	}
+}
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.util;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -21,6 +22,8 @@ import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.RevWalkUtils;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
 
 /**
  * Util class for JGit/EGit.
@@ -32,6 +35,14 @@ public final class GitUtils {
 	/** Short commit ID length. */
 	public static final int SHORT_REV_COMMIT_ID_LENGTH = 7;
 
+	/** Name of the folder, in the Git directory, holding the data persisted by the logical commands. */
+	public static final String DATA_FOLDER = "emfcompare"; //$NON-NLS-1$
+
+	/** Names of the rebase state directories, relative to the git directory. */
+	private static final String[] REBASE_STATE_DIRECTORIES = {"rebase-merge", //$NON-NLS-1$
+			"rebase-apply", //$NON-NLS-1$
+	};
+
 	/**
 	 * Private constructor.
 	 */
@@ -59,6 +70,29 @@ public final class GitUtils {
 		}
 	}
 
+	/**
+	 * Gets the best common ancestor of two commits.
+	 * 
+	 * @param repo
+	 *            Git repository of the selected commits.
+	 * @param commit1
+	 *            first commit.
+	 * @param commit2
+	 *            second commit.
+	 * @return the merge base of both commits or <code>null</code> if they do not share any history.
+	 * @throws IOException
+	 *             propagates JGit exceptions.
+	 */
+	public static RevCommit getMergeBase(Repository repo, ObjectId commit1, ObjectId commit2)
+			throws IOException {
+		try (RevWalk revWalk = new RevWalk(repo)) {
+			revWalk.setRevFilter(RevFilter.MERGE_BASE);
+			revWalk.markStart(revWalk.parseCommit(commit1));
+			revWalk.markStart(revWalk.parseCommit(commit2));
+			return revWalk.next();
+		}
+	}
+
 	/**
 	 * Creates a one line description of a commit.
 	 * <p>
@@ -98,4 +132,62 @@ public final class GitUtils {
 		return null;
 	}
 
+	/**
+	 * Gets a folder of the EMF Compare data directory of a repository, creating it if needed.
+	 * <p>
+	 * The data directory is located in the Git directory so that it is shared by all the logical commands
+	 * run against the repository and never shows up in the work tree.
+	 * </p>
+	 * 
+	 * @param repo
+	 *            {@link Repository} (Should not be <code>null</code>).
+	 * @param name
+	 *            name of the folder.
+	 * @return the folder.
+	 * @throws IOException
+	 *             if the folder can not be created.
+	 */
+	public static File getDataDirectory(Repository repo, String name) throws IOException {
+		File folder = new File(new File(repo.getDirectory(), DATA_FOLDER), name);
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			throw new IOException("Unable to create the folder " + folder.getAbsolutePath()); //$NON-NLS-1$
+		}
+		return folder;
+	}
+
+	/**
+	 * Gets the rebase state directory of a repository.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the rebase state directory or <code>null</code> if the repository is not rebasing.
+	 */
+	public static File getRebaseStateDirectory(Repository repo) {
+		for (String name : REBASE_STATE_DIRECTORIES) {
+			File stateDirectory = new File(repo.getDirectory(), name);
+			if (stateDirectory.isDirectory()) {
+				return stateDirectory;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Configures the object database caches of JGit from the configuration of the repository.
+	 * <p>
+	 * JGit only honors settings such as <code>core.streamFileThreshold</code> or
+	 * <code>core.packedGitLimit</code> once they have been installed. Objects bigger than
+	 * <code>core.streamFileThreshold</code> are then streamed from the packs instead of being loaded in
+	 * memory when they are opened with {@link org.eclipse.jgit.lib.ObjectLoader#openStream()}.
+	 * </p>
+	 * 
+	 * @param repo
+	 *            {@link Repository} (Should not be <code>null</code>).
+	 */
+	public static void installWindowCacheConfig(Repository repo) {
+		WindowCacheConfig windowCacheConfig = new WindowCacheConfig();
+		windowCacheConfig.fromConfig(repo.getConfig());
+		windowCacheConfig.install();
+	}
+
 }
@@ -0,0 +1,524 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import com.google.common.base.Predicate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.compare.CompareFactory;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.Match;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.emf.compare.scope.FilterComparisonScope;
+import org.eclipse.emf.compare.scope.IComparisonScope;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Excludes from a comparison scope the containment subtrees that are identical on all its sides, so that
+ * neither the match, the diff, the equivalence nor the conflict phase of EMF Compare walks them.
+ * <p>
+ * A structural hash is computed bottom-up for each element of each side: its class, its ID, the values of
+ * its attributes, the URIs of the targets of its references and the hashes of its children. An element is
+ * excluded, along with all its contents, when the element at the same location (same resource, same
+ * containment features and indices from the root) on each other side has the same hash. The references to
+ * an excluded element are still matched by EMF Compare, which compares the URIs of the elements that are
+ * out of the scope.
+ * </p>
+ * <p>
+ * Once the comparison is done, {@link #addMatches(IComparisonScope, Comparison)} matches the excluded
+ * elements with the elements at the same location on the other sides, so that the comparison holds the same
+ * matches as if the scope had not been filtered. The filter can be disabled by setting the
+ * <code>emfcompare.subtreeHashing</code> configuration of the repository to <code>false</code>.
+ * </p>
+ */
+public final class IdenticalSubtreeFilter {
+
+	/** Git configuration key enabling the filter. */
+	public static final String CONFIG_ENABLED = "subtreeHashing"; //$NON-NLS-1$
+
+	/** Algorithm of the structural hashes. */
+	private static final String HASH_ALGORITHM = "SHA-1"; //$NON-NLS-1$
+
+	/** Separates the parts of a structural hash. */
+	private static final byte SEPARATOR = 0;
+
+	/**
+	 * Roots of the excluded subtrees of the filtered scopes that have not been matched yet: the left, right
+	 * and origin elements, the origin one being <code>null</code> for a two-way comparison.
+	 */
+	private final Map<IComparisonScope, List<EObject[]>> excludedRoots;
+
+	/**
+	 * Gets the filter to apply to the comparisons of a repository.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the filter or <code>null</code> if it has been disabled in the configuration of the
+	 *         repository.
+	 */
+	public static IdenticalSubtreeFilter forRepository(Repository repo) {
+		if (!repo.getConfig().getBoolean(BinaryResourceCache.CONFIG_SECTION, CONFIG_ENABLED, true)) {
+			return null;
+		}
+		return new IdenticalSubtreeFilter();
+	}
+
+	/**
+	 * Constructor.
+	 */
+	public IdenticalSubtreeFilter() {
+		excludedRoots = new WeakHashMap<IComparisonScope, List<EObject[]>>();
+	}
+
+	/**
+	 * Excludes from a comparison scope the subtrees that are identical on all its sides. Scopes which
+	 * content can not be filtered are left untouched.
+	 *
+	 * @param scope
+	 *            the comparison scope, which {@link EObject} content filter is replaced.
+	 * @return the number of elements excluded from the scope.
+	 */
+	public int apply(IComparisonScope scope) {
+		if (!(scope instanceof FilterComparisonScope)) {
+			return 0;
+		}
+		final List<Resource> leftResources = getResources(scope, scope.getLeft());
+		final Map<String, Node> right = hash(getResources(scope, scope.getRight()));
+		final Map<String, Node> origin;
+		if (scope.getOrigin() != null) {
+			origin = hash(getResources(scope, scope.getOrigin()));
+		} else {
+			origin = null;
+		}
+		final Map<String, Node> left = hash(leftResources);
+
+		final Set<EObject> excluded = new HashSet<EObject>();
+		final List<EObject[]> roots = new ArrayList<EObject[]>();
+		for (Resource resource : leftResources) {
+			final List<EObject> contents = resource.getContents();
+			for (int i = 0; i < contents.size(); i++) {
+				exclude(contents.get(i), getRootLocation(resource, i), left, right, origin, excluded, roots);
+			}
+		}
+		if (!excluded.isEmpty()) {
+			excludedRoots.put(scope, roots);
+			((FilterComparisonScope)scope).setEObjectContentFilter(new Predicate<EObject>() {
+				public boolean apply(EObject input) {
+					return !excluded.contains(input);
+				}
+			});
+		}
+		return excluded.size();
+	}
+
+	/**
+	 * Excludes an element of the left side if its subtree is identical on all the sides, or looks for
+	 * identical subtrees in its contents otherwise.
+	 *
+	 * @param object
+	 *            the element of the left side.
+	 * @param location
+	 *            the location of the element.
+	 * @param left
+	 *            the elements of the left side and their hashes, by location.
+	 * @param right
+	 *            the elements of the right side and their hashes, by location.
+	 * @param origin
+	 *            the elements of the origin side and their hashes, by location, <code>null</code> for a
+	 *            two-way comparison.
+	 * @param excluded
+	 *            the elements excluded from the scope.
+	 * @param roots
+	 *            the roots of the excluded subtrees on each side.
+	 */
+	private static void exclude(EObject object, String location, Map<String, Node> left,
+			Map<String, Node> right, Map<String, Node> origin, Set<EObject> excluded, List<EObject[]> roots) {
+		final Node leftNode = left.get(location);
+		final Node rightNode = right.get(location);
+		final Node originNode;
+		if (origin != null) {
+			originNode = origin.get(location);
+		} else {
+			originNode = null;
+		}
+		if (leftNode != null && leftNode.isIdentical(rightNode)
+				&& (origin == null || leftNode.isIdentical(originNode))) {
+			excludeAll(object, excluded);
+			excludeAll(rightNode.object, excluded);
+			if (originNode != null) {
+				excludeAll(originNode.object, excluded);
+				roots.add(new EObject[] {object, rightNode.object, originNode.object });
+			} else {
+				roots.add(new EObject[] {object, rightNode.object, null });
+			}
+			return;
+		}
+		for (EReference containment : getContainments(object)) {
+			final List<?> children = getValues(object, containment);
+			for (int i = 0; i < children.size(); i++) {
+				final Object child = children.get(i);
+				if (child instanceof EObject && !((EObject)child).eIsProxy()) {
+					exclude((EObject)child, getLocation(location, containment, i), left, right, origin,
+							excluded, roots);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds to the comparison of a filtered scope the matches of the elements excluded from the scope. Each
+	 * element is matched with the elements at the same location on the other sides, under the match of its
+	 * container.
+	 *
+	 * @param scope
+	 *            the scope, which has been filtered by {@link #apply(IComparisonScope)}.
+	 * @param comparison
+	 *            the comparison of the scope.
+	 * @return the number of matches added to the comparison.
+	 */
+	public int addMatches(IComparisonScope scope, Comparison comparison) {
+		final List<EObject[]> roots = excludedRoots.remove(scope);
+		if (roots == null) {
+			return 0;
+		}
+		int count = 0;
+		for (EObject[] root : roots) {
+			final EObject container = root[0].eContainer();
+			Match containerMatch = null;
+			if (container != null) {
+				containerMatch = comparison.getMatch(container);
+			}
+			if (containerMatch != null) {
+				count += addMatch(containerMatch.getSubmatches(), root[0], root[1], root[2]);
+			} else {
+				count += addMatch(comparison.getMatches(), root[0], root[1], root[2]);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Matches identical subtrees, element by element.
+	 *
+	 * @param matches
+	 *            the matches to which the match of the roots is added.
+	 * @param left
+	 *            the root of the left subtree.
+	 * @param right
+	 *            the root of the right subtree.
+	 * @param origin
+	 *            the root of the origin subtree, <code>null</code> for a two-way comparison.
+	 * @return the number of matches created.
+	 */
+	private static int addMatch(List<Match> matches, EObject left, EObject right, EObject origin) {
+		final Match match = CompareFactory.eINSTANCE.createMatch();
+		match.setLeft(left);
+		match.setRight(right);
+		match.setOrigin(origin);
+		matches.add(match);
+		int count = 1;
+		// The subtrees have the same structure since they have the same hash
+		for (EReference containment : getContainments(left)) {
+			final List<?> leftChildren = getValues(left, containment);
+			final List<?> rightChildren = getValues(right, containment);
+			List<?> originChildren = null;
+			if (origin != null) {
+				originChildren = getValues(origin, containment);
+			}
+			for (int i = 0; i < leftChildren.size(); i++) {
+				final Object child = leftChildren.get(i);
+				if (child instanceof EObject && !((EObject)child).eIsProxy()) {
+					EObject originChild = null;
+					if (originChildren != null) {
+						originChild = (EObject)originChildren.get(i);
+					}
+					count += addMatch(match.getSubmatches(), (EObject)child, (EObject)rightChildren.get(i),
+							originChild);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Adds an element and all its contents to a set.
+	 *
+	 * @param object
+	 *            the element.
+	 * @param excluded
+	 *            the set.
+	 */
+	private static void excludeAll(EObject object, Set<EObject> excluded) {
+		excluded.add(object);
+		final Iterator<EObject> contents = object.eAllContents();
+		while (contents.hasNext()) {
+			excluded.add(contents.next());
+		}
+	}
+
+	/**
+	 * Gets the resources of a side of a comparison scope.
+	 *
+	 * @param scope
+	 *            the comparison scope.
+	 * @param side
+	 *            the side.
+	 * @return the resources covered by the scope on this side.
+	 */
+	private static List<Resource> getResources(IComparisonScope scope, Notifier side) {
+		final List<Resource> resources = new ArrayList<Resource>();
+		if (side instanceof ResourceSet) {
+			final Iterator<? extends Resource> covered = scope.getCoveredResources((ResourceSet)side);
+			while (covered.hasNext()) {
+				resources.add(covered.next());
+			}
+		} else if (side instanceof Resource) {
+			resources.add((Resource)side);
+		}
+		return resources;
+	}
+
+	/**
+	 * Computes the structural hashes of the elements of some resources.
+	 *
+	 * @param resources
+	 *            the resources.
+	 * @return the elements and their hashes, by location.
+	 */
+	private static Map<String, Node> hash(Collection<Resource> resources) {
+		final Map<String, Node> nodes = new HashMap<String, Node>();
+		final MessageDigest digest = newDigest();
+		for (Resource resource : resources) {
+			final List<EObject> roots = resource.getContents();
+			for (int i = 0; i < roots.size(); i++) {
+				hash(roots.get(i), getRootLocation(resource, i), digest, nodes);
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * Computes the structural hash of an element and, first, of its children.
+	 *
+	 * @param object
+	 *            the element.
+	 * @param location
+	 *            the location of the element.
+	 * @param digest
+	 *            the digest, reset once the hash is computed.
+	 * @param nodes
+	 *            the elements and their hashes, by location, to which the element and its contents are
+	 *            added.
+	 * @return the structural hash of the element.
+	 */
+	private static byte[] hash(EObject object, String location, MessageDigest digest,
+			Map<String, Node> nodes) {
+		// The hashes of the children are needed before the one of their container
+		final Map<Object, byte[]> childHashes = new HashMap<Object, byte[]>();
+		for (EReference containment : getContainments(object)) {
+			final List<?> children = getValues(object, containment);
+			for (int i = 0; i < children.size(); i++) {
+				final Object child = children.get(i);
+				// The unresolved children are hashed by their URI
+				if (child instanceof EObject && !((EObject)child).eIsProxy()) {
+					childHashes.put(child, hash((EObject)child, getLocation(location, containment, i),
+							digest, nodes));
+				}
+			}
+		}
+
+		update(digest, EcoreUtil.getURI(object.eClass()).toString());
+		final Resource resource = object.eResource();
+		if (resource instanceof XMLResource) {
+			update(digest, ((XMLResource)resource).getID(object));
+		}
+		for (EStructuralFeature feature : object.eClass().getEAllStructuralFeatures()) {
+			final boolean containment = feature instanceof EReference
+					&& ((EReference)feature).isContainment();
+			// The transient contents are compared as well
+			if (feature.isDerived() || (feature.isTransient() && !containment) || !object.eIsSet(feature)) {
+				continue;
+			}
+			update(digest, feature.getName());
+			for (Object value : getValues(object, feature)) {
+				if (feature instanceof EAttribute) {
+					update(digest, EcoreUtil.convertToString(((EAttribute)feature).getEAttributeType(),
+							value));
+				} else if (containment && childHashes.containsKey(value)) {
+					digest.update(childHashes.get(value));
+				} else if (value instanceof EObject) {
+					update(digest, EcoreUtil.getURI((EObject)value).toString());
+				} else {
+					update(digest, String.valueOf(value));
+				}
+			}
+		}
+		final byte[] hash = digest.digest();
+		nodes.put(location, new Node(object, hash));
+		return hash;
+	}
+
+	/**
+	 * Gets the values of a feature of an element, without resolving the proxies.
+	 *
+	 * @param object
+	 *            the element.
+	 * @param feature
+	 *            the feature.
+	 * @return the values.
+	 */
+	private static List<?> getValues(EObject object, EStructuralFeature feature) {
+		final Object value = object.eGet(feature, false);
+		if (feature.isMany()) {
+			return (List<?>)value;
+		}
+		return Collections.singletonList(value);
+	}
+
+	/**
+	 * Gets the containment features of an element which contents are hashed.
+	 *
+	 * @param object
+	 *            the element.
+	 * @return the containment features that are not derived.
+	 */
+	private static List<EReference> getContainments(EObject object) {
+		final List<EReference> containments = new ArrayList<EReference>();
+		for (EReference containment : object.eClass().getEAllContainments()) {
+			if (!containment.isDerived()) {
+				containments.add(containment);
+			}
+		}
+		return containments;
+	}
+
+	/**
+	 * Gets the location of a root of a resource. Together with {@link #getLocation(String, EReference, int)}
+	 * it locates an element by the URI of its resource and the containment features and indices from its
+	 * root. Contrary to its URI fragment, the location does not rely on the ID of the element so that an
+	 * element moved within its container is never excluded.
+	 *
+	 * @param resource
+	 *            the resource.
+	 * @param index
+	 *            the index of the root in the contents of the resource.
+	 * @return the location of the root.
+	 */
+	private static String getRootLocation(Resource resource, int index) {
+		return resource.getURI().toString() + '#' + index;
+	}
+
+	/**
+	 * Gets the location of a child of an element.
+	 *
+	 * @param location
+	 *            the location of the element.
+	 * @param containment
+	 *            the containment feature holding the child.
+	 * @param index
+	 *            the index of the child in the values of the feature.
+	 * @return the location of the child.
+	 */
+	private static String getLocation(String location, EReference containment, int index) {
+		if (containment.isMany()) {
+			return location + '/' + containment.getName() + '.' + index;
+		}
+		return location + '/' + containment.getName();
+	}
+
+	/**
+	 * Updates a digest with a string followed by a separator.
+	 *
+	 * @param digest
+	 *            the digest.
+	 * @param value
+	 *            the string, may be <code>null</code>.
+	 */
+	private static void update(MessageDigest digest, String value) {
+		if (value != null) {
+			digest.update(value.getBytes(StandardCharsets.UTF_8));
+		}
+		digest.update(SEPARATOR);
+	}
+
+	/**
+	 * Creates the digest computing the structural hashes.
+	 *
+	 * @return the digest.
+	 */
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(HASH_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * An element and its structural hash.
+	 */
+	private static final class Node {
+
+		/** The element. */
+		private final EObject object;
+
+		/** The structural hash of the element. */
+		private final byte[] hash;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param object
+		 *            the element.
+		 * @param hash
+		 *            the structural hash of the element.
+		 */
+		Node(EObject object, byte[] hash) {
+			this.object = object;
+			this.hash = hash;
+		}
+
+		/**
+		 * Tells whether another node holds an identical subtree.
+		 *
+		 * @param other
+		 *            the other node, may be <code>null</code>.
+		 * @return <code>true</code> if the other node has the same structural hash.
+		 */
+		boolean isIdentical(Node other) {
+			return other != null && Arrays.equals(hash, other.hash);
+		}
+	}
+}
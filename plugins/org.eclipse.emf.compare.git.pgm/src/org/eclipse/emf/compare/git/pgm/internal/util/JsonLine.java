@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+/**
+ * Builder of a JSON object written on a single line, as in the JSON lines format. The members are written in
+ * the order they are added.
+ */
+public final class JsonLine {
+
+	/** Hexadecimal digits of the escaped control characters. */
+	private static final String HEX_DIGITS = "0123456789abcdef"; //$NON-NLS-1$
+
+	/** Number of the first character that is not a control character. */
+	private static final int FIRST_PRINTABLE = 0x20;
+
+	/** Members written so far. */
+	private final StringBuilder members = new StringBuilder();
+
+	/**
+	 * Adds a string member, skipped if the value is <code>null</code>.
+	 *
+	 * @param name
+	 *            name of the member.
+	 * @param value
+	 *            value of the member.
+	 * @return this
+	 */
+	public JsonLine add(String name, String value) {
+		if (value != null) {
+			appendName(name);
+			appendString(members, value);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds a number member.
+	 *
+	 * @param name
+	 *            name of the member.
+	 * @param value
+	 *            value of the member.
+	 * @return this
+	 */
+	public JsonLine add(String name, long value) {
+		appendName(name);
+		members.append(value);
+		return this;
+	}
+
+	/**
+	 * Adds a decimal number member, written as <code>null</code> if the value is not finite.
+	 *
+	 * @param name
+	 *            name of the member.
+	 * @param value
+	 *            value of the member.
+	 * @return this
+	 */
+	public JsonLine add(String name, double value) {
+		appendName(name);
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			members.append("null"); //$NON-NLS-1$
+		} else {
+			members.append(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds a boolean member.
+	 *
+	 * @param name
+	 *            name of the member.
+	 * @param value
+	 *            value of the member.
+	 * @return this
+	 */
+	public JsonLine add(String name, boolean value) {
+		appendName(name);
+		members.append(value);
+		return this;
+	}
+
+	/**
+	 * Returns the JSON object.
+	 *
+	 * @return the JSON object, without line separator.
+	 */
+	@Override
+	public String toString() {
+		return '{' + members.toString() + '}';
+	}
+
+	/**
+	 * Appends the name of a new member.
+	 *
+	 * @param name
+	 *            the name.
+	 */
+	private void appendName(String name) {
+		if (members.length() > 0) {
+			members.append(',');
+		}
+		appendString(members, name);
+		members.append(':');
+	}
+
+	/**
+	 * Appends a JSON string.
+	 *
+	 * @param builder
+	 *            the builder to append to.
+	 * @param value
+	 *            the unescaped value of the string.
+	 */
+	private static void appendString(StringBuilder builder, String value) {
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					builder.append("\\\""); //$NON-NLS-1$
+					break;
+				case '\\':
+					builder.append("\\\\"); //$NON-NLS-1$
+					break;
+				case '\n':
+					builder.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					builder.append("\\r"); //$NON-NLS-1$
+					break;
+				case '\t':
+					builder.append("\\t"); //$NON-NLS-1$
+					break;
+				default:
+					if (c < FIRST_PRINTABLE) {
+						builder.append("\\u00").append(HEX_DIGITS.charAt(c >> 4)).append( //$NON-NLS-1$
+								HEX_DIGITS.charAt(c & 0xf));
+					} else {
+						builder.append(c);
+					}
+					break;
+			}
+		}
+		builder.append('"');
+	}
+}
@@ -10,16 +10,23 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.util;
 
+import static org.eclipse.emf.compare.git.pgm.internal.Options.JFR_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.METRICS_PART_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.PROGRESS_LOG_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.Options.SHOW_STACK_TRACE_OPT;
 
 import com.google.common.base.Preconditions;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
@@ -34,6 +41,9 @@ import org.eclipse.jgit.util.io.ThrowingPrintWriter;
  */
 public class LogicalApplicationLauncher {
 
+	/** Prefix of the line printed by an application that keeps running once its return code is known. */
+	public static final String DETACH_MARKER = "emfcompare-detach:"; //$NON-NLS-1$
+
 	/** VM Args option. */
 	private static final String VMARGS_OPTION = "-D"; //$NON-NLS-1$
 
@@ -58,6 +68,9 @@ public class LogicalApplicationLauncher {
 	/** Show stack trace option. */
 	private boolean showStackTrace;
 
+	/** File where the application appends the events of its setup, may be <code>null</code>. */
+	private File progressLog;
+
 	/** Path of the repository. */
 	private String repositoryPath;
 
@@ -168,6 +181,18 @@ public class LogicalApplicationLauncher {
 		return this;
 	}
 
+	/**
+	 * {@link #progressLog}.
+	 * 
+	 * @param file
+	 *            {@link #progressLog}
+	 * @return this
+	 */
+	public LogicalApplicationLauncher setProgressLog(File file) {
+		this.progressLog = file;
+		return this;
+	}
+
 	/**
 	 * Adds a new attribute to {@link #attributes}.
 	 * 
@@ -212,6 +237,26 @@ public class LogicalApplicationLauncher {
 			command.add(SHOW_STACK_TRACE_OPT);
 		}
 
+		// Propagates the progress log option so that the application appends the events of its setup.
+		if (progressLog != null) {
+			command.add(PROGRESS_LOG_OPT);
+			command.add(progressLog.getAbsolutePath());
+		}
+
+		// The application records to a part of the flight recording of the command, if any
+		final FlightRecording recording = FlightRecording.getCurrent();
+		if (recording != null) {
+			command.add(JFR_OPT);
+			command.add(recording.newPart().getAbsolutePath());
+		}
+
+		// The application writes its metrics to a part of the metrics of the command, if any
+		final Metrics metrics = Metrics.getCurrent();
+		if (metrics != null) {
+			command.add(METRICS_PART_OPT);
+			command.add(metrics.newPart().getAbsolutePath());
+		}
+
 		command.add(repositoryPath);
 
 		command.add(setupFilePath);
@@ -233,8 +278,26 @@ public class LogicalApplicationLauncher {
 			command.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=8123"); //$NON-NLS-1$
 		}
 
+		final PhaseEvent launchEvent = Phase.LAUNCH.begin(applicationName);
+		try {
+			return run(command);
+		} finally {
+			launchEvent.end();
+		}
+	}
+
+	/**
+	 * Runs the application and forwards its output until it ends or detaches.
+	 * 
+	 * @param command
+	 *            the command line of the application.
+	 * @return the return code of the application.
+	 * @throws Die
+	 *             if the process fail to start or is interrupted.
+	 */
+	private Integer run(List<String> command) throws Die {
 		ProcessBuilder builder = new ProcessBuilder(command);
-		Process process;
+		final Process process;
 		try {
 			process = builder.start();
 		} catch (IOException e) {
@@ -243,14 +306,34 @@ public class LogicalApplicationLauncher {
 
 		// output both stdout and stderr data from proc to stdout of this
 		// process
-		StreamGobbler errorGobbler = new StreamGobbler(process.getErrorStream(), out);
-		StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream(), out);
+		final CountDownLatch done = new CountDownLatch(1);
+		StreamGobbler errorGobbler = new StreamGobbler(process.getErrorStream(), out, null);
+		StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream(), out, done);
 		new Thread(errorGobbler).start();
 		new Thread(outputGobbler).start();
+		Thread waiter = new Thread(new Runnable() {
+			public void run() {
+				try {
+					process.waitFor();
+				} catch (InterruptedException e) {
+					// The launcher is interrupted as well
+				}
+				done.countDown();
+			}
+		});
+		waiter.setDaemon(true);
+		waiter.start();
 
 		int returnValue;
 		try {
-			returnValue = process.waitFor();
+			done.await();
+			Integer detachedCode = outputGobbler.getDetachedCode();
+			if (detachedCode != null) {
+				// The application keeps running in background
+				returnValue = detachedCode.intValue();
+			} else {
+				returnValue = process.waitFor();
+			}
 		} catch (InterruptedException e) {
 			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
 		}
@@ -258,6 +341,29 @@ public class LogicalApplicationLauncher {
 		return Returns.valueOf(returnValue).code();
 	}
 
+	/**
+	 * Detaches the running application from the launcher: the launcher returns the given code while the
+	 * application keeps running. The standard streams of the application are closed, what it prints
+	 * afterward is discarded.
+	 * 
+	 * @param code
+	 *            the code returned by the launcher.
+	 */
+	public static void detach(Integer code) {
+		System.out.println(DETACH_MARKER + code);
+		System.out.flush();
+		System.out.close();
+		System.err.close();
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				// Discards everything
+			}
+		});
+		System.setOut(discard);
+		System.setErr(discard);
+	}
+
 	/**
 	 * Stream gobbler.
 	 * 
@@ -270,6 +376,12 @@ public class LogicalApplicationLauncher {
 		/** Output {@link java.io.Writer}. */
 		private ThrowingPrintWriter out;
 
+		/** Latch released if the application detaches, may be <code>null</code>. */
+		private CountDownLatch detached;
+
+		/** Return code sent by the application when it has detached. */
+		private volatile Integer detachedCode;
+
 		/**
 		 * Reads everything from is until empty.
 		 * 
@@ -277,10 +389,22 @@ public class LogicalApplicationLauncher {
 		 *            the stream to read.
 		 * @param out
 		 *            the writer to write.
+		 * @param detached
+		 *            latch released if the application detaches, <code>null</code> to ignore detaching.
 		 */
-		StreamGobbler(InputStream is, ThrowingPrintWriter out) {
+		StreamGobbler(InputStream is, ThrowingPrintWriter out, CountDownLatch detached) {
 			this.is = is;
 			this.out = out;
+			this.detached = detached;
+		}
+
+		/**
+		 * Gets the return code sent by the application when it has detached.
+		 * 
+		 * @return the return code or <code>null</code> if the application has not detached.
+		 */
+		Integer getDetachedCode() {
+			return detachedCode;
 		}
 
 		/**
@@ -292,10 +416,20 @@ public class LogicalApplicationLauncher {
 				BufferedReader br = new BufferedReader(isr);
 				String line = null;
 				while ((line = br.readLine()) != null) {
-					out.println(line);
+					if (detached != null && line.startsWith(DETACH_MARKER)) {
+						detachedCode = Integer.valueOf(line.substring(DETACH_MARKER.length()));
+					} else {
+						out.println(line);
+						// Streams the output as it is produced, for instance to a client of the service
+						out.flush();
+					}
 				}
-			} catch (IOException ioe) {
-				ioe.printStackTrace();
+			} catch (IOException | NumberFormatException e) {
+				e.printStackTrace();
+			}
+			if (detachedCode != null) {
+				// The application has closed its output once detached
+				detached.countDown();
 			}
 		}
 	}
@@ -0,0 +1,865 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.eclipse.emf.compare.git.pgm.internal.Options.GIT_DIR_OPT;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.util.FS;
+
+/**
+ * A long-lived service running the logical commands on behalf of clients, such as the steps of a
+ * continuous integration build, that send HTTP requests on the loopback interface.
+ * <p>
+ * A command is requested by a <code>POST</code> on one of the {@link #ENDPOINTS}, such as
+ * <code>/diff</code>, whose body is a JSON object:
+ * </p>
+ * <ul>
+ * <li><code>repository</code>: path to the repository, either its working tree or its git directory;</li>
+ * <li><code>setup</code>: optional path to the setup file, relative to the repository, the setup file of the
+ * service by default;</li>
+ * <li><code>args</code>: optional array of the other arguments of the command.</li>
+ * </ul>
+ * <p>
+ * The response is a stream of JSON lines, sent as they are produced: a <code>queued</code> event giving the
+ * number of requests of the repository to process before, a <code>start</code> event, an
+ * <code>output</code> event for each line the command prints and finally an <code>exit</code> event holding
+ * the return code of the command. A <code>GET</code> on <code>/status</code> lists the repositories and their
+ * number of pending requests.
+ * </p>
+ * <p>
+ * The port of the service and a secret token are written in a state file readable by its owner only, in the
+ * format of the session file of a {@link CommandSession}. Each request has to send the token in an
+ * <code>Authorization: Bearer</code> header and name a loopback host in its <code>Host</code> and, if any,
+ * <code>Origin</code> headers, so that neither the other users of the machine nor the web pages opened in a
+ * browser can run commands. The body of a command has to be sent as <code>application/json</code>.
+ * </p>
+ * <p>
+ * The requests of a repository are processed one after the other, since the commands of a repository share
+ * its workspace, while the requests of different repositories are processed at the same time.
+ * </p>
+ */
+public final class LogicalService implements Closeable {
+
+	/** Endpoints of the service, each of them running the logical command of the same name. */
+	public static final List<String> ENDPOINTS = Collections.unmodifiableList(Arrays.asList(
+			"diff", "merge", //$NON-NLS-1$ //$NON-NLS-2$
+			"cherry-pick", "rebase")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/** Default name of the state file, in the home directory of the user. */
+	public static final String STATE_FILE = ".emfcompare-service"; //$NON-NLS-1$
+
+	/** Path of the status of the service. */
+	private static final String STATUS_PATH = "/status"; //$NON-NLS-1$
+
+	/** Media type of the body of a command. */
+	private static final String JSON_MEDIA_TYPE = "application/json"; //$NON-NLS-1$
+
+	/** Scheme of the <code>Authorization</code> header. */
+	private static final String BEARER_PREFIX = "Bearer "; //$NON-NLS-1$
+
+	/** Loopback host names accepted in the <code>Host</code> and <code>Origin</code> headers. */
+	private static final List<String> LOOPBACK_HOSTS = Arrays.asList(
+			"localhost", "127.0.0.1", "[::1]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	/** Member of a request holding the path to the repository. */
+	private static final String REPOSITORY = "repository"; //$NON-NLS-1$
+
+	/** Member of a request holding the path to the setup file. */
+	private static final String SETUP = "setup"; //$NON-NLS-1$
+
+	/** Member of a request holding the other arguments of the command. */
+	private static final String ARGS = "args"; //$NON-NLS-1$
+
+	/** Member of a response line holding its kind. */
+	private static final String EVENT = "event"; //$NON-NLS-1$
+
+	/** Maximum number of connections waiting to be accepted. */
+	private static final int BACKLOG = 50;
+
+	/** Time, in milliseconds, allowed to a client to send its request. */
+	private static final int REQUEST_TIMEOUT = 30 * 1000;
+
+	/** Number of random bits of the token. */
+	private static final int TOKEN_BITS = 130;
+
+	/** Radix used to write the token. */
+	private static final int TOKEN_RADIX = 32;
+
+	/** The socket on which the service listens. */
+	private final ServerSocket serverSocket;
+
+	/** The state file holding the port and the token. */
+	private final File stateFile;
+
+	/** The token the clients have to send. */
+	private final byte[] token;
+
+	/** Setup file used by the requests that do not give one. */
+	private final File defaultSetupFile;
+
+	/** Threads reading the requests. */
+	private final ExecutorService connections = Executors.newCachedThreadPool();
+
+	/** Queues of the requests by git directory. */
+	private final Map<File, RepositoryQueue> queues = new LinkedHashMap<File, RepositoryQueue>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param serverSocket
+	 *            the socket on which the service listens.
+	 * @param stateFile
+	 *            the state file holding the port and the token.
+	 * @param token
+	 *            the token the clients have to send.
+	 * @param defaultSetupFile
+	 *            setup file used by the requests that do not give one.
+	 */
+	private LogicalService(ServerSocket serverSocket, File stateFile, String token, File defaultSetupFile) {
+		this.serverSocket = serverSocket;
+		this.stateFile = stateFile;
+		this.token = token.getBytes(StandardCharsets.US_ASCII);
+		this.defaultSetupFile = defaultSetupFile;
+	}
+
+	/**
+	 * Runs the logical commands requested to the service.
+	 */
+	public interface RequestHandler {
+
+		/**
+		 * Runs a logical command. Everything printed on the standard streams while running the command,
+		 * including by the threads it starts, is sent to the client.
+		 *
+		 * @param endpoint
+		 *            the endpoint of the request, one of the {@link LogicalService#ENDPOINTS}.
+		 * @param gitDir
+		 *            the git directory of the repository.
+		 * @param setupFile
+		 *            the setup file.
+		 * @param args
+		 *            the other arguments of the command.
+		 * @return the return code of the command.
+		 */
+		Integer run(String endpoint, File gitDir, File setupFile, List<String> args);
+	}
+
+	/**
+	 * Opens a service listening on the loopback interface and writes its state file.
+	 *
+	 * @param port
+	 *            the port, <code>0</code> for any free port.
+	 * @param stateFile
+	 *            the file where the port and the token are written, deleted once the service is closed.
+	 * @param defaultSetupFile
+	 *            setup file used by the requests that do not give one.
+	 * @return the service.
+	 * @throws IOException
+	 *             if the port can not be listened on or the state file written.
+	 */
+	public static LogicalService open(int port, File stateFile, File defaultSetupFile) throws IOException {
+		final ServerSocket serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getByName(null));
+		final String token = new BigInteger(TOKEN_BITS, new SecureRandom()).toString(TOKEN_RADIX);
+		try {
+			final String content = serverSocket.getLocalPort() + " " + token; //$NON-NLS-1$
+			EMFCompareGitPGMUtil.writeOwnerOnlyFile(stateFile, content.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			serverSocket.close();
+			throw e;
+		}
+		return new LogicalService(serverSocket, stateFile.getAbsoluteFile(), token, defaultSetupFile
+				.getAbsoluteFile());
+	}
+
+	/**
+	 * Gets the port on which the service listens.
+	 *
+	 * @return the port.
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Processes the requests until the service is closed. The standard streams are replaced by
+	 * {@link OutputRouter}s so that the output of each command is sent to its own client.
+	 *
+	 * @param handler
+	 *            the handler running the commands.
+	 * @throws IOException
+	 *             if the socket fails.
+	 */
+	public void serve(final RequestHandler handler) throws IOException {
+		OutputRouter.install();
+		while (!serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketException e) {
+				if (serverSocket.isClosed()) {
+					break;
+				}
+				throw e;
+			}
+			try {
+				connections.execute(new Runnable() {
+					public void run() {
+						handle(socket, handler);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// The service is closing
+				closeQuietly(socket);
+			}
+		}
+	}
+
+	/**
+	 * Stops listening and deletes the state file. The requests already queued are still processed.
+	 *
+	 * @throws IOException
+	 *             if the socket can not be closed.
+	 */
+	public void close() throws IOException {
+		stateFile.delete();
+		serverSocket.close();
+		connections.shutdown();
+		synchronized (queues) {
+			for (RepositoryQueue queue : queues.values()) {
+				queue.executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Reads a request and either answers it or queues the command it requests.
+	 *
+	 * @param socket
+	 *            the socket connected to the client.
+	 * @param handler
+	 *            the handler running the commands.
+	 */
+	private void handle(Socket socket, RequestHandler handler) {
+		boolean queued = false;
+		try {
+			socket.setSoTimeout(REQUEST_TIMEOUT);
+			final OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			final Response response = new Response(out);
+			final ServiceRequest request;
+			try {
+				request = ServiceRequest.read(new BufferedInputStream(socket.getInputStream()), out);
+			} catch (ProtocolException e) {
+				response.error(400, "Bad Request", e.getMessage()); //$NON-NLS-1$
+				return;
+			}
+			if (request != null) {
+				socket.setSoTimeout(0);
+				queued = dispatch(request, socket, response, handler);
+			}
+		} catch (IOException e) {
+			// The client has gone
+		} finally {
+			if (!queued) {
+				closeQuietly(socket);
+			}
+		}
+	}
+
+	/**
+	 * Answers a request or queues the command it requests.
+	 *
+	 * @param request
+	 *            the request.
+	 * @param socket
+	 *            the socket connected to the client.
+	 * @param response
+	 *            the response.
+	 * @param handler
+	 *            the handler running the commands.
+	 * @return <code>true</code> if a command has been queued, the socket being closed once it has run.
+	 */
+	private boolean dispatch(ServiceRequest request, Socket socket, Response response,
+			RequestHandler handler) {
+		if (!checkAccess(request, response)) {
+			return false;
+		}
+		final String path = request.getPath();
+		if (STATUS_PATH.equals(path)) {
+			if ("GET".equals(request.getMethod())) { //$NON-NLS-1$
+				writeStatus(response);
+			} else {
+				response.error(405, "Method Not Allowed", "use GET on " + path); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return false;
+		}
+		final String endpoint = path.substring(path.indexOf('/') + 1);
+		if (!ENDPOINTS.contains(endpoint)) {
+			response.error(404, "Not Found", "unknown endpoint '" + path //$NON-NLS-1$ //$NON-NLS-2$
+					+ "', the endpoints are " + ENDPOINTS); //$NON-NLS-1$
+			return false;
+		} else if (!"POST".equals(request.getMethod())) { //$NON-NLS-1$
+			response.error(405, "Method Not Allowed", "use POST on " + path); //$NON-NLS-1$ //$NON-NLS-2$
+			return false;
+		} else if (!isJson(request.getHeader("Content-Type"))) { //$NON-NLS-1$
+			response.error(415, "Unsupported Media Type", //$NON-NLS-1$
+					"the body must be sent as " + JSON_MEDIA_TYPE); //$NON-NLS-1$
+			return false;
+		}
+
+		final Job job;
+		try {
+			job = createJob(request, endpoint, socket, response, handler);
+		} catch (ProtocolException e) {
+			response.error(400, "Bad Request", e.getMessage()); //$NON-NLS-1$
+			return false;
+		}
+		return queue(job);
+	}
+
+	/**
+	 * Checks that a request comes from a client of the loopback interface that knows the token, answering
+	 * it otherwise.
+	 *
+	 * @param request
+	 *            the request.
+	 * @param response
+	 *            the response.
+	 * @return <code>true</code> if the request may be processed.
+	 */
+	private boolean checkAccess(ServiceRequest request, Response response) {
+		final String origin = request.getHeader("Origin"); //$NON-NLS-1$
+		if (!isLoopbackHost(request.getHeader("Host")) //$NON-NLS-1$
+				|| origin != null && !isLoopbackOrigin(origin)) {
+			response.error(403, "Forbidden", //$NON-NLS-1$
+					"the Host and Origin headers must name the loopback interface"); //$NON-NLS-1$
+			return false;
+		} else if (!isAuthorized(request.getHeader("Authorization"))) { //$NON-NLS-1$
+			response.error(401, "Unauthorized", //$NON-NLS-1$
+					"the token of the state file must be sent as " //$NON-NLS-1$
+							+ BEARER_PREFIX.trim() + " authorization"); //$NON-NLS-1$
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Creates the job running the command of a request.
+	 *
+	 * @param request
+	 *            the request.
+	 * @param endpoint
+	 *            the endpoint of the request.
+	 * @param socket
+	 *            the socket connected to the client.
+	 * @param response
+	 *            the response.
+	 * @param handler
+	 *            the handler running the commands.
+	 * @return the job.
+	 * @throws ProtocolException
+	 *             if the body of the request is not valid.
+	 */
+	private Job createJob(ServiceRequest request, String endpoint, Socket socket, Response response,
+			RequestHandler handler) throws ProtocolException {
+		final String repository = request.getString(REPOSITORY);
+		if (repository == null) {
+			throw new ProtocolException("'" + REPOSITORY + "' is required"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		final File repositoryFile = new File(repository).getAbsoluteFile();
+		File gitDir = FileKey.resolve(repositoryFile, FS.DETECTED);
+		if (gitDir == null) {
+			throw new ProtocolException("'" + repository //$NON-NLS-1$
+					+ "' is not a git repository"); //$NON-NLS-1$
+		}
+		try {
+			gitDir = gitDir.getCanonicalFile();
+		} catch (IOException e) {
+			gitDir = gitDir.getAbsoluteFile();
+		}
+
+		final String setup = request.getString(SETUP);
+		File setupFile = defaultSetupFile;
+		if (setup != null) {
+			setupFile = new File(setup);
+			if (!setupFile.isAbsolute()) {
+				setupFile = new File(repositoryFile, setup);
+			}
+		}
+		if (!setupFile.isFile()) {
+			throw new ProtocolException("the setup file '" + setupFile //$NON-NLS-1$
+					+ "' does not exist"); //$NON-NLS-1$
+		}
+		final List<String> args = request.getStrings(ARGS);
+		for (String arg : args) {
+			if (GIT_DIR_OPT.equals(arg) || arg.startsWith(GIT_DIR_OPT + '=')) {
+				throw new ProtocolException("'" + ARGS //$NON-NLS-1$
+						+ "' can not hold " + GIT_DIR_OPT //$NON-NLS-1$
+						+ ", the repository is '" + REPOSITORY + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		return new Job(endpoint, gitDir, setupFile, args, socket, response, handler);
+	}
+
+	/**
+	 * Tells whether the <code>Host</code> header of a request names the loopback interface.
+	 *
+	 * @param host
+	 *            the value of the header, may be <code>null</code>.
+	 * @return <code>true</code> if the host, without its port, is a loopback host.
+	 */
+	private static boolean isLoopbackHost(String host) {
+		if (host == null) {
+			return false;
+		}
+		String name = host.trim().toLowerCase(Locale.ENGLISH);
+		final int portStart;
+		if (name.startsWith("[")) { //$NON-NLS-1$
+			portStart = name.indexOf(']') + 1;
+		} else {
+			portStart = name.indexOf(':');
+		}
+		if (portStart > 0 && portStart < name.length()) {
+			name = name.substring(0, portStart);
+		}
+		return LOOPBACK_HOSTS.contains(name);
+	}
+
+	/**
+	 * Tells whether the <code>Origin</code> header of a request is a page served on the loopback interface.
+	 *
+	 * @param origin
+	 *            the value of the header.
+	 * @return <code>true</code> if the origin is an HTTP origin whose host is a loopback host.
+	 */
+	private static boolean isLoopbackOrigin(String origin) {
+		try {
+			final URI uri = new URI(origin.trim());
+			final String scheme = uri.getScheme();
+			final boolean web = "http".equalsIgnoreCase(scheme) //$NON-NLS-1$
+					|| "https".equalsIgnoreCase(scheme); //$NON-NLS-1$
+			return web && uri.getHost() != null
+					&& LOOPBACK_HOSTS.contains(uri.getHost().toLowerCase(Locale.ENGLISH));
+		} catch (URISyntaxException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Tells whether the <code>Authorization</code> header of a request holds the token of the service.
+	 *
+	 * @param authorization
+	 *            the value of the header, may be <code>null</code>.
+	 * @return <code>true</code> if the header holds the token.
+	 */
+	private boolean isAuthorized(String authorization) {
+		if (authorization == null || !authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX
+				.length())) {
+			return false;
+		}
+		final String sent = authorization.substring(BEARER_PREFIX.length()).trim();
+		// Compares in a time that does not depend on the common prefix
+		return MessageDigest.isEqual(token, sent.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Tells whether the <code>Content-Type</code> header of a request is the JSON media type.
+	 *
+	 * @param contentType
+	 *            the value of the header, may be <code>null</code>.
+	 * @return <code>true</code> if the media type, without its parameters, is <code>application/json</code>.
+	 */
+	private static boolean isJson(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+		String mediaType = contentType;
+		final int parameters = mediaType.indexOf(';');
+		if (parameters >= 0) {
+			mediaType = mediaType.substring(0, parameters);
+		}
+		return JSON_MEDIA_TYPE.equalsIgnoreCase(mediaType.trim());
+	}
+
+	/**
+	 * Queues a job after the other jobs of its repository.
+	 *
+	 * @param job
+	 *            the job.
+	 * @return <code>true</code> if the job has been queued.
+	 */
+	private boolean queue(Job job) {
+		synchronized (queues) {
+			RepositoryQueue queue = queues.get(job.gitDir);
+			if (queue == null) {
+				queue = new RepositoryQueue();
+				queues.put(job.gitDir, queue);
+			}
+			job.queue = queue;
+			final int position = queue.pending.getAndIncrement();
+			job.response.start(200, "OK"); //$NON-NLS-1$
+			job.response.send(new JsonLine().add(EVENT, "queued") //$NON-NLS-1$
+					.add(REPOSITORY, job.gitDir.getPath())
+					.add("position", position)); //$NON-NLS-1$
+			try {
+				queue.executor.execute(job);
+			} catch (RejectedExecutionException e) {
+				queue.pending.decrementAndGet();
+				job.response.send(new JsonLine().add(EVENT, "error") //$NON-NLS-1$
+						.add("message", "the service is closing")); //$NON-NLS-1$ //$NON-NLS-2$
+				job.response.finish();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a line for each repository, giving its number of pending requests, including the running one.
+	 *
+	 * @param response
+	 *            the response.
+	 */
+	private void writeStatus(Response response) {
+		response.start(200, "OK"); //$NON-NLS-1$
+		synchronized (queues) {
+			for (Map.Entry<File, RepositoryQueue> entry : queues.entrySet()) {
+				response.send(new JsonLine().add(REPOSITORY, entry.getKey().getPath())
+						.add("pending", entry.getValue().pending.get())); //$NON-NLS-1$
+			}
+		}
+		response.finish();
+	}
+
+	/**
+	 * Closes a socket, ignoring failures.
+	 *
+	 * @param socket
+	 *            the socket.
+	 */
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Nothing more to do
+		}
+	}
+
+	/**
+	 * The requests of a repository, processed one after the other.
+	 */
+	private static final class RepositoryQueue {
+
+		/** The thread running the commands. */
+		private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		/** Number of requests queued or running. */
+		private final AtomicInteger pending = new AtomicInteger();
+	}
+
+	/**
+	 * The command requested by a client.
+	 */
+	private static final class Job implements Runnable {
+
+		/** The endpoint of the request. */
+		private final String endpoint;
+
+		/** The git directory of the repository. */
+		private final File gitDir;
+
+		/** The setup file. */
+		private final File setupFile;
+
+		/** The other arguments of the command. */
+		private final List<String> args;
+
+		/** The socket connected to the client. */
+		private final Socket socket;
+
+		/** The response. */
+		private final Response response;
+
+		/** The handler running the command. */
+		private final RequestHandler handler;
+
+		/** The queue of the job. */
+		private RepositoryQueue queue;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param endpoint
+		 *            the endpoint of the request.
+		 * @param gitDir
+		 *            the git directory of the repository.
+		 * @param setupFile
+		 *            the setup file.
+		 * @param args
+		 *            the other arguments of the command.
+		 * @param socket
+		 *            the socket connected to the client.
+		 * @param response
+		 *            the response.
+		 * @param handler
+		 *            the handler running the command.
+		 */
+		Job(String endpoint, File gitDir, File setupFile, List<String> args, Socket socket,
+				Response response, RequestHandler handler) {
+			this.endpoint = endpoint;
+			this.gitDir = gitDir;
+			this.setupFile = setupFile;
+			this.args = args;
+			this.socket = socket;
+			this.response = response;
+			this.handler = handler;
+		}
+
+		/**
+		 * Runs the command in its own metrics scope, sending its output then its return code to the client.
+		 */
+		public void run() {
+			final LineEvents out = new LineEvents(response, "stdout"); //$NON-NLS-1$
+			final LineEvents err = new LineEvents(response, "stderr"); //$NON-NLS-1$
+			final OutputRouter.Route route = OutputRouter.route(out, err);
+			final Metrics.Scope scope = Metrics.scope();
+			Integer code;
+			try {
+				response.send(new JsonLine().add(EVENT, "start") //$NON-NLS-1$
+						.add("command", endpoint)); //$NON-NLS-1$
+				code = handler.run(endpoint, gitDir, setupFile, args);
+				// CHECKSTYLE.OFF: IllegalCatch - The service has to answer whatever happens to the command
+			} catch (RuntimeException e) {
+				// CHECKSTYLE.ON: IllegalCatch
+				System.err.println("software error: " + e); //$NON-NLS-1$
+				code = Returns.ERROR.code();
+			} finally {
+				scope.close();
+				route.close();
+				out.close();
+				err.close();
+				queue.pending.decrementAndGet();
+			}
+			response.send(new JsonLine().add(EVENT, "exit") //$NON-NLS-1$
+					.add("code", code.intValue())); //$NON-NLS-1$
+			response.finish();
+			closeQuietly(socket);
+		}
+	}
+
+	/**
+	 * A response made of JSON lines, sent in chunks as they are produced. Once the client has gone, the
+	 * lines are dropped.
+	 */
+	private static final class Response {
+
+		/** End of the lines of the protocol. */
+		private static final String CRLF = "\r\n"; //$NON-NLS-1$
+
+		/** Maximum number of bytes framing the data of a chunk. */
+		private static final int CHUNK_OVERHEAD = 16;
+
+		/** Status of a request without the token, answered with a challenge. */
+		private static final int UNAUTHORIZED = 401;
+
+		/** The stream to the client. */
+		private final OutputStream out;
+
+		/** <code>true</code> once the client has gone. */
+		private boolean broken;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param out
+		 *            the stream to the client.
+		 */
+		Response(OutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * Sends the status line and the headers.
+		 *
+		 * @param status
+		 *            the status code.
+		 * @param reason
+		 *            the reason phrase.
+		 */
+		synchronized void start(int status, String reason) {
+			String challenge = ""; //$NON-NLS-1$
+			if (status == UNAUTHORIZED) {
+				challenge = "WWW-Authenticate: Bearer" + CRLF; //$NON-NLS-1$
+			}
+			write(("HTTP/1.1 " + status + ' ' + reason + CRLF //$NON-NLS-1$
+					+ challenge //
+					+ "Content-Type: application/x-ndjson; charset=utf-8\r\n" //$NON-NLS-1$
+					+ "Transfer-Encoding: chunked\r\n" //$NON-NLS-1$
+					+ "Cache-Control: no-cache\r\n" //$NON-NLS-1$
+					+ "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$
+		}
+
+		/**
+		 * Sends a line in its own chunk.
+		 *
+		 * @param line
+		 *            the line.
+		 */
+		synchronized void send(JsonLine line) {
+			final byte[] bytes = (line.toString() + '\n').getBytes(StandardCharsets.UTF_8);
+			final ByteArrayOutputStream chunk = new ByteArrayOutputStream(bytes.length + CHUNK_OVERHEAD);
+			final byte[] size = (Integer.toHexString(bytes.length) + CRLF)
+					.getBytes(StandardCharsets.US_ASCII);
+			chunk.write(size, 0, size.length);
+			chunk.write(bytes, 0, bytes.length);
+			chunk.write('\r');
+			chunk.write('\n');
+			write(chunk.toByteArray());
+		}
+
+		/**
+		 * Sends the last chunk.
+		 */
+		synchronized void finish() {
+			write(("0" + CRLF + CRLF).getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$
+		}
+
+		/**
+		 * Sends a whole response made of an <code>error</code> event.
+		 *
+		 * @param status
+		 *            the status code.
+		 * @param reason
+		 *            the reason phrase.
+		 * @param message
+		 *            the message of the error.
+		 */
+		synchronized void error(int status, String reason, String message) {
+			start(status, reason);
+			send(new JsonLine().add(EVENT, "error").add("message", message)); //$NON-NLS-1$ //$NON-NLS-2$
+			finish();
+		}
+
+		/**
+		 * Writes and flushes bytes.
+		 *
+		 * @param bytes
+		 *            the bytes.
+		 */
+		private void write(byte[] bytes) {
+			if (!broken) {
+				try {
+					out.write(bytes);
+					out.flush();
+				} catch (IOException e) {
+					broken = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stream sending an <code>output</code> event for each line written to it.
+	 */
+	private static final class LineEvents extends OutputStream {
+
+		/** The response. */
+		private final Response response;
+
+		/** Name of the standard stream written to this stream. */
+		private final String stream;
+
+		/** Bytes of the current line. */
+		private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param response
+		 *            the response.
+		 * @param stream
+		 *            name of the standard stream written to this stream.
+		 */
+		LineEvents(Response response, String stream) {
+			this.response = response;
+			this.stream = stream;
+		}
+
+		@Override
+		public synchronized void write(int b) {
+			if (b == '\n') {
+				sendLine();
+			} else {
+				line.write(b);
+			}
+		}
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) {
+			for (int i = off; i < off + len; i++) {
+				write(b[i]);
+			}
+		}
+
+		@Override
+		public synchronized void close() {
+			if (line.size() > 0) {
+				sendLine();
+			}
+		}
+
+		/**
+		 * Sends the current line, written with the default charset as the standard streams.
+		 */
+		private void sendLine() {
+			String text = new String(line.toByteArray(), Charset.defaultCharset());
+			line.reset();
+			if (text.endsWith("\r")) { //$NON-NLS-1$
+				text = text.substring(0, text.length() - 1);
+			}
+			response.send(new JsonLine().add(EVENT, "output") //$NON-NLS-1$
+					.add("stream", stream) //$NON-NLS-1$
+					.add("line", text)); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import org.eclipse.emf.compare.EMFCompare;
+import org.eclipse.emf.compare.match.IMatchEngine;
+import org.eclipse.emf.compare.match.impl.MatchEngineFactoryImpl;
+import org.eclipse.emf.compare.match.impl.MatchEngineFactoryRegistryImpl;
+import org.eclipse.emf.compare.utils.UseIdentifiers;
+
+/**
+ * Strategies matching the elements of the compared models.
+ */
+public enum MatchStrategy {
+	/**
+	 * Matches the elements by their IDs when they have one, by their similarity otherwise.
+	 */
+	DEFAULT("default"), //$NON-NLS-1$
+	/**
+	 * Only matches the elements by their IDs. The IDs of each side are indexed in a hash map, so that no
+	 * distance between elements is ever computed; the elements without ID are never matched.
+	 */
+	ID("id"); //$NON-NLS-1$
+
+	/** Ranking of the match engine factory of the {@link #ID} strategy, above the default one. */
+	private static final int ID_RANKING = 20;
+
+	/** Name of the strategy on the command line. */
+	private final String name;
+
+	/**
+	 * Internal constructor.
+	 *
+	 * @param name
+	 *            name of the strategy on the command line.
+	 */
+	private MatchStrategy(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the name of the strategy on the command line.
+	 *
+	 * @return the name of the strategy.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Creates an {@link EMFCompare} builder matching the elements with this strategy.
+	 *
+	 * @return the {@link EMFCompare} builder.
+	 */
+	public EMFCompare.Builder createBuilder() {
+		if (this == DEFAULT) {
+			return EMFCompare.builder();
+		}
+		final IMatchEngine.Factory.Registry registry = MatchEngineFactoryRegistryImpl
+				.createStandaloneInstance();
+		final MatchEngineFactoryImpl idFactory = new MatchEngineFactoryImpl(UseIdentifiers.ONLY);
+		idFactory.setRanking(ID_RANKING);
+		registry.add(idFactory);
+		return EMFCompare.builder().setMatchEngineFactoryRegistry(registry);
+	}
+}
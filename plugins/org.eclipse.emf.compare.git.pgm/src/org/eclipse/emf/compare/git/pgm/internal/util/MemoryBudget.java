@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Budget of heap memory an application may use before switching to lower-memory strategies.
+ * <p>
+ * The limit is a fraction of the maximum heap size of the JVM. The budget is only a hint: exceeding it does
+ * not fail the application, it is up to the caller to release memory or to process its data sequentially
+ * once {@link #isNearLimit()} returns <code>true</code>, and to run no more workers in parallel than
+ * {@link #getWorkerCount(int)}.
+ * </p>
+ * <p>
+ * The heap is measured as it was left by the last garbage collection, so that the unreachable objects are
+ * not counted; the budget never requests a collection itself.
+ * </p>
+ */
+public final class MemoryBudget {
+
+	/** Default fraction of the maximum heap size. */
+	public static final double DEFAULT_FRACTION = 0.8;
+
+	/** Heap a worker of a parallel computation is expected to need: 32 MiB. */
+	public static final long WORKER_HEAP = 32L * 1024 * 1024;
+
+	/** Limit of the budget, in bytes. */
+	private final long limit;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param fraction
+	 *            fraction of the maximum heap size that may be used, between 0 (excluded) and 1 (included).
+	 */
+	public MemoryBudget(double fraction) {
+		if (!(fraction > 0 && fraction <= 1)) {
+			throw new IllegalArgumentException("Invalid heap fraction: " + fraction); //$NON-NLS-1$
+		}
+		this.limit = (long)(Runtime.getRuntime().maxMemory() * fraction);
+	}
+
+	/**
+	 * Gets the limit of the budget.
+	 *
+	 * @return the number of bytes of heap that may be used.
+	 */
+	public long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Gets the heap used once the last garbage collection of each heap pool completed, or currently used by
+	 * the pools that do not report it. Before the first collection, the heap currently used is returned.
+	 *
+	 * @return the number of bytes of heap used.
+	 */
+	public long getUsed() {
+		long collections = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			collections += Math.max(0, collector.getCollectionCount());
+		}
+		if (collections == 0) {
+			return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		}
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				MemoryUsage usage = pool.getCollectionUsage();
+				if (usage == null) {
+					usage = pool.getUsage();
+				}
+				used += usage.getUsed();
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * Checks whether the used heap has reached the limit of the budget.
+	 *
+	 * @return <code>true</code> if the heap used after the last garbage collection is above the limit.
+	 */
+	public boolean isNearLimit() {
+		return isNearLimit(limit, getUsed());
+	}
+
+	/**
+	 * Gets the number of workers that may run in parallel within the budget: each of them is expected to
+	 * need {@link #WORKER_HEAP} bytes out of what is left of the budget.
+	 *
+	 * @param requested
+	 *            the number of workers requested by the user.
+	 * @return the number of workers, between 1 and <code>requested</code>.
+	 */
+	public int getWorkerCount(int requested) {
+		return getWorkerCount(requested, limit, getUsed());
+	}
+
+	/**
+	 * Checks whether the given heap usage has reached a limit.
+	 *
+	 * @param limit
+	 *            the limit, in bytes.
+	 * @param used
+	 *            the heap used, in bytes.
+	 * @return <code>true</code> if the limit has been reached.
+	 */
+	static boolean isNearLimit(long limit, long used) {
+		return used >= limit;
+	}
+
+	/**
+	 * Computes the number of workers that may run in parallel within a limit.
+	 *
+	 * @param requested
+	 *            the number of workers requested by the user.
+	 * @param limit
+	 *            the limit, in bytes.
+	 * @param used
+	 *            the heap used, in bytes.
+	 * @return the number of workers, between 1 and <code>requested</code>.
+	 */
+	static int getWorkerCount(int requested, long limit, long used) {
+		final long available = (limit - used) / WORKER_HEAP;
+		if (available <= 1) {
+			return 1;
+		}
+		return (int)Math.min(requested, available);
+	}
+}
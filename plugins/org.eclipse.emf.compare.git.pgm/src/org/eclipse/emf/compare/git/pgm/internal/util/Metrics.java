@@ -0,0 +1,881 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Metrics of a run of a logical command, written at its end to the directory set by the
+ * <code>emfcompare.metricsDirectory</code> Git configuration key, in the Prometheus text format read by the
+ * textfile collector of the node exporter or, if <code>emfcompare.metricsFormat</code> is <code>json</code>,
+ * as JSON lines.
+ * <p>
+ * The counters, the durations of the {@link Phase phases} and the lookups of the caches are recorded in
+ * each JVM. The application launched by the command writes its metrics to a part file that the command
+ * merges into its own, labeled by <code>process</code>, so that a single file, replaced at each run, holds
+ * the metrics of a command.
+ * </p>
+ * <p>
+ * The {@link LogicalService} runs several commands in the same JVM, possibly at the same time: each of them
+ * records in its own {@link #scope() scope}, inherited by the threads it starts, which also holds the
+ * {@link FlightRecording} of the command. The peaks of the heap and of the resident memory can only be
+ * measured for the whole JVM: they are labeled by <code>scope="jvm"</code>.
+ * </p>
+ */
+public final class Metrics {
+
+	/** Git configuration key of the directory where the metrics are written. */
+	public static final String CONFIG_DIRECTORY = "metricsDirectory"; //$NON-NLS-1$
+
+	/** Git configuration key of the format of the metrics, {@link #PROMETHEUS} or {@link #JSON}. */
+	public static final String CONFIG_FORMAT = "metricsFormat"; //$NON-NLS-1$
+
+	/** Prometheus text format, the default. */
+	public static final String PROMETHEUS = "prometheus"; //$NON-NLS-1$
+
+	/** JSON lines format. */
+	public static final String JSON = "json"; //$NON-NLS-1$
+
+	/** Prefix of the names of the metrics. */
+	private static final String PREFIX = "emfcompare_"; //$NON-NLS-1$
+
+	/** Value of the process label of the metrics of the command. */
+	private static final String COMMAND_PROCESS = "command"; //$NON-NLS-1$
+
+	/** Value of the process label of the metrics of the launched applications. */
+	private static final String APPLICATION_PROCESS = "application"; //$NON-NLS-1$
+
+	/** Label of the metrics measured for the whole JVM rather than for the scope of the command. */
+	private static final String SCOPE_LABEL = "scope"; //$NON-NLS-1$
+
+	/** Value of the scope label of the metrics measured for the whole JVM. */
+	private static final String JVM_SCOPE = "jvm"; //$NON-NLS-1$
+
+	/** Line of <code>/proc/self/status</code> holding the peak resident set size. */
+	private static final String PEAK_RSS_ENTRY = "VmHWM:"; //$NON-NLS-1$
+
+	/** Number of bytes in a kilobyte. */
+	private static final int KILOBYTE = 1024;
+
+	/** Help of each metric, in the order they are written. */
+	private static final Map<String, String> HELP = new LinkedHashMap<String, String>();
+
+	/** Tally of the threads outside of any scope, recorded since the start of the JVM. */
+	private static final Tally JVM_TALLY = new Tally();
+
+	/** Tally of the scope of the current thread, if any. */
+	private static final InheritableThreadLocal<Tally> SCOPED_TALLY = new InheritableThreadLocal<Tally>();
+
+	static {
+		HELP.put("run_duration_seconds", "Duration of the run."); //$NON-NLS-1$ //$NON-NLS-2$
+		HELP.put("run_exit_code", "Exit code of the run."); //$NON-NLS-1$ //$NON-NLS-2$
+		HELP.put("run_timestamp_seconds", "End of the run, since the epoch."); //$NON-NLS-1$ //$NON-NLS-2$
+		HELP.put("phase_duration_seconds", "Time spent in a phase."); //$NON-NLS-1$ //$NON-NLS-2$
+		HELP.put("phase_occurrences", "Number of occurrences of a phase."); //$NON-NLS-1$ //$NON-NLS-2$
+		for (Counter counter : Counter.values()) {
+			HELP.put(counter.metric, counter.help);
+		}
+		HELP.put("heap_peak_bytes", //$NON-NLS-1$
+				"Sum of the peak usages of the heap memory pools of the JVM," //$NON-NLS-1$
+						+ " shared by its commands."); //$NON-NLS-1$
+		HELP.put("resident_memory_peak_bytes", //$NON-NLS-1$
+				"Peak resident set size of the JVM process, shared by its commands."); //$NON-NLS-1$
+		HELP.put("cache_hits", "Number of lookups found in a cache."); //$NON-NLS-1$ //$NON-NLS-2$
+		HELP.put("cache_misses", "Number of lookups not found in a cache."); //$NON-NLS-1$ //$NON-NLS-2$
+		HELP.put("cache_hit_ratio", "Ratio of the lookups found in a cache."); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/** Name of the command, used in the name of the file and as a label, <code>null</code> for a part. */
+	private final String command;
+
+	/** File where the metrics are written. */
+	private final File destination;
+
+	/** Whether the metrics are written as JSON lines rather than in the Prometheus text format. */
+	private final boolean json;
+
+	/** Whether the destination is a part file of the metrics of the command that has launched this JVM. */
+	private final boolean part;
+
+	/** Part files of the launched applications, in the order they have been launched. */
+	private final List<File> parts = new ArrayList<File>();
+
+	/** Tally of the scope the sink has been created in. */
+	private final Tally tally = getTally();
+
+	/** Start of the run. */
+	private final long start = System.nanoTime();
+
+	/**
+	 * Counters of a run.
+	 */
+	public enum Counter {
+		/** Files whose differences have been displayed. */
+		FILES_DIFFED("files_diffed", "Number of files diffed."), //$NON-NLS-1$ //$NON-NLS-2$
+
+		/** Logical models compared. */
+		LOGICAL_MODELS_COMPARED("logical_models_compared", //$NON-NLS-1$
+				"Number of logical models compared."), //$NON-NLS-1$
+
+		/** Differences found by the comparisons. */
+		DIFFS("diffs", "Number of differences found by the comparisons."), //$NON-NLS-1$ //$NON-NLS-2$
+
+		/** Conflicts found by the comparisons. */
+		CONFLICTS("conflicts", "Number of conflicts found by the comparisons."); //$NON-NLS-1$ //$NON-NLS-2$
+
+		/** Name of the metric, without prefix. */
+		private final String metric;
+
+		/** Help of the metric. */
+		private final String help;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param metric
+		 *            name of the metric, without prefix.
+		 * @param help
+		 *            help of the metric.
+		 */
+		Counter(String metric, String help) {
+			this.metric = metric;
+			this.help = help;
+		}
+	}
+
+	/**
+	 * Caches whose lookups are recorded.
+	 */
+	public enum Cache {
+		/** Binary resources of the blobs. */
+		BINARY("binary"), //$NON-NLS-1$
+
+		/** Results of the merges. */
+		COMPARISON("comparison"), //$NON-NLS-1$
+
+		/** Blob ids of the files of the work tree. */
+		STAT("stat"), //$NON-NLS-1$
+
+		/** Model dependency indexes of the trees. */
+		INDEX("index"); //$NON-NLS-1$
+
+		/** Value of the cache label. */
+		private final String label;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param label
+		 *            value of the cache label.
+		 */
+		Cache(String label) {
+			this.label = label;
+		}
+	}
+
+	/**
+	 * A scope in which the metrics of a command are recorded apart from the ones of the other commands run
+	 * by the same JVM.
+	 */
+	public static final class Scope implements Closeable {
+
+		/** The tally of the scope. */
+		private final Tally tally;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param tally
+		 *            the tally of the scope.
+		 */
+		Scope(Tally tally) {
+			this.tally = tally;
+		}
+
+		/**
+		 * Closes the scope: the current thread records outside of it from now on. The threads that still
+		 * use it, for instance the threads of a pool started by the command, record to a tally that is no
+		 * longer written.
+		 */
+		public void close() {
+			if (SCOPED_TALLY.get() == tally) {
+				SCOPED_TALLY.remove();
+			}
+		}
+	}
+
+	/**
+	 * What has been recorded in a scope.
+	 */
+	private static final class Tally {
+
+		/** The counters. */
+		private final Map<Counter, AtomicLong> counters = new EnumMap<Counter, AtomicLong>(Counter.class);
+
+		/** Durations of the phases, in nanoseconds. */
+		private final Map<Phase, AtomicLong> phaseDurations = new EnumMap<Phase, AtomicLong>(Phase.class);
+
+		/** Number of occurrences of the phases. */
+		private final Map<Phase, AtomicLong> phaseCounts = new EnumMap<Phase, AtomicLong>(Phase.class);
+
+		/** Number of lookups found in the caches. */
+		private final Map<Cache, AtomicLong> hits = new EnumMap<Cache, AtomicLong>(Cache.class);
+
+		/** Number of lookups not found in the caches. */
+		private final Map<Cache, AtomicLong> misses = new EnumMap<Cache, AtomicLong>(Cache.class);
+
+		/** Sink of the metrics of the scope, if any. */
+		private Metrics current;
+
+		/** Flight recording of the scope, if any. */
+		private FlightRecording flightRecording;
+
+		/**
+		 * Constructor.
+		 */
+		Tally() {
+			for (Counter counter : Counter.values()) {
+				counters.put(counter, new AtomicLong());
+			}
+			for (Phase phase : Phase.values()) {
+				phaseDurations.put(phase, new AtomicLong());
+				phaseCounts.put(phase, new AtomicLong());
+			}
+			for (Cache cache : Cache.values()) {
+				hits.put(cache, new AtomicLong());
+				misses.put(cache, new AtomicLong());
+			}
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param command
+	 *            name of the command.
+	 * @param destination
+	 *            file where the metrics are written.
+	 * @param json
+	 *            whether the metrics are written as JSON lines.
+	 * @param part
+	 *            whether the destination is a part file of the metrics of the command.
+	 */
+	private Metrics(String command, File destination, boolean json, boolean part) {
+		this.command = command;
+		this.destination = destination;
+		this.json = json;
+		this.part = part;
+	}
+
+	/**
+	 * Creates the sink of the metrics of a command, as configured in the repository. Prints a warning if the
+	 * format is unknown.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @param command
+	 *            name of the command.
+	 * @return the sink, <code>null</code> if no directory is configured.
+	 */
+	public static synchronized Metrics forRepository(Repository repo, String command) {
+		final String directory = repo.getConfig().getString(BinaryResourceCache.CONFIG_SECTION, null,
+				CONFIG_DIRECTORY);
+		if (directory == null || directory.isEmpty()) {
+			return null;
+		}
+		final String format = repo.getConfig().getString(BinaryResourceCache.CONFIG_SECTION, null,
+				CONFIG_FORMAT);
+		final boolean json = JSON.equalsIgnoreCase(format);
+		if (format != null && !json && !PROMETHEUS.equalsIgnoreCase(format)) {
+			System.err.println("warning: unknown metrics format " + format //$NON-NLS-1$
+					+ ", " + PROMETHEUS + " is used."); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		final String extension;
+		if (json) {
+			extension = ".json"; //$NON-NLS-1$
+		} else {
+			extension = ".prom"; //$NON-NLS-1$
+		}
+		final File folder = repo.getFS().resolve(repo.getDirectory(), directory);
+		final Metrics metrics = new Metrics(command, new File(folder, PREFIX + command + extension), json,
+				false);
+		metrics.tally.current = metrics;
+		return metrics;
+	}
+
+	/**
+	 * Creates the sink of the metrics of an application launched by a command.
+	 *
+	 * @param partFile
+	 *            the part file created by {@link #newPart()} in the command.
+	 * @return the sink.
+	 */
+	public static synchronized Metrics forPart(File partFile) {
+		final Metrics metrics = new Metrics(null, partFile, false, true);
+		metrics.tally.current = metrics;
+		return metrics;
+	}
+
+	/**
+	 * Gets the sink of the metrics of the current scope.
+	 *
+	 * @return the sink, <code>null</code> if the metrics are not written.
+	 */
+	public static synchronized Metrics getCurrent() {
+		return getTally().current;
+	}
+
+	/**
+	 * Gets the flight recording of the current scope.
+	 *
+	 * @return the recording, <code>null</code> if none has been started in this scope.
+	 */
+	static synchronized FlightRecording getFlightRecording() {
+		return getTally().flightRecording;
+	}
+
+	/**
+	 * Sets the flight recording of the current scope.
+	 *
+	 * @param recording
+	 *            the recording started in this scope.
+	 */
+	static synchronized void setFlightRecording(FlightRecording recording) {
+		getTally().flightRecording = recording;
+	}
+
+	/**
+	 * Removes a flight recording from the current scope, if it is the one of the scope.
+	 *
+	 * @param recording
+	 *            the stopped recording.
+	 */
+	static synchronized void removeFlightRecording(FlightRecording recording) {
+		final Tally tally = getTally();
+		if (tally.flightRecording == recording) {
+			tally.flightRecording = null;
+		}
+	}
+
+	/**
+	 * Starts a scope in which the current thread, and the threads it starts from now on, record their
+	 * metrics from zero.
+	 *
+	 * @return the scope, to close once the command is over.
+	 */
+	public static Scope scope() {
+		final Tally tally = new Tally();
+		SCOPED_TALLY.set(tally);
+		return new Scope(tally);
+	}
+
+	/**
+	 * Adds to a counter.
+	 *
+	 * @param counter
+	 *            the counter.
+	 * @param delta
+	 *            the value to add.
+	 */
+	public static void add(Counter counter, long delta) {
+		getTally().counters.get(counter).addAndGet(delta);
+	}
+
+	/**
+	 * Records the comparison of a logical model, its differences and its conflicts.
+	 *
+	 * @param comparison
+	 *            the comparison.
+	 */
+	public static void recordComparison(Comparison comparison) {
+		add(Counter.LOGICAL_MODELS_COMPARED, 1);
+		add(Counter.DIFFS, comparison.getDifferences().size());
+		add(Counter.CONFLICTS, comparison.getConflicts().size());
+	}
+
+	/**
+	 * Records an occurrence of a phase.
+	 *
+	 * @param phase
+	 *            the phase.
+	 * @param nanos
+	 *            its duration, in nanoseconds.
+	 */
+	static void recordPhase(Phase phase, long nanos) {
+		final Tally tally = getTally();
+		tally.phaseDurations.get(phase).addAndGet(nanos);
+		tally.phaseCounts.get(phase).incrementAndGet();
+	}
+
+	/**
+	 * Gets the number of occurrences of a phase recorded so far in the current scope.
+	 *
+	 * @param phase
+	 *            the phase.
+	 * @return the number of occurrences.
+	 */
+	static long getPhaseCount(Phase phase) {
+		return getTally().phaseCounts.get(phase).get();
+	}
+
+	/**
+	 * Records a lookup in a cache.
+	 *
+	 * @param cache
+	 *            the cache.
+	 * @param hit
+	 *            <code>true</code> if the lookup has been found in the cache.
+	 */
+	public static void recordLookup(Cache cache, boolean hit) {
+		if (hit) {
+			getTally().hits.get(cache).incrementAndGet();
+		} else {
+			getTally().misses.get(cache).incrementAndGet();
+		}
+	}
+
+	/**
+	 * Gets the number of lookups found in a cache so far in the current scope.
+	 *
+	 * @param cache
+	 *            the cache.
+	 * @return the number of cache hits.
+	 */
+	public static long getHitCount(Cache cache) {
+		return getTally().hits.get(cache).get();
+	}
+
+	/**
+	 * Gets the number of lookups not found in a cache so far in the current scope.
+	 *
+	 * @param cache
+	 *            the cache.
+	 * @return the number of cache misses.
+	 */
+	public static long getMissCount(Cache cache) {
+		return getTally().misses.get(cache).get();
+	}
+
+	/**
+	 * Gets the tally of the current thread.
+	 *
+	 * @return the tally of its scope, the tally of the JVM if it has none.
+	 */
+	private static Tally getTally() {
+		final Tally tally = SCOPED_TALLY.get();
+		if (tally == null) {
+			return JVM_TALLY;
+		}
+		return tally;
+	}
+
+	/**
+	 * Creates the part file where a launched application writes its metrics.
+	 *
+	 * @return the part file, merged into the metrics of this run once written.
+	 */
+	public synchronized File newPart() {
+		final File partFile = new File(destination.getPath() + '.' + (parts.size() + 1)
+				+ ".part"); //$NON-NLS-1$
+		parts.add(partFile);
+		return partFile;
+	}
+
+	/**
+	 * Writes the metrics of the run, merging the part files of the launched applications that have
+	 * terminated. Prints a warning if they can not be written.
+	 *
+	 * @param exitCode
+	 *            the exit code of the run.
+	 */
+	public void write(int exitCode) {
+		synchronized (Metrics.class) {
+			if (tally.current == this) {
+				tally.current = null;
+			}
+		}
+		try {
+			final File folder = destination.getParentFile();
+			if (!folder.isDirectory() && !folder.mkdirs()) {
+				throw new IOException("Unable to create " + folder); //$NON-NLS-1$
+			}
+			final List<Sample> samples = collect(exitCode);
+			if (part) {
+				writePart(samples);
+			} else {
+				final List<Sample> labeled = new ArrayList<Sample>();
+				for (Sample sample : samples) {
+					labeled.add(sample.of(command, COMMAND_PROCESS));
+				}
+				for (Sample sample : readParts()) {
+					labeled.add(sample.of(command, APPLICATION_PROCESS));
+				}
+				writeMetrics(labeled);
+			}
+		} catch (IOException e) {
+			System.err.println("warning: the metrics can not be written to " + destination //$NON-NLS-1$
+					+ ": " + e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Collects the metrics of the scope of this sink.
+	 *
+	 * @param exitCode
+	 *            the exit code of the run.
+	 * @return the samples, without labels for the process and the command.
+	 */
+	private List<Sample> collect(int exitCode) {
+		final List<Sample> samples = new ArrayList<Sample>();
+		samples.add(new Sample("run_duration_seconds", toSeconds(System.nanoTime() - start))); //$NON-NLS-1$
+		samples.add(new Sample("run_exit_code", exitCode)); //$NON-NLS-1$
+		samples.add(new Sample("run_timestamp_seconds", System.currentTimeMillis() / 1000)); //$NON-NLS-1$
+		for (Phase phase : Phase.values()) {
+			final long count = tally.phaseCounts.get(phase).get();
+			if (count > 0) {
+				final String phaseLabel = phase.name().toLowerCase(Locale.ENGLISH);
+				final double seconds = toSeconds(tally.phaseDurations.get(phase).get());
+				samples.add(new Sample("phase_duration_seconds", seconds) //$NON-NLS-1$
+						.label("phase", phaseLabel)); //$NON-NLS-1$
+				samples.add(new Sample("phase_occurrences", count) //$NON-NLS-1$
+						.label("phase", phaseLabel)); //$NON-NLS-1$
+			}
+		}
+		for (Counter counter : Counter.values()) {
+			samples.add(new Sample(counter.metric, tally.counters.get(counter).get()));
+		}
+		long heapPeak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+				heapPeak += pool.getPeakUsage().getUsed();
+			}
+		}
+		samples.add(new Sample("heap_peak_bytes", heapPeak).label(SCOPE_LABEL, JVM_SCOPE)); //$NON-NLS-1$
+		final long residentPeak = getResidentPeak();
+		if (residentPeak >= 0) {
+			samples.add(new Sample("resident_memory_peak_bytes", residentPeak) //$NON-NLS-1$
+					.label(SCOPE_LABEL, JVM_SCOPE));
+		}
+		for (Cache cache : Cache.values()) {
+			addCache(samples, cache.label, tally.hits.get(cache).get(), tally.misses.get(cache).get());
+		}
+		return samples;
+	}
+
+	/**
+	 * Adds the metrics of a cache that has been looked up.
+	 *
+	 * @param samples
+	 *            the samples to add to.
+	 * @param cache
+	 *            name of the cache.
+	 * @param hits
+	 *            number of lookups found in the cache.
+	 * @param misses
+	 *            number of lookups not found in the cache.
+	 */
+	private static void addCache(List<Sample> samples, String cache, long hits, long misses) {
+		if (hits + misses > 0) {
+			samples.add(new Sample("cache_hits", hits).label("cache", cache)); //$NON-NLS-1$ //$NON-NLS-2$
+			samples.add(new Sample("cache_misses", misses).label("cache", cache)); //$NON-NLS-1$ //$NON-NLS-2$
+			final double ratio = (double)hits / (hits + misses);
+			samples.add(new Sample("cache_hit_ratio", ratio) //$NON-NLS-1$
+					.label("cache", cache)); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Gets the peak resident set size of this process, where the system tells it.
+	 *
+	 * @return the size in bytes, -1 if it is unknown.
+	 */
+	private static long getResidentPeak() {
+		final File status = new File("/proc/self/status"); //$NON-NLS-1$
+		if (!status.isFile()) {
+			return -1;
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(status),
+				StandardCharsets.US_ASCII))) {
+			String line = reader.readLine();
+			while (line != null) {
+				if (line.startsWith(PEAK_RSS_ENTRY)) {
+					final String size = line.substring(PEAK_RSS_ENTRY.length()).trim()
+							.split("\\s+")[0]; //$NON-NLS-1$
+					return Long.parseLong(size) * KILOBYTE;
+				}
+				line = reader.readLine();
+			}
+		} catch (IOException | NumberFormatException e) {
+			// Unknown
+		}
+		return -1;
+	}
+
+	/**
+	 * Writes the samples to the part file, read back by {@link #readParts()} in the command.
+	 *
+	 * @param samples
+	 *            the samples.
+	 * @throws IOException
+	 *             if the part file can not be written.
+	 */
+	private void writePart(List<Sample> samples) throws IOException {
+		final Properties properties = new Properties();
+		for (Sample sample : samples) {
+			final StringBuilder key = new StringBuilder(sample.name);
+			for (Map.Entry<String, String> label : sample.labels.entrySet()) {
+				key.append(',').append(label.getKey()).append('=').append(label.getValue());
+			}
+			properties.setProperty(key.toString(), Double.toString(sample.value));
+		}
+		final File tmp = new File(destination.getPath() + ".tmp"); //$NON-NLS-1$
+		try (OutputStream out = new FileOutputStream(tmp)) {
+			properties.store(out, null);
+		}
+		Files.move(tmp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Reads the samples of the part files that exist, then deletes them. The part file of an application
+	 * still running is left as is.
+	 *
+	 * @return the samples.
+	 * @throws IOException
+	 *             if a part file can not be read.
+	 */
+	private synchronized List<Sample> readParts() throws IOException {
+		final List<Sample> samples = new ArrayList<Sample>();
+		for (File partFile : parts) {
+			if (!partFile.isFile()) {
+				continue;
+			}
+			final Properties properties = new Properties();
+			try (InputStream in = new FileInputStream(partFile)) {
+				properties.load(in);
+			}
+			for (String key : new TreeSet<String>(properties.stringPropertyNames())) {
+				final String[] segments = key.split(","); //$NON-NLS-1$
+				final Sample sample;
+				try {
+					sample = new Sample(segments[0], Double.parseDouble(properties.getProperty(key)));
+				} catch (NumberFormatException e) {
+					continue;
+				}
+				for (int i = 1; i < segments.length; i++) {
+					final int equal = segments[i].indexOf('=');
+					if (equal > 0) {
+						sample.label(segments[i].substring(0, equal), segments[i].substring(equal + 1));
+					}
+				}
+				samples.add(sample);
+			}
+			Files.delete(partFile.toPath());
+		}
+		return samples;
+	}
+
+	/**
+	 * Writes the samples to the destination, replacing it atomically so that it is never read half written.
+	 *
+	 * @param samples
+	 *            the samples.
+	 * @throws IOException
+	 *             if the destination can not be written.
+	 */
+	private void writeMetrics(List<Sample> samples) throws IOException {
+		final File tmp = new File(destination.getPath() + ".tmp"); //$NON-NLS-1$
+		try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp),
+				StandardCharsets.UTF_8))) {
+			if (json) {
+				for (Sample sample : samples) {
+					out.print(sample.toJson());
+					out.print('\n');
+				}
+			} else {
+				for (Map.Entry<String, String> metric : HELP.entrySet()) {
+					boolean first = true;
+					for (Sample sample : samples) {
+						if (sample.name.equals(metric.getKey())) {
+							if (first) {
+								out.print("# HELP " + PREFIX + metric.getKey() + ' ' //$NON-NLS-1$
+										+ metric.getValue() + '\n');
+								out.print("# TYPE " + PREFIX + metric.getKey() //$NON-NLS-1$
+										+ " gauge\n"); //$NON-NLS-1$
+								first = false;
+							}
+							out.print(sample.toPrometheus());
+							out.print('\n');
+						}
+					}
+				}
+			}
+			if (out.checkError()) {
+				throw new IOException("Unable to write " + tmp); //$NON-NLS-1$
+			}
+		}
+		try {
+			Files.move(tmp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Files.move(tmp.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Converts a duration to seconds.
+	 *
+	 * @param nanos
+	 *            the duration in nanoseconds.
+	 * @return the duration in seconds.
+	 */
+	private static double toSeconds(long nanos) {
+		return (double)nanos / TimeUnit.SECONDS.toNanos(1);
+	}
+
+	/**
+	 * A value of a metric.
+	 */
+	static final class Sample {
+
+		/** Name of the metric, without prefix. */
+		private final String name;
+
+		/** Labels of the value. */
+		private final Map<String, String> labels = new LinkedHashMap<String, String>();
+
+		/** The value. */
+		private final double value;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param name
+		 *            name of the metric, without prefix.
+		 * @param value
+		 *            the value.
+		 */
+		Sample(String name, double value) {
+			this.name = name;
+			this.value = value;
+		}
+
+		/**
+		 * Sets a label.
+		 *
+		 * @param label
+		 *            name of the label.
+		 * @param labelValue
+		 *            value of the label.
+		 * @return this
+		 */
+		Sample label(String label, String labelValue) {
+			labels.put(label, labelValue);
+			return this;
+		}
+
+		/**
+		 * Copies this sample, labeled by the command and the process it has been recorded in.
+		 *
+		 * @param commandName
+		 *            name of the command.
+		 * @param process
+		 *            the process, either the command or the application it has launched.
+		 * @return the labeled sample.
+		 */
+		Sample of(String commandName, String process) {
+			final Sample sample = new Sample(name, value).label("command", commandName) //$NON-NLS-1$
+					.label("process", process); //$NON-NLS-1$
+			for (Map.Entry<String, String> label : labels.entrySet()) {
+				sample.label(label.getKey(), label.getValue());
+			}
+			return sample;
+		}
+
+		/**
+		 * Formats this sample in the Prometheus text format.
+		 *
+		 * @return the line, without line separator.
+		 */
+		String toPrometheus() {
+			final StringBuilder line = new StringBuilder(PREFIX).append(name);
+			if (!labels.isEmpty()) {
+				line.append('{');
+				boolean first = true;
+				for (Map.Entry<String, String> label : labels.entrySet()) {
+					if (!first) {
+						line.append(',');
+					}
+					first = false;
+					final String escaped = label.getValue().replace("\\", "\\\\") //$NON-NLS-1$ //$NON-NLS-2$
+							.replace("\"", "\\\"") //$NON-NLS-1$ //$NON-NLS-2$
+							.replace("\n", "\\n"); //$NON-NLS-1$ //$NON-NLS-2$
+					line.append(label.getKey()).append("=\"").append(escaped).append('"'); //$NON-NLS-1$
+				}
+				line.append('}');
+			}
+			line.append(' ');
+			if (value == Math.rint(value) && !Double.isInfinite(value)) {
+				line.append((long)value);
+			} else {
+				line.append(value);
+			}
+			return line.toString();
+		}
+
+		/**
+		 * Formats this sample as a JSON object, its labels being members.
+		 *
+		 * @return the JSON object, without line separator.
+		 */
+		String toJson() {
+			final JsonLine line = new JsonLine().add("name", PREFIX + name); //$NON-NLS-1$
+			for (Map.Entry<String, String> label : labels.entrySet()) {
+				line.add(label.getKey(), label.getValue());
+			}
+			if (value == Math.rint(value) && !Double.isInfinite(value)) {
+				line.add("value", (long)value); //$NON-NLS-1$
+			} else {
+				line.add("value", value); //$NON-NLS-1$
+			}
+			return line.toString();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Standard stream that writes to the {@link Route} of the current thread, or to the original standard stream
+ * if the thread has none.
+ * <p>
+ * The {@link LogicalService} runs several commands at the same time and a {@link CommandSession} processes
+ * its steps while the other threads of the application keep running: the route is specific to a thread. It
+ * is inherited by the threads the thread starts, such as the ones reading the output of a launched
+ * application.
+ * </p>
+ */
+final class OutputRouter extends PrintStream {
+
+	/** Route of the current thread. */
+	private static final InheritableThreadLocal<Route> ROUTE = new InheritableThreadLocal<Route>();
+
+	/** <code>true</code> if this stream replaces the standard error stream. */
+	private final boolean error;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param original
+	 *            the original standard stream.
+	 * @param error
+	 *            <code>true</code> if this stream replaces the standard error stream.
+	 */
+	private OutputRouter(PrintStream original, boolean error) {
+		super(original, true);
+		this.error = error;
+	}
+
+	/**
+	 * Replaces the standard streams by routers, unless it has already been done.
+	 */
+	static synchronized void install() {
+		if (!(System.out instanceof OutputRouter)) {
+			System.setOut(new OutputRouter(System.out, false));
+		}
+		if (!(System.err instanceof OutputRouter)) {
+			System.setErr(new OutputRouter(System.err, true));
+		}
+	}
+
+	/**
+	 * Routes the standard streams of the current thread, and of the threads it starts from now on.
+	 *
+	 * @param out
+	 *            the stream to which the standard output is written.
+	 * @param err
+	 *            the stream to which the standard error is written.
+	 * @return the route, to close once the streams are no longer valid.
+	 */
+	static Route route(OutputStream out, OutputStream err) {
+		final Route route = new Route(out, err);
+		ROUTE.set(route);
+		return route;
+	}
+
+	@Override
+	public void write(int b) {
+		final OutputStream target = getTarget();
+		if (target == null) {
+			super.write(b);
+		} else {
+			try {
+				target.write(b);
+			} catch (IOException e) {
+				setError();
+			}
+		}
+	}
+
+	@Override
+	public void write(byte[] buf, int off, int len) {
+		final OutputStream target = getTarget();
+		if (target == null) {
+			super.write(buf, off, len);
+		} else {
+			try {
+				target.write(buf, off, len);
+			} catch (IOException e) {
+				setError();
+			}
+		}
+	}
+
+	@Override
+	public void flush() {
+		final OutputStream target = getTarget();
+		if (target == null) {
+			super.flush();
+		} else {
+			try {
+				target.flush();
+			} catch (IOException e) {
+				setError();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		// The original stream is shared by all the threads
+		flush();
+	}
+
+	/**
+	 * Gets the stream of the current thread.
+	 *
+	 * @return the stream, <code>null</code> if the original stream is used.
+	 */
+	private OutputStream getTarget() {
+		final Route route = ROUTE.get();
+		if (route == null) {
+			return null;
+		}
+		return route.get(error);
+	}
+
+	/**
+	 * The streams to which the standard streams of some threads are written.
+	 */
+	static final class Route {
+
+		/** The stream of the standard output, <code>null</code> once closed. */
+		private volatile OutputStream out;
+
+		/** The stream of the standard error, <code>null</code> once closed. */
+		private volatile OutputStream err;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param out
+		 *            the stream of the standard output.
+		 * @param err
+		 *            the stream of the standard error.
+		 */
+		Route(OutputStream out, OutputStream err) {
+			this.out = out;
+			this.err = err;
+		}
+
+		/**
+		 * Gets a stream of the route.
+		 *
+		 * @param error
+		 *            <code>true</code> to get the stream of the standard error.
+		 * @return the stream, <code>null</code> if the route has been closed.
+		 */
+		OutputStream get(boolean error) {
+			if (error) {
+				return err;
+			}
+			return out;
+		}
+
+		/**
+		 * Closes the route: the threads that still use it, for instance the threads of a pool started by a
+		 * command, write to the original standard streams from now on.
+		 */
+		void close() {
+			out = null;
+			err = null;
+			if (ROUTE.get() == this) {
+				ROUTE.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.emf.common.util.Monitor;
+import org.eclipse.emf.compare.Comparison;
+import org.eclipse.emf.compare.ComparisonCanceledException;
+import org.eclipse.emf.compare.Match;
+import org.eclipse.emf.compare.diff.DefaultDiffEngine;
+import org.eclipse.emf.compare.diff.IDiffProcessor;
+import org.eclipse.emf.ecore.EObject;
+
+/**
+ * Diff engine computing the differences of the match subtrees of a comparison in parallel.
+ * <p>
+ * The match tree is split, in pre-order, into units of roughly the same number of matches: a unit is a match
+ * and its descendants, minus the descendants that are the roots of other units. Each unit is checked for
+ * differences by the {@link DefaultDiffEngine} on a thread of the executor. The threads do not modify the
+ * comparison: the differences they find are recorded and then created by the diff processor of the engine,
+ * on the calling thread, unit after unit in pre-order. Since each match keeps its differences in the order
+ * they have been found and the differences of the comparison are listed match after match, the comparison
+ * is identical to the one of a sequential {@link DefaultDiffEngine}.
+ * </p>
+ * <p>
+ * The compared models are only read during the parallel phase, which requires the engine not to resolve
+ * proxies, as {@link DefaultDiffEngine} does.
+ * </p>
+ * <p>
+ * If a {@link MemoryBudget} is given, each comparison runs no more workers than the budget allows, down to
+ * a sequential check once the heap is near its limit.
+ * </p>
+ */
+public class ParallelDiffEngine extends DefaultDiffEngine {
+
+	/** Number of units per thread, so that a large unit does not leave the other threads idle. */
+	private static final int UNITS_PER_THREAD = 4;
+
+	/** Executor running the units. */
+	private final ExecutorService executor;
+
+	/** Number of threads of the executor. */
+	private final int threads;
+
+	/** Budget bounding the number of workers, may be <code>null</code>. */
+	private final MemoryBudget budget;
+
+	/** Unit being checked by the current thread, if any. */
+	private final ThreadLocal<Unit> currentUnit = new ThreadLocal<Unit>();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor
+	 *            executor running the units, for instance a {@link java.util.concurrent.ForkJoinPool}.
+	 * @param threads
+	 *            number of threads of the executor.
+	 */
+	public ParallelDiffEngine(ExecutorService executor, int threads) {
+		this(executor, threads, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param executor
+	 *            executor running the units, for instance a {@link java.util.concurrent.ForkJoinPool}.
+	 * @param threads
+	 *            number of threads of the executor.
+	 * @param budget
+	 *            budget bounding the number of workers of each comparison, may be <code>null</code>.
+	 */
+	public ParallelDiffEngine(ExecutorService executor, int threads, MemoryBudget budget) {
+		this.executor = executor;
+		this.threads = threads;
+		this.budget = budget;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void diff(Comparison comparison, final Monitor monitor) {
+		final List<Match> roots = new ArrayList<Match>();
+		final Map<Match, Integer> sizes = new HashMap<Match, Integer>();
+		int total = 0;
+		for (Match rootMatch : comparison.getMatches()) {
+			total += computeSizes(rootMatch, sizes);
+		}
+		final int workers;
+		if (budget != null) {
+			workers = budget.getWorkerCount(threads);
+		} else {
+			workers = threads;
+		}
+		final int unitSize = Math.max(1, total / (workers * UNITS_PER_THREAD));
+		for (Match rootMatch : comparison.getMatches()) {
+			split(rootMatch, sizes, unitSize, roots);
+		}
+		if (workers < 2 || roots.size() < 2) {
+			super.diff(comparison, monitor);
+			return;
+		}
+
+		warmUp(comparison);
+		final Set<Match> unitRoots = new HashSet<Match>(roots);
+		final Unit[] units = new Unit[roots.size()];
+		// Each worker checks the next unit left, so that at most the given number of units run at once
+		final AtomicInteger next = new AtomicInteger();
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < workers; i++) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (int index = next.getAndIncrement(); index < units.length; index = next
+							.getAndIncrement()) {
+						final Match root = roots.get(index);
+						final Unit unit = new Unit(root, unitRoots);
+						currentUnit.set(unit);
+						try {
+							checkForDifferences(root, monitor);
+						} finally {
+							currentUnit.remove();
+						}
+						units[index] = unit;
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+			for (Unit unit : units) {
+				unit.replay(getDiffProcessor());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ComparisonCanceledException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error)e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * When called for the submatch of a unit that is the root of another unit, does nothing: the submatch is
+	 * checked by its own unit.
+	 * </p>
+	 */
+	@Override
+	protected void checkForDifferences(Match match, Monitor monitor) {
+		final Unit unit = currentUnit.get();
+		if (unit == null || !unit.isOtherUnit(match)) {
+			super.checkForDifferences(match, monitor);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Returns the recorder of the unit being checked by the current thread, if any.
+	 * </p>
+	 */
+	@Override
+	protected IDiffProcessor getDiffProcessor() {
+		final Unit unit = currentUnit.get();
+		if (unit != null) {
+			return unit.recorder;
+		}
+		return super.getDiffProcessor();
+	}
+
+	/**
+	 * Creates, on the calling thread, the helpers that the comparison creates lazily, so that the threads
+	 * only read them.
+	 *
+	 * @param comparison
+	 *            the comparison.
+	 */
+	private static void warmUp(Comparison comparison) {
+		comparison.getEqualityHelper();
+		final Match firstMatch = comparison.getMatches().get(0);
+		EObject object = firstMatch.getLeft();
+		if (object == null) {
+			object = firstMatch.getRight();
+		}
+		if (object == null) {
+			object = firstMatch.getOrigin();
+		}
+		if (object != null) {
+			comparison.getMatch(object);
+		}
+	}
+
+	/**
+	 * Computes the number of matches of the subtree of each match.
+	 *
+	 * @param match
+	 *            the root of the subtree.
+	 * @param sizes
+	 *            the number of matches of each subtree, completed with the ones of this subtree.
+	 * @return the number of matches of the subtree.
+	 */
+	private static int computeSizes(Match match, Map<Match, Integer> sizes) {
+		int size = 1;
+		for (Match submatch : match.getSubmatches()) {
+			size += computeSizes(submatch, sizes);
+		}
+		sizes.put(match, Integer.valueOf(size));
+		return size;
+	}
+
+	/**
+	 * Splits a subtree into units, in pre-order: the subtree is a unit if it is small enough, otherwise its
+	 * root alone is a unit and each of its submatches is split in turn.
+	 *
+	 * @param match
+	 *            the root of the subtree.
+	 * @param sizes
+	 *            the number of matches of each subtree.
+	 * @param unitSize
+	 *            the number of matches above which a subtree is split.
+	 * @param roots
+	 *            the roots of the units, completed with the ones of this subtree.
+	 */
+	private static void split(Match match, Map<Match, Integer> sizes, int unitSize, List<Match> roots) {
+		roots.add(match);
+		if (sizes.get(match).intValue() > unitSize) {
+			for (Match submatch : match.getSubmatches()) {
+				split(submatch, sizes, unitSize, roots);
+			}
+		}
+	}
+
+	/**
+	 * A unit of the match tree, and the calls its check made to the diff processor.
+	 */
+	private static final class Unit implements InvocationHandler {
+
+		/** Root of the unit. */
+		private final Match root;
+
+		/** Roots of all the units. */
+		private final Set<Match> unitRoots;
+
+		/** Calls made to the diff processor: the method followed by its arguments. */
+		private final List<Object[]> calls = new ArrayList<Object[]>();
+
+		/**
+		 * Diff processor recording the calls. It is a proxy of the interface so that it records any
+		 * callback whatever the version of EMF Compare.
+		 */
+		private final IDiffProcessor recorder;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param root
+		 *            root of the unit.
+		 * @param unitRoots
+		 *            roots of all the units.
+		 */
+		Unit(Match root, Set<Match> unitRoots) {
+			this.root = root;
+			this.unitRoots = unitRoots;
+			this.recorder = (IDiffProcessor)Proxy.newProxyInstance(IDiffProcessor.class.getClassLoader(),
+					new Class<?>[] {IDiffProcessor.class }, this);
+		}
+
+		/**
+		 * Tells whether a match is the root of another unit.
+		 *
+		 * @param match
+		 *            the match.
+		 * @return <code>true</code> if the match is checked by another unit.
+		 */
+		boolean isOtherUnit(Match match) {
+			return match != root && unitRoots.contains(match);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getDeclaringClass() == Object.class) {
+				if ("equals".equals(method.getName())) { //$NON-NLS-1$
+					return Boolean.valueOf(proxy == args[0]);
+				} else if ("hashCode".equals(method.getName())) { //$NON-NLS-1$
+					return Integer.valueOf(System.identityHashCode(proxy));
+				}
+				return "Recorder of " + root; //$NON-NLS-1$
+			}
+			calls.add(new Object[] {method, args });
+			return null;
+		}
+
+		/**
+		 * Makes the recorded calls to a diff processor, in the order they have been recorded.
+		 *
+		 * @param processor
+		 *            the diff processor.
+		 */
+		void replay(IDiffProcessor processor) {
+			for (Object[] call : calls) {
+				try {
+					((Method)call[0]).invoke(processor, (Object[])call[1]);
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				} catch (InvocationTargetException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException)e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+/**
+ * Phases of the logical commands, each of which is recorded as a Java Flight Recorder event type by
+ * {@link FlightRecording} and whose durations are written by the {@link Metrics}.
+ */
+public enum Phase {
+
+	/** Provisioning of the installation and the workspace by Oomph. */
+	BOOTSTRAP("Bootstrap", //$NON-NLS-1$
+			"Provisioning of the installation and the workspace by Oomph"), //$NON-NLS-1$
+
+	/** Run of the installed product by the command. */
+	LAUNCH("Launch", //$NON-NLS-1$
+			"Run of the installed product by the command"), //$NON-NLS-1$
+
+	/** Clean of the workspace before the projects are imported. */
+	WORKSPACE_CLEAN("Workspace Clean", //$NON-NLS-1$
+			"Clean of the workspace before the projects are imported"), //$NON-NLS-1$
+
+	/** Startup tasks of the setup, mostly the import of the projects. */
+	PROJECT_IMPORT("Project Import", //$NON-NLS-1$
+			"Startup tasks of the setup, mostly the import of the projects"), //$NON-NLS-1$
+
+	/** Initialization of the subscriber synchronizing two commits. */
+	SUBSCRIBER_INIT("Subscriber Init", //$NON-NLS-1$
+			"Initialization of the subscriber synchronizing two commits"), //$NON-NLS-1$
+
+	/** Resolution of the resource mappings of a file by the model providers. */
+	MAPPING_RESOLUTION("Mapping Resolution", //$NON-NLS-1$
+			"Resolution of the resource mappings of a file by the models"), //$NON-NLS-1$
+
+	/** Comparison of a logical model. */
+	COMPARE("Compare", //$NON-NLS-1$
+			"Comparison of a logical model"), //$NON-NLS-1$
+
+	/** Serialization of a comparison. */
+	SERIALIZE("Serialize", //$NON-NLS-1$
+			"Serialization of a comparison"), //$NON-NLS-1$
+
+	/** Execution of an EGit operation. */
+	EGIT_OPERATION("EGit Operation", //$NON-NLS-1$
+			"Execution of an EGit operation"), //$NON-NLS-1$
+
+	/** Wait for the EGit jobs to terminate. */
+	WAIT_EGIT_JOBS("Wait EGit Jobs", //$NON-NLS-1$
+			"Wait for the EGit jobs to terminate"); //$NON-NLS-1$
+
+	/** Human readable name of the phase. */
+	private final String label;
+
+	/** Description of the phase. */
+	private final String description;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param label
+	 *            human readable name of the phase.
+	 * @param description
+	 *            description of the phase.
+	 */
+	Phase(String label, String description) {
+		this.label = label;
+		this.description = description;
+	}
+
+	/**
+	 * Gets the human readable name of the phase.
+	 *
+	 * @return the label.
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * Gets the description of the phase.
+	 *
+	 * @return the description.
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * Begins an occurrence of the phase. The returned event has to be ended, typically in a
+	 * <code>finally</code> block.
+	 *
+	 * @param detail
+	 *            what the phase works on, such as a file or an operation, may be <code>null</code>.
+	 * @return the event.
+	 */
+	public PhaseEvent begin(String detail) {
+		return new PhaseEvent(this, detail);
+	}
+}
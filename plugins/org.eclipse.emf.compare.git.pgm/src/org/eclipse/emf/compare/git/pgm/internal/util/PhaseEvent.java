@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+/**
+ * An occurrence of a {@link Phase}, committed as a Java Flight Recorder event when it ends. If the JVM has no
+ * flight recorder, the event is only recorded in the {@link Metrics}.
+ */
+public final class PhaseEvent {
+
+	/** The phase. */
+	private final Phase phase;
+
+	/** What the phase works on, may be <code>null</code>. */
+	private final String detail;
+
+	/** The flight recorder event, <code>null</code> if there is no flight recorder. */
+	private final Object jfrEvent;
+
+	/** Start of the event, in nanoseconds. */
+	private final long start;
+
+	/** Whether the event has ended. */
+	private boolean ended;
+
+	/**
+	 * Constructor, beginning the event.
+	 *
+	 * @param phase
+	 *            the phase.
+	 * @param detail
+	 *            what the phase works on, may be <code>null</code>.
+	 */
+	PhaseEvent(Phase phase, String detail) {
+		this.phase = phase;
+		this.detail = detail;
+		this.jfrEvent = FlightRecording.begin(phase);
+		this.start = System.nanoTime();
+	}
+
+	/**
+	 * Gets the phase.
+	 *
+	 * @return the phase.
+	 */
+	public Phase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Ends the event. Ending it again does nothing.
+	 */
+	public void end() {
+		if (!ended) {
+			ended = true;
+			Metrics.recordPhase(phase, System.nanoTime() - start);
+			FlightRecording.commit(jfrEvent, detail);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+/**
+ * Policies resolving the proxies of the models loaded from the revisions of a repository.
+ */
+public enum ProxyResolution {
+	/**
+	 * Only loads the resources of the logical model: the proxies to other resources are never resolved.
+	 */
+	TRAVERSAL("traversal"), //$NON-NLS-1$
+	/**
+	 * Loads the resources of the logical model, and the other resources when a proxy to them is resolved
+	 * during the comparison.
+	 */
+	LAZY("lazy"), //$NON-NLS-1$
+	/**
+	 * Loads the resources of the logical model and resolves all their proxies, transitively, as soon as
+	 * they are loaded.
+	 */
+	ALL("all"); //$NON-NLS-1$
+
+	/** Name of the policy on the command line. */
+	private final String name;
+
+	/**
+	 * Internal constructor.
+	 *
+	 * @param name
+	 *            name of the policy on the command line.
+	 */
+	private ProxyResolution(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Gets the name of the policy on the command line.
+	 *
+	 * @return the name of the policy.
+	 */
+	public String getName() {
+		return name;
+	}
+}
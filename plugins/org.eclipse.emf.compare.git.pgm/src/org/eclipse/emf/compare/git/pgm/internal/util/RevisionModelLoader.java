@@ -0,0 +1,577 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.toRepositoryPath;
+
+import com.google.common.base.Predicate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IStorage;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.internal.cache.BinaryResourceCache;
+import org.eclipse.emf.compare.ide.ui.logical.SynchronizationModel;
+import org.eclipse.emf.compare.ide.utils.StorageTraversal;
+import org.eclipse.emf.compare.scope.FilterComparisonScope;
+import org.eclipse.emf.compare.scope.IComparisonScope;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLParserPool;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+/**
+ * Loads the models of the revisions of a repository straight from its object database.
+ * <p>
+ * Each revision gets its own {@link ResourceSet}, which URI converter reads the files of the work tree from
+ * the tree of the revision through a {@link GitTreeURIHandler}. Blobs are streamed to the XML parser instead
+ * of being copied in memory by the storages of the synchronization model. If a {@link BinaryResourceCache}
+ * is given, the resources of a blob already parsed once are read from their binary encoding instead.
+ * </p>
+ * <p>
+ * The {@link ProxyResolution} policy tells whether the resources out of the loaded paths may be loaded to
+ * resolve proxies. The number of resources of a resource set can also be bounded: once it is reached, a
+ * warning is printed and no other resource is loaded, the proxies to them staying unresolved.
+ * </p>
+ */
+public class RevisionModelLoader {
+
+	/** Size of the chunks of a blob read to find its line delimiter. */
+	private static final int LINE_DELIMITER_BUFFER_SIZE = 4096;
+
+	/** Parser pool shared by all the loaded revisions. */
+	private static final XMLParserPool PARSER_POOL = new XMLParserPoolImpl();
+
+	/** Name to feature map shared by all the loaded revisions. */
+	private static final Map<Object, Object> NAME_TO_FEATURE_MAP = Collections
+			.synchronizedMap(new HashMap<Object, Object>());
+
+	/** Repository holding the revisions. */
+	private final Repository repo;
+
+	/** Cache of the parsed resources, may be <code>null</code>. */
+	private final BinaryResourceCache cache;
+
+	/** Policy resolving the proxies of the loaded resources. */
+	private ProxyResolution proxyResolution = ProxyResolution.LAZY;
+
+	/** Maximum number of resources of a resource set, 0 if unbounded. */
+	private int maxResources;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param repo
+	 *            repository holding the revisions.
+	 */
+	public RevisionModelLoader(Repository repo) {
+		this(repo, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param repo
+	 *            repository holding the revisions.
+	 * @param cache
+	 *            cache of the parsed resources, may be <code>null</code>.
+	 */
+	public RevisionModelLoader(Repository repo, BinaryResourceCache cache) {
+		this.repo = repo;
+		this.cache = cache;
+	}
+
+	/**
+	 * Gets the repository holding the revisions.
+	 *
+	 * @return the repository.
+	 */
+	public Repository getRepository() {
+		return repo;
+	}
+
+	/**
+	 * Sets the policy resolving the proxies of the resources loaded afterward.
+	 *
+	 * @param policy
+	 *            the policy, {@link ProxyResolution#LAZY} by default.
+	 */
+	public void setProxyResolution(ProxyResolution policy) {
+		this.proxyResolution = policy;
+	}
+
+	/**
+	 * Sets the maximum number of resources of the resource sets created afterward.
+	 *
+	 * @param max
+	 *            the maximum number of resources, 0 if unbounded, which is the default.
+	 */
+	public void setMaxResources(int max) {
+		this.maxResources = max;
+	}
+
+	/**
+	 * Creates a resource set that reads the files of the work tree from the given revision.
+	 *
+	 * @param commit
+	 *            the revision.
+	 * @return a new resource set.
+	 */
+	public ResourceSet createResourceSet(RevCommit commit) {
+		final GitTreeURIHandler handler = new GitTreeURIHandler(repo, commit.getTree());
+		final ResourceSet resourceSet = new RevisionResourceSet(handler, cache, proxyResolution,
+				maxResources);
+		resourceSet.getURIConverter().getURIHandlers().add(0, handler);
+		resourceSet.getLoadOptions().putAll(getLoadOptions());
+		return resourceSet;
+	}
+
+	/**
+	 * Gets the options used to load the resources of a revision.
+	 *
+	 * @return the load options.
+	 */
+	protected Map<Object, Object> getLoadOptions() {
+		final Map<Object, Object> options = new HashMap<Object, Object>();
+		options.put(XMLResource.OPTION_USE_PARSER_POOL, PARSER_POOL);
+		options.put(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP, NAME_TO_FEATURE_MAP);
+		options.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+		options.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.FALSE);
+		return options;
+	}
+
+	/**
+	 * Gets the options saving a resource in the same encoding and with the same line delimiter as the blob
+	 * it has been loaded from.
+	 *
+	 * @param resource
+	 *            the saved resource.
+	 * @param originalId
+	 *            id of the blob the resource has been loaded from, <code>null</code> if it is new.
+	 * @param reader
+	 *            reader of the repository.
+	 * @return the save options.
+	 * @throws IOException
+	 *             if the original blob can not be read.
+	 */
+	public static Map<Object, Object> getSaveOptions(Resource resource, ObjectId originalId,
+			ObjectReader reader) throws IOException {
+		if (originalId != null && reader.has(originalId)) {
+			try (InputStream in = reader.open(originalId, Constants.OBJ_BLOB).openStream()) {
+				return getSaveOptions(resource, in);
+			}
+		}
+		return getSaveOptions(resource, (InputStream)null);
+	}
+
+	/**
+	 * Gets the options saving a resource in the same encoding and with the same line delimiter as the
+	 * content it has been loaded from.
+	 *
+	 * @param resource
+	 *            the saved resource.
+	 * @param original
+	 *            the content the resource has been loaded from, <code>null</code> if it is new. It is only
+	 *            read up to its first line feed and is not closed.
+	 * @return the save options.
+	 * @throws IOException
+	 *             if the original content can not be read.
+	 */
+	public static Map<Object, Object> getSaveOptions(Resource resource, InputStream original)
+			throws IOException {
+		final Map<Object, Object> options = new HashMap<Object, Object>();
+		if (resource instanceof XMLResource) {
+			options.putAll(((XMLResource)resource).getDefaultSaveOptions());
+			options.put(XMLResource.OPTION_ENCODING, ((XMLResource)resource).getEncoding());
+		}
+		if (original != null) {
+			final String lineDelimiter = getLineDelimiter(original);
+			if (lineDelimiter != null) {
+				options.put(Resource.OPTION_LINE_DELIMITER, lineDelimiter);
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * Finds the line delimiter of a content, streaming it up to its first line feed.
+	 *
+	 * @param in
+	 *            the content.
+	 * @return the line delimiter of the content, <code>null</code> if it holds a single line.
+	 * @throws IOException
+	 *             if the content can not be read.
+	 */
+	private static String getLineDelimiter(InputStream in) throws IOException {
+		final byte[] buffer = new byte[LINE_DELIMITER_BUFFER_SIZE];
+		byte previous = 0;
+		int count = in.read(buffer);
+		while (count >= 0) {
+			for (int i = 0; i < count; i++) {
+				if (buffer[i] == '\n' && previous == '\r') {
+					return "\r\n"; //$NON-NLS-1$
+				} else if (buffer[i] == '\n') {
+					return "\n"; //$NON-NLS-1$
+				}
+				previous = buffer[i];
+			}
+			count = in.read(buffer);
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the URI under which a file of the work tree is loaded: a platform resource URI if the file belongs
+	 * to a project of the workspace, a file URI otherwise.
+	 *
+	 * @param path
+	 *            path of the file in the repository.
+	 * @return the URI of the file.
+	 */
+	public URI getURI(String path) {
+		final File file = new File(repo.getWorkTree(), path);
+		final IFile workspaceFile = ResourcesPlugin.getWorkspace().getRoot().getFileForLocation(
+				new org.eclipse.core.runtime.Path(file.getAbsolutePath()));
+		if (workspaceFile != null) {
+			return URI.createPlatformResourceURI(workspaceFile.getFullPath().toString(), true);
+		}
+		return URI.createFileURI(file.getAbsolutePath());
+	}
+
+	/**
+	 * Loads the resources of a revision.
+	 *
+	 * @param commit
+	 *            the revision.
+	 * @param paths
+	 *            paths of the resources to load.
+	 * @return the resource set holding the resources.
+	 */
+	public ResourceSet load(RevCommit commit, Iterable<String> paths) {
+		final ResourceSet resourceSet = createResourceSet(commit);
+		for (String path : paths) {
+			getResource(resourceSet, path);
+		}
+		return resourceSet;
+	}
+
+	/**
+	 * Gets a resource of a resource set, loading it if needed. Contrary to the resources loaded to resolve a
+	 * proxy, the resource is loaded whatever the {@link ProxyResolution} policy, as long as the maximum
+	 * number of resources has not been reached.
+	 *
+	 * @param resourceSet
+	 *            a resource set created by this loader.
+	 * @param path
+	 *            repository path of the resource.
+	 * @return the resource or <code>null</code> if the maximum number of resources has been reached.
+	 */
+	public Resource getResource(ResourceSet resourceSet, String path) {
+		final URI uri = getURI(path);
+		if (resourceSet instanceof RevisionResourceSet) {
+			return ((RevisionResourceSet)resourceSet).getRequestedResource(uri);
+		}
+		return resourceSet.getResource(uri, true);
+	}
+
+	/**
+	 * Creates a comparison scope for a synchronization model which sides are revisions of the repository.
+	 * The resources of the traversals are loaded from the object database rather than from the storages.
+	 *
+	 * @param syncModel
+	 *            the synchronization model.
+	 * @param left
+	 *            revision of the left traversal.
+	 * @param right
+	 *            revision of the right traversal.
+	 * @param origin
+	 *            revision of the origin traversal, may be <code>null</code> for a two-way comparison.
+	 * @return the comparison scope or <code>null</code> if a storage of the synchronization model does not
+	 *         belong to the work tree of the repository.
+	 */
+	public IComparisonScope createScope(SynchronizationModel syncModel, RevCommit left, RevCommit right,
+			RevCommit origin) {
+		final List<String> leftPaths = toRepositoryPaths(syncModel.getLeftTraversal());
+		final List<String> rightPaths = toRepositoryPaths(syncModel.getRightTraversal());
+		final List<String> originPaths = toRepositoryPaths(syncModel.getOriginTraversal());
+		if (leftPaths == null || rightPaths == null || originPaths == null
+				|| (origin == null && !originPaths.isEmpty())) {
+			return null;
+		}
+		ResourceSet leftSet = null;
+		ResourceSet rightSet = null;
+		ResourceSet originSet = null;
+		try {
+			leftSet = load(left, leftPaths);
+			rightSet = load(right, rightPaths);
+			if (!originPaths.isEmpty()) {
+				originSet = load(origin, originPaths);
+			}
+			return createScope(leftSet, rightSet, originSet);
+		} catch (RuntimeException e) {
+			// Does not leak the sides loaded before the failure
+			unload(leftSet);
+			unload(rightSet);
+			unload(originSet);
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a comparison scope restricted to the resources that are loaded at the time of the call; the
+	 * resources loaded afterward by proxy resolution are not compared.
+	 *
+	 * @param leftSet
+	 *            left resource set.
+	 * @param rightSet
+	 *            right resource set.
+	 * @param originSet
+	 *            origin resource set, may be <code>null</code>.
+	 * @return the comparison scope.
+	 */
+	public IComparisonScope createScope(ResourceSet leftSet, ResourceSet rightSet, ResourceSet originSet) {
+		final Set<URI> compared = new HashSet<URI>();
+		final Set<String> resourceURIs = new LinkedHashSet<String>();
+		final Set<String> nsURIs = new LinkedHashSet<String>();
+		for (ResourceSet resourceSet : new ResourceSet[] {leftSet, rightSet, originSet }) {
+			if (resourceSet != null) {
+				for (Resource resource : resourceSet.getResources()) {
+					compared.add(resource.getURI());
+					resourceURIs.add(resource.getURI().toString());
+					for (EObject root : resource.getContents()) {
+						nsURIs.add(root.eClass().getEPackage().getNsURI());
+					}
+				}
+			}
+		}
+		final FilterComparisonScope scope = new FilterComparisonScope(leftSet, rightSet, originSet);
+		scope.setResourceSetContentFilter(new Predicate<Resource>() {
+			public boolean apply(Resource input) {
+				return input != null && compared.contains(input.getURI());
+			}
+		});
+		scope.setResourceURIs(resourceURIs);
+		scope.setNsURIs(nsURIs);
+		return scope;
+	}
+
+	/**
+	 * Unloads the resources of a comparison scope and removes them from their resource sets, so that the
+	 * models of a comparison can be garbage collected as soon as its result has been written.
+	 *
+	 * @param scope
+	 *            the comparison scope, which must not be used afterward.
+	 */
+	public static void unload(IComparisonScope scope) {
+		for (Notifier notifier : new Notifier[] {scope.getLeft(), scope.getRight(), scope.getOrigin() }) {
+			if (notifier instanceof ResourceSet) {
+				unload((ResourceSet)notifier);
+			} else if (notifier instanceof Resource) {
+				((Resource)notifier).unload();
+			}
+		}
+	}
+
+	/**
+	 * Unloads the resources of a resource set and removes them from it.
+	 *
+	 * @param resourceSet
+	 *            the resource set, may be <code>null</code>.
+	 */
+	public static void unload(ResourceSet resourceSet) {
+		if (resourceSet != null) {
+			final List<Resource> resources = resourceSet.getResources();
+			for (Resource resource : resources) {
+				resource.unload();
+			}
+			resources.clear();
+		}
+	}
+
+	/**
+	 * Gets the repository paths of the storages of a traversal.
+	 *
+	 * @param traversal
+	 *            the traversal, may be <code>null</code>.
+	 * @return the paths or <code>null</code> if a storage does not belong to the work tree of the
+	 *         repository.
+	 */
+	private List<String> toRepositoryPaths(StorageTraversal traversal) {
+		final List<String> paths = new ArrayList<String>();
+		if (traversal != null) {
+			for (IStorage storage : traversal.getStorages()) {
+				String path = toRepositoryPath(repo, storage);
+				if (path == null) {
+					return null;
+				}
+				paths.add(path);
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * Resource set of a revision. Resources are read from the binary cache, if any, before being parsed.
+	 */
+	private static final class RevisionResourceSet extends ResourceSetImpl {
+
+		/** Handler reading the files of the revision. */
+		private final GitTreeURIHandler handler;
+
+		/** Cache of the parsed resources, may be <code>null</code>. */
+		private final BinaryResourceCache cache;
+
+		/** Policy resolving the proxies of the loaded resources. */
+		private final ProxyResolution proxyResolution;
+
+		/** Maximum number of resources, 0 if unbounded. */
+		private final int maxResources;
+
+		/** Whether a resource is being loaded on request rather than to resolve a proxy. */
+		private boolean requested;
+
+		/**
+		 * Number of resources which proxies have been resolved, with the {@link ProxyResolution#ALL} policy.
+		 */
+		private int resolvedCount;
+
+		/** Whether the warning about the maximum number of resources has been printed. */
+		private boolean warned;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param handler
+		 *            handler reading the files of the revision.
+		 * @param cache
+		 *            cache of the parsed resources, may be <code>null</code>.
+		 * @param proxyResolution
+		 *            policy resolving the proxies of the loaded resources.
+		 * @param maxResources
+		 *            maximum number of resources, 0 if unbounded.
+		 */
+		private RevisionResourceSet(GitTreeURIHandler handler, BinaryResourceCache cache,
+				ProxyResolution proxyResolution, int maxResources) {
+			this.handler = handler;
+			this.cache = cache;
+			this.proxyResolution = proxyResolution;
+			this.maxResources = maxResources;
+		}
+
+		/**
+		 * Gets a resource, loading it if needed whatever the proxy resolution policy. With the
+		 * {@link ProxyResolution#ALL} policy, the proxies of the new resources are resolved.
+		 *
+		 * @param uri
+		 *            URI of the resource.
+		 * @return the resource or <code>null</code> if the maximum number of resources has been reached.
+		 */
+		Resource getRequestedResource(URI uri) {
+			final Resource resource;
+			requested = true;
+			try {
+				resource = getResource(uri, true);
+			} finally {
+				requested = false;
+			}
+			if (proxyResolution == ProxyResolution.ALL) {
+				// Resolving the proxies of a resource may load new resources, which are resolved in turn
+				final List<Resource> resources = getResources();
+				while (resolvedCount < resources.size()) {
+					EcoreUtil.resolveAll(resources.get(resolvedCount));
+					resolvedCount++;
+				}
+			}
+			return resource;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * <p>
+		 * Does not create a resource that the policy or the maximum number of resources forbids to load.
+		 * </p>
+		 */
+		@Override
+		public Resource getResource(URI uri, boolean loadOnDemand) {
+			if (loadOnDemand && super.getResource(uri, false) == null && !canLoad(uri)) {
+				return null;
+			}
+			return super.getResource(uri, loadOnDemand);
+		}
+
+		/**
+		 * Tells whether a new resource may be loaded.
+		 *
+		 * @param uri
+		 *            URI of the resource.
+		 * @return <code>true</code> if the resource may be loaded.
+		 */
+		private boolean canLoad(URI uri) {
+			if (!requested && proxyResolution == ProxyResolution.TRAVERSAL) {
+				return false;
+			}
+			if (maxResources > 0 && getResources().size() >= maxResources) {
+				if (!warned) {
+					warned = true;
+					System.err.println("warning: the limit of " + maxResources //$NON-NLS-1$
+							+ " resources per logical model has been reached, " + uri //$NON-NLS-1$
+							+ " and the next resources are not loaded."); //$NON-NLS-1$
+				}
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void demandLoad(Resource resource) throws IOException {
+			ObjectId blobId = null;
+			if (cache != null && handler.canHandle(resource.getURI())) {
+				blobId = handler.getBlobId(handler.toRepositoryPath(resource.getURI()));
+			}
+			if (blobId != null && cache.load(blobId, resource)) {
+				return;
+			}
+			super.demandLoad(resource);
+			if (blobId != null && resource.getErrors().isEmpty()) {
+				try {
+					cache.store(blobId, resource);
+				} catch (IOException e) {
+					// The cache is best-effort, the resource has been loaded anyway
+				}
+			}
+		}
+	}
+}
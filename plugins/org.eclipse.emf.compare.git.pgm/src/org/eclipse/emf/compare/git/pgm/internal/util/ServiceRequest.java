@@ -0,0 +1,482 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A request sent to the {@link LogicalService}: an HTTP/1.1 request whose body, if any, is a JSON object
+ * whose members are strings or arrays of strings.
+ */
+public final class ServiceRequest {
+
+	/** Maximum length of the request line and of a header. */
+	private static final int MAX_LINE_LENGTH = 8192;
+
+	/** Maximum number of headers. */
+	private static final int MAX_HEADERS = 100;
+
+	/** Maximum length of the body. */
+	private static final int MAX_BODY_LENGTH = 1 << 20;
+
+	/** Number of hexadecimal digits of a unicode escape. */
+	private static final int UNICODE_ESCAPE_LENGTH = 4;
+
+	/** Radix of a unicode escape. */
+	private static final int HEX_RADIX = 16;
+
+	/** Method of the request, such as GET or POST. */
+	private final String method;
+
+	/** Path of the request, without its query. */
+	private final String path;
+
+	/** Values of the headers by lower case name. */
+	private final Map<String, String> headers;
+
+	/** Members of the JSON body, empty if there is no body. */
+	private final Map<String, Object> members;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param method
+	 *            method of the request.
+	 * @param path
+	 *            path of the request, without its query.
+	 * @param headers
+	 *            values of the headers by lower case name.
+	 * @param members
+	 *            members of the JSON body.
+	 */
+	private ServiceRequest(String method, String path, Map<String, String> headers,
+			Map<String, Object> members) {
+		this.method = method;
+		this.path = path;
+		this.headers = headers;
+		this.members = members;
+	}
+
+	/**
+	 * Reads a request. A <code>100 Continue</code> response is written if the client expects it before
+	 * sending the body.
+	 *
+	 * @param in
+	 *            the stream of the client.
+	 * @param out
+	 *            the stream to the client.
+	 * @return the request, <code>null</code> if the client has closed the connection before sending one.
+	 * @throws ProtocolException
+	 *             if the request is not a valid HTTP request or its body is not a valid JSON object.
+	 * @throws IOException
+	 *             if the connection fails.
+	 */
+	public static ServiceRequest read(InputStream in, OutputStream out) throws IOException {
+		final String requestLine = readLine(in);
+		if (requestLine == null) {
+			return null;
+		}
+		final String[] parts = requestLine.split(" "); //$NON-NLS-1$
+		if (parts.length != 3 || !parts[2].startsWith("HTTP/")) { //$NON-NLS-1$
+			throw new ProtocolException("malformed request line '" + requestLine //$NON-NLS-1$
+					+ "'"); //$NON-NLS-1$
+		}
+		final Map<String, String> headers = readHeaders(in);
+
+		final Map<String, Object> members;
+		final String contentLength = headers.get("content-length"); //$NON-NLS-1$
+		if (headers.containsKey("transfer-encoding")) { //$NON-NLS-1$
+			throw new ProtocolException("the body must be sent with a Content-Length"); //$NON-NLS-1$
+		} else if (contentLength != null) {
+			final int length;
+			try {
+				length = Integer.parseInt(contentLength.trim());
+			} catch (NumberFormatException e) {
+				throw new ProtocolException("bad Content-Length '" + contentLength //$NON-NLS-1$
+						+ "'"); //$NON-NLS-1$
+			}
+			if (length < 0 || length > MAX_BODY_LENGTH) {
+				throw new ProtocolException("the body must hold at most " + MAX_BODY_LENGTH //$NON-NLS-1$
+						+ " bytes"); //$NON-NLS-1$
+			}
+			if ("100-continue".equalsIgnoreCase(headers.get("expect"))) { //$NON-NLS-1$ //$NON-NLS-2$
+				out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII)); //$NON-NLS-1$
+				out.flush();
+			}
+			final String body = new String(readFully(in, length), StandardCharsets.UTF_8);
+			if (body.trim().isEmpty()) {
+				members = Collections.emptyMap();
+			} else {
+				members = parseObject(body);
+			}
+		} else {
+			members = Collections.emptyMap();
+		}
+
+		String target = parts[1];
+		final int query = target.indexOf('?');
+		if (query >= 0) {
+			target = target.substring(0, query);
+		}
+		return new ServiceRequest(parts[0], target, headers, members);
+	}
+
+	/**
+	 * Gets the method of the request.
+	 *
+	 * @return the method, such as GET or POST.
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Gets the path of the request.
+	 *
+	 * @return the path, without its query.
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Gets a header of the request.
+	 *
+	 * @param name
+	 *            name of the header, in any case.
+	 * @return the value, <code>null</code> if the header is missing.
+	 */
+	public String getHeader(String name) {
+		return headers.get(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * Gets a string member of the body.
+	 *
+	 * @param name
+	 *            name of the member.
+	 * @return the value, <code>null</code> if the member is missing.
+	 * @throws ProtocolException
+	 *             if the member is not a string.
+	 */
+	public String getString(String name) throws ProtocolException {
+		final Object value = members.get(name);
+		if (value != null && !(value instanceof String)) {
+			throw new ProtocolException("'" + name + "' must be a string"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return (String)value;
+	}
+
+	/**
+	 * Gets an array of strings member of the body.
+	 *
+	 * @param name
+	 *            name of the member.
+	 * @return the values, empty if the member is missing.
+	 * @throws ProtocolException
+	 *             if the member is not an array of strings.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<String> getStrings(String name) throws ProtocolException {
+		final Object value = members.get(name);
+		if (value == null) {
+			return Collections.emptyList();
+		} else if (!(value instanceof List<?>)) {
+			throw new ProtocolException("'" + name //$NON-NLS-1$
+					+ "' must be an array of strings"); //$NON-NLS-1$
+		}
+		return (List<String>)value;
+	}
+
+	/**
+	 * Reads the headers of a request, until the empty line that ends them.
+	 *
+	 * @param in
+	 *            the stream of the client.
+	 * @return the values of the headers by lower case name.
+	 * @throws IOException
+	 *             if the headers are malformed or the connection fails.
+	 */
+	private static Map<String, String> readHeaders(InputStream in) throws IOException {
+		final Map<String, String> headers = new LinkedHashMap<String, String>();
+		String line = readLine(in);
+		while (line != null && !line.isEmpty()) {
+			final int colon = line.indexOf(':');
+			if (colon <= 0 || headers.size() == MAX_HEADERS) {
+				throw new ProtocolException("malformed header '" + line + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH), line.substring(colon + 1)
+					.trim());
+			line = readLine(in);
+		}
+		if (line == null) {
+			throw new ProtocolException("the request ends before its headers"); //$NON-NLS-1$
+		}
+		return headers;
+	}
+
+	/**
+	 * Reads a line ending with CRLF or LF.
+	 *
+	 * @param in
+	 *            the stream of the client.
+	 * @return the line without its end, <code>null</code> if the stream has ended before.
+	 * @throws IOException
+	 *             if the line is too long or the connection fails.
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		final StringBuilder line = new StringBuilder();
+		int c = in.read();
+		if (c < 0) {
+			return null;
+		}
+		while (c >= 0 && c != '\n') {
+			if (line.length() == MAX_LINE_LENGTH) {
+				throw new ProtocolException("line longer than " + MAX_LINE_LENGTH //$NON-NLS-1$
+						+ " characters"); //$NON-NLS-1$
+			}
+			line.append((char)c);
+			c = in.read();
+		}
+		if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+			line.setLength(line.length() - 1);
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Reads the given number of bytes.
+	 *
+	 * @param in
+	 *            the stream of the client.
+	 * @param length
+	 *            the number of bytes.
+	 * @return the bytes.
+	 * @throws IOException
+	 *             if the stream ends before or the connection fails.
+	 */
+	private static byte[] readFully(InputStream in, int length) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(length);
+		final byte[] buffer = new byte[Math.min(length, MAX_LINE_LENGTH) + 1];
+		int remaining = length;
+		while (remaining > 0) {
+			final int read = in.read(buffer, 0, Math.min(remaining, buffer.length));
+			if (read < 0) {
+				throw new ProtocolException("the body is shorter than its Content-Length"); //$NON-NLS-1$
+			}
+			bytes.write(buffer, 0, read);
+			remaining -= read;
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Parses a JSON object whose members are strings or arrays of strings.
+	 *
+	 * @param json
+	 *            the JSON text.
+	 * @return the members by name, the values being {@link String}s or {@link List}s of strings.
+	 * @throws ProtocolException
+	 *             if the text is not such an object.
+	 */
+	static Map<String, Object> parseObject(String json) throws ProtocolException {
+		final Cursor cursor = new Cursor(json);
+		final Map<String, Object> result = new LinkedHashMap<String, Object>();
+		cursor.expect('{');
+		if (!cursor.consume('}')) {
+			do {
+				final String name = cursor.readString();
+				cursor.expect(':');
+				if (cursor.consume('[')) {
+					final List<String> values = new ArrayList<String>();
+					if (!cursor.consume(']')) {
+						do {
+							values.add(cursor.readString());
+						} while (cursor.consume(','));
+						cursor.expect(']');
+					}
+					result.put(name, Collections.unmodifiableList(values));
+				} else {
+					result.put(name, cursor.readString());
+				}
+			} while (cursor.consume(','));
+			cursor.expect('}');
+		}
+		cursor.expectEnd();
+		return result;
+	}
+
+	/**
+	 * Position in a JSON text being parsed.
+	 */
+	private static final class Cursor {
+
+		/** The JSON text. */
+		private final String json;
+
+		/** Index of the next character. */
+		private int index;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param json
+		 *            the JSON text.
+		 */
+		Cursor(String json) {
+			this.json = json;
+		}
+
+		/**
+		 * Consumes the given character if it is the next one, after white spaces.
+		 *
+		 * @param c
+		 *            the character.
+		 * @return <code>true</code> if it has been consumed.
+		 */
+		boolean consume(char c) {
+			skipWhitespaces();
+			if (index < json.length() && json.charAt(index) == c) {
+				index++;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Consumes the given character, which has to be the next one after white spaces.
+		 *
+		 * @param c
+		 *            the character.
+		 * @throws ProtocolException
+		 *             if it is not the next one.
+		 */
+		void expect(char c) throws ProtocolException {
+			if (!consume(c)) {
+				throw error("'" + c + "' expected"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+
+		/**
+		 * Checks that only white spaces remain.
+		 *
+		 * @throws ProtocolException
+		 *             if something else remains.
+		 */
+		void expectEnd() throws ProtocolException {
+			skipWhitespaces();
+			if (index < json.length()) {
+				throw error("end of the object expected"); //$NON-NLS-1$
+			}
+		}
+
+		/**
+		 * Reads a string.
+		 *
+		 * @return the unescaped string.
+		 * @throws ProtocolException
+		 *             if the next value is not a string.
+		 */
+		String readString() throws ProtocolException {
+			if (!consume('"')) {
+				throw error("string expected"); //$NON-NLS-1$
+			}
+			final StringBuilder value = new StringBuilder();
+			while (index < json.length()) {
+				final char c = json.charAt(index++);
+				if (c == '"') {
+					return value.toString();
+				} else if (c == '\\') {
+					value.append(readEscape());
+				} else {
+					value.append(c);
+				}
+			}
+			throw error("unterminated string"); //$NON-NLS-1$
+		}
+
+		/**
+		 * Reads the escape sequence following a backslash.
+		 *
+		 * @return the escaped character.
+		 * @throws ProtocolException
+		 *             if the escape sequence is not valid.
+		 */
+		private char readEscape() throws ProtocolException {
+			if (index == json.length()) {
+				throw error("unterminated string"); //$NON-NLS-1$
+			}
+			final char c = json.charAt(index++);
+			switch (c) {
+				case '"':
+				case '\\':
+				case '/':
+					return c;
+				case 'b':
+					return '\b';
+				case 'f':
+					return '\f';
+				case 'n':
+					return '\n';
+				case 'r':
+					return '\r';
+				case 't':
+					return '\t';
+				case 'u':
+					if (index + UNICODE_ESCAPE_LENGTH <= json.length()) {
+						try {
+							final int code = Integer.parseInt(json.substring(index, index
+									+ UNICODE_ESCAPE_LENGTH), HEX_RADIX);
+							index += UNICODE_ESCAPE_LENGTH;
+							return (char)code;
+						} catch (NumberFormatException e) {
+							// Reported below
+						}
+					}
+					throw error("bad unicode escape"); //$NON-NLS-1$
+				default:
+					throw error("bad escape '\\" + c + "'"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+
+		/**
+		 * Skips the white spaces.
+		 */
+		private void skipWhitespaces() {
+			while (index < json.length() && Character.isWhitespace(json.charAt(index))) {
+				index++;
+			}
+		}
+
+		/**
+		 * Creates the error reported at the current position.
+		 *
+		 * @param message
+		 *            the message.
+		 * @return the error.
+		 */
+		private ProtocolException error(String message) {
+			return new ProtocolException("invalid JSON body, " + message //$NON-NLS-1$
+					+ " at offset " + index); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.compare.git.pgm.internal.cache.StatCache;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.StatusCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.NoWorkTreeException;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Computes the status of the work tree of the repositories, at most once per invocation.
+ * <p>
+ * The status is shared by all the validations of a command. The content ids of the files that JGit has to
+ * hash are read from and recorded in the {@link StatCache} of the repository so that they are not hashed
+ * again by the next invocations. Callers that have modified the work tree or the index must
+ * {@link #refresh(Repository)} the status.
+ * </p>
+ */
+public final class WorktreeStatus {
+
+	/** Computed statuses, by git directory. */
+	private static final Map<File, Status> STATUSES = new HashMap<File, Status>();
+
+	/**
+	 * Constructor.
+	 */
+	private WorktreeStatus() {
+		// Utility class
+	}
+
+	/**
+	 * Gets the status of the work tree of a repository, computing it if it has not been yet.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the status.
+	 * @throws GitAPIException
+	 *             if the status can not be computed.
+	 * @throws NoWorkTreeException
+	 *             if the repository has no work tree.
+	 */
+	public static synchronized Status get(Repository repo) throws GitAPIException, NoWorkTreeException {
+		Status status = STATUSES.get(getKey(repo));
+		if (status == null) {
+			status = refresh(repo);
+		}
+		return status;
+	}
+
+	/**
+	 * Computes again the status of the work tree of a repository.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the status.
+	 * @throws GitAPIException
+	 *             if the status can not be computed.
+	 * @throws NoWorkTreeException
+	 *             if the repository has no work tree.
+	 */
+	public static synchronized Status refresh(Repository repo) throws GitAPIException, NoWorkTreeException {
+		final StatusCommand statusCommand = Git.wrap(repo).status();
+		StatCache statCache;
+		try {
+			statCache = StatCache.forRepository(repo);
+			statusCommand.setWorkingTreeIt(statCache.createIterator(repo));
+		} catch (IOException e) {
+			// The status is computed without cache
+			statCache = null;
+		}
+		final Status status = statusCommand.call();
+		if (statCache != null) {
+			try {
+				statCache.write();
+			} catch (IOException e) {
+				// The files will be hashed again next time
+			}
+		}
+		STATUSES.put(getKey(repo), status);
+		return status;
+	}
+
+	/**
+	 * Forgets the status of the work tree of a repository.
+	 *
+	 * @param repo
+	 *            the repository.
+	 */
+	public static synchronized void invalidate(Repository repo) {
+		STATUSES.remove(getKey(repo));
+	}
+
+	/**
+	 * Gets the key of a repository.
+	 *
+	 * @param repo
+	 *            the repository.
+	 * @return the absolute path of its git directory.
+	 */
+	private static File getKey(Repository repo) {
+		return repo.getDirectory().getAbsoluteFile();
+	}
+}